@@ -0,0 +1,64 @@
+/**
+ * Copyright 2016 Antony Holmes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.columbia.rdf.htsview.benchmarks;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import edu.columbia.rdf.htsview.ext.abi.ABITrace;
+import edu.columbia.rdf.htsview.test.SyntheticFixtures;
+
+/**
+ * Cost of decoding a typical 1000 base trace once it is in memory.
+ *
+ * @author Antony Holmes
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ABITraceBenchmark {
+
+  /** The m buffer. */
+  private ByteBuffer mBuffer;
+
+  /**
+   * Setup.
+   */
+  @Setup
+  public void setup() {
+    mBuffer = SyntheticFixtures.abi(1000);
+  }
+
+  /**
+   * Parses the.
+   *
+   * @return the ABI trace
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  @Benchmark
+  public ABITrace parse() throws IOException {
+    return ABITrace.parse("synthetic", mBuffer.duplicate());
+  }
+}
@@ -0,0 +1,86 @@
+/**
+ * Copyright 2016 Antony Holmes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.columbia.rdf.htsview.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.jebtk.bioinformatics.ext.ucsc.UCSCTrack;
+import org.jebtk.bioinformatics.genomic.Genome;
+import org.jebtk.bioinformatics.genomic.GenomicRegion;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import edu.columbia.rdf.htsview.test.SyntheticFixtures;
+import edu.columbia.rdf.htsview.tracks.SampleAssemblyFile;
+import edu.columbia.rdf.htsview.tracks.sample.SamplePlotTrack;
+
+/**
+ * Cost of turning counts into a normalized bedgraph for a 100 kb view at
+ * 1 bp and 1 kb resolution.
+ *
+ * @author Antony Holmes
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class BedGraphBenchmark {
+
+  /** The m window. */
+  @Param({ "1", "1000" })
+  public int mWindow;
+
+  /** The m genome. */
+  private Genome mGenome;
+
+  /** The m region. */
+  private GenomicRegion mRegion;
+
+  /** The m track. */
+  private SamplePlotTrack mTrack;
+
+  /**
+   * Setup.
+   */
+  @Setup
+  public void setup() {
+    SyntheticFixtures fixtures = new SyntheticFixtures(200000);
+
+    mGenome = fixtures.getGenome();
+    mRegion = fixtures.region(400001, 500000);
+
+    mTrack = new SamplePlotTrack(SyntheticFixtures.sample("bedgraph"),
+        new SampleAssemblyFile(fixtures.toReadCountsFile()) {
+        });
+  }
+
+  /**
+   * Gets the bed graph.
+   *
+   * @return the bed graph
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  @Benchmark
+  public UCSCTrack getBedGraph() throws IOException {
+    return mTrack.getBedGraph(mGenome, mRegion, mWindow, true);
+  }
+}
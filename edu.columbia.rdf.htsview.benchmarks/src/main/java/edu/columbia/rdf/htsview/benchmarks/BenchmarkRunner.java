@@ -0,0 +1,79 @@
+/**
+ * Copyright 2016 Antony Holmes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.columbia.rdf.htsview.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs all of the benchmarks with the GC profiler so that both throughput
+ * and allocation rate (gc.alloc.rate.norm, bytes per operation) are
+ * recorded. Results are written as JSON to
+ * {@code baselines/<label>.json} so that releases can be compared, e.g. with
+ * the JMH visualizer or by diffing the score fields.
+ *
+ * <pre>
+ * mvn package
+ * java -jar target/benchmarks.jar 1.0.0 [benchmark regex]
+ * </pre>
+ *
+ * @author Antony Holmes
+ */
+public class BenchmarkRunner {
+
+  /** The Constant BASELINE_DIR. */
+  private static final Path BASELINE_DIR = Paths.get("baselines");
+
+  /**
+   * Instantiates a new benchmark runner.
+   */
+  private BenchmarkRunner() {
+    // Do nothing
+  }
+
+  /**
+   * The main method.
+   *
+   * @param args the label of the baseline, usually the release version, and
+   *          an optional regex selecting the benchmarks to run.
+   * @throws RunnerException the runner exception
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public static void main(String[] args) throws RunnerException, IOException {
+    String label = args.length > 0 ? args[0] : "latest";
+    String include = args.length > 1 ? args[1]
+        : BenchmarkRunner.class.getPackage().getName() + ".*";
+
+    Files.createDirectories(BASELINE_DIR);
+
+    Options options = new OptionsBuilder().include(include)
+        .addProfiler(GCProfiler.class).warmupIterations(5)
+        .measurementIterations(10).forks(1)
+        .resultFormat(ResultFormatType.JSON)
+        .result(BASELINE_DIR.resolve(label + ".json").toString()).build();
+
+    new Runner(options).run();
+  }
+}
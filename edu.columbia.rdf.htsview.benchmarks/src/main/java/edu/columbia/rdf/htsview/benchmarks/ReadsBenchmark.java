@@ -0,0 +1,98 @@
+/**
+ * Copyright 2016 Antony Holmes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.columbia.rdf.htsview.benchmarks;
+
+import java.awt.Color;
+import java.util.concurrent.TimeUnit;
+
+import org.jebtk.bioinformatics.genomic.GenomicRegion;
+import org.jebtk.bioinformatics.genomic.Strand;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import edu.columbia.rdf.htsview.test.SyntheticFixtures;
+import edu.columbia.rdf.htsview.tracks.TitlePosition;
+import edu.columbia.rdf.htsview.tracks.TitleProperties;
+import edu.columbia.rdf.htsview.tracks.sample.ReadsPlotSubFigure;
+
+/**
+ * Cost of stacking reads into rows for display.
+ *
+ * @author Antony Holmes
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ReadsBenchmark {
+
+  /** The m reads. */
+  @Param({ "1000", "10000", "100000" })
+  public int mReads;
+
+  /** The m starts. */
+  private int[] mStarts;
+
+  /** The m strands. */
+  private Strand[] mStrands;
+
+  /** The m figure. */
+  private ReadsPlotSubFigure mFigure;
+
+  /**
+   * Setup.
+   */
+  @Setup
+  public void setup() {
+    // Every read falls in a 20 kb view
+    SyntheticFixtures fixtures = new SyntheticFixtures(mReads, 20000);
+
+    GenomicRegion region = fixtures.region(1, fixtures.getSize());
+
+    mStarts = fixtures.starts(region);
+    mStrands = fixtures.strands(region);
+
+    mFigure = ReadsPlotSubFigure.create("reads",
+        SyntheticFixtures.READ_LENGTH,
+        new TitleProperties(TitlePosition.TOP));
+  }
+
+  /**
+   * Sets the starts.
+   *
+   * @return the reads plot sub figure
+   */
+  @Benchmark
+  public ReadsPlotSubFigure setStarts() {
+    mFigure.setStarts(mStarts,
+        mStrands,
+        true,
+        Color.BLACK,
+        Color.GRAY,
+        true,
+        Color.BLACK,
+        Color.GRAY,
+        5,
+        1);
+
+    return mFigure;
+  }
+}
@@ -0,0 +1,173 @@
+/**
+ * Copyright 2016 Antony Holmes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.columbia.rdf.htsview.benchmarks;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.jebtk.bioinformatics.ext.ucsc.BedGraph;
+import org.jebtk.bioinformatics.genomic.Genome;
+import org.jebtk.bioinformatics.genomic.GenomicElement;
+import org.jebtk.bioinformatics.genomic.GenomicRegion;
+import org.jebtk.graphplot.figure.PlotStyle;
+import org.jebtk.modern.graphics.DrawingContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import edu.columbia.rdf.htsview.test.SyntheticFixtures;
+import edu.columbia.rdf.htsview.tracks.FixedYSubFigure;
+import edu.columbia.rdf.htsview.tracks.TrackDisplayMode;
+import edu.columbia.rdf.htsview.tracks.TrackSubFigure;
+import edu.columbia.rdf.htsview.tracks.ext.ucsc.BedGraphPlot;
+import edu.columbia.rdf.htsview.tracks.genomic.GenomicElementPlotLayer;
+
+/**
+ * Cost of laying out genomic elements and of building the plot matrix of a
+ * bedgraph for display.
+ *
+ * @author Antony Holmes
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class RenderBenchmark {
+
+  /** The Constant WIDTH. */
+  private static final int WIDTH = 1000;
+
+  /** The Constant HEIGHT. */
+  private static final int HEIGHT = 100;
+
+  /** The m elements. */
+  @Param({ "100", "10000" })
+  public int mElements;
+
+  /** The m region. */
+  private GenomicRegion mRegion;
+
+  /** The m element list. */
+  private List<GenomicElement> mElementList;
+
+  /** The m bed graph. */
+  private BedGraph mBedGraph;
+
+  /** The m sub figure. */
+  private TrackSubFigure mSubFigure;
+
+  /** The m layer. */
+  private GenomicElementPlotLayer mLayer;
+
+  /** The m plot. */
+  private BedGraphPlot mPlot;
+
+  /** The m image. */
+  private BufferedImage mImage;
+
+  /** The m g 2. */
+  private Graphics2D mG2;
+
+  /**
+   * Setup.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  @Setup
+  public void setup() throws IOException {
+    // Only the fixture chromosome is needed, not its reads
+    SyntheticFixtures fixtures = new SyntheticFixtures(0);
+
+    Genome genome = fixtures.getGenome();
+
+    mRegion = fixtures.region(1, SyntheticFixtures.SIZE);
+
+    mElementList = SyntheticFixtures.elements(mRegion, mElements);
+    mBedGraph = SyntheticFixtures.bedGraph(mRegion, mElements);
+
+    mLayer = new GenomicElementPlotLayer(Color.BLUE);
+
+    mSubFigure = new FixedYSubFigure() {
+      private static final long serialVersionUID = 1L;
+    };
+
+    mSubFigure.currentAxes().addChild(mLayer);
+    mSubFigure.update(genome, mRegion, 1, WIDTH, HEIGHT, 0);
+
+    mPlot = new BedGraphPlot("bedgraph");
+
+    mImage = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB);
+    mG2 = mImage.createGraphics();
+  }
+
+  /**
+   * Tear down.
+   */
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    mG2.dispose();
+  }
+
+  /**
+   * Lay out and draw the elements, as happens after each change of location.
+   *
+   * @return the genomic element plot layer
+   */
+  @Benchmark
+  public GenomicElementPlotLayer genomicElementLayout() {
+    mLayer.update(mElementList, Color.BLUE, TrackDisplayMode.COMPACT);
+
+    mLayer.plotLayer(mG2,
+        DrawingContext.UI,
+        null,
+        mSubFigure,
+        mSubFigure.currentAxes());
+
+    return mLayer;
+  }
+
+  /**
+   * Build the plot matrix of a bedgraph.
+   *
+   * @return the bed graph plot
+   */
+  @Benchmark
+  public BedGraphPlot bedGraphMatrix() {
+    mPlot.setBedGraph(mBedGraph);
+
+    mPlot.update(mRegion,
+        1,
+        1,
+        WIDTH,
+        HEIGHT,
+        0,
+        Color.BLACK,
+        Color.GRAY,
+        PlotStyle.FILLED_SMOOTH);
+
+    return mPlot;
+  }
+}
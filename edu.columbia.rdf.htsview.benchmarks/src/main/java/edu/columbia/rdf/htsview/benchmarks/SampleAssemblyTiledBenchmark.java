@@ -0,0 +1,127 @@
+/**
+ * Copyright 2016 Antony Holmes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.columbia.rdf.htsview.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.jebtk.bioinformatics.genomic.Genome;
+import org.jebtk.bioinformatics.genomic.GenomicRegion;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import edu.columbia.rdf.edb.Sample;
+import edu.columbia.rdf.htsview.test.SyntheticFixtures;
+import edu.columbia.rdf.htsview.tracks.SampleAssemblyFile;
+import edu.columbia.rdf.htsview.tracks.sample.SampleAssemblyTiled;
+
+/**
+ * Cost of serving counts from the tile cache when the view is inside the
+ * cached tiles (a hit, e.g. small pans) and when it is not (a miss, e.g.
+ * jumping to a new location).
+ *
+ * @author Antony Holmes
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class SampleAssemblyTiledBenchmark {
+
+  /** The Constant WINDOW. */
+  private static final int WINDOW = 100;
+
+  /** The Constant VIEW. */
+  private static final int VIEW = 100000;
+
+  /** The m fixtures. */
+  private SyntheticFixtures mFixtures;
+
+  /** The m genome. */
+  private Genome mGenome;
+
+  /** The m sample. */
+  private Sample mSample;
+
+  /** The m tiled. */
+  private SampleAssemblyTiled mTiled;
+
+  /** The m hit region. */
+  private GenomicRegion mHitRegion;
+
+  /** The m miss region. */
+  private GenomicRegion mMissRegion;
+
+  /** The m other miss region. */
+  private GenomicRegion mOtherMissRegion;
+
+  /**
+   * Setup.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  @Setup
+  public void setup() throws IOException {
+    mFixtures = new SyntheticFixtures(200000);
+    mGenome = mFixtures.getGenome();
+    mSample = SyntheticFixtures.sample("tiled");
+    mTiled = new SampleAssemblyTiled(
+        new SampleAssemblyFile(mFixtures.toReadCountsFile()) {
+        });
+
+    mHitRegion = mFixtures.region(400001, 400000 + VIEW);
+
+    // Prime the cache around the hit region
+    mTiled.getCounts(mSample, mGenome, mHitRegion, WINDOW);
+
+    // Far enough apart that the tiles around one do not cover the other
+    mMissRegion = mFixtures.region(1, VIEW);
+    mOtherMissRegion = mFixtures.region(SyntheticFixtures.SIZE - VIEW + 1,
+        SyntheticFixtures.SIZE);
+  }
+
+  /**
+   * Hit.
+   *
+   * @return the int[]
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  @Benchmark
+  public int[] hit() throws IOException {
+    return mTiled.getCounts(mSample, mGenome, mHitRegion, WINDOW);
+  }
+
+  /**
+   * Each call jumps between the ends of the fixture chromosome, outside the
+   * cached tiles.
+   *
+   * @return the int[]
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  @Benchmark
+  public int[] miss() throws IOException {
+    GenomicRegion region = mMissRegion;
+
+    mMissRegion = mOtherMissRegion;
+    mOtherMissRegion = region;
+
+    return mTiled.getCounts(mSample, mGenome, region, WINDOW);
+  }
+}
@@ -0,0 +1,63 @@
+/**
+ * Copyright 2016 Antony Holmes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.columbia.rdf.htsview.cache;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Locates the directories data is cached in between sessions. Everything
+ * lives under {@code htsview} in {@code $XDG_CACHE_HOME} or, if that is not
+ * set, {@code ~/.cache}.
+ *
+ * @author Antony Holmes
+ */
+public class CacheDirs {
+
+  /**
+   * Instantiates a new cache dirs.
+   */
+  private CacheDirs() {
+    // Do nothing
+  }
+
+  /**
+   * Returns a directory in the htsview cache directory. The directory is
+   * not created.
+   *
+   * @param names the names of the sub directories, if any.
+   * @return the path
+   */
+  public static Path get(String... names) {
+    String dir = System.getenv("XDG_CACHE_HOME");
+
+    Path root;
+
+    if (dir != null && dir.length() > 0) {
+      root = Paths.get(dir);
+    } else {
+      root = Paths.get(System.getProperty("user.home"), ".cache");
+    }
+
+    root = root.resolve("htsview");
+
+    for (String name : names) {
+      root = root.resolve(name);
+    }
+
+    return root;
+  }
+}
@@ -0,0 +1,399 @@
+/**
+ * Copyright 2016 Antony Holmes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.columbia.rdf.htsview.cache;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import edu.columbia.rdf.htsview.memory.MemoryConsumer;
+import edu.columbia.rdf.htsview.memory.MemoryGovernor;
+
+/**
+ * An in memory cache of values keyed by string in least recently used order
+ * that loads each value at most once however many threads ask for it. A
+ * load is a {@link FutureTask}: the first caller to find the task runs it
+ * and the rest wait for its result. Loads can also be registered ahead of
+ * time and are then run by whichever caller needs them first. The cache is
+ * bounded by a number of entries and by the bytes of its values as measured
+ * by a {@link Weigher}. Owners register the cache with the
+ * {@link MemoryGovernor} if it should be accounted for; it is then notified
+ * after each insert. Values returned by the cache are shared and must not
+ * be modified.
+ *
+ * @author Antony Holmes
+ *
+ * @param <V> the value type
+ */
+public class SharedCache<V> implements MemoryConsumer {
+
+  /**
+   * Measures the memory held by a value.
+   *
+   * @param <V> the value type
+   */
+  public interface Weigher<V> {
+
+    /**
+     * Returns the approximate number of bytes held by a value.
+     *
+     * @param value the value
+     * @return the bytes
+     */
+    public long getBytes(V value);
+  }
+
+  /** Weighs int arrays such as binned counts. */
+  public static final Weigher<int[]> INT_ARRAY_WEIGHER = new Weigher<int[]>() {
+    @Override
+    public long getBytes(int[] value) {
+      return value.length * 4L;
+    }
+  };
+
+  /** The m name. */
+  private final String mName;
+
+  /** The m max entries. */
+  private final int mMaxEntries;
+
+  /** The m max bytes. */
+  private final long mMaxBytes;
+
+  /** The m weigher. */
+  private final Weigher<V> mWeigher;
+
+  /**
+   * The bytes held by the values. Only changed while holding the lock but
+   * read without it so the memory breakdown never waits on a load.
+   */
+  private volatile long mBytes = 0;
+
+  /**
+   * Incremented when the cache is cleared so that loads started before then
+   * do not insert stale values.
+   */
+  private long mGeneration = 0;
+
+  /** Values in LRU order. */
+  private final Map<String, V> mValueMap = new LinkedHashMap<String, V>(16,
+      0.75f, true);
+
+  /** Loads registered or in progress. */
+  private final Map<String, FutureTask<V>> mPendingMap = new HashMap<String, FutureTask<V>>();
+
+  /**
+   * Instantiates a new shared cache bounded only by the number of entries.
+   *
+   * @param name the name shown in the memory breakdown.
+   * @param maxEntries the max entries
+   * @param weigher the weigher or null if values are not weighed.
+   */
+  public SharedCache(String name, int maxEntries, Weigher<V> weigher) {
+    this(name, maxEntries, Long.MAX_VALUE, weigher);
+  }
+
+  /**
+   * Instantiates a new shared cache.
+   *
+   * @param name the name shown in the memory breakdown.
+   * @param maxEntries the max entries
+   * @param maxBytes the max bytes
+   * @param weigher the weigher or null if values are not weighed.
+   */
+  public SharedCache(String name, int maxEntries, long maxBytes,
+      Weigher<V> weigher) {
+    mName = name;
+    mMaxEntries = Math.max(1, maxEntries);
+    mMaxBytes = Math.max(1, maxBytes);
+    mWeigher = weigher;
+  }
+
+  /**
+   * Returns a value, loading it if it is neither cached nor already being
+   * loaded. Concurrent requests for the same key wait for a single load.
+   *
+   * @param key the key
+   * @param loader the loader
+   * @return the value
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public V get(String key, Callable<V> loader) throws IOException {
+    FutureTask<V> task;
+
+    synchronized (this) {
+      V value = mValueMap.get(key);
+
+      if (value != null) {
+        return value;
+      }
+
+      task = getTask(key, loader);
+    }
+
+    return run(task);
+  }
+
+  /**
+   * Register a load without running it. The load is run by the first call
+   * to {@link #get(String, Callable)} or {@link #await(String)} for the key.
+   *
+   * @param key the key
+   * @param loader the loader
+   * @return false if the value is already cached or being loaded.
+   */
+  public synchronized boolean register(String key, Callable<V> loader) {
+    if (contains(key)) {
+      return false;
+    }
+
+    getTask(key, loader);
+
+    return true;
+  }
+
+  /**
+   * Returns a value if it is cached, without loading it.
+   *
+   * @param key the key
+   * @return the value or null.
+   */
+  public synchronized V getIfPresent(String key) {
+    return mValueMap.get(key);
+  }
+
+  /**
+   * Returns a value if it is cached or waits for it if it is being loaded
+   * or has been registered.
+   *
+   * @param key the key
+   * @return the value or null if it is neither cached nor being loaded.
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public V await(String key) throws IOException {
+    FutureTask<V> task;
+
+    synchronized (this) {
+      V value = mValueMap.get(key);
+
+      if (value != null) {
+        return value;
+      }
+
+      task = mPendingMap.get(key);
+    }
+
+    if (task == null) {
+      return null;
+    }
+
+    return run(task);
+  }
+
+  /**
+   * Returns true if a value is cached or being loaded. A cached value is
+   * marked as recently used.
+   *
+   * @param key the key
+   * @return true, if successful
+   */
+  public synchronized boolean contains(String key) {
+    return mValueMap.get(key) != null || mPendingMap.containsKey(key);
+  }
+
+  /**
+   * Clear the cache. Loads in progress complete for the threads waiting on
+   * them but their values are not kept.
+   */
+  public synchronized void clear() {
+    mValueMap.clear();
+    mPendingMap.clear();
+    mBytes = 0;
+    ++mGeneration;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see edu.columbia.rdf.htsview.memory.MemoryConsumer#getName()
+   */
+  @Override
+  public String getName() {
+    return mName;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see edu.columbia.rdf.htsview.memory.MemoryConsumer#getBytes()
+   */
+  @Override
+  public long getBytes() {
+    return mBytes;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see edu.columbia.rdf.htsview.memory.MemoryConsumer#release(long)
+   */
+  @Override
+  public synchronized long release(long bytes) {
+    long start = mBytes;
+
+    Iterator<V> iter = mValueMap.values().iterator();
+
+    while (start - mBytes < bytes && iter.hasNext()) {
+      mBytes -= getBytes(iter.next());
+
+      iter.remove();
+    }
+
+    return start - mBytes;
+  }
+
+  /**
+   * Returns the task loading a key, creating it if necessary. The task is
+   * not run. The caller must hold the lock.
+   *
+   * @param key the key
+   * @param loader the loader
+   * @return the task
+   */
+  private FutureTask<V> getTask(final String key, final Callable<V> loader) {
+    FutureTask<V> task = mPendingMap.get(key);
+
+    if (task == null) {
+      final long generation = mGeneration;
+
+      task = new FutureTask<V>(new Callable<V>() {
+        @Override
+        public V call() throws Exception {
+          V value = null;
+
+          try {
+            value = loader.call();
+          } finally {
+            put(key, value, generation);
+          }
+
+          return value;
+        }
+      });
+
+      mPendingMap.put(key, task);
+    }
+
+    return task;
+  }
+
+  /**
+   * Store the value of a completed load and evict the least recently used
+   * values until the cache is within its bounds.
+   *
+   * @param key the key
+   * @param value the value or null if the load failed.
+   * @param generation the generation the load was started in.
+   */
+  private void put(String key, V value, long generation) {
+    synchronized (this) {
+      if (generation != mGeneration) {
+        return;
+      }
+
+      mPendingMap.remove(key);
+
+      if (value == null) {
+        return;
+      }
+
+      V old = mValueMap.put(key, value);
+
+      if (old != null) {
+        mBytes -= getBytes(old);
+      }
+
+      mBytes += getBytes(value);
+
+      Iterator<V> iter = mValueMap.values().iterator();
+
+      while ((mValueMap.size() > mMaxEntries || mBytes > mMaxBytes)
+          && iter.hasNext()) {
+        mBytes -= getBytes(iter.next());
+
+        iter.remove();
+      }
+    }
+
+    MemoryGovernor.getInstance().check();
+  }
+
+  /**
+   * Returns the bytes of a value.
+   *
+   * @param value the value
+   * @return the bytes
+   */
+  private long getBytes(V value) {
+    return mWeigher != null ? mWeigher.getBytes(value) : 0;
+  }
+
+  /**
+   * Run a task if no other thread has started it and wait for its result.
+   *
+   * @param <T> the generic type
+   * @param task the task
+   * @return the result
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public static <T> T run(FutureTask<T> task) throws IOException {
+    // Does nothing if the task has already been run by another caller
+    task.run();
+
+    return getResult(task);
+  }
+
+  /**
+   * Wait for the result of a future, rethrowing the cause of a failure as
+   * an {@link IOException}.
+   *
+   * @param <T> the generic type
+   * @param future the future
+   * @return the result
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public static <T> T getResult(Future<T> future) throws IOException {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+
+      throw new IOException(e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+
+      throw new IOException(e.getCause());
+    }
+  }
+}
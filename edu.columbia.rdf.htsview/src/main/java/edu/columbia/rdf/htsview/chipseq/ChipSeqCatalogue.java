@@ -0,0 +1,180 @@
+/**
+ * Copyright 2016 Antony Holmes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.columbia.rdf.htsview.chipseq;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import edu.columbia.rdf.edb.Sample;
+
+/**
+ * Local copy of the ChIP-seq sample catalogue, stored as a gzipped stream of
+ * samples ordered by id together with the time of the last sync. Samples
+ * are written field by field with {@link SampleCodec}.
+ *
+ * @author Antony Holmes
+ */
+public class ChipSeqCatalogue {
+
+  /** The Constant MAGIC. */
+  private static final int MAGIC = 0x43415432;
+
+  /** The m samples keyed by id. */
+  private final Map<Integer, Sample> mSamples = new TreeMap<Integer, Sample>();
+
+  /** The m last sync in ms since the epoch. */
+  private long mLastSync = 0;
+
+  /**
+   * Gets the samples in id order.
+   *
+   * @return the samples
+   */
+  public synchronized List<Sample> getSamples() {
+    return new ArrayList<Sample>(mSamples.values());
+  }
+
+  /**
+   * Returns true if the catalogue contains no samples.
+   *
+   * @return true, if is empty
+   */
+  public synchronized boolean isEmpty() {
+    return mSamples.isEmpty();
+  }
+
+  /**
+   * Gets the time of the last sync.
+   *
+   * @return the last sync
+   */
+  public synchronized long getLastSync() {
+    return mLastSync;
+  }
+
+  /**
+   * Merge samples that are new or have changed since the last sync.
+   *
+   * @param samples the samples
+   * @param time the time the samples were requested.
+   */
+  public synchronized void merge(Collection<Sample> samples, long time) {
+    for (Sample sample : samples) {
+      mSamples.put(sample.getId(), sample);
+    }
+
+    mLastSync = time;
+  }
+
+  /**
+   * Replace the catalogue with a full listing. Samples that are no longer on
+   * the server are removed.
+   *
+   * @param samples the samples
+   * @param time the time the samples were requested.
+   */
+  public synchronized void replace(Collection<Sample> samples, long time) {
+    mSamples.clear();
+
+    merge(samples, time);
+  }
+
+  /**
+   * Write the catalogue. The file is replaced atomically so a crash cannot
+   * leave a partial catalogue.
+   *
+   * @param file the file
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public synchronized void write(Path file) throws IOException {
+    Files.createDirectories(file.getParent());
+
+    Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+
+    DataOutputStream out = new DataOutputStream(new GZIPOutputStream(
+        new BufferedOutputStream(Files.newOutputStream(tmp))));
+
+    try {
+      out.writeInt(MAGIC);
+      out.writeLong(mLastSync);
+      out.writeInt(mSamples.size());
+
+      for (Sample sample : mSamples.values()) {
+        SampleCodec.write(sample, out);
+      }
+    } finally {
+      out.close();
+    }
+
+    Files.move(tmp,
+        file,
+        StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * Read a catalogue.
+   *
+   * @param file the file
+   * @return the chip seq catalogue, empty if the file does not exist or is
+   *         in an older format.
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public static ChipSeqCatalogue read(Path file) throws IOException {
+    ChipSeqCatalogue ret = new ChipSeqCatalogue();
+
+    if (!Files.exists(file)) {
+      return ret;
+    }
+
+    DataInputStream in = new DataInputStream(new GZIPInputStream(
+        new BufferedInputStream(Files.newInputStream(file))));
+
+    try {
+      if (in.readInt() != MAGIC) {
+        return ret;
+      }
+
+      long lastSync = in.readLong();
+      int n = in.readInt();
+
+      List<Sample> samples = new ArrayList<Sample>(n);
+
+      for (int i = 0; i < n; ++i) {
+        samples.add(SampleCodec.read(in));
+      }
+
+      ret.merge(samples, lastSync);
+    } finally {
+      in.close();
+    }
+
+    return ret;
+  }
+}
@@ -15,17 +15,53 @@
  */
 package edu.columbia.rdf.htsview.chipseq;
 
+import java.io.IOException;
 import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import edu.columbia.rdf.edb.EDBWLogin;
+import edu.columbia.rdf.edb.Sample;
 import edu.columbia.rdf.edb.ui.EDBRepository;
 import edu.columbia.rdf.edb.ui.RestrictedTypeRepositoryCache;
+import edu.columbia.rdf.htsview.cache.CacheDirs;
+import edu.columbia.rdf.htsview.cache.SharedCache;
 
 /**
  * The class ChipSeqRepositoryCache.
+ * 
+ * The sample listing is served from a local copy of the catalogue which is
+ * read in the background as soon as the cache is created. Each server and
+ * user has their own copy, since they may see different samples. Each session the
+ * copy is brought up to date in the background with the samples changed
+ * since the last sync, so the samples dialog never waits on the server
+ * except the very first time. Whenever the catalogue changes the sortable
+ * fields of every sample are extracted into the {@link SampleKeyTable} and
+ * the {@link SampleSearchIndex} is brought up to date.
  */
 public class ChipSeqRepositoryCache extends RestrictedTypeRepositoryCache {
 
+  /** The Constant LOG. */
+  private static final Logger LOG = LoggerFactory
+      .getLogger(ChipSeqRepositoryCache.class);
+
+  /** The m file. */
+  private final Path mFile;
+
+  /** Reads the local catalogue. */
+  private final FutureTask<ChipSeqCatalogue> mLoader;
+
+  /** The m synced. */
+  private boolean mSynced = false;
+
   /**
    * Instantiates a new chip seq repository cache.
    *
@@ -35,5 +71,211 @@ public class ChipSeqRepositoryCache extends RestrictedTypeRepositoryCache {
   public ChipSeqRepositoryCache(EDBWLogin login)
       throws UnsupportedEncodingException {
     super(login, EDBRepository.CHIP_SEQ_TYPE);
+
+    mFile = CacheDirs.get().resolve(
+        "chipseq-" + hash(login.getUrl() + "\n" + login.getUser())
+            + ".catalogue");
+
+    mLoader = new FutureTask<ChipSeqCatalogue>(
+        new Callable<ChipSeqCatalogue>() {
+          @Override
+          public ChipSeqCatalogue call() {
+            ChipSeqCatalogue ret = load(mFile);
+
+            SampleKeyTable.getInstance().update(ret.getSamples());
+            SampleSearchIndex.getInstance().build(ret.getSamples());
+
+            return ret;
+          }
+        });
+
+    start(mLoader, "htsview-catalogue-load");
+  }
+
+  /**
+   * Returns a short hex digest of a string, used to give each server and
+   * user their own catalogue file.
+   *
+   * @param s the s
+   * @return the hex digest
+   */
+  private static String hash(String s) {
+    byte[] digest;
+
+    try {
+      digest = MessageDigest.getInstance("SHA-1")
+          .digest(s.getBytes(StandardCharsets.UTF_8));
+    } catch (NoSuchAlgorithmException e) {
+      // Every Java platform is required to support SHA-1
+      throw new IllegalStateException(e);
+    }
+
+    StringBuilder ret = new StringBuilder();
+
+    for (int i = 0; i < 8; ++i) {
+      ret.append(String.format("%02x", digest[i]));
+    }
+
+    return ret.toString();
+  }
+
+  /**
+   * Read the local catalogue. An unreadable catalogue is treated as empty so
+   * that it is rebuilt from the server.
+   *
+   * @param file the file
+   * @return the chip seq catalogue
+   */
+  private static ChipSeqCatalogue load(Path file) {
+    long start = System.currentTimeMillis();
+
+    try {
+      ChipSeqCatalogue ret = ChipSeqCatalogue.read(file);
+
+      LOG.info("Read {} samples from {} in {} ms.",
+          ret.getSamples().size(),
+          file,
+          System.currentTimeMillis() - start);
+
+      return ret;
+    } catch (IOException e) {
+      LOG.warn("Could not read catalogue {}: {}", file, e.getMessage());
+
+      return new ChipSeqCatalogue();
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see edu.columbia.rdf.edb.ui.RepositoryCache#getAllSamples()
+   */
+  @Override
+  public List<Sample> getAllSamples() throws IOException {
+    ChipSeqCatalogue catalogue = getCatalogue();
+
+    if (catalogue.isEmpty()) {
+      // First run so there is no choice but to wait for the full listing
+      long time = System.currentTimeMillis();
+
+      catalogue.replace(super.getAllSamples(), time);
+
+      SampleKeyTable.getInstance().update(catalogue.getSamples());
+      SampleSearchIndex.getInstance().build(catalogue.getSamples());
+
+      save(catalogue);
+
+      mSynced = true;
+    } else {
+      sync(catalogue);
+    }
+
+    return catalogue.getSamples();
+  }
+
+  /**
+   * Returns the samples that have changed on the server since a given time.
+   * The base repository only offers a full listing, so this returns every
+   * sample. Subclasses talking to a server with a changed since query should
+   * override this so that only the delta is transferred.
+   *
+   * @param since the time of the last sync in ms since the epoch.
+   * @return the changed samples
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  protected List<Sample> getChangedSamples(long since) throws IOException {
+    return super.getAllSamples();
+  }
+
+  /**
+   * Returns true if {@link #getChangedSamples(long)} returns only the
+   * changed samples rather than a full listing. A full listing replaces the
+   * catalogue so that samples removed from the server are dropped.
+   *
+   * @return true, if is incremental
+   */
+  protected boolean isIncremental() {
+    return false;
+  }
+
+  /**
+   * Bring the local catalogue up to date in the background, once per
+   * session.
+   *
+   * @param catalogue the catalogue
+   */
+  private synchronized void sync(final ChipSeqCatalogue catalogue) {
+    if (mSynced) {
+      return;
+    }
+
+    mSynced = true;
+
+    start(new Runnable() {
+      @Override
+      public void run() {
+        long time = System.currentTimeMillis();
+
+        try {
+          List<Sample> samples = getChangedSamples(catalogue.getLastSync());
+
+          if (isIncremental()) {
+            catalogue.merge(samples, time);
+
+            SampleSearchIndex.getInstance().update(samples);
+          } else {
+            catalogue.replace(samples, time);
+
+            SampleSearchIndex.getInstance().build(samples);
+          }
+
+          SampleKeyTable.getInstance().update(catalogue.getSamples());
+
+          LOG.info("Synced {} catalogue samples in {} ms.",
+              samples.size(),
+              System.currentTimeMillis() - time);
+
+          save(catalogue);
+        } catch (IOException e) {
+          LOG.warn("Could not sync catalogue: {}", e.getMessage());
+        }
+      }
+    }, "htsview-catalogue-sync");
+  }
+
+  /**
+   * Gets the local catalogue, waiting for it to be read if necessary.
+   *
+   * @return the catalogue
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private ChipSeqCatalogue getCatalogue() throws IOException {
+    return SharedCache.getResult(mLoader);
+  }
+
+  /**
+   * Write the catalogue to disk.
+   *
+   * @param catalogue the catalogue
+   */
+  private void save(ChipSeqCatalogue catalogue) {
+    try {
+      catalogue.write(mFile);
+    } catch (IOException e) {
+      LOG.warn("Could not write catalogue {}: {}", mFile, e.getMessage());
+    }
+  }
+
+  /**
+   * Run a task on a daemon thread.
+   *
+   * @param task the task
+   * @param name the name
+   */
+  private static void start(Runnable task, String name) {
+    Thread thread = new Thread(task, name);
+
+    thread.setDaemon(true);
+    thread.start();
   }
 }
@@ -15,13 +15,19 @@
  */
 package edu.columbia.rdf.htsview.chipseq;
 
+import java.util.Collection;
+import java.util.List;
+
 import org.jebtk.modern.search.SearchModel;
 import org.jebtk.modern.window.ModernWindow;
 
+import edu.columbia.rdf.edb.Sample;
 import edu.columbia.rdf.edb.ui.SamplesDialog;
 
 /**
- * A Specialization of the SampleDialog for searching for ChIP-seq samples
+ * A Specialization of the SampleDialog for searching for ChIP-seq samples.
+ * Filtering is answered from the {@link SampleSearchIndex} rather than by
+ * scanning the tags of every sample on each keystroke.
  */
 public class ChipSeqSamplesDialog extends SamplesDialog {
 
@@ -48,4 +54,15 @@ public class ChipSeqSamplesDialog extends SamplesDialog {
     super(parent, "ChIP-seq Samples", "htsview.samples.help.url", "chipseq",
         new ChipSeqSortModel(), searchModel);
   }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see edu.columbia.rdf.edb.ui.SamplesDialog#filter(java.util.Collection,
+   * java.lang.String)
+   */
+  @Override
+  protected List<Sample> filter(Collection<Sample> samples, String query) {
+    return SampleSearchIndex.getInstance().filter(samples, query);
+  }
 }
@@ -0,0 +1,265 @@
+/**
+ * Copyright 2016 Antony Holmes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.columbia.rdf.htsview.chipseq;
+
+import java.awt.Color;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+import org.jebtk.core.path.Path;
+
+import edu.columbia.rdf.edb.Group;
+import edu.columbia.rdf.edb.Person;
+import edu.columbia.rdf.edb.Sample;
+import edu.columbia.rdf.edb.SampleTag;
+import edu.columbia.rdf.edb.Species;
+import edu.columbia.rdf.edb.Type;
+
+/**
+ * Writes and reads the fields of a sample explicitly rather than relying on
+ * the edb classes being serializable. The fields written are the ones the
+ * samples dialog and the tracks use: the id, types, name, organism and date
+ * of the sample, its tags and the people and groups it belongs to.
+ * 
+ * The following edb API is assumed:
+ * <ul>
+ * <li>{@code new Sample(id, expressionType, dataType, name, organism, date)}
+ * with matching getters, {@code getTags()}, and mutable collections from
+ * {@code getPersons()} and {@code getGroups()}.</li>
+ * <li>{@code getTags()} iterates {@code SampleTag}s and accepts new tags
+ * via {@code add(SampleTag)}; a tag is {@code new SampleTag(id, path,
+ * value)}.</li>
+ * <li>{@code new Type(id, name)}, {@code new Species(id, name,
+ * scientificName)}, {@code new Person(id, firstName, lastName, email)} and
+ * {@code new Group(id, name, color)}, each with matching getters.</li>
+ * </ul>
+ * Optional fields may be null and are written with a presence flag or, for
+ * strings, a negative length.
+ *
+ * @author Antony Holmes
+ */
+public final class SampleCodec {
+
+  /**
+   * Instantiates a new sample codec.
+   */
+  private SampleCodec() {
+    // Do nothing
+  }
+
+  /**
+   * Write a sample.
+   *
+   * @param sample the sample
+   * @param out the out
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public static void write(Sample sample, DataOutput out) throws IOException {
+    out.writeInt(sample.getId());
+    writeType(sample.getExpressionType(), out);
+    writeType(sample.getDataType(), out);
+    writeString(sample.getName(), out);
+
+    Species organism = sample.getOrganism();
+
+    out.writeBoolean(organism != null);
+
+    if (organism != null) {
+      out.writeInt(organism.getId());
+      writeString(organism.getName(), out);
+      writeString(organism.getScientificName(), out);
+    }
+
+    Date date = sample.getDate();
+
+    out.writeBoolean(date != null);
+
+    if (date != null) {
+      out.writeLong(date.getTime());
+    }
+
+    List<SampleTag> tags = new ArrayList<SampleTag>();
+
+    for (SampleTag tag : sample.getTags()) {
+      tags.add(tag);
+    }
+
+    out.writeInt(tags.size());
+
+    for (SampleTag tag : tags) {
+      out.writeInt(tag.getId());
+      writeString(tag.getPath().toString(), out);
+      writeString(tag.getValue(), out);
+    }
+
+    Collection<Person> persons = sample.getPersons();
+
+    out.writeInt(persons.size());
+
+    for (Person person : persons) {
+      out.writeInt(person.getId());
+      writeString(person.getFirstName(), out);
+      writeString(person.getLastName(), out);
+      writeString(person.getEmail(), out);
+    }
+
+    Collection<Group> groups = sample.getGroups();
+
+    out.writeInt(groups.size());
+
+    for (Group group : groups) {
+      out.writeInt(group.getId());
+      writeString(group.getName(), out);
+
+      Color color = group.getColor();
+
+      out.writeBoolean(color != null);
+
+      if (color != null) {
+        out.writeInt(color.getRGB());
+      }
+    }
+  }
+
+  /**
+   * Read a sample.
+   *
+   * @param in the in
+   * @return the sample
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public static Sample read(DataInput in) throws IOException {
+    int id = in.readInt();
+    Type expressionType = readType(in);
+    Type dataType = readType(in);
+    String name = readString(in);
+
+    Species organism = null;
+
+    if (in.readBoolean()) {
+      organism = new Species(in.readInt(), readString(in), readString(in));
+    }
+
+    Date date = in.readBoolean() ? new Date(in.readLong()) : null;
+
+    Sample ret = new Sample(id, expressionType, dataType, name, organism,
+        date);
+
+    int n = in.readInt();
+
+    for (int i = 0; i < n; ++i) {
+      ret.getTags().add(new SampleTag(in.readInt(), new Path(readString(in)),
+          readString(in)));
+    }
+
+    n = in.readInt();
+
+    for (int i = 0; i < n; ++i) {
+      ret.getPersons().add(new Person(in.readInt(), readString(in),
+          readString(in), readString(in)));
+    }
+
+    n = in.readInt();
+
+    for (int i = 0; i < n; ++i) {
+      int groupId = in.readInt();
+      String groupName = readString(in);
+      Color color = in.readBoolean() ? new Color(in.readInt(), true) : null;
+
+      ret.getGroups().add(new Group(groupId, groupName, color));
+    }
+
+    return ret;
+  }
+
+  /**
+   * Write an optional type.
+   *
+   * @param type the type
+   * @param out the out
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private static void writeType(Type type, DataOutput out) throws IOException {
+    out.writeBoolean(type != null);
+
+    if (type != null) {
+      out.writeInt(type.getId());
+      writeString(type.getName(), out);
+    }
+  }
+
+  /**
+   * Read an optional type.
+   *
+   * @param in the in
+   * @return the type or null.
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private static Type readType(DataInput in) throws IOException {
+    if (!in.readBoolean()) {
+      return null;
+    }
+
+    return new Type(in.readInt(), readString(in));
+  }
+
+  /**
+   * Write an optional string as length prefixed UTF-8 since tag values
+   * can exceed the limit of {@link DataOutput#writeUTF(String)}.
+   *
+   * @param s the s
+   * @param out the out
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private static void writeString(String s, DataOutput out)
+      throws IOException {
+    if (s == null) {
+      out.writeInt(-1);
+    } else {
+      byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+
+      out.writeInt(bytes.length);
+      out.write(bytes);
+    }
+  }
+
+  /**
+   * Read an optional string.
+   *
+   * @param in the in
+   * @return the string or null.
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private static String readString(DataInput in) throws IOException {
+    int n = in.readInt();
+
+    if (n < 0) {
+      return null;
+    }
+
+    byte[] bytes = new byte[n];
+
+    in.readFully(bytes);
+
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,279 @@
+/**
+ * Copyright 2016 Antony Holmes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.columbia.rdf.htsview.chipseq;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.jebtk.core.path.Path;
+
+import edu.columbia.rdf.edb.Sample;
+import edu.columbia.rdf.edb.SampleTag;
+
+/**
+ * Columnar table of the sortable tag values of every sample in the
+ * catalogue. For each tag path the distinct values are stored once in
+ * sorted order and each sample holds the ordinal of its value, so sorting
+ * or grouping by a field is a sort of primitive keys rather than repeated
+ * tag lookups and string comparisons.
+ *
+ * @author Antony Holmes
+ */
+public class SampleKeyTable {
+
+  /**
+   * The Class SampleKeyTableLoader.
+   */
+  private static class SampleKeyTableLoader {
+
+    /** The Constant INSTANCE. */
+    private static final SampleKeyTable INSTANCE = new SampleKeyTable();
+  }
+
+  /**
+   * Gets the single instance of SampleKeyTable.
+   *
+   * @return single instance of SampleKeyTable
+   */
+  public static SampleKeyTable getInstance() {
+    return SampleKeyTableLoader.INSTANCE;
+  }
+
+  /**
+   * The keys of one tag path.
+   */
+  private static class Column {
+
+    /** The value of each row. */
+    private final String[] mKeys;
+
+    /** The distinct values in sorted order. */
+    private final String[] mValues;
+
+    /** The ordinal of each row. */
+    private final int[] mOrdinals;
+
+    /**
+     * Instantiates a new column.
+     *
+     * @param keys the value of each row
+     */
+    public Column(String[] keys) {
+      Set<String> distinct = new TreeSet<String>(Arrays.asList(keys));
+
+      mKeys = keys;
+      mValues = distinct.toArray(new String[distinct.size()]);
+      mOrdinals = new int[keys.length];
+
+      for (int i = 0; i < keys.length; ++i) {
+        mOrdinals[i] = Arrays.binarySearch(mValues, keys[i]);
+      }
+    }
+  }
+
+  /** The m paths. */
+  private final Set<Path> mPaths = new LinkedHashSet<Path>();
+
+  /** The sample of each row. */
+  private List<Sample> mSamples = new ArrayList<Sample>();
+
+  /** The m rows keyed by sample id. */
+  private Map<Integer, Integer> mRows = new HashMap<Integer, Integer>();
+
+  /** The m columns. */
+  private Map<Path, Column> mColumns = new HashMap<Path, Column>();
+
+  /**
+   * Instantiates a new sample key table.
+   */
+  private SampleKeyTable() {
+    // Do nothing
+  }
+
+  /**
+   * Register a tag path to extract from each sample.
+   *
+   * @param path the path
+   */
+  public synchronized void addPath(Path path) {
+    mPaths.add(path);
+  }
+
+  /**
+   * Rebuild the table from the catalogue. Every registered path is
+   * extracted once per sample.
+   *
+   * @param samples the samples
+   */
+  public synchronized void update(Collection<Sample> samples) {
+    List<Sample> list = new ArrayList<Sample>(samples);
+
+    Map<Integer, Integer> rows = new HashMap<Integer, Integer>(list.size());
+
+    for (int i = 0; i < list.size(); ++i) {
+      rows.put(list.get(i).getId(), i);
+    }
+
+    Map<Path, Column> columns = new HashMap<Path, Column>();
+
+    for (Path path : mPaths) {
+      columns.put(path, createColumn(list, path));
+    }
+
+    mSamples = list;
+    mRows = rows;
+    mColumns = columns;
+  }
+
+  /**
+   * Append rows for samples that are not in the table, for example ones
+   * added since the catalogue was loaded. Only the new samples have their
+   * tags extracted; the existing values of each column are re-ranked.
+   *
+   * @param samples the samples
+   */
+  private void add(List<Sample> samples) {
+    int start = mSamples.size();
+
+    for (Sample sample : samples) {
+      if (!mRows.containsKey(sample.getId())) {
+        mRows.put(sample.getId(), mSamples.size());
+        mSamples.add(sample);
+      }
+    }
+
+    if (mSamples.size() == start) {
+      return;
+    }
+
+    for (Map.Entry<Path, Column> e : mColumns.entrySet()) {
+      String[] keys = Arrays.copyOf(e.getValue().mKeys, mSamples.size());
+
+      for (int i = start; i < keys.length; ++i) {
+        keys[i] = getValue(mSamples.get(i), e.getKey());
+      }
+
+      e.setValue(new Column(keys));
+    }
+  }
+
+  /**
+   * Extract the keys of one path.
+   *
+   * @param samples the samples
+   * @param path the path
+   * @return the column
+   */
+  private static Column createColumn(List<Sample> samples, Path path) {
+    String[] keys = new String[samples.size()];
+
+    for (int i = 0; i < keys.length; ++i) {
+      keys[i] = getValue(samples.get(i), path);
+    }
+
+    return new Column(keys);
+  }
+
+  /**
+   * Resolve a tag path against a sample.
+   *
+   * @param sample the sample
+   * @param path the path
+   * @return the value or an empty string if the sample does not have the
+   *         tag.
+   */
+  public static String getValue(Sample sample, Path path) {
+    SampleTag tag = sample.getTags().getTag(path);
+
+    return tag != null ? tag.getValue() : "";
+  }
+
+  /**
+   * Sort samples by the value of a path. Samples not in the table, for
+   * example ones added since the catalogue was loaded, are appended to it
+   * and a path that has not been extracted is added as a new column, so
+   * the rest of the catalogue stays in the table.
+   *
+   * @param samples the samples
+   * @param path the path
+   * @param ascending the ascending
+   * @return the groups of samples sharing a value, in sort order.
+   */
+  public synchronized Map<String, List<Sample>> group(
+      Collection<Sample> samples,
+      Path path,
+      boolean ascending) {
+    List<Sample> list = new ArrayList<Sample>(samples);
+
+    add(list);
+
+    if (!mColumns.containsKey(path)) {
+      mPaths.add(path);
+      mColumns.put(path, createColumn(mSamples, path));
+    }
+
+    Column column = mColumns.get(path);
+
+    // Pack the ordinal above the position in the list so a single primitive
+    // sort orders by value and keeps the list order within a value
+    long[] keys = new long[list.size()];
+
+    for (int i = 0; i < keys.length; ++i) {
+      int row = mRows.get(list.get(i).getId());
+
+      long ordinal = column.mOrdinals[row];
+
+      if (!ascending) {
+        ordinal = column.mValues.length - 1 - ordinal;
+      }
+
+      keys[i] = (ordinal << 32) | i;
+    }
+
+    Arrays.sort(keys);
+
+    Map<String, List<Sample>> ret = new LinkedHashMap<String, List<Sample>>();
+
+    for (long key : keys) {
+      int ordinal = (int) (key >>> 32);
+
+      if (!ascending) {
+        ordinal = column.mValues.length - 1 - ordinal;
+      }
+
+      String value = column.mValues[ordinal];
+
+      List<Sample> group = ret.get(value);
+
+      if (group == null) {
+        group = new ArrayList<Sample>();
+        ret.put(value, group);
+      }
+
+      group.add(list.get((int) key));
+    }
+
+    return ret;
+  }
+}
@@ -0,0 +1,471 @@
+/**
+ * Copyright 2016 Antony Holmes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.columbia.rdf.htsview.chipseq;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.TreeMap;
+
+import org.jebtk.core.path.Path;
+
+import edu.columbia.rdf.edb.Group;
+import edu.columbia.rdf.edb.Person;
+import edu.columbia.rdf.edb.Sample;
+
+/**
+ * Inverted index over the searchable text of the ChIP-seq samples so that
+ * the samples dialog can filter on each keystroke without rescanning the
+ * tags of every sample. Each term maps to a sorted posting list of sample
+ * ids. Query terms match as prefixes and multiple terms are intersected.
+ *
+ * @author Antony Holmes
+ */
+public class SampleSearchIndex {
+
+  /**
+   * The Class SampleSearchIndexLoader.
+   */
+  private static class SampleSearchIndexLoader {
+
+    /** The Constant INSTANCE. */
+    private static final SampleSearchIndex INSTANCE = new SampleSearchIndex();
+  }
+
+  /**
+   * Gets the single instance of SampleSearchIndex.
+   *
+   * @return single instance of SampleSearchIndex
+   */
+  public static SampleSearchIndex getInstance() {
+    return SampleSearchIndexLoader.INSTANCE;
+  }
+
+  /** The tag paths that are indexed in addition to the sample name. */
+  private static final Path[] PATHS = { new Path("/ChIP-Seq/Sample/Cell_Type"),
+      new Path("/ChIP-Seq/Sample/Treatment"),
+      new Path("/ChIP-Seq/Sample/Classification") };
+
+  /** Empty posting list. */
+  private static final int[] EMPTY = new int[0];
+
+  /**
+   * A sorted list of sample ids.
+   */
+  private static class Postings {
+
+    /** The m ids. */
+    private int[] mIds = new int[4];
+
+    /** The m size. */
+    private int mSize = 0;
+
+    /**
+     * Add an id, keeping the list sorted.
+     *
+     * @param id the id
+     */
+    public void add(int id) {
+      int i = Arrays.binarySearch(mIds, 0, mSize, id);
+
+      if (i >= 0) {
+        return;
+      }
+
+      i = -i - 1;
+
+      if (mSize == mIds.length) {
+        mIds = Arrays.copyOf(mIds, mSize * 2);
+      }
+
+      System.arraycopy(mIds, i, mIds, i + 1, mSize - i);
+
+      mIds[i] = id;
+
+      ++mSize;
+    }
+
+    /**
+     * Remove an id.
+     *
+     * @param id the id
+     */
+    public void remove(int id) {
+      int i = Arrays.binarySearch(mIds, 0, mSize, id);
+
+      if (i < 0) {
+        return;
+      }
+
+      System.arraycopy(mIds, i + 1, mIds, i, mSize - i - 1);
+
+      --mSize;
+    }
+  }
+
+  /** The m index. */
+  private final NavigableMap<String, Postings> mIndex = new TreeMap<String, Postings>();
+
+  /** The terms of each indexed sample so that it can be removed. */
+  private final Map<Integer, String[]> mTerms = new HashMap<Integer, String[]>();
+
+  /** The m samples. */
+  private final Map<Integer, Sample> mSamples = new HashMap<Integer, Sample>();
+
+  /**
+   * Instantiates a new sample search index.
+   */
+  private SampleSearchIndex() {
+    // Do nothing
+  }
+
+  /**
+   * Replace the contents of the index.
+   *
+   * @param samples the samples
+   */
+  public synchronized void build(Collection<Sample> samples) {
+    mIndex.clear();
+    mTerms.clear();
+    mSamples.clear();
+
+    update(samples);
+  }
+
+  /**
+   * Add samples to the index, replacing the entries of samples that are
+   * already indexed.
+   *
+   * @param samples the samples
+   */
+  public synchronized void update(Collection<Sample> samples) {
+    for (Sample sample : samples) {
+      remove(sample.getId());
+
+      String[] terms = getTerms(sample);
+
+      for (String term : terms) {
+        Postings postings = mIndex.get(term);
+
+        if (postings == null) {
+          postings = new Postings();
+          mIndex.put(term, postings);
+        }
+
+        postings.add(sample.getId());
+      }
+
+      mTerms.put(sample.getId(), terms);
+      mSamples.put(sample.getId(), sample);
+    }
+  }
+
+  /**
+   * Remove a sample from the index.
+   *
+   * @param id the sample id
+   */
+  public synchronized void remove(int id) {
+    String[] terms = mTerms.remove(id);
+
+    if (terms == null) {
+      return;
+    }
+
+    for (String term : terms) {
+      Postings postings = mIndex.get(term);
+
+      postings.remove(id);
+
+      if (postings.mSize == 0) {
+        mIndex.remove(term);
+      }
+    }
+
+    mSamples.remove(id);
+  }
+
+  /**
+   * Returns true if the index contains a sample.
+   *
+   * @param sample the sample
+   * @return true, if successful
+   */
+  public synchronized boolean contains(Sample sample) {
+    return mSamples.containsKey(sample.getId());
+  }
+
+  /**
+   * Find the samples matching every term of a query, each term matching as
+   * a prefix of any indexed word.
+   *
+   * @param query the query
+   * @return the ids of the matching samples in ascending order.
+   */
+  public synchronized int[] search(String query) {
+    String[] terms = tokenize(query);
+
+    int[] ret = null;
+
+    for (String term : terms) {
+      int[] ids = prefix(term);
+
+      ret = ret == null ? ids : intersect(ret, ids);
+
+      if (ret.length == 0) {
+        break;
+      }
+    }
+
+    return ret != null ? ret : EMPTY;
+  }
+
+  /**
+   * Filter samples to those matching a query, preserving their order. An
+   * empty query keeps every sample. Samples that have not been indexed are
+   * added to the index first.
+   *
+   * @param samples the samples
+   * @param query the query
+   * @return the list
+   */
+  public List<Sample> filter(Collection<Sample> samples, String query) {
+    List<Sample> ret = new ArrayList<Sample>(samples.size());
+
+    if (tokenize(query).length == 0) {
+      ret.addAll(samples);
+
+      return ret;
+    }
+
+    List<Sample> missing = new ArrayList<Sample>();
+
+    for (Sample sample : samples) {
+      if (!contains(sample)) {
+        missing.add(sample);
+      }
+    }
+
+    if (missing.size() > 0) {
+      update(missing);
+    }
+
+    int[] ids = search(query);
+
+    for (Sample sample : samples) {
+      if (Arrays.binarySearch(ids, sample.getId()) >= 0) {
+        ret.add(sample);
+      }
+    }
+
+    return ret;
+  }
+
+  /**
+   * Union of the postings of every term starting with a prefix. Short
+   * prefixes can match thousands of terms so the postings are merged in a
+   * single pass, using a heap of the head of each list, rather than one
+   * pairwise merge per term.
+   *
+   * @param prefix the prefix
+   * @return the ids in ascending order.
+   */
+  private int[] prefix(String prefix) {
+    Collection<Postings> matches = mIndex
+        .subMap(prefix, true, prefix + Character.MAX_VALUE, false).values();
+
+    if (matches.size() == 0) {
+      return EMPTY;
+    }
+
+    if (matches.size() == 1) {
+      Postings postings = matches.iterator().next();
+
+      return Arrays.copyOf(postings.mIds, postings.mSize);
+    }
+
+    int n = 0;
+
+    Queue<Cursor> heap = new PriorityQueue<Cursor>(matches.size());
+
+    for (Postings postings : matches) {
+      heap.add(new Cursor(postings));
+
+      n += postings.mSize;
+    }
+
+    int[] ret = new int[n];
+
+    int k = 0;
+
+    while (!heap.isEmpty()) {
+      Cursor cursor = heap.poll();
+
+      int id = cursor.id();
+
+      if (k == 0 || ret[k - 1] != id) {
+        ret[k++] = id;
+      }
+
+      if (cursor.next()) {
+        heap.add(cursor);
+      }
+    }
+
+    return k == ret.length ? ret : Arrays.copyOf(ret, k);
+  }
+
+  /**
+   * The position within a posting list during a merge.
+   */
+  private static class Cursor implements Comparable<Cursor> {
+
+    /** The m postings. */
+    private final Postings mPostings;
+
+    /** The m index. */
+    private int mI = 0;
+
+    /**
+     * Instantiates a new cursor.
+     *
+     * @param postings the postings
+     */
+    public Cursor(Postings postings) {
+      mPostings = postings;
+    }
+
+    /**
+     * Returns the current id.
+     *
+     * @return the id
+     */
+    public int id() {
+      return mPostings.mIds[mI];
+    }
+
+    /**
+     * Move to the next id.
+     *
+     * @return true, if there is a next id.
+     */
+    public boolean next() {
+      return ++mI < mPostings.mSize;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.lang.Comparable#compareTo(java.lang.Object)
+     */
+    @Override
+    public int compareTo(Cursor c) {
+      return Integer.compare(id(), c.id());
+    }
+  }
+
+  /**
+   * Intersect two sorted id lists.
+   *
+   * @param a the a
+   * @param b the b
+   * @return the intersection
+   */
+  private static int[] intersect(int[] a, int[] b) {
+    int[] ret = new int[Math.min(a.length, b.length)];
+
+    int i = 0;
+    int j = 0;
+    int k = 0;
+
+    while (i < a.length && j < b.length) {
+      if (a[i] < b[j]) {
+        ++i;
+      } else if (a[i] > b[j]) {
+        ++j;
+      } else {
+        ret[k++] = a[i++];
+        ++j;
+      }
+    }
+
+    return Arrays.copyOf(ret, k);
+  }
+
+  /**
+   * Gets the distinct searchable words of a sample.
+   *
+   * @param sample the sample
+   * @return the terms
+   */
+  private static String[] getTerms(Sample sample) {
+    StringBuilder buffer = new StringBuilder(sample.getName());
+
+    for (Path path : PATHS) {
+      buffer.append(' ').append(SampleKeyTable.getValue(sample, path));
+    }
+
+    for (Person person : sample.getPersons()) {
+      buffer.append(' ').append(person.getName());
+    }
+
+    for (Group group : sample.getGroups()) {
+      buffer.append(' ').append(group.getName());
+    }
+
+    String[] terms = tokenize(buffer.toString());
+
+    Arrays.sort(terms);
+
+    int n = 0;
+
+    for (int i = 0; i < terms.length; ++i) {
+      if (n == 0 || !terms[i].equals(terms[n - 1])) {
+        terms[n++] = terms[i];
+      }
+    }
+
+    return Arrays.copyOf(terms, n);
+  }
+
+  /**
+   * Split text into lowercase alphanumeric words.
+   *
+   * @param text the text
+   * @return the words
+   */
+  private static String[] tokenize(String text) {
+    List<String> ret = new ArrayList<String>();
+
+    if (text == null) {
+      return new String[0];
+    }
+
+    for (String word : text.toLowerCase().split("[^a-z0-9]+")) {
+      if (word.length() > 0) {
+        ret.add(word);
+      }
+    }
+
+    return ret.toArray(new String[ret.size()]);
+  }
+}
@@ -15,15 +15,32 @@
  */
 package edu.columbia.rdf.htsview.chipseq;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
 import org.jebtk.core.path.Path;
+import org.jebtk.core.tree.TreeNode;
+import org.jebtk.core.tree.TreeRootNode;
+import org.jebtk.modern.search.FilterModel;
+import org.jebtk.modern.tree.ModernTree;
 
+import edu.columbia.rdf.edb.Sample;
 import edu.columbia.rdf.edb.ui.sort.SortSamplesByTag;
 
 /**
  * The Class SortSamplesByChipSeqField.
+ * 
+ * Samples are ordered using the precomputed keys in the
+ * {@link SampleKeyTable} rather than by looking up and comparing the tag of
+ * each sample on every sort.
  */
 public abstract class SortSamplesByChipSeqField extends SortSamplesByTag {
 
+  /** The m path. */
+  private final Path mPath;
+
   /**
    * Instantiates a new sort samples by chip seq field.
    *
@@ -40,6 +57,44 @@ public abstract class SortSamplesByChipSeqField extends SortSamplesByTag {
    */
   public SortSamplesByChipSeqField(Path path) {
     super(path);
+
+    mPath = path;
+
+    SampleKeyTable.getInstance().addPath(path);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see edu.columbia.rdf.edb.ui.sort.SortSamplesByTag#arrange(java.util.
+   * Collection, org.jebtk.modern.tree.ModernTree, boolean,
+   * org.jebtk.modern.search.FilterModel)
+   */
+  @Override
+  public void arrange(Collection<Sample> samples,
+      ModernTree<Sample> tree,
+      boolean ascending,
+      FilterModel filterModel) {
+    Map<String, List<Sample>> groups = SampleKeyTable.getInstance()
+        .group(samples, mPath, ascending);
+
+    TreeRootNode<Sample> root = new TreeRootNode<Sample>();
+
+    for (Entry<String, List<Sample>> group : groups.entrySet()) {
+      if (!filterModel.keep(group.getKey())) {
+        continue;
+      }
+
+      TreeNode<Sample> node = new TreeNode<Sample>(group.getKey());
+
+      for (Sample sample : group.getValue()) {
+        node.addChild(new TreeNode<Sample>(sample.getName(), sample));
+      }
+
+      root.addChild(node);
+    }
+
+    tree.setRoot(root);
   }
 
   /*
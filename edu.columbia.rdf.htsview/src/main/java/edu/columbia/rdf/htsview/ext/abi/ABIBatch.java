@@ -0,0 +1,289 @@
+/**
+ * Copyright 2017 Antony Holmes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.columbia.rdf.htsview.ext.abi;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.jebtk.core.io.FileUtils;
+import org.jebtk.core.io.PathUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import edu.columbia.rdf.htsview.cache.SharedCache;
+
+/**
+ * Base calls every ab1 file in a directory and writes the sequences to a
+ * single FASTA file. Traces are parsed and called in parallel, but written in
+ * file name order. Only a fixed number of traces are in flight at any one
+ * time so memory use does not depend on the number of files.
+ */
+public class ABIBatch {
+
+  /** The Constant LOG. */
+  private static final Logger LOG = LoggerFactory.getLogger(ABIBatch.class);
+
+  /** The file extension of trace files. */
+  public static final String EXT = "ab1";
+
+  /** How many traces each worker may have queued. */
+  private static final int TASKS_PER_THREAD = 4;
+
+  /**
+   * The result of calling one trace.
+   */
+  private static class CallResult {
+
+    /** The m name. */
+    private final String mName;
+
+    /** The m seqs. */
+    private final List<StringBuilder> mSeqs;
+
+    /**
+     * Instantiates a new call result.
+     *
+     * @param name the name
+     * @param seqs the seqs
+     */
+    public CallResult(String name, List<StringBuilder> seqs) {
+      mName = name;
+      mSeqs = seqs;
+    }
+  }
+
+  /**
+   * Parses and calls a single trace.
+   */
+  private static class CallTask implements Callable<CallResult> {
+
+    /** The m file. */
+    private final Path mFile;
+
+    /** The m top two. */
+    private final boolean mTopTwo;
+
+    /**
+     * Instantiates a new call task.
+     *
+     * @param file the file
+     * @param topTwo the top two
+     */
+    public CallTask(Path file, boolean topTwo) {
+      mFile = file;
+      mTopTwo = topTwo;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.util.concurrent.Callable#call()
+     */
+    @Override
+    public CallResult call() throws IOException {
+      ABITrace trace = ABITrace.parse(mFile);
+
+      List<StringBuilder> seqs;
+
+      if (mTopTwo) {
+        seqs = ABIUtils.topTwo(trace);
+      } else {
+        seqs = Collections
+            .singletonList(new StringBuilder().append(ABIUtils.call(trace)));
+      }
+
+      return new CallResult(trace.getName(), seqs);
+    }
+  }
+
+  /**
+   * Instantiates a new ABI batch.
+   */
+  private ABIBatch() {
+    // Do nothing
+  }
+
+  /**
+   * Returns the ab1 files in a directory sorted by name.
+   *
+   * @param dir the dir
+   * @return the files
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public static List<Path> ls(Path dir) throws IOException {
+    List<Path> ret = new ArrayList<Path>();
+
+    DirectoryStream<Path> stream = Files.newDirectoryStream(dir,
+        "*.{" + EXT + "," + EXT.toUpperCase() + "}");
+
+    try {
+      for (Path file : stream) {
+        ret.add(file);
+      }
+    } finally {
+      stream.close();
+    }
+
+    Collections.sort(ret);
+
+    return ret;
+  }
+
+  /**
+   * Call every trace in a directory and write the sequences to a FASTA file.
+   *
+   * @param dir the directory of ab1 files.
+   * @param file the FASTA file to create.
+   * @param topTwo if true, write the top two base call sequences for each
+   *          trace, otherwise write the single best call.
+   * @param threads the number of worker threads.
+   * @return the number of traces written.
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public static int call(Path dir, Path file, boolean topTwo, int threads)
+      throws IOException {
+    List<Path> files = ls(dir);
+
+    LOG.info("Calling {} traces in {} using {} threads...",
+        files.size(),
+        dir,
+        threads);
+
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+    // Results are consumed from the head so they are written in the same
+    // order as the files regardless of which worker finishes first.
+    Deque<Future<CallResult>> pending = new ArrayDeque<Future<CallResult>>();
+
+    int maxPending = threads * TASKS_PER_THREAD;
+
+    Iterator<Path> iter = files.iterator();
+
+    int c = 0;
+
+    BufferedWriter writer = FileUtils.newBufferedWriter(file);
+
+    try {
+      while (iter.hasNext() || !pending.isEmpty()) {
+        while (iter.hasNext() && pending.size() < maxPending) {
+          pending.add(executor.submit(new CallTask(iter.next(), topTwo)));
+        }
+
+        CallResult result = get(pending.poll());
+
+        writeFasta(writer, result.mName, result.mSeqs);
+
+        ++c;
+      }
+    } finally {
+      writer.close();
+
+      executor.shutdownNow();
+    }
+
+    LOG.info("Wrote {} traces to {}.", c, file);
+
+    return c;
+  }
+
+  /**
+   * Wait for a task to complete, unwrapping any exception it threw.
+   *
+   * @param future the future
+   * @return the call result
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private static CallResult get(Future<CallResult> future)
+      throws IOException {
+    return SharedCache.getResult(future);
+  }
+
+  /**
+   * Write the sequences of one trace. If there is more than one sequence, each
+   * is suffixed with its rank.
+   *
+   * @param writer the writer
+   * @param name the name
+   * @param seqs the seqs
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private static void writeFasta(BufferedWriter writer,
+      String name,
+      List<StringBuilder> seqs) throws IOException {
+    for (int i = 0; i < seqs.size(); ++i) {
+      writer.write('>');
+      writer.write(name);
+
+      if (seqs.size() > 1) {
+        writer.write('_');
+        writer.write(Integer.toString(i + 1));
+      }
+
+      writer.newLine();
+      writer.append(seqs.get(i));
+      writer.newLine();
+    }
+  }
+
+  /**
+   * Command line entry point.
+   * 
+   * Usage: ABIBatch [--top-two] [--threads n] dir out.fasta
+   *
+   * @param args the arguments
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public static void main(String[] args) throws IOException {
+    boolean topTwo = false;
+    int threads = Runtime.getRuntime().availableProcessors();
+
+    List<String> files = new ArrayList<String>();
+
+    for (int i = 0; i < args.length; ++i) {
+      if (args[i].equals("--top-two")) {
+        topTwo = true;
+      } else if (args[i].equals("--threads")) {
+        threads = Math.max(1, Integer.parseInt(args[++i]));
+      } else {
+        files.add(args[i]);
+      }
+    }
+
+    if (files.size() != 2) {
+      System.err.println(
+          "Usage: ABIBatch [--top-two] [--threads n] dir out.fasta");
+      return;
+    }
+
+    call(PathUtils.getPath(files.get(0)),
+        PathUtils.getPath(files.get(1)),
+        topTwo,
+        threads);
+  }
+}
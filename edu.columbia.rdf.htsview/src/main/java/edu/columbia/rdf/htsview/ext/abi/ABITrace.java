@@ -16,7 +16,9 @@
 package edu.columbia.rdf.htsview.ext.abi;
 
 import java.io.IOException;
-import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
 import java.nio.file.Path;
 
 import org.jebtk.core.Mathematics;
@@ -35,6 +37,21 @@ public class ABITrace implements NameGetter {
   /** The standard 4 bases a, c, g, t. */
   public static final char[] BASES = { 'A', 'C', 'G', 'T' };
 
+  /** The magic number at the start of every ab1 file. */
+  private static final int ABIF = 0x41424946;
+
+  /** The PLOC directory name encoded as a big endian int. */
+  private static final int PLOC = 0x504C4F43;
+
+  /** The DATA directory name encoded as a big endian int. */
+  private static final int DATA = 0x44415441;
+
+  /** The size in bytes of the file header. */
+  private static final int HEADER_SIZE = 34;
+
+  /** The size in bytes of each directory entry. */
+  private static final int DIR_SIZE = 28;
+
   /** The m X. */
   private short[] mX;
 
@@ -208,24 +225,37 @@ public class ABITrace implements NameGetter {
 
     SysUtils.err().println("Parsing ABI file:", file);
 
-    RandomAccessFile in = FileUtils.newRandomAccess(file);
-
-    // Buffer for reading entity names
-    byte[] buf4 = new byte[4];
-
-    // String header;
-    // int version;
-    int tag;
-    // int type;
-    // int elementSize;
-    int numDirs;
-    int numElements;
-    // int dataSize;
-    int dirOffset;
-    int offset;
-    long currentOffset;
-    String dirName;
-    // String baseOrder;
+    // Read the whole file in one go rather than seeking back and forth
+    // through it a short at a time. Traces are small (a few hundred kb)
+    // so there is no benefit to mapping them.
+    return parse(PathUtils.getNameNoExt(file),
+        ByteBuffer.wrap(Files.readAllBytes(file)));
+  }
+
+  /**
+   * Parse a trace from a buffer containing the contents of an ab1 file. ABI
+   * files are big endian which is the default byte order of a ByteBuffer.
+   *
+   * @param name the name
+   * @param buffer the buffer
+   * @return the ABI trace
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public static ABITrace parse(String name, ByteBuffer buffer)
+      throws IOException {
+    buffer.order(ByteOrder.BIG_ENDIAN);
+
+    if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != ABIF) {
+      throw new IOException(name + " is not an ABI file.");
+    }
+
+    // The header is a directory entry describing the directory itself.
+    // Skip the magic number, version, dir name, tag, type and element size
+    // to get to the number of directories.
+    int numDirs = buffer.getInt(18);
+
+    // Skip the data size
+    int dirOffset = buffer.getInt(26);
 
     short[] xp = null;
 
@@ -235,137 +265,76 @@ public class ABITrace implements NameGetter {
     short[] graw = null;
     short[] traw = null;
 
-    try {
-      // Parse header
-      in.read(buf4);
-
-      // Version
-      in.readShort();
-
-      // dir name
-      in.read(buf4);
-      dirName = new String(buf4);
-
-      tag = in.readInt();
-
-      // Type
-      in.readShort();
-
-      // Element Size
-      in.readShort();
-
-      numDirs = in.readInt();
-      // Data size
-      in.readInt();
-
-      dirOffset = in.readInt();
-
-      // SysUtils.err().println("header:", header, version);
-      // SysUtils.err().println("dir:", dirName, tag, type, elementSize,
-      // numDirs,
-      // dataSize, dirOffset);
-
-      // Process directories
-      in.seek(dirOffset);
-
-      // Channels DATA 9-12 hold the color data. Apparently ABI choose
-      // to color order then GATC rather than ACGT so DATA 9 is G,
-      // DATA 10 is A, DATA 11 is T, and DATA 12 is C
+    // Channels DATA 9-12 hold the color data. Apparently ABI choose
+    // to color order then GATC rather than ACGT so DATA 9 is G,
+    // DATA 10 is A, DATA 11 is T, and DATA 12 is C
 
-      // Iterate over the directories
-      for (int i = 0; i < numDirs; ++i) {
-        in.read(buf4);
-        dirName = new String(buf4);
-        tag = in.readInt();
-        in.readShort(); // type
-        in.readShort(); // element size
-        numElements = in.readInt();
-        in.readInt(); // data size
-        offset = in.readInt();
-        // Unused data handle
-        in.readInt();
+    // Iterate over the directories
+    for (int i = 0; i < numDirs; ++i) {
+      int p = dirOffset + i * DIR_SIZE;
 
-        if (dirName.equals("PLOC") && tag == 2) {
-          // PLOC 2 seems to be where the base caller sits the peaks
-          // so we can use these indices in the DATA arrays to find
-          // the x coordinate where the peak sits. This should
-          // correspond roughly to the peak high point
-          currentOffset = in.getFilePointer();
+      int dirName = buffer.getInt(p);
+      int tag = buffer.getInt(p + 4);
 
-          xp = new short[numElements];
+      // Skip type and element size
+      int numElements = buffer.getInt(p + 12);
 
-          in.seek(offset);
+      // Skip data size
+      int offset = buffer.getInt(p + 20);
 
-          for (int j = 0; j < numElements; ++j) {
-            xp[j] = in.readShort();
-          }
-
-          in.seek(currentOffset);
-        } else if (dirName.equals("DATA") && tag == 9) {
-          currentOffset = in.getFilePointer();
-
-          // For a smoother curve, there are more color data points
-          // than peak positions (roughly 10 color points per base)
-          graw = new short[numElements];
-
-          in.seek(offset);
-
-          for (int j = 0; j < numElements; ++j) {
-            graw[j] = in.readShort();
-          }
-
-          in.seek(currentOffset);
-        } else if (dirName.equals("DATA") && tag == 10) {
-          currentOffset = in.getFilePointer();
-
-          araw = new short[numElements];
-
-          in.seek(offset);
-
-          for (int j = 0; j < numElements; ++j) {
-            araw[j] = in.readShort();
-          }
-
-          in.seek(currentOffset);
-        } else if (dirName.equals("DATA") && tag == 11) {
-          currentOffset = in.getFilePointer();
-
-          traw = new short[numElements];
-
-          in.seek(offset);
-
-          for (int j = 0; j < numElements; ++j) {
-            traw[j] = in.readShort();
-          }
-
-          in.seek(currentOffset);
-        } else if (dirName.equals("DATA") && tag == 12) {
-          currentOffset = in.getFilePointer();
-
-          craw = new short[numElements];
+      if (dirName == PLOC) {
+        // PLOC 2 seems to be where the base caller sits the peaks
+        // so we can use these indices in the DATA arrays to find
+        // the x coordinate where the peak sits. This should
+        // correspond roughly to the peak high point
+        if (tag == 2) {
+          xp = readShorts(buffer, offset, numElements);
+        }
+      } else if (dirName == DATA) {
+        // For a smoother curve, there are more color data points
+        // than peak positions (roughly 10 color points per base)
+        switch (tag) {
+        case 9:
+          graw = readShorts(buffer, offset, numElements);
+          break;
+        case 10:
+          araw = readShorts(buffer, offset, numElements);
+          break;
+        case 11:
+          traw = readShorts(buffer, offset, numElements);
+          break;
+        case 12:
+          craw = readShorts(buffer, offset, numElements);
+          break;
+        default:
+          // Do nothing
+          break;
+        }
+      } else {
+        // Do nothing
+      }
+    }
 
-          in.seek(offset);
+    return new ABITrace(name, xp, araw, craw, graw, traw);
+  }
 
-          for (int j = 0; j < numElements; ++j) {
-            craw[j] = in.readShort();
-          }
+  /**
+   * Bulk decode a block of big endian shorts from a buffer.
+   *
+   * @param buffer the buffer
+   * @param offset the offset of the first short in bytes
+   * @param n the number of shorts to read
+   * @return the shorts
+   */
+  private static short[] readShorts(ByteBuffer buffer, int offset, int n) {
+    short[] ret = new short[n];
 
-          // Move back to the end of the last directory we were
-          // in so we can continue parsing
-          in.seek(currentOffset);
-        } else {
-          // Do nothing
-        }
+    ByteBuffer b = buffer.duplicate().order(buffer.order());
 
-        // SysUtils.err().println("dir2:", i, dirName, tag, type, elementSize,
-        // numElements, dataSize, offset);
-      }
+    b.position(offset);
 
-    } finally {
-      in.close();
-    }
+    b.asShortBuffer().get(ret);
 
-    return new ABITrace(PathUtils.getNameNoExt(file), xp, araw, craw, graw,
-        traw);
+    return ret;
   }
 }
@@ -0,0 +1,137 @@
+/**
+ * Copyright 2017 Antony Holmes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.columbia.rdf.htsview.ext.abi;
+
+import java.io.IOException;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Shares parsed traces between everything that displays the same ab1 file
+ * (for example the four base assemblies and the plot track). Traces are held
+ * weakly so they are released once no track refers to them.
+ */
+public class ABITraceCache {
+
+  /**
+   * The Class ABITraceCacheLoader.
+   */
+  private static class ABITraceCacheLoader {
+
+    /** The Constant INSTANCE. */
+    private static final ABITraceCache INSTANCE = new ABITraceCache();
+  }
+
+  /**
+   * Gets the single instance of ABITraceCache.
+   *
+   * @return single instance of ABITraceCache
+   */
+  public static ABITraceCache getInstance() {
+    return ABITraceCacheLoader.INSTANCE;
+  }
+
+  /**
+   * Weak reference that remembers its key so stale entries can be removed
+   * from the map once the trace has been collected.
+   */
+  private static class TraceRef extends WeakReference<ABITrace> {
+
+    /** The m file. */
+    private final Path mFile;
+
+    /**
+     * Instantiates a new trace ref.
+     *
+     * @param file the file
+     * @param trace the trace
+     * @param queue the queue
+     */
+    public TraceRef(Path file, ABITrace trace,
+        ReferenceQueue<ABITrace> queue) {
+      super(trace, queue);
+
+      mFile = file;
+    }
+  }
+
+  /** The m trace map. */
+  private Map<Path, TraceRef> mTraceMap = new HashMap<Path, TraceRef>();
+
+  /** The m queue. */
+  private ReferenceQueue<ABITrace> mQueue = new ReferenceQueue<ABITrace>();
+
+  /**
+   * Instantiates a new ABI trace cache.
+   */
+  private ABITraceCache() {
+    // Do nothing
+  }
+
+  /**
+   * Returns the parsed trace for a file, parsing it only if no other object
+   * is currently holding on to a copy.
+   *
+   * @param file the file
+   * @return the ABI trace or null if the file does not exist.
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public synchronized ABITrace get(Path file) throws IOException {
+    purge();
+
+    Path key = file.toAbsolutePath().normalize();
+
+    TraceRef ref = mTraceMap.get(key);
+
+    ABITrace trace = ref != null ? ref.get() : null;
+
+    if (trace == null) {
+      trace = ABITrace.parse(file);
+
+      if (trace != null) {
+        mTraceMap.put(key, new TraceRef(key, trace, mQueue));
+      }
+    }
+
+    return trace;
+  }
+
+  /**
+   * Remove a file from the cache, for example if it has been modified.
+   *
+   * @param file the file
+   */
+  public synchronized void remove(Path file) {
+    mTraceMap.remove(file.toAbsolutePath().normalize());
+  }
+
+  /**
+   * Remove entries whose traces have been garbage collected.
+   */
+  private void purge() {
+    TraceRef ref;
+
+    while ((ref = (TraceRef) mQueue.poll()) != null) {
+      // Only remove the entry if it has not since been replaced
+      if (mTraceMap.get(ref.mFile) == ref) {
+        mTraceMap.remove(ref.mFile);
+      }
+    }
+  }
+}
@@ -21,9 +21,6 @@ import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 
-import org.jebtk.core.collections.CollectionUtils;
-import org.jebtk.core.collections.IterHashMap;
-import org.jebtk.core.collections.IterMap;
 import org.jebtk.core.io.FileUtils;
 
 /**
@@ -31,6 +28,9 @@ import org.jebtk.core.io.FileUtils;
  */
 public class ABIUtils {
 
+  /** Color values must exceed this to be considered a base call. */
+  public static final int MIN_COLOR = 100;
+
   /**
    * Instantiates a new ABI utils.
    */
@@ -49,6 +49,7 @@ public class ABIUtils {
 
     for (int i = 0; i < ret.length; ++i) {
       int max = Integer.MIN_VALUE;
+
       for (char base : ABITrace.BASES) {
         int v = trace.getColor(base, i);
 
@@ -69,44 +70,32 @@ public class ABIUtils {
    * @return the list
    */
   public static List<StringBuilder> topTwo(ABITrace trace) {
-    char[] ret = new char[trace.getNumBases()];
+    int n = trace.getNumBases();
 
     List<StringBuilder> seqs = new ArrayList<StringBuilder>();
 
-    seqs.add(new StringBuilder());
+    seqs.add(new StringBuilder(n));
 
-    for (int i = 0; i < ret.length; ++i) {
-      IterMap<Integer, Character> countMap = new IterHashMap<Integer, Character>();
+    // Fixed slots for the colors above the threshold at each position,
+    // reused for every base rather than allocating a map per position.
+    int[] values = new int[ABITrace.BASES.length];
+    char[] bases = new char[ABITrace.BASES.length];
 
-      int c = 0;
-
-      for (char base : ABITrace.BASES) {
-        int v = trace.getColor(base, i);
-
-        if (v > 100) {
-          countMap.put(v, base);
-          ++c;
-        }
-      }
-
-      c = Math.min(4, c);
-
-      char base;
+    for (int i = 0; i < n; ++i) {
+      int c = rank(trace, i, values, bases);
 
       switch (c) {
       case 0:
         // Nothing appropriate so add N
         for (StringBuilder seq : seqs) {
-          seq.append("N");
+          seq.append('N');
         }
 
         break;
       case 1:
-        base = countMap.values().iterator().next();
-
         for (StringBuilder seq : seqs) {
           // Add the only character in the array
-          seq.append(base);
+          seq.append(bases[0]);
         }
 
         break;
@@ -120,38 +109,64 @@ public class ABIUtils {
           seqs.add(new StringBuilder(seqs.get(0)));
         }
 
-        // We want the highest counts first
-        List<Integer> counts = CollectionUtils
-            .reverse(CollectionUtils.sortKeys(countMap));
-
         for (int si = 0; si < seqs.size(); ++si) {
           // If the number of colors at this position is less than
           // the number of sequences already created, use the
           // lowest position closest to the desired index
-          int ci = Math.min(si, counts.size() - 1);
+          seqs.get(si).append(bases[Math.min(si, c - 1)]);
+        }
+      }
+    }
 
-          System.err.println(i + " " + counts.size() + " " + si + " " + ci + " "
-              + counts.get(ci));
+    return seqs;
+  }
 
-          seqs.get(si).append(countMap.get(counts.get(ci)));
-        }
+  /**
+   * Find the bases whose color values exceed the call threshold at a given
+   * position, ordered from highest to lowest. Bases sharing the same color
+   * value are collapsed to the last one seen.
+   *
+   * @param trace the trace
+   * @param index the base index
+   * @param values the color values of the ranked bases.
+   * @param bases the ranked bases.
+   * @return the number of ranked bases written to the arrays.
+   */
+  public static int rank(ABITrace trace, int index, int[] values,
+      char[] bases) {
+    int c = 0;
 
-        /*
-         * // Sort by the top two for (int count :
-         * CollectionUtils.reverse(CollectionUtils.sortKeys(countMap))) { for
-         * (char b : countMap.get(count)) { if (bc == c) { break; }
-         * 
-         * seqs.get(bc).append(b);
-         * 
-         * ++bc; }
-         * 
-         * if (bc == c) { break; } }
-         */
+    for (char base : ABITrace.BASES) {
+      int v = trace.getColor(base, index);
 
+      if (v <= MIN_COLOR) {
+        continue;
       }
+
+      // Insertion sort into descending order
+      int j = 0;
+
+      while (j < c && values[j] > v) {
+        ++j;
+      }
+
+      if (j < c && values[j] == v) {
+        bases[j] = base;
+        continue;
+      }
+
+      for (int k = c; k > j; --k) {
+        values[k] = values[k - 1];
+        bases[k] = bases[k - 1];
+      }
+
+      values[j] = v;
+      bases[j] = base;
+
+      ++c;
     }
 
-    return seqs;
+    return c;
   }
 
   /**
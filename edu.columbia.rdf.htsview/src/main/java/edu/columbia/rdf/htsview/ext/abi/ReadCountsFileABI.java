@@ -60,7 +60,7 @@ public class ReadCountsFileABI extends ReadCountsFile {
     mBase = base;
 
     try {
-      mTrace = ABITrace.parse(file);
+      mTrace = ABITraceCache.getInstance().get(file);
     } catch (IOException e) {
       e.printStackTrace();
     }
@@ -0,0 +1,51 @@
+/**
+ * Copyright 2016 Antony Holmes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.columbia.rdf.htsview.memory;
+
+/**
+ * Anything holding a significant amount of data in memory, such as a cache
+ * or a track that keeps a whole file, registers itself with the
+ * {@link MemoryGovernor} so that its usage is accounted for and it can be
+ * asked to give memory back.
+ *
+ * @author Antony Holmes
+ */
+public interface MemoryConsumer {
+
+  /**
+   * Gets the name shown in the memory breakdown.
+   *
+   * @return the name
+   */
+  public String getName();
+
+  /**
+   * Returns the approximate number of bytes held. This is called while
+   * painting so it must not wait on a lock that is held during a load.
+   *
+   * @return the bytes
+   */
+  public long getBytes();
+
+  /**
+   * Free at least the requested number of bytes if possible. Data released
+   * must be reloadable on demand.
+   *
+   * @param bytes the bytes requested.
+   * @return the number of bytes actually freed.
+   */
+  public long release(long bytes);
+}
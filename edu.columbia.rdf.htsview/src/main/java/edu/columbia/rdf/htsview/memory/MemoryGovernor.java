@@ -0,0 +1,329 @@
+/**
+ * Copyright 2016 Antony Holmes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.columbia.rdf.htsview.memory;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+
+import org.jebtk.core.settings.SettingsService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import edu.columbia.rdf.htsview.metrics.Metrics;
+
+/**
+ * Central account of the memory held by caches and track data. Consumers
+ * register themselves with a priority and report their approximate size.
+ * When the total exceeds the budget set by {@code htsview.memory.max-mb}
+ * (or a fraction of the maximum heap if that is not positive), consumers are
+ * asked to release memory in priority order: prefetched counts first, then
+ * the data of tracks not drawn in the last refresh, then shared caches.
+ * Tracks drawn in the last refresh are never asked to release memory.
+ *
+ * Consumers are held by weak reference so tracks that have been closed do
+ * not need to unregister. Consumers must not call {@link #check()} while
+ * holding their own lock, and {@link MemoryConsumer#getBytes()} must not
+ * block since it is called while painting.
+ *
+ * @author Antony Holmes
+ */
+public class MemoryGovernor {
+
+  /** The Constant LOG. */
+  private static final Logger LOG = LoggerFactory
+      .getLogger(MemoryGovernor.class);
+
+  /**
+   * The Class MemoryGovernorLoader.
+   */
+  private static class MemoryGovernorLoader {
+
+    /** The Constant INSTANCE. */
+    private static final MemoryGovernor INSTANCE = new MemoryGovernor();
+  }
+
+  /**
+   * Gets the single instance of MemoryGovernor.
+   *
+   * @return single instance of MemoryGovernor
+   */
+  public static MemoryGovernor getInstance() {
+    return MemoryGovernorLoader.INSTANCE;
+  }
+
+  /** Counts fetched ahead of time. Released first. */
+  public static final int PRIORITY_PREFETCH = 0;
+
+  /** Data held by tracks. Released only if the track is inactive. */
+  public static final int PRIORITY_TRACK = 1;
+
+  /** Caches shared by the visible tracks. Released last. */
+  public static final int PRIORITY_CACHE = 2;
+
+  /** Fraction of the heap used when no budget is configured. */
+  private static final double DEFAULT_HEAP_FRACTION = 0.6;
+
+  /**
+   * A registered consumer.
+   */
+  private static class Entry {
+
+    /** The m ref. */
+    private final WeakReference<MemoryConsumer> mRef;
+
+    /** The m priority. */
+    private final int mPriority;
+
+    /** The refresh the consumer was last used in. */
+    private long mRefresh;
+
+    /**
+     * Instantiates a new entry.
+     *
+     * @param consumer the consumer
+     * @param priority the priority
+     * @param refresh the refresh
+     */
+    public Entry(MemoryConsumer consumer, int priority, long refresh) {
+      mRef = new WeakReference<MemoryConsumer>(consumer);
+      mPriority = priority;
+      mRefresh = refresh;
+    }
+  }
+
+  /** Release order: priority, then least recently used. */
+  private static final Comparator<Entry> RELEASE_ORDER = new Comparator<Entry>() {
+    @Override
+    public int compare(Entry e1, Entry e2) {
+      int c = Integer.compare(e1.mPriority, e2.mPriority);
+
+      if (c != 0) {
+        return c;
+      }
+
+      return Long.compare(e1.mRefresh, e2.mRefresh);
+    }
+  };
+
+  /** The m entries. */
+  private final List<Entry> mEntries = new ArrayList<Entry>();
+
+  /** The m budget in bytes. */
+  private final long mBudget;
+
+  /** The current refresh. */
+  private long mRefresh = 0;
+
+  /**
+   * Instantiates a new memory governor.
+   */
+  private MemoryGovernor() {
+    long mb = SettingsService.getInstance().getInt("htsview.memory.max-mb");
+
+    if (mb > 0) {
+      mBudget = mb * 1024L * 1024L;
+    } else {
+      mBudget = (long) (Runtime.getRuntime().maxMemory()
+          * DEFAULT_HEAP_FRACTION);
+    }
+
+    LOG.info("Memory budget is {} bytes.", mBudget);
+  }
+
+  /**
+   * Register a consumer.
+   *
+   * @param consumer the consumer
+   * @param priority the priority
+   */
+  public synchronized void register(MemoryConsumer consumer, int priority) {
+    if (find(consumer) == null) {
+      mEntries.add(new Entry(consumer, priority, mRefresh));
+    }
+  }
+
+  /**
+   * Start a new refresh. Tracks not touched during the refresh become
+   * inactive.
+   */
+  public synchronized void startRefresh() {
+    ++mRefresh;
+  }
+
+  /**
+   * Mark a consumer as used in the current refresh.
+   *
+   * @param consumer the consumer
+   */
+  public synchronized void touch(MemoryConsumer consumer) {
+    Entry entry = find(consumer);
+
+    if (entry != null) {
+      entry.mRefresh = mRefresh;
+    }
+  }
+
+  /**
+   * Gets the budget.
+   *
+   * @return the budget in bytes.
+   */
+  public long getBudget() {
+    return mBudget;
+  }
+
+  /**
+   * Returns the total bytes held by all consumers.
+   *
+   * @return the total
+   */
+  public synchronized long getTotal() {
+    long ret = 0;
+
+    Iterator<Entry> iter = mEntries.iterator();
+
+    while (iter.hasNext()) {
+      MemoryConsumer consumer = iter.next().mRef.get();
+
+      if (consumer == null) {
+        iter.remove();
+      } else {
+        ret += consumer.getBytes();
+      }
+    }
+
+    return ret;
+  }
+
+  /**
+   * Release memory until the total is within the budget.
+   */
+  public synchronized void check() {
+    long total = getTotal();
+
+    if (total <= mBudget) {
+      return;
+    }
+
+    List<Entry> entries = new ArrayList<Entry>(mEntries);
+
+    Collections.sort(entries, RELEASE_ORDER);
+
+    long freed = 0;
+
+    for (Entry entry : entries) {
+      if (total - freed <= mBudget) {
+        break;
+      }
+
+      if (isActive(entry)) {
+        continue;
+      }
+
+      MemoryConsumer consumer = entry.mRef.get();
+
+      if (consumer == null) {
+        continue;
+      }
+
+      long f = consumer.release(total - freed - mBudget);
+
+      if (f > 0) {
+        LOG.info("Released {} bytes from {}.", f, consumer.getName());
+
+        Metrics.getInstance().counter("MemoryGovernor.released-bytes").add(f);
+      }
+
+      freed += f;
+    }
+
+    if (total - freed > mBudget) {
+      LOG.warn("{} bytes are in use by active tracks, above the budget of {}.",
+          total - freed,
+          mBudget);
+    }
+  }
+
+  /**
+   * Returns the current usage of each consumer, largest first. The sizes are
+   * read after the registry lock is released since this is called while
+   * painting and must not wait on a consumer.
+   *
+   * @return the usage
+   */
+  public List<MemoryUsage> getUsage() {
+    List<MemoryConsumer> consumers;
+    List<Boolean> active;
+
+    synchronized (this) {
+      consumers = new ArrayList<MemoryConsumer>(mEntries.size());
+      active = new ArrayList<Boolean>(mEntries.size());
+
+      for (Entry entry : mEntries) {
+        MemoryConsumer consumer = entry.mRef.get();
+
+        if (consumer != null) {
+          consumers.add(consumer);
+          active.add(isActive(entry));
+        }
+      }
+    }
+
+    List<MemoryUsage> ret = new ArrayList<MemoryUsage>(consumers.size());
+
+    for (int i = 0; i < consumers.size(); ++i) {
+      MemoryConsumer consumer = consumers.get(i);
+
+      ret.add(new MemoryUsage(consumer.getName(), consumer.getBytes(),
+          active.get(i)));
+    }
+
+    Collections.sort(ret);
+
+    return ret;
+  }
+
+  /**
+   * Returns true if the entry is a track drawn in the current refresh. Caches
+   * are never considered active.
+   *
+   * @param entry the entry
+   * @return true, if is active
+   */
+  private boolean isActive(Entry entry) {
+    return entry.mPriority == PRIORITY_TRACK && entry.mRefresh == mRefresh;
+  }
+
+  /**
+   * Find the entry of a consumer by identity.
+   *
+   * @param consumer the consumer
+   * @return the entry or null if the consumer is not registered.
+   */
+  private Entry find(MemoryConsumer consumer) {
+    for (Entry entry : mEntries) {
+      if (entry.mRef.get() == consumer) {
+        return entry;
+      }
+    }
+
+    return null;
+  }
+}
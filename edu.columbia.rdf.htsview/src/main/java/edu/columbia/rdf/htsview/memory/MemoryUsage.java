@@ -0,0 +1,93 @@
+/**
+ * Copyright 2016 Antony Holmes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.columbia.rdf.htsview.memory;
+
+/**
+ * The memory held by one consumer at the time of a snapshot.
+ *
+ * @author Antony Holmes
+ */
+public class MemoryUsage implements Comparable<MemoryUsage> {
+
+  /** The m name. */
+  private final String mName;
+
+  /** The m bytes. */
+  private final long mBytes;
+
+  /** The m active. */
+  private final boolean mActive;
+
+  /**
+   * Instantiates a new memory usage.
+   *
+   * @param name the name
+   * @param bytes the bytes
+   * @param active the active
+   */
+  public MemoryUsage(String name, long bytes, boolean active) {
+    mName = name;
+    mBytes = bytes;
+    mActive = active;
+  }
+
+  /**
+   * Gets the name.
+   *
+   * @return the name
+   */
+  public String getName() {
+    return mName;
+  }
+
+  /**
+   * Gets the bytes.
+   *
+   * @return the bytes
+   */
+  public long getBytes() {
+    return mBytes;
+  }
+
+  /**
+   * Returns true if the consumer is a track drawn in the last refresh.
+   *
+   * @return true, if is active
+   */
+  public boolean isActive() {
+    return mActive;
+  }
+
+  /**
+   * Gets the size in megabytes.
+   *
+   * @return the megabytes
+   */
+  public double getMegabytes() {
+    return mBytes / 1048576.0;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see java.lang.Comparable#compareTo(java.lang.Object)
+   */
+  @Override
+  public int compareTo(MemoryUsage u) {
+    // Largest first
+    return Long.compare(u.mBytes, mBytes);
+  }
+}
@@ -0,0 +1,65 @@
+/**
+ * Copyright 2016 Antony Holmes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.columbia.rdf.htsview.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A thread safe counter, for example of cache hits or bytes read.
+ *
+ * @author Antony Holmes
+ */
+public class Counter implements CounterMBean {
+
+  /** The m value. */
+  private final AtomicLong mValue = new AtomicLong();
+
+  /**
+   * Increment the counter by one.
+   */
+  public void inc() {
+    mValue.incrementAndGet();
+  }
+
+  /**
+   * Increment the counter.
+   *
+   * @param n the n
+   */
+  public void add(long n) {
+    mValue.addAndGet(n);
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see edu.columbia.rdf.htsview.metrics.CounterMBean#getValue()
+   */
+  @Override
+  public long getValue() {
+    return mValue.get();
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see edu.columbia.rdf.htsview.metrics.CounterMBean#reset()
+   */
+  @Override
+  public void reset() {
+    mValue.set(0);
+  }
+}
@@ -0,0 +1,233 @@
+/**
+ * Copyright 2016 Antony Holmes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.columbia.rdf.htsview.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Registry of the timers and counters used to instrument the viewer. Each
+ * timer and counter is registered as an MBean under the
+ * {@code edu.columbia.rdf.htsview} domain when it is first used, so it can be
+ * inspected with JConsole or VisualVM. The per track timings of the most
+ * recent refresh are also kept for display on the tracks canvas.
+ *
+ * @author Antony Holmes
+ */
+public class Metrics {
+
+  /** The Constant LOG. */
+  private static final Logger LOG = LoggerFactory.getLogger(Metrics.class);
+
+  /**
+   * The Class MetricsLoader.
+   */
+  private static class MetricsLoader {
+
+    /** The Constant INSTANCE. */
+    private static final Metrics INSTANCE = new Metrics();
+  }
+
+  /**
+   * Gets the single instance of Metrics.
+   *
+   * @return single instance of Metrics
+   */
+  public static Metrics getInstance() {
+    return MetricsLoader.INSTANCE;
+  }
+
+  /** The JMX domain. */
+  public static final String DOMAIN = "edu.columbia.rdf.htsview";
+
+  /** The m timers. */
+  private final Map<String, Timer> mTimers = new ConcurrentHashMap<String, Timer>();
+
+  /** The m counters. */
+  private final Map<String, Counter> mCounters = new ConcurrentHashMap<String, Counter>();
+
+  /** Timings of each track in the last refresh, in display order. */
+  private final Map<String, TrackTimes> mRefresh = new LinkedHashMap<String, TrackTimes>();
+
+  /**
+   * Instantiates a new metrics.
+   */
+  private Metrics() {
+    // Do nothing
+  }
+
+  /**
+   * Returns the named timer, creating it if necessary.
+   *
+   * @param name the name
+   * @return the timer
+   */
+  public Timer timer(String name) {
+    Timer timer = mTimers.get(name);
+
+    if (timer == null) {
+      synchronized (mTimers) {
+        timer = mTimers.get(name);
+
+        if (timer == null) {
+          timer = new Timer();
+
+          register("Timer", name, timer);
+
+          mTimers.put(name, timer);
+        }
+      }
+    }
+
+    return timer;
+  }
+
+  /**
+   * Returns the named counter, creating it if necessary.
+   *
+   * @param name the name
+   * @return the counter
+   */
+  public Counter counter(String name) {
+    Counter counter = mCounters.get(name);
+
+    if (counter == null) {
+      synchronized (mCounters) {
+        counter = mCounters.get(name);
+
+        if (counter == null) {
+          counter = new Counter();
+
+          register("Counter", name, counter);
+
+          mCounters.put(name, counter);
+        }
+      }
+    }
+
+    return counter;
+  }
+
+  /**
+   * Register an MBean with the platform server.
+   *
+   * @param type the type
+   * @param name the name
+   * @param bean the bean
+   */
+  private static void register(String type, String name, Object bean) {
+    try {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+      server.registerMBean(bean,
+          new ObjectName(DOMAIN + ":type=" + type + ",name="
+              + ObjectName.quote(name)));
+    } catch (JMException e) {
+      LOG.warn("Could not register {} {}: {}", type, name, e.getMessage());
+    }
+  }
+
+  /**
+   * Start a new refresh, discarding the track timings of the previous one.
+   */
+  public void startRefresh() {
+    synchronized (mRefresh) {
+      mRefresh.clear();
+    }
+  }
+
+  /**
+   * Record the time a track spent fetching data in the current refresh.
+   *
+   * @param track the track name
+   * @param nanos the nanos
+   */
+  public void fetch(String track, long nanos) {
+    synchronized (mRefresh) {
+      getTimes(track).mFetch += nanos;
+    }
+  }
+
+  /**
+   * Record the time a track spent updating its graph in the current refresh.
+   *
+   * @param track the track name
+   * @param nanos the nanos
+   */
+  public void update(String track, long nanos) {
+    synchronized (mRefresh) {
+      getTimes(track).mUpdate += nanos;
+    }
+  }
+
+  /**
+   * Record the time taken to paint a track.
+   *
+   * @param track the track name
+   * @param nanos the nanos
+   */
+  public void paint(String track, long nanos) {
+    synchronized (mRefresh) {
+      getTimes(track).mPaint = nanos;
+    }
+  }
+
+  /**
+   * Gets the times.
+   *
+   * @param track the track
+   * @return the times
+   */
+  private TrackTimes getTimes(String track) {
+    TrackTimes times = mRefresh.get(track);
+
+    if (times == null) {
+      times = new TrackTimes(track);
+
+      mRefresh.put(track, times);
+    }
+
+    return times;
+  }
+
+  /**
+   * Returns a copy of the track timings of the last refresh.
+   *
+   * @return the refresh times
+   */
+  public List<TrackTimes> getRefreshTimes() {
+    synchronized (mRefresh) {
+      List<TrackTimes> ret = new ArrayList<TrackTimes>(mRefresh.size());
+
+      for (TrackTimes times : mRefresh.values()) {
+        ret.add(new TrackTimes(times));
+      }
+
+      return ret;
+    }
+  }
+}
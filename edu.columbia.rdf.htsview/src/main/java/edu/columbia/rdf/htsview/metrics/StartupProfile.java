@@ -0,0 +1,146 @@
+/**
+ * Copyright 2016 Antony Holmes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.columbia.rdf.htsview.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Records how long each phase of startup takes so that time to first window
+ * can be measured and reduced. Phases are marked as they complete and the
+ * time of each is measured from the previous mark, the first from the start
+ * of the JVM. The report is logged once, when startup is finished.
+ *
+ * @author Antony Holmes
+ */
+public class StartupProfile {
+
+  /** The Constant LOG. */
+  private static final Logger LOG = LoggerFactory
+      .getLogger(StartupProfile.class);
+
+  /**
+   * The Class StartupProfileLoader.
+   */
+  private static class StartupProfileLoader {
+
+    /** The Constant INSTANCE. */
+    private static final StartupProfile INSTANCE = new StartupProfile();
+  }
+
+  /**
+   * Gets the single instance of StartupProfile.
+   *
+   * @return single instance of StartupProfile
+   */
+  public static StartupProfile getInstance() {
+    return StartupProfileLoader.INSTANCE;
+  }
+
+  /** The JVM start time in ms since the epoch. */
+  private final long mStart = ManagementFactory.getRuntimeMXBean()
+      .getStartTime();
+
+  /** The time of the last mark. */
+  private long mLast = mStart;
+
+  /** The m names. */
+  private final List<String> mNames = new ArrayList<String>();
+
+  /** The duration of each phase in ms. */
+  private final List<Long> mTimes = new ArrayList<Long>();
+
+  /** The m finished. */
+  private boolean mFinished = false;
+
+  /**
+   * Instantiates a new startup profile.
+   */
+  private StartupProfile() {
+    // Do nothing
+  }
+
+  /**
+   * Record that a phase of startup has completed. Marks made after startup
+   * has finished are ignored.
+   *
+   * @param phase the phase
+   */
+  public synchronized void mark(String phase) {
+    if (mFinished) {
+      return;
+    }
+
+    long time = System.currentTimeMillis();
+
+    mNames.add(phase);
+    mTimes.add(time - mLast);
+
+    mLast = time;
+  }
+
+  /**
+   * Mark the final phase of startup and log the report. Only the first call
+   * has any effect.
+   *
+   * @param phase the phase
+   */
+  public synchronized void finish(String phase) {
+    if (mFinished) {
+      return;
+    }
+
+    mark(phase);
+
+    mFinished = true;
+
+    for (String line : getReport()) {
+      LOG.info(line);
+    }
+  }
+
+  /**
+   * Returns true once startup has finished.
+   *
+   * @return true, if is finished
+   */
+  public synchronized boolean isFinished() {
+    return mFinished;
+  }
+
+  /**
+   * Returns the report, one line per phase followed by the total.
+   *
+   * @return the report
+   */
+  public synchronized List<String> getReport() {
+    List<String> ret = new ArrayList<String>(mNames.size() + 1);
+
+    for (int i = 0; i < mNames.size(); ++i) {
+      ret.add(String.format("Startup: %-40s %6d ms",
+          mNames.get(i),
+          mTimes.get(i)));
+    }
+
+    ret.add(String.format("Startup: %-40s %6d ms", "Total", mLast - mStart));
+
+    return ret;
+  }
+}
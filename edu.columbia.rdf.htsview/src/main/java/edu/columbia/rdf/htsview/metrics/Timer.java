@@ -0,0 +1,128 @@
+/**
+ * Copyright 2016 Antony Holmes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.columbia.rdf.htsview.metrics;
+
+/**
+ * Accumulates the durations of repeated calls.
+ *
+ * @author Antony Holmes
+ */
+public class Timer implements TimerMBean {
+
+  /** The Constant NANOS_PER_MILLI. */
+  private static final double NANOS_PER_MILLI = 1000000.0;
+
+  /** The m count. */
+  private long mCount = 0;
+
+  /** The m total. */
+  private long mTotal = 0;
+
+  /** The m max. */
+  private long mMax = 0;
+
+  /** The m last. */
+  private long mLast = 0;
+
+  /**
+   * Record the duration of a call.
+   *
+   * @param nanos the duration in nanoseconds.
+   */
+  public synchronized void record(long nanos) {
+    ++mCount;
+    mTotal += nanos;
+    mMax = Math.max(mMax, nanos);
+    mLast = nanos;
+  }
+
+  /**
+   * Record the time since a call started.
+   *
+   * @param start the start time from {@code System.nanoTime()}.
+   * @return the duration in nanoseconds.
+   */
+  public long stop(long start) {
+    long nanos = System.nanoTime() - start;
+
+    record(nanos);
+
+    return nanos;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see edu.columbia.rdf.htsview.metrics.TimerMBean#getCount()
+   */
+  @Override
+  public synchronized long getCount() {
+    return mCount;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see edu.columbia.rdf.htsview.metrics.TimerMBean#getTotalMillis()
+   */
+  @Override
+  public synchronized double getTotalMillis() {
+    return mTotal / NANOS_PER_MILLI;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see edu.columbia.rdf.htsview.metrics.TimerMBean#getMeanMillis()
+   */
+  @Override
+  public synchronized double getMeanMillis() {
+    return mCount > 0 ? mTotal / NANOS_PER_MILLI / mCount : 0;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see edu.columbia.rdf.htsview.metrics.TimerMBean#getMaxMillis()
+   */
+  @Override
+  public synchronized double getMaxMillis() {
+    return mMax / NANOS_PER_MILLI;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see edu.columbia.rdf.htsview.metrics.TimerMBean#getLastMillis()
+   */
+  @Override
+  public synchronized double getLastMillis() {
+    return mLast / NANOS_PER_MILLI;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see edu.columbia.rdf.htsview.metrics.TimerMBean#reset()
+   */
+  @Override
+  public synchronized void reset() {
+    mCount = 0;
+    mTotal = 0;
+    mMax = 0;
+    mLast = 0;
+  }
+}
@@ -0,0 +1,64 @@
+/**
+ * Copyright 2016 Antony Holmes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.columbia.rdf.htsview.metrics;
+
+/**
+ * Management interface of a timer.
+ *
+ * @author Antony Holmes
+ */
+public interface TimerMBean {
+
+  /**
+   * Gets the number of timed calls.
+   *
+   * @return the count
+   */
+  public long getCount();
+
+  /**
+   * Gets the total time of all calls in milliseconds.
+   *
+   * @return the total millis
+   */
+  public double getTotalMillis();
+
+  /**
+   * Gets the mean time of a call in milliseconds.
+   *
+   * @return the mean millis
+   */
+  public double getMeanMillis();
+
+  /**
+   * Gets the longest call in milliseconds.
+   *
+   * @return the max millis
+   */
+  public double getMaxMillis();
+
+  /**
+   * Gets the time of the most recent call in milliseconds.
+   *
+   * @return the last millis
+   */
+  public double getLastMillis();
+
+  /**
+   * Reset the timer.
+   */
+  public void reset();
+}
@@ -0,0 +1,96 @@
+/**
+ * Copyright 2016 Antony Holmes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.columbia.rdf.htsview.metrics;
+
+/**
+ * The time a track spent fetching, updating and painting in a refresh.
+ *
+ * @author Antony Holmes
+ */
+public class TrackTimes {
+
+  /** The Constant NANOS_PER_MILLI. */
+  private static final double NANOS_PER_MILLI = 1000000.0;
+
+  /** The m name. */
+  private final String mName;
+
+  /** The m fetch. */
+  long mFetch = 0;
+
+  /** The m update. */
+  long mUpdate = 0;
+
+  /** The m paint. */
+  long mPaint = 0;
+
+  /**
+   * Instantiates a new track times.
+   *
+   * @param name the name
+   */
+  public TrackTimes(String name) {
+    mName = name;
+  }
+
+  /**
+   * Instantiates a new track times.
+   *
+   * @param times the times
+   */
+  public TrackTimes(TrackTimes times) {
+    mName = times.mName;
+    mFetch = times.mFetch;
+    mUpdate = times.mUpdate;
+    mPaint = times.mPaint;
+  }
+
+  /**
+   * Gets the name.
+   *
+   * @return the name
+   */
+  public String getName() {
+    return mName;
+  }
+
+  /**
+   * Gets the fetch millis.
+   *
+   * @return the fetch millis
+   */
+  public double getFetchMillis() {
+    return mFetch / NANOS_PER_MILLI;
+  }
+
+  /**
+   * Gets the update millis, which includes the fetch.
+   *
+   * @return the update millis
+   */
+  public double getUpdateMillis() {
+    return mUpdate / NANOS_PER_MILLI;
+  }
+
+  /**
+   * Gets the paint millis.
+   *
+   * @return the paint millis
+   */
+  public double getPaintMillis() {
+    return mPaint / NANOS_PER_MILLI;
+  }
+}
@@ -0,0 +1,524 @@
+/**
+ * Copyright 2016 Antony Holmes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.columbia.rdf.htsview.ngs;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.jebtk.bioinformatics.genomic.Chromosome;
+import org.jebtk.bioinformatics.genomic.ChromosomeService;
+import org.jebtk.bioinformatics.genomic.Genome;
+import org.jebtk.bioinformatics.genomic.GenomeService;
+import org.jebtk.bioinformatics.genomic.GenomicRegion;
+import org.jebtk.core.io.FileUtils;
+import org.jebtk.core.io.PathUtils;
+import org.jebtk.core.json.JsonBuilder;
+import org.jebtk.core.text.TextUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import edu.columbia.rdf.edb.ngs.ReadCountsFileBam;
+import edu.columbia.rdf.htsview.cache.SharedCache;
+import edu.columbia.rdf.htsview.tracks.ResolutionService;
+
+/**
+ * Command line tool that reads a BAM file once and writes binned read counts
+ * at every configured resolution. Chromosomes are processed in parallel and
+ * each chromosome is streamed through in fixed size chunks so memory use does
+ * not depend on chromosome length.
+ *
+ * The output directory contains one file of big endian ints per chromosome
+ * and window named {@code <chr>.<window>.bin} plus a {@code bins.json} meta
+ * file recording the genome, windows, read length, mapped reads and the
+ * source BAM, which is used for any window that was not precomputed. The
+ * directory can be opened with {@code SampleAssemblyBinned}.
+ *
+ * @author Antony Holmes
+ */
+public class CountsPrecompute {
+
+  /** The Constant LOG. */
+  private static final Logger LOG = LoggerFactory
+      .getLogger(CountsPrecompute.class);
+
+  /** The name of the meta file. */
+  public static final String META_FILE = "bins.json";
+
+  /** The extension of the count files. */
+  public static final String EXT = "bin";
+
+  /** How many bases of a chromosome to read from the BAM at once. */
+  private static final int CHUNK_SIZE = 10000000;
+
+  /** Size of the write buffer used for each count file. */
+  private static final int BUFFER_SIZE = 65536;
+
+  /**
+   * Accumulates read coverage for one chromosome at one window using a
+   * difference array, writing bins to disk once no further read can overlap
+   * them.
+   */
+  private static class BinWriter {
+
+    /** The m window. */
+    private final int mWindow;
+
+    /** The m diff. */
+    private int[] mDiff;
+
+    /** The first bin held in the diff array. */
+    private int mBase = 0;
+
+    /** The running sum of the difference array. */
+    private int mRunning = 0;
+
+    /** The m channel. */
+    private final FileChannel mChannel;
+
+    /** The m buffer. */
+    private final ByteBuffer mBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+    /**
+     * Instantiates a new bin writer.
+     *
+     * @param file the file
+     * @param window the window
+     * @param readLength the read length
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public BinWriter(Path file, int window, int readLength)
+        throws IOException {
+      mWindow = window;
+
+      // Room for a chunk of bins plus the overhang of reads that start
+      // at the end of a chunk
+      mDiff = new int[CHUNK_SIZE / window + readLength / window + 4];
+
+      mChannel = FileChannel.open(file,
+          StandardOpenOption.CREATE,
+          StandardOpenOption.WRITE,
+          StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    /**
+     * Add a read covering the one based interval start to end.
+     *
+     * @param start the start
+     * @param end the end
+     */
+    public void add(int start, int end) {
+      ++mDiff[(start - 1) / mWindow - mBase];
+      --mDiff[(end - 1) / mWindow - mBase + 1];
+    }
+
+    /**
+     * Write all bins before a given bin to disk.
+     *
+     * @param bin the first bin that should not be written.
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public void flush(int bin) throws IOException {
+      int n = bin - mBase;
+
+      if (n <= 0) {
+        return;
+      }
+
+      for (int i = 0; i < n; ++i) {
+        mRunning += mDiff[i];
+
+        if (mBuffer.remaining() < 4) {
+          drain();
+        }
+
+        mBuffer.putInt(mRunning);
+      }
+
+      // Shift the bins not yet written to the front
+      System.arraycopy(mDiff, n, mDiff, 0, mDiff.length - n);
+
+      for (int i = mDiff.length - n; i < mDiff.length; ++i) {
+        mDiff[i] = 0;
+      }
+
+      mBase = bin;
+    }
+
+    /**
+     * Write the remaining bins and close the file.
+     *
+     * @param bins the total number of bins in the chromosome.
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public void close(int bins) throws IOException {
+      try {
+        flush(bins);
+
+        drain();
+      } finally {
+        mChannel.close();
+      }
+    }
+
+    /**
+     * Drain.
+     *
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    private void drain() throws IOException {
+      mBuffer.flip();
+
+      while (mBuffer.hasRemaining()) {
+        mChannel.write(mBuffer);
+      }
+
+      mBuffer.clear();
+    }
+  }
+
+  /**
+   * Counts the reads of one chromosome at every window.
+   */
+  private static class ChrTask implements Callable<Long> {
+
+    /** The m bam. */
+    private final Path mBam;
+
+    /** The m dir. */
+    private final Path mDir;
+
+    /** The m chr. */
+    private final Chromosome mChr;
+
+    /** The m size. */
+    private final int mSize;
+
+    /** The m windows. */
+    private final List<Integer> mWindows;
+
+    /**
+     * Instantiates a new chr task.
+     *
+     * @param bam the bam
+     * @param dir the dir
+     * @param chr the chr
+     * @param size the size
+     * @param windows the windows
+     */
+    public ChrTask(Path bam, Path dir, Chromosome chr, int size,
+        List<Integer> windows) {
+      mBam = bam;
+      mDir = dir;
+      mChr = chr;
+      mSize = size;
+      mWindows = windows;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see java.util.concurrent.Callable#call()
+     */
+    @Override
+    public Long call() throws IOException {
+      // Each worker has its own reader since readers are not thread safe
+      ReadCountsFileBam reader = new ReadCountsFileBam(mBam);
+
+      int readLength = Math.max(1, reader.getReadLength());
+
+      BinWriter[] writers = new BinWriter[mWindows.size()];
+
+      long reads = 0;
+
+      try {
+        for (int i = 0; i < writers.length; ++i) {
+          writers[i] = new BinWriter(getFile(mDir, mChr, mWindows.get(i)),
+              mWindows.get(i), readLength);
+        }
+
+        for (int start = 1; start <= mSize; start += CHUNK_SIZE) {
+          int end = Math.min(mSize, start + CHUNK_SIZE - 1);
+
+          int[] starts = reader
+              .getStarts(new GenomicRegion(mChr, start, end), 1);
+
+          for (int s : starts) {
+            // Only count reads that start in this chunk so reads are not
+            // counted twice
+            if (s < start || s > end) {
+              continue;
+            }
+
+            int e = Math.min(mSize, s + readLength - 1);
+
+            for (BinWriter writer : writers) {
+              writer.add(s, e);
+            }
+
+            ++reads;
+          }
+
+          // Reads starting in the next chunk cannot touch bins before
+          // the one containing the next chunk start
+          for (BinWriter writer : writers) {
+            writer.flush(end / writer.mWindow);
+          }
+        }
+      } finally {
+        for (BinWriter writer : writers) {
+          if (writer != null) {
+            writer.close((mSize - 1) / writer.mWindow + 1);
+          }
+        }
+      }
+
+      LOG.info("Counted {} reads on {}.", reads, mChr);
+
+      return reads;
+    }
+  }
+
+  /**
+   * Instantiates a new counts precompute.
+   */
+  private CountsPrecompute() {
+    // Do nothing
+  }
+
+  /**
+   * Gets the count file for a chromosome and window.
+   *
+   * @param dir the dir
+   * @param chr the chr
+   * @param window the window
+   * @return the file
+   */
+  public static Path getFile(Path dir, Chromosome chr, int window) {
+    return dir.resolve(chr + "." + window + "." + EXT);
+  }
+
+  /**
+   * Precompute binned counts for a BAM file.
+   *
+   * @param bam the bam file.
+   * @param genome the genome
+   * @param chrSizes a UCSC style chrom.sizes file listing the chromosomes to
+   *          process.
+   * @param windows the windows
+   * @param dir the output directory.
+   * @param threads the number of worker threads.
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public static void precompute(Path bam,
+      Genome genome,
+      Path chrSizes,
+      List<Integer> windows,
+      Path dir,
+      int threads) throws IOException {
+    Files.createDirectories(dir);
+
+    Map<Chromosome, Integer> sizes = readChrSizes(genome, chrSizes);
+
+    LOG.info("Precomputing {} chromosomes of {} at {} using {} threads...",
+        sizes.size(),
+        bam,
+        windows,
+        threads);
+
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+    List<Future<Long>> futures = new ArrayList<Future<Long>>();
+
+    for (Entry<Chromosome, Integer> e : sizes.entrySet()) {
+      futures.add(executor.submit(
+          new ChrTask(bam, dir, e.getKey(), e.getValue(), windows)));
+    }
+
+    long mappedReads = 0;
+
+    try {
+      for (Future<Long> future : futures) {
+        mappedReads += SharedCache.getResult(future);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    int readLength = new ReadCountsFileBam(bam).getReadLength();
+
+    writeMeta(dir,
+        PathUtils.getNameNoExt(bam),
+        bam,
+        genome,
+        windows,
+        readLength,
+        mappedReads,
+        sizes);
+
+    LOG.info("Wrote {} mapped reads to {}.", mappedReads, dir);
+  }
+
+  /**
+   * Write the meta file describing the precomputed counts.
+   *
+   * @param dir the dir
+   * @param name the sample name
+   * @param bam the source bam file
+   * @param genome the genome
+   * @param windows the windows
+   * @param readLength the read length
+   * @param mappedReads the mapped reads
+   * @param sizes the sizes
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private static void writeMeta(Path dir,
+      String name,
+      Path bam,
+      Genome genome,
+      List<Integer> windows,
+      int readLength,
+      long mappedReads,
+      Map<Chromosome, Integer> sizes) throws IOException {
+    JsonBuilder json = JsonBuilder.create().startObject();
+
+    json.add("Name", name);
+    json.add("genome", genome.getAssembly());
+    StringBuilder buffer = new StringBuilder();
+
+    for (int i = 0; i < windows.size(); ++i) {
+      if (i > 0) {
+        buffer.append(",");
+      }
+
+      buffer.append(windows.get(i));
+    }
+
+    json.add("windows", buffer.toString());
+    json.add("read-length", readLength);
+    json.add("source", bam.toAbsolutePath().toString());
+
+    // Every read is counted once regardless of window
+    json.add("mapped-reads", (int) Math.min(Integer.MAX_VALUE, mappedReads));
+
+    json.startObject("chromosomes");
+
+    for (Entry<Chromosome, Integer> e : sizes.entrySet()) {
+      json.add(e.getKey().toString(), e.getValue());
+    }
+
+    json.endObject();
+
+    json.endObject();
+
+    JsonBuilder.write(json, dir.resolve(META_FILE));
+  }
+
+  /**
+   * Read a tab delimited chrom.sizes file.
+   *
+   * @param genome the genome
+   * @param file the file
+   * @return the chromosome sizes in file order.
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private static Map<Chromosome, Integer> readChrSizes(Genome genome,
+      Path file) throws IOException {
+    Map<Chromosome, Integer> ret = new LinkedHashMap<Chromosome, Integer>();
+
+    BufferedReader reader = FileUtils.newBufferedReader(file);
+
+    String line;
+
+    try {
+      while ((line = reader.readLine()) != null) {
+        if (TextUtils.isNullOrEmpty(line)) {
+          continue;
+        }
+
+        List<String> tokens = TextUtils.tabSplit(line);
+
+        ret.put(ChromosomeService.getInstance().chr(genome, tokens.get(0)),
+            Integer.parseInt(tokens.get(1)));
+      }
+    } finally {
+      reader.close();
+    }
+
+    return ret;
+  }
+
+  /**
+   * Command line entry point.
+   *
+   * Usage: CountsPrecompute [--threads n] [--windows w1,w2,...] genome
+   * chrom.sizes in.bam out_dir
+   *
+   * @param args the arguments
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public static void main(String[] args) throws IOException {
+    int threads = Runtime.getRuntime().availableProcessors();
+
+    List<Integer> windows = new ArrayList<Integer>();
+
+    for (int w : ResolutionService.getInstance()) {
+      windows.add(w);
+    }
+
+    List<String> files = new ArrayList<String>();
+
+    for (int i = 0; i < args.length; ++i) {
+      if (args[i].equals("--threads")) {
+        threads = Math.max(1, Integer.parseInt(args[++i]));
+      } else if (args[i].equals("--windows")) {
+        windows.clear();
+
+        for (String w : TextUtils.commaSplit(args[++i])) {
+          windows.add(Integer.parseInt(w));
+        }
+      } else {
+        files.add(args[i]);
+      }
+    }
+
+    if (files.size() != 4) {
+      System.err.println(
+          "Usage: CountsPrecompute [--threads n] [--windows w1,w2,...] genome chrom.sizes in.bam out_dir");
+      return;
+    }
+
+    precompute(PathUtils.getPath(files.get(2)),
+        GenomeService.getInstance().guessGenome(files.get(0)),
+        PathUtils.getPath(files.get(1)),
+        windows,
+        PathUtils.getPath(files.get(3)),
+        threads);
+  }
+}
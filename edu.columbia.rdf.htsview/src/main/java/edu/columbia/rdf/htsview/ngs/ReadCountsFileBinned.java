@@ -0,0 +1,276 @@
+/**
+ * Copyright 2016 Antony Holmes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.columbia.rdf.htsview.ngs;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.jebtk.bioinformatics.genomic.Chromosome;
+import org.jebtk.bioinformatics.genomic.Genome;
+import org.jebtk.bioinformatics.genomic.GenomeService;
+import org.jebtk.bioinformatics.genomic.GenomicRegion;
+import org.jebtk.bioinformatics.genomic.Strand;
+import org.jebtk.core.io.PathUtils;
+import org.jebtk.core.json.Json;
+import org.jebtk.core.json.JsonParser;
+import org.jebtk.core.text.TextUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import edu.columbia.rdf.edb.ngs.ReadCountsFile;
+import edu.columbia.rdf.edb.ngs.ReadCountsFileBam;
+
+/**
+ * Reads the binned counts written by {@code CountsPrecompute}. Each stored bin
+ * counts every read overlapping it, so a read crossing a bin boundary is
+ * counted in both bins and coarser windows cannot be built by adding finer
+ * ones together. Only the stored windows are served from disk; any other
+ * window is read from the BAM file the counts were made from, if it is still
+ * available. Otherwise asking for it is an error rather than returning
+ * counts that would silently be wrong.
+ *
+ * @author Antony Holmes
+ */
+public class ReadCountsFileBinned extends ReadCountsFile {
+
+  /** The Constant LOG. */
+  private static final Logger LOG = LoggerFactory
+      .getLogger(ReadCountsFileBinned.class);
+
+  /** The m dir. */
+  private Path mDir;
+
+  /** The m genome. */
+  private Genome mGenome;
+
+  /** The m windows, smallest first. */
+  private List<Integer> mWindows = new ArrayList<Integer>();
+
+  /** The BAM file the counts were made from, or null. */
+  private Path mSourceFile = null;
+
+  /** The m source. */
+  private ReadCountsFile mSource = null;
+
+  /** The m read length. */
+  private int mReadLength;
+
+  /** The m mapped reads. */
+  private int mMappedReads;
+
+  /**
+   * Instantiates a new read counts file binned.
+   *
+   * @param metaFile the meta file
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public ReadCountsFileBinned(Path metaFile) throws IOException {
+    mDir = metaFile.toAbsolutePath().getParent();
+
+    Json json = new JsonParser().parse(metaFile);
+
+    mGenome = GenomeService.getInstance()
+        .guessGenome(json.getString("genome"));
+    mReadLength = json.getInt("read-length");
+    mMappedReads = json.getInt("mapped-reads");
+
+    for (String w : TextUtils.commaSplit(json.getString("windows"))) {
+      mWindows.add(Integer.parseInt(w));
+    }
+
+    Collections.sort(mWindows);
+
+    if (json.containsKey("source")) {
+      mSourceFile = PathUtils.getPath(json.getString("source"));
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see edu.columbia.rdf.edb.ngs.CountAssembly#getCounts(org.jebtk.
+   * bioinformatics.genomic.GenomicRegion, int)
+   */
+  @Override
+  public int[] getCounts(GenomicRegion region, int window) throws IOException {
+    if (!mWindows.contains(window)) {
+      ReadCountsFile source = getSource();
+
+      if (source != null) {
+        synchronized (source) {
+          return source.getCounts(region, window);
+        }
+      }
+
+      // Overlap counts of finer windows cannot be added up exactly
+      throw new IOException("Window " + window + " was not precomputed in "
+          + mDir + " and its source BAM is not available.");
+    }
+
+    int s = (region.getStart() - 1) / window;
+    int e = (region.getEnd() - 1) / window;
+
+    return read(region.getChr(), window, s, e - s + 1);
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see edu.columbia.rdf.edb.ngs.ReadCountsFile#getStarts(org.jebtk.
+   * bioinformatics.genomic.GenomicRegion, int)
+   */
+  @Override
+  public int[] getStarts(GenomicRegion region, int window)
+      throws IOException {
+    ReadCountsFile source = getSource();
+
+    if (source == null) {
+      return super.getStarts(region, window);
+    }
+
+    synchronized (source) {
+      return source.getStarts(region, window);
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see edu.columbia.rdf.edb.ngs.ReadCountsFile#getStrands(org.jebtk.
+   * bioinformatics.genomic.GenomicRegion, int)
+   */
+  @Override
+  public Strand[] getStrands(GenomicRegion region, int window)
+      throws IOException {
+    ReadCountsFile source = getSource();
+
+    if (source == null) {
+      return super.getStrands(region, window);
+    }
+
+    synchronized (source) {
+      return source.getStrands(region, window);
+    }
+  }
+
+  /**
+   * Returns a reader for the BAM file the counts were made from. BAM
+   * readers are not thread safe so callers must synchronize on it.
+   *
+   * @return the source or null if the BAM file is not available.
+   */
+  private synchronized ReadCountsFile getSource() {
+    if (mSource == null && mSourceFile != null) {
+      if (Files.exists(mSourceFile)) {
+        mSource = new ReadCountsFileBam(mSourceFile);
+      } else {
+        LOG.warn("Source {} of {} does not exist.", mSourceFile, mDir);
+      }
+
+      // Only look once
+      mSourceFile = null;
+    }
+
+    return mSource;
+  }
+
+  /**
+   * Read a block of bins from a count file. Bins beyond the end of the file
+   * are zero.
+   *
+   * @param chr the chr
+   * @param window the window
+   * @param bin the first bin
+   * @param n the number of bins
+   * @return the int[]
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private int[] read(Chromosome chr, int window, int bin, int n)
+      throws IOException {
+    int[] ret = new int[n];
+
+    Path file = CountsPrecompute.getFile(mDir, chr, window);
+
+    if (!Files.exists(file)) {
+      return ret;
+    }
+
+    FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+
+    try {
+      long offset = (long) bin * 4;
+
+      int available = (int) Math
+          .max(0, Math.min(n, (channel.size() - offset) / 4));
+
+      if (available > 0) {
+        ByteBuffer buffer = ByteBuffer.allocate(available * 4);
+
+        while (buffer.hasRemaining()) {
+          if (channel.read(buffer, offset + buffer.position()) == -1) {
+            break;
+          }
+        }
+
+        buffer.flip();
+
+        buffer.asIntBuffer().get(ret, 0, buffer.remaining() / 4);
+      }
+    } finally {
+      channel.close();
+    }
+
+    return ret;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see edu.columbia.rdf.edb.ngs.ReadCountsFile#getReadCount(org.jebtk.
+   * bioinformatics.genomic.Genome, int)
+   */
+  @Override
+  public int getReadCount(Genome genome, int window) {
+    return mMappedReads;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see edu.columbia.rdf.edb.ngs.ReadCountsFile#getGenome()
+   */
+  @Override
+  public Genome getGenome() {
+    return mGenome;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see edu.columbia.rdf.edb.ngs.ReadCountsFile#getReadLength()
+   */
+  @Override
+  public int getReadLength() {
+    return mReadLength;
+  }
+}
@@ -180,6 +180,19 @@ public abstract class SampleAssembly {
     return -1;
   }
 
+  /**
+   * Returns a string identifying the current version of a sample's data so
+   * that local copies can be discarded when the sample is reprocessed.
+   * Returns null if the version is unknown.
+   *
+   * @param sample the sample
+   * @return the version
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public String getVersion(Sample sample) throws IOException {
+    return null;
+  }
+
   /**
    * Gets the genome.
    *
@@ -16,12 +16,18 @@
 package edu.columbia.rdf.htsview.tracks;
 
 import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
 import java.io.IOException;
 
 import org.jebtk.bioinformatics.genomic.Genome;
 import org.jebtk.bioinformatics.genomic.GenomicRegion;
+import org.jebtk.core.Props;
 import org.jebtk.graphplot.figure.PlotStyle;
 import org.jebtk.graphplot.figure.SubFigure;
+import org.jebtk.modern.graphics.DrawingContext;
+
+import edu.columbia.rdf.htsview.metrics.Metrics;
 
 /**
  * The Class TrackSubFigure.
@@ -31,6 +37,43 @@ public abstract class TrackSubFigure extends SubFigure {
   /** The Constant serialVersionUID. */
   private static final long serialVersionUID = 1L;
 
+  /** The name of the track the figure belongs to. */
+  private String mTrackName;
+
+  /**
+   * Sets the name of the track the figure belongs to, so that paint times
+   * can be attributed to it.
+   *
+   * @param name the new track name
+   */
+  public void setTrackName(String name) {
+    mTrackName = name;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see org.jebtk.graphplot.figure.PlotBox#plotContext(java.awt.Graphics2D,
+   * java.awt.Dimension, org.jebtk.modern.graphics.DrawingContext,
+   * org.jebtk.core.Props)
+   */
+  @Override
+  public void plotContext(Graphics2D g2,
+      Dimension offset,
+      DrawingContext context,
+      Props props) {
+    long start = System.nanoTime();
+
+    super.plotContext(g2, offset, context, props);
+
+    long nanos = Metrics.getInstance().timer("TrackSubFigure.paint")
+        .stop(start);
+
+    if (mTrackName != null) {
+      Metrics.getInstance().paint(mTrackName, nanos);
+    }
+  }
+
   /**
    * Update.
    *
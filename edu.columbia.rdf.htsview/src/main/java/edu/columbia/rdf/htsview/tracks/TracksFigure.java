@@ -34,6 +34,11 @@ import org.jebtk.graphplot.figure.SubFigure;
 import org.jebtk.graphplot.plotbox.PlotBoxRowLayout;
 import org.jebtk.modern.graphics.DrawingContext;
 
+import edu.columbia.rdf.htsview.memory.MemoryGovernor;
+import edu.columbia.rdf.htsview.metrics.Metrics;
+import edu.columbia.rdf.htsview.metrics.StartupProfile;
+import edu.columbia.rdf.htsview.tracks.sample.SampleFetchCoordinator;
+
 /**
  * The Class TracksFigure.
  */
@@ -107,6 +112,8 @@ public class TracksFigure extends Figure { // Figure { // PlotBoxColumn {
 
       TrackSubFigure trackSubFigure = track.createGraph(genome, titlePosition);
 
+      trackSubFigure.setTrackName(track.getName());
+
       Axes axes = trackSubFigure.currentAxes();
 
       // If an axes object has previously been a child, reset the
@@ -257,6 +264,13 @@ public class TracksFigure extends Figure { // Figure { // PlotBoxColumn {
       int height,
       int margin) throws IOException {
 
+    long updateStart = System.nanoTime();
+
+    Metrics.getInstance().startRefresh();
+    MemoryGovernor.getInstance().startRefresh();
+    SampleFetchCoordinator.getInstance()
+        .startRefresh(mTracks, genome, displayRegion, resolution);
+
     //
     // Raw data tracks
     //
@@ -265,14 +279,19 @@ public class TracksFigure extends Figure { // Figure { // PlotBoxColumn {
       Track track = node.getValue();
 
       // Update a new plot
-      track.updateGraph(genome, displayRegion, resolution, width, height, margin);
+      updateGraph(track, genome, displayRegion, resolution, width, height, margin);
 
       List<TreeNode<Track>> children = node.getChildrenAsList();
 
       // update the children of this plot
       for (TreeNode<Track> child : children) {
-        TrackSubFigure cf = child.getValue()
-            .updateGraph(genome, displayRegion, resolution, width, height, margin);
+        TrackSubFigure cf = updateGraph(child.getValue(),
+            genome,
+            displayRegion,
+            resolution,
+            width,
+            height,
+            margin);
 
         cf.currentAxes().getTitle().setVisible(false);
       }
@@ -337,6 +356,50 @@ public class TracksFigure extends Figure { // Figure { // PlotBoxColumn {
 
       axes.getY1Axis().startEndTicksOnly();
     }
+
+    Metrics.getInstance().timer("TracksFigure.update").stop(updateStart);
+
+    // Tracks not drawn in this refresh can now give up their data
+    MemoryGovernor.getInstance().check();
+
+    // The first refresh marks the end of startup
+    StartupProfile.getInstance().finish("First tracks refresh");
+  }
+
+  /**
+   * Update the graph of a track, recording how long it took.
+   *
+   * @param track the track
+   * @param genome the genome
+   * @param displayRegion the display region
+   * @param resolution the resolution
+   * @param width the width
+   * @param height the height
+   * @param margin the margin
+   * @return the track sub figure
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private static TrackSubFigure updateGraph(Track track,
+      Genome genome,
+      GenomicRegion displayRegion,
+      int resolution,
+      int width,
+      int height,
+      int margin) throws IOException {
+    long start = System.nanoTime();
+
+    TrackSubFigure ret = track.updateGraph(genome,
+        displayRegion,
+        resolution,
+        width,
+        height,
+        margin);
+
+    long nanos = Metrics.getInstance().timer("Track.updateGraph").stop(start);
+
+    Metrics.getInstance().update(track.getName(), nanos);
+
+    return ret;
   }
   
   @Override
@@ -16,7 +16,10 @@
 package edu.columbia.rdf.htsview.tracks;
 
 import java.awt.Color;
+import java.awt.FontMetrics;
 import java.awt.Graphics2D;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.jebtk.bioinformatics.genomic.GenomicRegion;
 import org.jebtk.bioinformatics.genomic.GenomicRegionModel;
@@ -31,6 +34,11 @@ import org.jebtk.modern.graphics.DrawingContext;
 import org.jebtk.modern.theme.ModernTheme;
 import org.jebtk.modern.theme.ThemeService;
 
+import edu.columbia.rdf.htsview.memory.MemoryGovernor;
+import edu.columbia.rdf.htsview.memory.MemoryUsage;
+import edu.columbia.rdf.htsview.metrics.Metrics;
+import edu.columbia.rdf.htsview.metrics.TrackTimes;
+
 /**
  * The Class TracksFigure.
  */
@@ -81,6 +89,14 @@ public class TracksFigurePanel extends PlotBoxPanel { // Figure { //
 
   private GenomeModel mGenomeModel;
 
+  /** Whether to show the per track timings of the last refresh. */
+  private boolean mShowMetrics = SettingsService.getInstance()
+      .getBool("htsview.metrics.overlay");
+
+  /** The Constant METRICS_BACKGROUND. */
+  private static final Color METRICS_BACKGROUND = new Color(255, 255, 255,
+      220);
+
   /**
    * The Class CanvasMouseEvents.
    */
@@ -209,6 +225,105 @@ public class TracksFigurePanel extends PlotBoxPanel { // Figure { //
     super.plot(g2, context, props);
 
     plotSelection(g2, context, props);
+
+    if (mShowMetrics) {
+      plotMetrics(g2);
+    }
+  }
+
+  /**
+   * Sets whether the timings of the last refresh are drawn over the tracks.
+   *
+   * @param show the new show metrics
+   */
+  public void setShowMetrics(boolean show) {
+    mShowMetrics = show;
+
+    fireCanvasRedraw();
+  }
+
+  /**
+   * Gets the show metrics.
+   *
+   * @return the show metrics
+   */
+  public boolean getShowMetrics() {
+    return mShowMetrics;
+  }
+
+  /**
+   * Draw the fetch, update and paint times of each track in the last
+   * refresh in the top right corner of the canvas, followed by the memory
+   * held by each cache and track.
+   *
+   * @param g2 the g 2
+   */
+  public void plotMetrics(Graphics2D g2) {
+    List<TrackTimes> times = Metrics.getInstance().getRefreshTimes();
+
+    if (times.isEmpty()) {
+      return;
+    }
+
+    List<MemoryUsage> usage = MemoryGovernor.getInstance().getUsage();
+
+    List<String> lines = new ArrayList<String>(
+        times.size() + usage.size() + 2);
+
+    lines.add("track: fetch / update / paint (ms)");
+
+    for (TrackTimes t : times) {
+      lines.add(String.format("%s: %.1f / %.1f / %.1f",
+          t.getName(),
+          t.getFetchMillis(),
+          t.getUpdateMillis(),
+          t.getPaintMillis()));
+    }
+
+    double total = 0;
+
+    for (MemoryUsage u : usage) {
+      total += u.getMegabytes();
+    }
+
+    lines.add(String.format("memory: %.1f of %.1f MB",
+        total,
+        MemoryGovernor.getInstance().getBudget() / 1048576.0));
+
+    for (MemoryUsage u : usage) {
+      if (u.getBytes() > 0) {
+        lines.add(String.format("%s: %.1f MB%s",
+            u.getName(),
+            u.getMegabytes(),
+            u.isActive() ? "" : " (inactive)"));
+      }
+    }
+
+    FontMetrics fm = g2.getFontMetrics();
+
+    int w = 0;
+
+    for (String line : lines) {
+      w = Math.max(w, fm.stringWidth(line));
+    }
+
+    int lineHeight = fm.getHeight();
+    int pad = 5;
+    int x = Math.max(0, getWidth() - w - 3 * pad);
+    int y = pad;
+
+    g2.setColor(METRICS_BACKGROUND);
+    g2.fillRect(x, y, w + 2 * pad, lines.size() * lineHeight + 2 * pad);
+
+    g2.setColor(Color.BLACK);
+
+    y += pad + fm.getAscent();
+
+    for (String line : lines) {
+      g2.drawString(line, x + pad, y);
+
+      y += lineHeight;
+    }
   }
 
   public void plotSelection(Graphics2D g2,
@@ -0,0 +1,117 @@
+/**
+ * Copyright 2016 Antony Holmes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.columbia.rdf.htsview.tracks.correlation;
+
+import javax.swing.Box;
+
+import org.jebtk.modern.BorderService;
+import org.jebtk.modern.ModernComponent;
+import org.jebtk.modern.UI;
+import org.jebtk.modern.button.ModernButtonGroup;
+import org.jebtk.modern.button.ModernRadioButton;
+import org.jebtk.modern.dialog.ModernDialogTaskWindow;
+import org.jebtk.modern.event.ModernClickEvent;
+import org.jebtk.modern.event.ModernClickListener;
+import org.jebtk.modern.panel.HBox;
+import org.jebtk.modern.text.ModernAutoSizeLabel;
+import org.jebtk.modern.window.ModernWindow;
+
+/**
+ * Shows the clustered correlation heatmap of a set of samples.
+ *
+ * @author Antony Holmes
+ */
+public class CorrelationDialog extends ModernDialogTaskWindow {
+
+  /** The Constant serialVersionUID. */
+  private static final long serialVersionUID = 1L;
+
+  /** The m check pearson. */
+  private ModernRadioButton mCheckPearson = new ModernRadioButton("Pearson",
+      true);
+
+  /** The m check spearman. */
+  private ModernRadioButton mCheckSpearman = new ModernRadioButton(
+      "Spearman");
+
+  /** The m result. */
+  private CorrelationResult mResult;
+
+  /** The m heatmap. */
+  private CorrelationHeatmapPanel mHeatmap;
+
+  /**
+   * Instantiates a new correlation dialog.
+   *
+   * @param parent the parent
+   * @param result the result
+   */
+  public CorrelationDialog(ModernWindow parent, CorrelationResult result) {
+    super(parent);
+
+    mResult = result;
+
+    setTitle("Sample Correlation");
+
+    createUi();
+
+    setup();
+  }
+
+  /**
+   * Setup.
+   */
+  private void setup() {
+    new ModernButtonGroup(mCheckPearson, mCheckSpearman);
+
+    ModernClickListener l = new ModernClickListener() {
+      @Override
+      public void clicked(ModernClickEvent e) {
+        mHeatmap.setSpearman(mCheckSpearman.isSelected());
+      }
+    };
+
+    mCheckPearson.addClickListener(l);
+    mCheckSpearman.addClickListener(l);
+
+    setSize(840, 800);
+
+    UI.centerWindowToScreen(this);
+  }
+
+  /**
+   * Creates the ui.
+   */
+  private final void createUi() {
+    Box box = HBox.create();
+    box.add(mCheckPearson);
+    box.add(UI.createHGap(10));
+    box.add(mCheckSpearman);
+    box.add(UI.createHGap(20));
+    box.add(new ModernAutoSizeLabel(mResult.getNames().size() + " samples, "
+        + mResult.getBins() + " bins"));
+    box.setBorder(BorderService.getInstance().createBottomBorder(10));
+
+    mHeatmap = new CorrelationHeatmapPanel(mResult);
+
+    ModernComponent content = new ModernComponent();
+
+    content.setHeader(box);
+    content.setBody(mHeatmap);
+
+    setCard(content);
+  }
+}
@@ -0,0 +1,142 @@
+/**
+ * Copyright 2016 Antony Holmes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.columbia.rdf.htsview.tracks.correlation;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+
+import org.jebtk.modern.ModernComponent;
+import org.jebtk.modern.theme.ThemeService;
+
+/**
+ * Draws a correlation matrix as a heatmap with the samples in clustered
+ * order. Correlations run from blue at -1 through white at 0 to red at 1.
+ *
+ * @author Antony Holmes
+ */
+public class CorrelationHeatmapPanel extends ModernComponent {
+
+  /** The Constant serialVersionUID. */
+  private static final long serialVersionUID = 1L;
+
+  /** The Constant LABEL_WIDTH. */
+  private static final int LABEL_WIDTH = 200;
+
+  /** The Constant MAX_CELL_SIZE. */
+  private static final int MAX_CELL_SIZE = 32;
+
+  /** The Constant LINE_COLOR. */
+  private static final Color LINE_COLOR = ThemeService.getInstance()
+      .getColors().getGray(2);
+
+  /** The Constant NEGATIVE_COLOR. */
+  private static final Color NEGATIVE_COLOR = new Color(33, 102, 172);
+
+  /** The Constant POSITIVE_COLOR. */
+  private static final Color POSITIVE_COLOR = new Color(178, 24, 43);
+
+  /** The m result. */
+  private CorrelationResult mResult;
+
+  /** The m spearman. */
+  private boolean mSpearman = false;
+
+  /** The m order. */
+  private int[] mOrder;
+
+  /**
+   * Instantiates a new correlation heatmap panel.
+   *
+   * @param result the result
+   */
+  public CorrelationHeatmapPanel(CorrelationResult result) {
+    mResult = result;
+
+    setSpearman(false);
+  }
+
+  /**
+   * Show either the spearman or pearson correlation.
+   *
+   * @param spearman the new spearman
+   */
+  public void setSpearman(boolean spearman) {
+    mSpearman = spearman;
+    mOrder = mResult.getOrder(spearman);
+
+    repaint();
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see org.jebtk.modern.ModernWidget#drawForegroundAA(java.awt.Graphics2D)
+   */
+  @Override
+  public void drawForegroundAA(Graphics2D g2) {
+    int n = mOrder.length;
+
+    if (n == 0) {
+      return;
+    }
+
+    double[][] r = mResult.getMatrix(mSpearman);
+
+    int size = Math.min(MAX_CELL_SIZE,
+        Math.max(1,
+            Math.min((getWidth() - LABEL_WIDTH - DOUBLE_PADDING) / n,
+                (getHeight() - DOUBLE_PADDING) / n)));
+
+    int x = PADDING + LABEL_WIDTH;
+    int y = PADDING;
+
+    for (int i = 0; i < n; ++i) {
+      int row = mOrder[i];
+
+      for (int j = 0; j < n; ++j) {
+        g2.setColor(getColor(r[row][mOrder[j]]));
+        g2.fillRect(x + j * size, y + i * size, size, size);
+      }
+
+      if (size >= g2.getFontMetrics().getAscent()) {
+        g2.setColor(TEXT_COLOR);
+        g2.drawString(
+            truncate(g2, mResult.getNames().get(row), LABEL_WIDTH - PADDING),
+            PADDING,
+            y + i * size + (size + g2.getFontMetrics().getAscent()) / 2 - 1);
+      }
+    }
+
+    g2.setColor(LINE_COLOR);
+    g2.drawRect(x, y, n * size, n * size);
+  }
+
+  /**
+   * Returns the color of a correlation.
+   *
+   * @param v the correlation
+   * @return the color
+   */
+  private static Color getColor(double v) {
+    Color c = v < 0 ? NEGATIVE_COLOR : POSITIVE_COLOR;
+
+    double p = Math.min(1, Math.abs(v));
+
+    return new Color((int) (255 + (c.getRed() - 255) * p),
+        (int) (255 + (c.getGreen() - 255) * p),
+        (int) (255 + (c.getBlue() - 255) * p));
+  }
+}
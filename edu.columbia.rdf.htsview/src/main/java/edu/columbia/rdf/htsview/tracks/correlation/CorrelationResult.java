@@ -0,0 +1,232 @@
+/**
+ * Copyright 2016 Antony Holmes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.columbia.rdf.htsview.tracks.correlation;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jebtk.core.io.FileUtils;
+
+/**
+ * The pairwise Pearson and Spearman correlations of a set of samples.
+ *
+ * @author Antony Holmes
+ */
+public class CorrelationResult {
+
+  /** The m names. */
+  private final List<String> mNames;
+
+  /** The m pearson. */
+  private final double[][] mPearson;
+
+  /** The m spearman. */
+  private final double[][] mSpearman;
+
+  /** The m bins. */
+  private final long mBins;
+
+  /**
+   * Instantiates a new correlation result.
+   *
+   * @param names the names
+   * @param pearson the pearson
+   * @param spearman the spearman
+   * @param bins the number of bins correlated.
+   */
+  public CorrelationResult(List<String> names, double[][] pearson,
+      double[][] spearman, long bins) {
+    mNames = names;
+    mPearson = pearson;
+    mSpearman = spearman;
+    mBins = bins;
+  }
+
+  /**
+   * Gets the names.
+   *
+   * @return the names
+   */
+  public List<String> getNames() {
+    return mNames;
+  }
+
+  /**
+   * Gets the pearson correlation matrix.
+   *
+   * @return the pearson
+   */
+  public double[][] getPearson() {
+    return mPearson;
+  }
+
+  /**
+   * Gets the spearman correlation matrix.
+   *
+   * @return the spearman
+   */
+  public double[][] getSpearman() {
+    return mSpearman;
+  }
+
+  /**
+   * Gets the matrix of either correlation.
+   *
+   * @param spearman true for spearman.
+   * @return the matrix
+   */
+  public double[][] getMatrix(boolean spearman) {
+    return spearman ? mSpearman : mPearson;
+  }
+
+  /**
+   * Gets the number of bins correlated.
+   *
+   * @return the bins
+   */
+  public long getBins() {
+    return mBins;
+  }
+
+  /**
+   * Returns the order of the samples after average linkage hierarchical
+   * clustering with 1 - r as the distance, so that similar samples are
+   * adjacent.
+   *
+   * @param spearman true to cluster on the spearman correlation.
+   * @return the sample indices in clustered order.
+   */
+  public int[] getOrder(boolean spearman) {
+    return cluster(getMatrix(spearman));
+  }
+
+  /**
+   * Average linkage clustering of a correlation matrix.
+   *
+   * @param r the correlation matrix
+   * @return the leaf order
+   */
+  public static int[] cluster(double[][] r) {
+    int n = r.length;
+
+    double[][] d = new double[n][n];
+
+    List<List<Integer>> clusters = new ArrayList<List<Integer>>(n);
+
+    for (int i = 0; i < n; ++i) {
+      List<Integer> cluster = new ArrayList<Integer>();
+      cluster.add(i);
+      clusters.add(cluster);
+
+      for (int j = 0; j < n; ++j) {
+        d[i][j] = 1 - r[i][j];
+      }
+    }
+
+    boolean[] merged = new boolean[n];
+
+    for (int step = 1; step < n; ++step) {
+      int ba = -1;
+      int bb = -1;
+      double best = Double.MAX_VALUE;
+
+      for (int a = 0; a < n; ++a) {
+        if (merged[a]) {
+          continue;
+        }
+
+        for (int b = a + 1; b < n; ++b) {
+          if (!merged[b] && d[a][b] < best) {
+            best = d[a][b];
+            ba = a;
+            bb = b;
+          }
+        }
+      }
+
+      int na = clusters.get(ba).size();
+      int nb = clusters.get(bb).size();
+
+      // The merged cluster takes the place of a
+      for (int k = 0; k < n; ++k) {
+        if (!merged[k] && k != ba && k != bb) {
+          double v = (na * d[ba][k] + nb * d[bb][k]) / (na + nb);
+
+          d[ba][k] = v;
+          d[k][ba] = v;
+        }
+      }
+
+      clusters.get(ba).addAll(clusters.get(bb));
+      merged[bb] = true;
+    }
+
+    int[] ret = new int[n];
+
+    for (int i = 0; i < n; ++i) {
+      if (!merged[i]) {
+        List<Integer> order = clusters.get(i);
+
+        for (int j = 0; j < order.size(); ++j) {
+          ret[j] = order.get(j);
+        }
+
+        break;
+      }
+    }
+
+    return ret;
+  }
+
+  /**
+   * Write a correlation matrix as a tab delimited table in clustered order.
+   *
+   * @param file the file
+   * @param spearman true to write the spearman correlation.
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public void write(Path file, boolean spearman) throws IOException {
+    double[][] r = getMatrix(spearman);
+    int[] order = getOrder(spearman);
+
+    BufferedWriter writer = FileUtils.newBufferedWriter(file);
+
+    try {
+      writer.write(spearman ? "Spearman" : "Pearson");
+
+      for (int i : order) {
+        writer.write("\t" + mNames.get(i));
+      }
+
+      writer.newLine();
+
+      for (int i : order) {
+        writer.write(mNames.get(i));
+
+        for (int j : order) {
+          writer.write("\t" + r[i][j]);
+        }
+
+        writer.newLine();
+      }
+    } finally {
+      writer.close();
+    }
+  }
+}
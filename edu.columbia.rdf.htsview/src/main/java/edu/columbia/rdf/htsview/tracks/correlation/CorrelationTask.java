@@ -0,0 +1,75 @@
+/**
+ * Copyright 2016 Antony Holmes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.columbia.rdf.htsview.tracks.correlation;
+
+import javax.swing.SwingWorker;
+
+import edu.columbia.rdf.htsview.tracks.profile.ProfileListener;
+
+/**
+ * Runs a sample correlation off the event thread. Progress is reported as a
+ * percentage through the standard {@code progress} property.
+ *
+ * @author Antony Holmes
+ */
+public class CorrelationTask extends SwingWorker<CorrelationResult, Void>
+    implements ProfileListener {
+
+  /** The m correlation. */
+  private final SampleCorrelation mCorrelation;
+
+  /**
+   * Instantiates a new correlation task.
+   *
+   * @param correlation the correlation
+   */
+  public CorrelationTask(SampleCorrelation correlation) {
+    mCorrelation = correlation;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see javax.swing.SwingWorker#doInBackground()
+   */
+  @Override
+  protected CorrelationResult doInBackground() throws Exception {
+    return mCorrelation.run(this);
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see
+   * edu.columbia.rdf.htsview.tracks.profile.ProfileListener#progress(int,
+   * int)
+   */
+  @Override
+  public void progress(int done, int total) {
+    if (total > 0) {
+      setProgress(Math.min(100, done * 100 / total));
+    }
+  }
+
+  /**
+   * Cancel the correlation.
+   */
+  public void cancelCorrelation() {
+    mCorrelation.cancel();
+
+    cancel(false);
+  }
+}
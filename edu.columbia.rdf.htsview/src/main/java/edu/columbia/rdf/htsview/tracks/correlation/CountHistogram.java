@@ -0,0 +1,135 @@
+/**
+ * Copyright 2016 Antony Holmes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.columbia.rdf.htsview.tracks.correlation;
+
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+/**
+ * The frequency of each count value of a sample across the genome. Binned
+ * counts are small non-negative integers so the genome-wide rank of any bin
+ * can be recovered from the histogram alone, which lets the Spearman
+ * correlation be computed exactly without holding every bin in memory. Small
+ * values are counted in an array and the rare large values in a map.
+ *
+ * @author Antony Holmes
+ */
+public class CountHistogram {
+
+  /** Values below this are counted in the dense array. */
+  private static final int DENSE_SIZE = 16384;
+
+  /** The m dense. */
+  private final long[] mDense = new long[DENSE_SIZE];
+
+  /** The m sparse. */
+  private final TreeMap<Integer, Long> mSparse = new TreeMap<Integer, Long>();
+
+  /**
+   * Count a value.
+   *
+   * @param v the v
+   */
+  public void add(int v) {
+    if (v < 0) {
+      v = 0;
+    }
+
+    if (v < DENSE_SIZE) {
+      ++mDense[v];
+    } else {
+      Long c = mSparse.get(v);
+
+      mSparse.put(v, c != null ? c + 1 : 1);
+    }
+  }
+
+  /**
+   * Returns the mid rank of each value so that tied bins share the average
+   * of the ranks they span.
+   *
+   * @return the rank table
+   */
+  public RankTable ranks() {
+    double[] dense = new double[DENSE_SIZE];
+    TreeMap<Integer, Double> sparse = new TreeMap<Integer, Double>();
+
+    long cumulative = 0;
+
+    for (int v = 0; v < DENSE_SIZE; ++v) {
+      long c = mDense[v];
+
+      dense[v] = cumulative + (c + 1) / 2.0;
+
+      cumulative += c;
+    }
+
+    for (Entry<Integer, Long> e : mSparse.entrySet()) {
+      long c = e.getValue();
+
+      sparse.put(e.getKey(), cumulative + (c + 1) / 2.0);
+
+      cumulative += c;
+    }
+
+    return new RankTable(dense, sparse);
+  }
+
+  /**
+   * Maps count values to their genome-wide mid rank.
+   */
+  public static class RankTable {
+
+    /** The m dense. */
+    private final double[] mDense;
+
+    /** The m sparse. */
+    private final TreeMap<Integer, Double> mSparse;
+
+    /**
+     * Instantiates a new rank table.
+     *
+     * @param dense the dense
+     * @param sparse the sparse
+     */
+    private RankTable(double[] dense, TreeMap<Integer, Double> sparse) {
+      mDense = dense;
+      mSparse = sparse;
+    }
+
+    /**
+     * Returns the rank of a value.
+     *
+     * @param v the v
+     * @return the rank
+     */
+    public double rank(int v) {
+      if (v < 0) {
+        v = 0;
+      }
+
+      if (v < mDense.length) {
+        return mDense[v];
+      }
+
+      // Values not seen when the histogram was built take the rank of the
+      // nearest smaller value
+      Entry<Integer, Double> e = mSparse.floorEntry(v);
+
+      return e != null ? e.getValue() : mDense[mDense.length - 1];
+    }
+  }
+}
@@ -0,0 +1,146 @@
+/**
+ * Copyright 2016 Antony Holmes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.columbia.rdf.htsview.tracks.correlation;
+
+/**
+ * Running sums needed for the Pearson correlation of every pair of samples:
+ * the number of bins, the sum of each sample and the sum of the products of
+ * every pair, including each sample with itself.
+ *
+ * @author Antony Holmes
+ */
+public class PairSums {
+
+  /** The number of samples. */
+  private final int mSamples;
+
+  /** The number of bins. */
+  private long mN = 0;
+
+  /** The sum of each sample. */
+  private final double[] mSums;
+
+  /** Sum of products, upper triangle of a samples × samples matrix. */
+  private final double[] mProducts;
+
+  /**
+   * Instantiates a new pair sums.
+   *
+   * @param samples the samples
+   */
+  public PairSums(int samples) {
+    mSamples = samples;
+    mSums = new double[samples];
+    mProducts = new double[samples * samples];
+  }
+
+  /**
+   * Accumulate a range of bins. Each pair is summed over the whole range
+   * before moving to the next pair so the inner loop runs over contiguous
+   * memory.
+   *
+   * @param rows the values of each sample
+   * @param from the first bin
+   * @param to one past the last bin
+   */
+  public void add(double[][] rows, int from, int to) {
+    for (int a = 0; a < mSamples; ++a) {
+      double[] ra = rows[a];
+
+      double sum = 0;
+
+      for (int i = from; i < to; ++i) {
+        sum += ra[i];
+      }
+
+      mSums[a] += sum;
+
+      for (int b = a; b < mSamples; ++b) {
+        double[] rb = rows[b];
+
+        double product = 0;
+
+        for (int i = from; i < to; ++i) {
+          product += ra[i] * rb[i];
+        }
+
+        mProducts[a * mSamples + b] += product;
+      }
+    }
+
+    mN += to - from;
+  }
+
+  /**
+   * Add the sums of another set of bins to these sums.
+   *
+   * @param sums the sums
+   */
+  public void merge(PairSums sums) {
+    for (int i = 0; i < mSums.length; ++i) {
+      mSums[i] += sums.mSums[i];
+    }
+
+    for (int i = 0; i < mProducts.length; ++i) {
+      mProducts[i] += sums.mProducts[i];
+    }
+
+    mN += sums.mN;
+  }
+
+  /**
+   * Gets the number of bins summed.
+   *
+   * @return the n
+   */
+  public long getN() {
+    return mN;
+  }
+
+  /**
+   * Returns the Pearson correlation of every pair of samples. Pairs where
+   * either sample is constant have a correlation of zero.
+   *
+   * @return the correlation matrix
+   */
+  public double[][] correlation() {
+    double[][] ret = new double[mSamples][mSamples];
+
+    double n = mN;
+
+    for (int a = 0; a < mSamples; ++a) {
+      ret[a][a] = 1;
+
+      double va = n * mProducts[a * mSamples + a] - mSums[a] * mSums[a];
+
+      for (int b = a + 1; b < mSamples; ++b) {
+        double vb = n * mProducts[b * mSamples + b] - mSums[b] * mSums[b];
+
+        double cov = n * mProducts[a * mSamples + b] - mSums[a] * mSums[b];
+
+        double r = va > 0 && vb > 0 ? cov / Math.sqrt(va * vb) : 0;
+
+        // Rounding can push perfectly correlated samples just past 1
+        r = Math.max(-1, Math.min(1, r));
+
+        ret[a][b] = r;
+        ret[b][a] = r;
+      }
+    }
+
+    return ret;
+  }
+}
@@ -0,0 +1,483 @@
+/**
+ * Copyright 2016 Antony Holmes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.columbia.rdf.htsview.tracks.correlation;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+import org.jebtk.bioinformatics.genomic.Chromosome;
+import org.jebtk.bioinformatics.genomic.ChromosomeService;
+import org.jebtk.bioinformatics.genomic.Genome;
+import org.jebtk.bioinformatics.genomic.GenomicRegion;
+import org.jebtk.core.settings.SettingsService;
+import org.jebtk.core.tree.TreeNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import edu.columbia.rdf.edb.Sample;
+import edu.columbia.rdf.htsview.tracks.SampleAssembly;
+import edu.columbia.rdf.htsview.tracks.Track;
+import edu.columbia.rdf.htsview.tracks.genomic.Chromosomes;
+import edu.columbia.rdf.htsview.tracks.profile.ProfileListener;
+import edu.columbia.rdf.htsview.tracks.sample.SampleAssemblies;
+import edu.columbia.rdf.htsview.tracks.sample.SamplePlotTrack;
+
+/**
+ * Computes the genome-wide Pearson and Spearman correlation of every pair of
+ * samples from their binned counts, for example to check replicates. Each
+ * chromosome is streamed in chunks of bins so only one chunk of counts per
+ * sample is ever held in memory. A fork/join pool fetches the samples of a
+ * chunk in parallel and then splits the chunk into ranges of bins whose
+ * pairwise sums are computed in parallel and merged. Tiled assemblies are
+ * bypassed and each assembly is read by one thread at a time through
+ * {@link SampleAssemblies}.
+ *
+ * Spearman is the Pearson correlation of genome-wide ranks. Counts are
+ * integers, so the first pass also builds a histogram of the counts of each
+ * sample from which the mid rank of any count can be looked up, and a second
+ * pass sums the ranks. The result is exact, ties included, at the cost of
+ * reading the counts twice.
+ *
+ * @author Antony Holmes
+ */
+public class SampleCorrelation {
+
+  /** The Constant LOG. */
+  private static final Logger LOG = LoggerFactory
+      .getLogger(SampleCorrelation.class);
+
+  /** Bins per leaf of the fork/join sum. */
+  private static final int LEAF_BINS = 2048;
+
+  /** The m genome. */
+  private final Genome mGenome;
+
+  /** The m samples. */
+  private final List<Sample> mSamples = new ArrayList<Sample>();
+
+  /** The m assemblies. */
+  private final List<SampleAssembly> mAssemblies = new ArrayList<SampleAssembly>();
+
+  /** The m chromosomes. */
+  private final List<Chromosome> mChromosomes = new ArrayList<Chromosome>();
+
+  /** The m window. */
+  private int mWindow = SettingsService.getInstance()
+      .getInt("htsview.correlation.window");
+
+  /** The m threads. */
+  private int mThreads = SettingsService.getInstance()
+      .getInt("htsview.correlation.threads");
+
+  /** The m chunk bins. */
+  private int mChunkBins = SettingsService.getInstance()
+      .getInt("htsview.correlation.chunk-bins");
+
+  /** The m cancelled. */
+  private volatile boolean mCancelled = false;
+
+  /**
+   * Instantiates a new sample correlation.
+   *
+   * @param genome the genome
+   */
+  public SampleCorrelation(Genome genome) {
+    mGenome = genome;
+  }
+
+  /**
+   * Add a sample.
+   *
+   * @param sample the sample
+   * @param assembly the assembly
+   * @return the sample correlation
+   */
+  public SampleCorrelation addSample(Sample sample, SampleAssembly assembly) {
+    mSamples.add(sample);
+    mAssemblies.add(SampleAssemblies.getSource(assembly));
+
+    return this;
+  }
+
+  /**
+   * Add every sample track in a track tree, in tree order.
+   *
+   * @param root the root
+   * @return the sample correlation
+   */
+  public SampleCorrelation addTracks(TreeNode<Track> root) {
+    for (TreeNode<Track> node : root) {
+      if (node.getValue() instanceof SamplePlotTrack) {
+        SamplePlotTrack track = (SamplePlotTrack) node.getValue();
+
+        addSample(track.getSample(), track.getAssembly());
+      }
+
+      addTracks(node);
+    }
+
+    return this;
+  }
+
+  /**
+   * Restrict the correlation to a chromosome. If no chromosomes are added
+   * the numbered chromosomes plus X and Y of the genome are used.
+   *
+   * @param chr the chr
+   * @return the sample correlation
+   */
+  public SampleCorrelation addChromosome(Chromosome chr) {
+    mChromosomes.add(chr);
+
+    return this;
+  }
+
+  /**
+   * Sets the bin size.
+   *
+   * @param window the window
+   * @return the sample correlation
+   */
+  public SampleCorrelation setWindow(int window) {
+    mWindow = Math.max(1, window);
+
+    return this;
+  }
+
+  /**
+   * Sets the number of threads.
+   *
+   * @param threads the threads
+   * @return the sample correlation
+   */
+  public SampleCorrelation setThreads(int threads) {
+    mThreads = threads;
+
+    return this;
+  }
+
+  /**
+   * Stop the correlation.
+   */
+  public void cancel() {
+    mCancelled = true;
+  }
+
+  /**
+   * Checks if is cancelled.
+   *
+   * @return true, if is cancelled
+   */
+  public boolean isCancelled() {
+    return mCancelled;
+  }
+
+  /**
+   * Compute the correlations.
+   *
+   * @param listener the listener, may be null.
+   * @return the correlation result or null if cancelled.
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public CorrelationResult run(ProfileListener listener) throws IOException {
+    List<GenomicRegion> chunks = getChunks();
+
+    int samples = mSamples.size();
+
+    List<String> names = new ArrayList<String>(samples);
+
+    for (Sample sample : mSamples) {
+      names.add(sample.getName());
+    }
+
+    CountHistogram[] histograms = new CountHistogram[samples];
+
+    for (int s = 0; s < samples; ++s) {
+      histograms[s] = new CountHistogram();
+    }
+
+    long start = System.currentTimeMillis();
+
+    ForkJoinPool pool = new ForkJoinPool(Math.max(1, mThreads));
+
+    try {
+      // Pass 1: counts
+      PairSums counts = new PairSums(samples);
+
+      for (int c = 0; c < chunks.size() && !mCancelled; ++c) {
+        counts.merge(sum(pool, chunks.get(c), histograms, null));
+
+        if (listener != null) {
+          listener.progress(c + 1, chunks.size() * 2);
+        }
+      }
+
+      CountHistogram.RankTable[] ranks = new CountHistogram.RankTable[samples];
+
+      for (int s = 0; s < samples; ++s) {
+        ranks[s] = histograms[s].ranks();
+        histograms[s] = null;
+      }
+
+      // Pass 2: genome-wide ranks
+      PairSums rankSums = new PairSums(samples);
+
+      for (int c = 0; c < chunks.size() && !mCancelled; ++c) {
+        rankSums.merge(sum(pool, chunks.get(c), null, ranks));
+
+        if (listener != null) {
+          listener.progress(chunks.size() + c + 1, chunks.size() * 2);
+        }
+      }
+
+      if (mCancelled) {
+        return null;
+      }
+
+      LOG.info("Correlated {} samples over {} bins in {} ms.",
+          samples,
+          counts.getN(),
+          System.currentTimeMillis() - start);
+
+      return new CorrelationResult(names,
+          counts.correlation(),
+          rankSums.correlation(),
+          counts.getN());
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  /**
+   * Fetch a chunk of every sample and sum its pairs.
+   *
+   * @param pool the pool
+   * @param chunk the chunk
+   * @param histograms histograms to count into, or null.
+   * @param ranks ranks to convert counts to, or null to use the counts.
+   * @return the pair sums of the chunk.
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private PairSums sum(ForkJoinPool pool,
+      GenomicRegion chunk,
+      CountHistogram[] histograms,
+      CountHistogram.RankTable[] ranks) throws IOException {
+    int bins = SampleAssembly.getBin(chunk.getEnd(), mWindow)
+        - SampleAssembly.getBin(chunk.getStart(), mWindow) + 1;
+
+    double[][] rows = new double[mSamples.size()][bins];
+
+    try {
+      pool.invoke(new FetchTask(chunk, rows, histograms, ranks));
+
+      return pool.invoke(new SumTask(rows, 0, bins));
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  /**
+   * Split the chromosomes into chunks of whole bins.
+   *
+   * @return the chunks
+   */
+  private List<GenomicRegion> getChunks() {
+    List<Chromosome> chromosomes = mChromosomes.isEmpty()
+        ? Chromosomes.getChromosomes(mGenome)
+        : mChromosomes;
+
+    long length = (long) Math.max(1, mChunkBins) * mWindow;
+
+    List<GenomicRegion> ret = new ArrayList<GenomicRegion>();
+
+    for (Chromosome chr : chromosomes) {
+      int size = ChromosomeService.getInstance().size(mGenome, chr);
+
+      for (long s = 1; s <= size; s += length) {
+        ret.add(new GenomicRegion(chr, (int) s,
+            (int) Math.min(size, s + length - 1)));
+      }
+    }
+
+    return ret;
+  }
+
+  /**
+   * Fetches the counts of every sample in a chunk in parallel.
+   */
+  private class FetchTask extends RecursiveAction {
+
+    /** The Constant serialVersionUID. */
+    private static final long serialVersionUID = 1L;
+
+    /** The m chunk. */
+    private final GenomicRegion mChunk;
+
+    /** The m rows. */
+    private final double[][] mRows;
+
+    /** The m histograms. */
+    private final CountHistogram[] mHistograms;
+
+    /** The m ranks. */
+    private final CountHistogram.RankTable[] mRanks;
+
+    /**
+     * Instantiates a new fetch task.
+     *
+     * @param chunk the chunk
+     * @param rows the rows
+     * @param histograms the histograms
+     * @param ranks the ranks
+     */
+    public FetchTask(GenomicRegion chunk, double[][] rows,
+        CountHistogram[] histograms, CountHistogram.RankTable[] ranks) {
+      mChunk = chunk;
+      mRows = rows;
+      mHistograms = histograms;
+      mRanks = ranks;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.util.concurrent.RecursiveAction#compute()
+     */
+    @Override
+    protected void compute() {
+      List<ForkJoinTask<?>> tasks = new ArrayList<ForkJoinTask<?>>();
+
+      for (int s = 0; s < mRows.length; ++s) {
+        final int sample = s;
+
+        tasks.add(new RecursiveAction() {
+          private static final long serialVersionUID = 1L;
+
+          @Override
+          protected void compute() {
+            try {
+              fetch(sample);
+            } catch (IOException e) {
+              throw new UncheckedIOException(e);
+            }
+          }
+        });
+      }
+
+      invokeAll(tasks);
+    }
+
+    /**
+     * Fetch the counts of one sample into its row.
+     *
+     * @param s the sample index
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    private void fetch(int s) throws IOException {
+      int[] counts = SampleAssemblies.getCounts(mAssemblies.get(s),
+          mSamples.get(s),
+          mGenome,
+          mChunk,
+          mWindow);
+
+      double[] row = mRows[s];
+
+      int n = Math.min(counts.length, row.length);
+
+      // Bins missing from the end of a short array count as zero
+      for (int i = n; i < row.length; ++i) {
+        if (mHistograms != null) {
+          mHistograms[s].add(0);
+        }
+
+        row[i] = mRanks != null ? mRanks[s].rank(0) : 0;
+      }
+
+      for (int i = 0; i < n; ++i) {
+        if (mHistograms != null) {
+          mHistograms[s].add(counts[i]);
+        }
+
+        row[i] = mRanks != null ? mRanks[s].rank(counts[i]) : counts[i];
+      }
+    }
+  }
+
+  /**
+   * Sums the pairs of a range of bins, splitting the range until it is
+   * small enough to sum directly.
+   */
+  private static class SumTask extends RecursiveTask<PairSums> {
+
+    /** The Constant serialVersionUID. */
+    private static final long serialVersionUID = 1L;
+
+    /** The m rows. */
+    private final double[][] mRows;
+
+    /** The m from. */
+    private final int mFrom;
+
+    /** The m to. */
+    private final int mTo;
+
+    /**
+     * Instantiates a new sum task.
+     *
+     * @param rows the rows
+     * @param from the from
+     * @param to the to
+     */
+    public SumTask(double[][] rows, int from, int to) {
+      mRows = rows;
+      mFrom = from;
+      mTo = to;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.util.concurrent.RecursiveTask#compute()
+     */
+    @Override
+    protected PairSums compute() {
+      if (mTo - mFrom <= LEAF_BINS) {
+        PairSums sums = new PairSums(mRows.length);
+
+        sums.add(mRows, mFrom, mTo);
+
+        return sums;
+      }
+
+      int mid = (mFrom + mTo) >>> 1;
+
+      SumTask left = new SumTask(mRows, mFrom, mid);
+      left.fork();
+
+      PairSums ret = new SumTask(mRows, mid, mTo).compute();
+
+      ret.merge(left.join());
+
+      return ret;
+    }
+  }
+}
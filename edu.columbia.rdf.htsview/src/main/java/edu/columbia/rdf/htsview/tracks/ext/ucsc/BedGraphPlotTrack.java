@@ -16,6 +16,7 @@
 package edu.columbia.rdf.htsview.tracks.ext.ucsc;
 
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.List;
 
@@ -32,12 +33,15 @@ import org.jebtk.graphplot.figure.PlotStyle;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 
+import edu.columbia.rdf.htsview.memory.MemoryConsumer;
+import edu.columbia.rdf.htsview.memory.MemoryGovernor;
 import edu.columbia.rdf.htsview.tracks.GraphPlotTrack;
 import edu.columbia.rdf.htsview.tracks.TitleProperties;
 import edu.columbia.rdf.htsview.tracks.TrackSubFigure;
 import edu.columbia.rdf.htsview.tracks.TracksFigure;
 
-public class BedGraphPlotTrack extends GraphPlotTrack {
+public class BedGraphPlotTrack extends GraphPlotTrack
+    implements MemoryConsumer {
 
   /**
    * 
@@ -53,7 +57,23 @@ public class BedGraphPlotTrack extends GraphPlotTrack {
   /** The m style. */
   private PlotStyle mStyle = PlotStyle.FILLED_SMOOTH;
 
-  private BedGraph mBedGraph;
+  /**
+   * Approximate bytes of memory used per byte of file once the elements have
+   * been parsed.
+   */
+  private static final int BYTES_PER_FILE_BYTE = 4;
+
+  /** The data, null if released to save memory. */
+  private volatile BedGraph mBedGraph;
+
+  /** Held while the file is parsed again so it is only parsed once. */
+  private final Object mParseLock = new Object();
+
+  /** The name of the bedgraph within the file. */
+  private final String mBedGraphName;
+
+  /** The approximate bytes held by the data. */
+  private long mBytes = 0;
 
   private GenomicRegion mRegion;
 
@@ -67,8 +87,20 @@ public class BedGraphPlotTrack extends GraphPlotTrack {
    */
   public BedGraphPlotTrack(BedGraph bedGraph, Path file) {
     mBedGraph = bedGraph;
+    mBedGraphName = bedGraph.getName();
     
     mFile = file;
+
+    if (file != null) {
+      try {
+        mBytes = Files.size(file) * BYTES_PER_FILE_BYTE;
+      } catch (IOException e) {
+        mBytes = 0;
+      }
+    }
+
+    MemoryGovernor.getInstance().register(this,
+        MemoryGovernor.PRIORITY_TRACK);
   }
 
   /*
@@ -88,7 +120,7 @@ public class BedGraphPlotTrack extends GraphPlotTrack {
    */
   @Override
   public String getName() {
-    return mBedGraph.getName();
+    return mBedGraphName;
   }
 
   /*
@@ -117,7 +149,14 @@ public class BedGraphPlotTrack extends GraphPlotTrack {
    * @return the double
    */
   private double autoY(boolean normalize) {
-    List<GenomicElement> regions = mBedGraph.find(mRegion);
+    BedGraph bedGraph = mBedGraph;
+
+    // Released, so the track is not being drawn
+    if (bedGraph == null) {
+      return TracksFigure.MIN_MAX_Y;
+    }
+
+    List<GenomicElement> regions = bedGraph.find(mRegion);
 
     double y = 0;
 
@@ -183,10 +222,10 @@ public class BedGraphPlotTrack extends GraphPlotTrack {
   public TrackSubFigure createGraph(Genome genome,
       TitleProperties titlePosition) throws IOException {
     mSubFigure = BedGraphSubFigure
-        .create(mBedGraph.getName(), mStyle, titlePosition);
+        .create(mBedGraphName, mStyle, titlePosition);
 
     ((BedGraphPlot) mSubFigure.currentAxes().currentPlot())
-        .setBedGraph(mBedGraph);
+        .setBedGraph(getData());
 
     mSubFigure.currentAxes().setInternalSize(PLOT_SIZE);
 
@@ -223,6 +262,8 @@ public class BedGraphPlotTrack extends GraphPlotTrack {
       int height,
       int margin) throws IOException {
     mRegion = displayRegion;
+
+    getData();
     
     // Turn off updating so that we reduce drawing events
     // mPlot.setForwardCanvasEventsEnabled(false);
@@ -252,8 +293,92 @@ public class BedGraphPlotTrack extends GraphPlotTrack {
   public UCSCTrack getBedGraph(Genome genome,
       GenomicRegion displayRegion,
       int resolution,
-      boolean normalize) {
-    return mBedGraph.getBedGraph(displayRegion);
+      boolean normalize) throws IOException {
+    return getData().getBedGraph(displayRegion);
+  }
+
+  /**
+   * Returns the bedgraph, parsing it from the file again if it was released
+   * to save memory.
+   *
+   * @return the data
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private BedGraph getData() throws IOException {
+    // Anything using the data counts as active so it is not released
+    MemoryGovernor.getInstance().touch(this);
+
+    BedGraph ret = mBedGraph;
+
+    if (ret != null) {
+      return ret;
+    }
+
+    // Parse without holding the lock of the track so that the memory
+    // governor and the painting thread are not blocked by the file
+    synchronized (mParseLock) {
+      ret = mBedGraph;
+
+      if (ret != null) {
+        return ret;
+      }
+
+      for (BedGraph bedGraph : BedGraph.parse(mFile)) {
+        if (bedGraph.getName().equals(mBedGraphName)) {
+          ret = bedGraph;
+
+          break;
+        }
+      }
+
+      if (ret == null) {
+        throw new IOException(mBedGraphName + " is no longer in " + mFile);
+      }
+
+      synchronized (this) {
+        mBedGraph = ret;
+      }
+    }
+
+    if (mSubFigure != null) {
+      ((BedGraphPlot) mSubFigure.currentAxes().currentPlot())
+          .setBedGraph(ret);
+    }
+
+    MemoryGovernor.getInstance().check();
+
+    return ret;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see edu.columbia.rdf.htsview.memory.MemoryConsumer#getBytes()
+   */
+  @Override
+  public long getBytes() {
+    return mBedGraph != null ? mBytes : 0;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see edu.columbia.rdf.htsview.memory.MemoryConsumer#release(long)
+   */
+  @Override
+  public synchronized long release(long bytes) {
+    if (mBedGraph == null || mFile == null) {
+      return 0;
+    }
+
+    mBedGraph = null;
+
+    if (mSubFigure != null) {
+      ((BedGraphPlot) mSubFigure.currentAxes().currentPlot())
+          .setBedGraph(null);
+    }
+
+    return mBytes;
   }
 
   /*
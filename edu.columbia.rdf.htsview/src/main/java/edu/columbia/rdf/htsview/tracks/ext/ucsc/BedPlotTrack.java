@@ -16,6 +16,7 @@
 package edu.columbia.rdf.htsview.tracks.ext.ucsc;
 
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 
 import org.jebtk.bioinformatics.ext.ucsc.Bed;
@@ -31,6 +32,8 @@ import org.jebtk.modern.window.ModernWindow;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 
+import edu.columbia.rdf.htsview.memory.MemoryConsumer;
+import edu.columbia.rdf.htsview.memory.MemoryGovernor;
 import edu.columbia.rdf.htsview.tracks.GraphPlotTrack;
 import edu.columbia.rdf.htsview.tracks.TitleProperties;
 import edu.columbia.rdf.htsview.tracks.TrackDisplayMode;
@@ -40,7 +43,7 @@ import edu.columbia.rdf.htsview.tracks.genomic.GenomicElementsSubFigure;
 /**
  * The Class BedPlotTrack.
  */
-public class BedPlotTrack extends GraphPlotTrack {
+public class BedPlotTrack extends GraphPlotTrack implements MemoryConsumer {
 
   /**
    * 
@@ -52,6 +55,9 @@ public class BedPlotTrack extends GraphPlotTrack {
 
   private UCSCTrack mUcsc;
 
+  /** The approximate bytes held by the elements. */
+  private long mBytes = 0;
+
   /** The Constant BAR_HEIGHT. */
   public static final int BAR_HEIGHT = 20;
 
@@ -106,6 +112,18 @@ public class BedPlotTrack extends GraphPlotTrack {
     mUcsc = bed;
 
     mFile = file;
+
+    if (file != null) {
+      try {
+        // Parsed elements take roughly four times the space of the text
+        mBytes = Files.size(file) * 4;
+      } catch (IOException e) {
+        mBytes = 0;
+      }
+    }
+
+    MemoryGovernor.getInstance().register(this,
+        MemoryGovernor.PRIORITY_TRACK);
   }
 
   /*
@@ -190,6 +208,8 @@ public class BedPlotTrack extends GraphPlotTrack {
       int width,
       int height,
       int margin) throws IOException {
+    MemoryGovernor.getInstance().touch(this);
+
     // mPlot.setForwardCanvasEventsEnabled(false);
     mSubFigure.update(genome, displayRegion, resolution, width, height, margin);
     // mPlot.setForwardCanvasEventsEnabled(true);
@@ -197,6 +217,27 @@ public class BedPlotTrack extends GraphPlotTrack {
     return mSubFigure;
   }
 
+  /*
+   * (non-Javadoc)
+   * 
+   * @see edu.columbia.rdf.htsview.memory.MemoryConsumer#getBytes()
+   */
+  @Override
+  public long getBytes() {
+    return mBytes;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see edu.columbia.rdf.htsview.memory.MemoryConsumer#release(long)
+   */
+  @Override
+  public long release(long bytes) {
+    // The elements are shared with the sub figure so are only accounted for
+    return 0;
+  }
+
   /*
    * (non-Javadoc)
    * 
@@ -0,0 +1,85 @@
+/**
+ * Copyright 2016 Antony Holmes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.columbia.rdf.htsview.tracks.genomic;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jebtk.bioinformatics.genomic.Chromosome;
+import org.jebtk.bioinformatics.genomic.ChromosomeService;
+import org.jebtk.bioinformatics.genomic.Genome;
+
+/**
+ * Enumerates the chromosomes genome wide analyses run over.
+ *
+ * @author Antony Holmes
+ */
+public final class Chromosomes {
+
+  /**
+   * Instantiates a new chromosomes.
+   */
+  private Chromosomes() {
+    // Do nothing
+  }
+
+  /**
+   * Returns the numbered chromosomes of a genome followed by X and Y.
+   *
+   * @param genome the genome
+   * @return the chromosomes
+   */
+  public static List<Chromosome> getChromosomes(Genome genome) {
+    List<Chromosome> ret = new ArrayList<Chromosome>();
+
+    for (int i = 1;; ++i) {
+      Chromosome chr = getChromosome(genome, "chr" + i);
+
+      if (chr == null) {
+        break;
+      }
+
+      ret.add(chr);
+    }
+
+    for (String name : new String[] { "chrX", "chrY" }) {
+      Chromosome chr = getChromosome(genome, name);
+
+      if (chr != null) {
+        ret.add(chr);
+      }
+    }
+
+    return ret;
+  }
+
+  /**
+   * Look up a chromosome of a genome.
+   *
+   * @param genome the genome
+   * @param name the name
+   * @return the chromosome or null if the genome does not have it.
+   */
+  private static Chromosome getChromosome(Genome genome, String name) {
+    Chromosome chr = ChromosomeService.getInstance().chr(genome, name);
+
+    if (chr == null || ChromosomeService.getInstance().size(genome, chr) < 1) {
+      return null;
+    }
+
+    return chr;
+  }
+}
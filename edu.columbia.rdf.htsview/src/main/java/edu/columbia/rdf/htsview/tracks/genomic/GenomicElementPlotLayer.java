@@ -35,6 +35,7 @@ import org.jebtk.graphplot.figure.SubFigure;
 import org.jebtk.modern.ModernWidget;
 import org.jebtk.modern.graphics.DrawingContext;
 
+import edu.columbia.rdf.htsview.metrics.Metrics;
 import edu.columbia.rdf.htsview.tracks.TrackDisplayMode;
 import edu.columbia.rdf.htsview.tracks.ext.ucsc.BedPlotTrack;
 
@@ -112,6 +113,27 @@ public class GenomicElementPlotLayer extends AxesClippedLayer {
       Figure figure,
       SubFigure subFigure,
       Axes axes) {
+    long start = System.nanoTime();
+
+    drawLayer(g2, context, figure, subFigure, axes);
+
+    Metrics.getInstance().timer("paint.GenomicElementPlotLayer").stop(start);
+  }
+
+  /**
+   * Draw the layer.
+   *
+   * @param g2 the g 2
+   * @param context the context
+   * @param figure the figure
+   * @param subFigure the sub figure
+   * @param axes the axes
+   */
+  private void drawLayer(Graphics2D g2,
+      DrawingContext context,
+      Figure figure,
+      SubFigure subFigure,
+      Axes axes) {
 
     if (CollectionUtils.isNullOrEmpty(mElements)) {
       return;
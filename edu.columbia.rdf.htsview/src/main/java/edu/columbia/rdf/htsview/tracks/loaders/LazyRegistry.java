@@ -0,0 +1,214 @@
+/**
+ * Copyright 2016 Antony Holmes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.columbia.rdf.htsview.tracks.loaders;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import edu.columbia.rdf.htsview.metrics.StartupProfile;
+
+/**
+ * Maps keys, such as file extensions or track types, to implementations
+ * that are only created when first requested. Mappings are read from every
+ * {@code META-INF/htsview/<index>} resource on the classpath, so a jar can
+ * contribute loaders simply by shipping an index. Each line of an index is
+ * of the form {@code key=fully.qualified.ClassName}; blank lines and lines
+ * starting with {@code #} are ignored. Implementations must have a public
+ * no argument constructor.
+ *
+ * @author Antony Holmes
+ * @param <T> the type of the implementations
+ */
+public class LazyRegistry<T> {
+
+  /** The Constant LOG. */
+  private static final Logger LOG = LoggerFactory
+      .getLogger(LazyRegistry.class);
+
+  /** The Constant DIR containing the indexes. */
+  private static final String DIR = "META-INF/htsview/";
+
+  /** The m type. */
+  private final Class<T> mType;
+
+  /** Class names keyed by key. */
+  private final Map<String, String> mClassMap = new HashMap<String, String>();
+
+  /** Implementations created so far keyed by key. */
+  private final Map<String, T> mInstanceMap = new HashMap<String, T>();
+
+  /**
+   * Instantiates a new lazy registry.
+   *
+   * @param type the type of the implementations
+   * @param index the name of the index resources
+   */
+  public LazyRegistry(Class<T> type, String index) {
+    mType = type;
+
+    try {
+      readIndexes(index);
+    } catch (IOException e) {
+      LOG.warn("Could not read {} index: {}", index, e.getMessage());
+    }
+
+    StartupProfile.getInstance().mark("Read " + index + " index");
+  }
+
+  /**
+   * Read every index resource with a given name.
+   *
+   * @param index the index
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private void readIndexes(String index) throws IOException {
+    ClassLoader loader = mType.getClassLoader();
+
+    Enumeration<URL> urls = loader.getResources(DIR + index);
+
+    while (urls.hasMoreElements()) {
+      URL url = urls.nextElement();
+
+      BufferedReader reader = new BufferedReader(
+          new InputStreamReader(url.openStream(), StandardCharsets.UTF_8));
+
+      try {
+        String line;
+
+        while ((line = reader.readLine()) != null) {
+          line = line.trim();
+
+          if (line.length() == 0 || line.startsWith("#")) {
+            continue;
+          }
+
+          int i = line.indexOf('=');
+
+          if (i < 1) {
+            LOG.warn("Ignoring malformed line in {}: {}", url, line);
+
+            continue;
+          }
+
+          register(line.substring(0, i).trim(), line.substring(i + 1).trim());
+        }
+      } finally {
+        reader.close();
+      }
+    }
+  }
+
+  /**
+   * Register the class implementing a key. The class is not loaded until
+   * the key is requested.
+   *
+   * @param key the key
+   * @param className the class name
+   */
+  public synchronized void register(String key, String className) {
+    mClassMap.put(key, className);
+    mInstanceMap.remove(key);
+  }
+
+  /**
+   * Register an existing implementation.
+   *
+   * @param key the key
+   * @param instance the instance
+   */
+  public synchronized void register(String key, T instance) {
+    mClassMap.remove(key);
+    mInstanceMap.put(key, instance);
+  }
+
+  /**
+   * Returns the implementation of a key, creating it if necessary.
+   *
+   * @param key the key
+   * @return the implementation or null if there is no implementation or it
+   *         could not be created.
+   */
+  public synchronized T get(String key) {
+    T ret = mInstanceMap.get(key);
+
+    if (ret != null) {
+      return ret;
+    }
+
+    String className = mClassMap.get(key);
+
+    if (className == null) {
+      return null;
+    }
+
+    long start = System.currentTimeMillis();
+
+    try {
+      ret = Class.forName(className, true, mType.getClassLoader())
+          .asSubclass(mType).newInstance();
+    } catch (ReflectiveOperationException | ClassCastException e) {
+      LOG.warn("Could not create {} for {}: {}", className, key, e.toString());
+
+      // Do not keep trying a broken mapping
+      mClassMap.remove(key);
+
+      return null;
+    }
+
+    LOG.info("Created {} for {} in {} ms.",
+        className,
+        key,
+        System.currentTimeMillis() - start);
+
+    mInstanceMap.put(key, ret);
+
+    return ret;
+  }
+
+  /**
+   * Returns true if a key has an implementation, without creating it.
+   *
+   * @param key the key
+   * @return true, if successful
+   */
+  public synchronized boolean contains(String key) {
+    return mInstanceMap.containsKey(key) || mClassMap.containsKey(key);
+  }
+
+  /**
+   * Gets the registered keys.
+   *
+   * @return the keys in sorted order.
+   */
+  public synchronized Set<String> getKeys() {
+    Set<String> ret = new TreeSet<String>(mClassMap.keySet());
+
+    ret.addAll(mInstanceMap.keySet());
+
+    return ret;
+  }
+}
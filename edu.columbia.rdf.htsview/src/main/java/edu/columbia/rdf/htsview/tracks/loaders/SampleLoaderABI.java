@@ -22,6 +22,7 @@ import org.jebtk.core.tree.TreeNode;
 import org.jebtk.modern.window.ModernWindow;
 
 import edu.columbia.rdf.htsview.ext.abi.ABITrace;
+import edu.columbia.rdf.htsview.ext.abi.ABITraceCache;
 import edu.columbia.rdf.htsview.tracks.Track;
 import edu.columbia.rdf.htsview.tracks.abi.ABIPlotTrack;
 
@@ -62,7 +63,7 @@ public class SampleLoaderABI extends SampleLoaderFS {
   public Track openSample(ModernWindow parent, Path file, TreeNode<Track> root)
       throws IOException {
 
-    ABITrace trace = ABITrace.parse(file);
+    ABITrace trace = ABITraceCache.getInstance().get(file);
 
     Track ret = load(new ABIPlotTrack(trace), root);
 
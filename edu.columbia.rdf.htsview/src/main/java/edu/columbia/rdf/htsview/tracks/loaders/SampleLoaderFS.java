@@ -23,6 +23,7 @@ import org.jebtk.core.tree.TreeNode;
 import edu.columbia.rdf.edb.Sample;
 import edu.columbia.rdf.htsview.tracks.SampleAssembly;
 import edu.columbia.rdf.htsview.tracks.Track;
+import edu.columbia.rdf.htsview.tracks.sample.CoveragePlotTrack;
 import edu.columbia.rdf.htsview.tracks.sample.ReadsFsPlotTrack;
 import edu.columbia.rdf.htsview.tracks.sample.SampleFsPlotTrack;
 
@@ -98,4 +99,36 @@ public abstract class SampleLoaderFS extends SampleLoader {
     return new ReadsFsPlotTrack(sample, assembly, metaFile);
   }
 
+  /**
+   * Open coverage fs.
+   *
+   * @param sample the sample
+   * @param assembly the assembly
+   * @param metaFile the meta file
+   * @param root the root
+   * @return the track
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public Track openCoverageFs(Sample sample,
+      SampleAssembly assembly,
+      Path metaFile,
+      TreeNode<Track> root) throws IOException {
+    return load(sample, createCoverageFs(sample, assembly, metaFile), root);
+  }
+
+  /**
+   * Creates the coverage fs.
+   *
+   * @param sample the sample
+   * @param assembly the assembly
+   * @param metaFile the meta file
+   * @return the coverage plot track
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public CoveragePlotTrack createCoverageFs(Sample sample,
+      SampleAssembly assembly,
+      Path metaFile) throws IOException {
+    return new CoveragePlotTrack(sample, assembly, metaFile);
+  }
+
 }
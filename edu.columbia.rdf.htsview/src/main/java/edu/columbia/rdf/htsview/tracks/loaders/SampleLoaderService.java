@@ -17,9 +17,7 @@ package edu.columbia.rdf.htsview.tracks.loaders;
 
 import java.io.IOException;
 import java.nio.file.Path;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 import org.jebtk.core.collections.CollectionUtils;
 import org.jebtk.core.io.PathUtils;
@@ -30,6 +28,9 @@ import edu.columbia.rdf.htsview.tracks.Track;
 
 /**
  * The Class SampleLoaderService.
+ * 
+ * Loaders are listed by file extension in {@code META-INF/htsview/loaders}
+ * index resources and are only created when a file they handle is opened.
  */
 public class SampleLoaderService {
 
@@ -51,8 +52,9 @@ public class SampleLoaderService {
     return SampleLoaderLoader.INSTANCE;
   }
 
-  /** The m parser map. */
-  private Map<String, SampleLoader> mParserMap = new HashMap<String, SampleLoader>();
+  /** The m loaders. */
+  private final LazyRegistry<SampleLoader> mLoaders = new LazyRegistry<SampleLoader>(
+      SampleLoader.class, "loaders");
 
   /**
    * Instantiates a new sample loader service.
@@ -77,7 +79,17 @@ public class SampleLoaderService {
    * @param parser the parser
    */
   private void register(String type, SampleLoader parser) {
-    mParserMap.put(type, parser);
+    mLoaders.register(type, parser);
+  }
+
+  /**
+   * Register the class of a loader without creating it.
+   *
+   * @param ext the file extension
+   * @param className the class name
+   */
+  public void register(String ext, String className) {
+    mLoaders.register(ext, className);
   }
 
   /**
@@ -87,7 +99,7 @@ public class SampleLoaderService {
    * @return the sample loader
    */
   public SampleLoader get(String type) {
-    return mParserMap.get(type);
+    return mLoaders.get(type);
   }
 
   /**
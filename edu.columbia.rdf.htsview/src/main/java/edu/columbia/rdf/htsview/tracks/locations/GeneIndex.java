@@ -0,0 +1,187 @@
+/**
+ * Copyright 2016 Antony Holmes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.columbia.rdf.htsview.tracks.locations;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import org.jebtk.bioinformatics.genomic.Chromosome;
+import org.jebtk.bioinformatics.genomic.ChromosomeService;
+import org.jebtk.bioinformatics.genomic.Genome;
+import org.jebtk.bioinformatics.genomic.GenomicRegion;
+import org.jebtk.core.text.TextUtils;
+
+/**
+ * In memory index of the gene symbols and transcript ids of a genome to
+ * their coordinates, with a prefix trie of the names for autocompletion.
+ * Lookups ignore case.
+ *
+ * @author Antony Holmes
+ */
+public class GeneIndex {
+
+  /** The m genome. */
+  private final Genome mGenome;
+
+  /** The m regions keyed by upper case name. */
+  private final Map<String, GenomicRegion> mRegions = new HashMap<String, GenomicRegion>();
+
+  /** The m trie. */
+  private final PrefixTrie mTrie = new PrefixTrie();
+
+  /**
+   * Instantiates a new gene index.
+   *
+   * @param genome the genome
+   */
+  public GeneIndex(Genome genome) {
+    mGenome = genome;
+  }
+
+  /**
+   * Gets the genome.
+   *
+   * @return the genome
+   */
+  public Genome getGenome() {
+    return mGenome;
+  }
+
+  /**
+   * Add a name to the index. If the name is already present on the same
+   * chromosome, for example a symbol with several transcripts, its region
+   * is extended to cover both.
+   *
+   * @param name the name
+   * @param region the region
+   */
+  public synchronized void add(String name, GenomicRegion region) {
+    String key = name.toUpperCase();
+
+    GenomicRegion current = mRegions.get(key);
+
+    if (current != null) {
+      if (!current.getChr().equals(region.getChr())) {
+        return;
+      }
+
+      region = new GenomicRegion(current.getChr(),
+          Math.min(current.getStart(), region.getStart()),
+          Math.max(current.getEnd(), region.getEnd()));
+    } else {
+      mTrie.add(name);
+    }
+
+    mRegions.put(key, region);
+  }
+
+  /**
+   * Find the region of a symbol or transcript id.
+   *
+   * @param name the name
+   * @return the region or null if the name is not in the index.
+   */
+  public synchronized GenomicRegion find(String name) {
+    return mRegions.get(name.toUpperCase());
+  }
+
+  /**
+   * Returns up to max names beginning with a prefix.
+   *
+   * @param prefix the prefix
+   * @param max the max
+   * @return the list
+   */
+  public synchronized List<String> complete(String prefix, int max) {
+    return mTrie.complete(prefix, max);
+  }
+
+  /**
+   * Returns the number of names in the index.
+   *
+   * @return the int
+   */
+  public synchronized int size() {
+    return mTrie.size();
+  }
+
+  /**
+   * Load a UCSC refFlat file, optionally gzipped, indexing both the gene
+   * symbol and transcript id of each line. The stream is closed once read.
+   *
+   * @param genome the genome
+   * @param name the name of the file, used to detect gzipped files.
+   * @param in the stream
+   * @return the gene index
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public static GeneIndex parseRefFlat(Genome genome, String name,
+      InputStream in) throws IOException {
+    GeneIndex ret = new GeneIndex(genome);
+
+    if (name.endsWith(".gz")) {
+      in = new GZIPInputStream(in);
+    }
+
+    BufferedReader reader = new BufferedReader(
+        new InputStreamReader(in, StandardCharsets.UTF_8));
+
+    // Chromosomes are shared by many genes
+    Map<String, Chromosome> chrs = new HashMap<String, Chromosome>();
+
+    String line;
+
+    try {
+      while ((line = reader.readLine()) != null) {
+        if (line.startsWith("#")) {
+          continue;
+        }
+
+        List<String> tokens = TextUtils.tabSplit(line);
+
+        if (tokens.size() < 6) {
+          continue;
+        }
+
+        Chromosome chr = chrs.get(tokens.get(2));
+
+        if (chr == null) {
+          chr = ChromosomeService.getInstance().chr(genome, tokens.get(2));
+          chrs.put(tokens.get(2), chr);
+        }
+
+        // refFlat coordinates are zero based, half open
+        GenomicRegion region = new GenomicRegion(chr,
+            Integer.parseInt(tokens.get(4)) + 1,
+            Integer.parseInt(tokens.get(5)));
+
+        ret.add(tokens.get(0), region);
+        ret.add(tokens.get(1), region);
+      }
+    } finally {
+      reader.close();
+    }
+
+    return ret;
+  }
+}
@@ -0,0 +1,316 @@
+/**
+ * Copyright 2016 Antony Holmes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.columbia.rdf.htsview.tracks.locations;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.jebtk.bioinformatics.genomic.GenesService;
+import org.jebtk.bioinformatics.genomic.Genome;
+import org.jebtk.bioinformatics.genomic.GenomicRegion;
+import org.jebtk.bioinformatics.genomic.GenomicType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Resolves gene symbols and transcript ids to coordinates. The index of a
+ * genome is built on a background thread from a refFlat file on the class
+ * path, {@code /res/genes/<assembly>.refFlat.txt[.gz]}. Until the index is
+ * ready, completions are empty and lookups go to the gene database. Names
+ * not in the index fall back to the gene database and the answer, found or
+ * not, is remembered so each name is only ever looked up once.
+ *
+ * @author Antony Holmes
+ */
+public class GeneIndexService {
+
+  /** The Constant LOG. */
+  private static final Logger LOG = LoggerFactory
+      .getLogger(GeneIndexService.class);
+
+  /**
+   * The Class GeneIndexServiceLoader.
+   */
+  private static class GeneIndexServiceLoader {
+
+    /** The Constant INSTANCE. */
+    private static final GeneIndexService INSTANCE = new GeneIndexService();
+  }
+
+  /**
+   * Gets the single instance of GeneIndexService.
+   *
+   * @return single instance of GeneIndexService
+   */
+  public static GeneIndexService getInstance() {
+    return GeneIndexServiceLoader.INSTANCE;
+  }
+
+  /** The class path folder of the refFlat files. */
+  public static final String RES_DIR = "/res/genes/";
+
+  /** The m indexes, keyed by assembly. */
+  private final Map<String, Future<GeneIndex>> mIndexes = new HashMap<String, Future<GeneIndex>>();
+
+  /** Builds indexes one at a time off the event thread. */
+  private final ExecutorService mExecutor = Executors
+      .newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+          Thread thread = new Thread(r, "htsview-gene-index");
+
+          thread.setDaemon(true);
+
+          return thread;
+        }
+      });
+
+  /** Names the gene database could not find. */
+  private final Set<String> mMissing = Collections
+      .synchronizedSet(new HashSet<String>());
+
+  /**
+   * Instantiates a new gene index service.
+   */
+  private GeneIndexService() {
+    // Do nothing
+  }
+
+  /**
+   * Start building the index of a genome in the background, if it is not
+   * already built or being built.
+   *
+   * @param genome the genome
+   */
+  public void load(Genome genome) {
+    getTask(genome);
+  }
+
+  /**
+   * Gets the task building the index of a genome, starting it if necessary.
+   *
+   * @param genome the genome
+   * @return the task
+   */
+  private synchronized Future<GeneIndex> getTask(final Genome genome) {
+    Future<GeneIndex> ret = mIndexes.get(genome.getAssembly());
+
+    if (ret == null) {
+      ret = mExecutor.submit(new Callable<GeneIndex>() {
+        @Override
+        public GeneIndex call() {
+          return build(genome);
+        }
+      });
+
+      mIndexes.put(genome.getAssembly(), ret);
+    }
+
+    return ret;
+  }
+
+  /**
+   * Gets the index of a genome, waiting for it to be built if necessary.
+   * This should not be called on the event thread.
+   *
+   * @param genome the genome
+   * @return the index
+   */
+  public GeneIndex getIndex(Genome genome) {
+    try {
+      return getTask(genome).get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException e) {
+      LOG.warn("Could not build gene index of {}: {}",
+          genome,
+          e.getCause().getMessage());
+    }
+
+    return null;
+  }
+
+  /**
+   * Gets the index of a genome if it has been built, without waiting.
+   *
+   * @param genome the genome
+   * @return the index or null if the index is not ready.
+   */
+  private GeneIndex getReadyIndex(Genome genome) {
+    Future<GeneIndex> task = getTask(genome);
+
+    return task.isDone() ? getIndex(genome) : null;
+  }
+
+  /**
+   * Build the index of a genome from its refFlat file. If there is no
+   * refFlat file, an empty index is returned which is filled in by database
+   * lookups.
+   *
+   * @param genome the genome
+   * @return the gene index
+   */
+  private static GeneIndex build(Genome genome) {
+    long start = System.currentTimeMillis();
+
+    for (String ext : new String[] { ".refFlat.txt.gz", ".refFlat.txt" }) {
+      String name = RES_DIR + genome.getAssembly() + ext;
+
+      InputStream in = GeneIndexService.class.getResourceAsStream(name);
+
+      if (in != null) {
+        try {
+          GeneIndex ret = GeneIndex.parseRefFlat(genome, name, in);
+
+          LOG.info("Indexed {} gene names from {} in {} ms.",
+              ret.size(),
+              name,
+              System.currentTimeMillis() - start);
+
+          return ret;
+        } catch (IOException e) {
+          LOG.warn("Could not read gene index {}: {}", name, e.getMessage());
+        }
+      }
+    }
+
+    LOG.info("No gene index for {}, names will be looked up.",
+        genome.getAssembly());
+
+    return new GeneIndex(genome);
+  }
+
+  /**
+   * Find the region of a gene symbol or transcript id.
+   *
+   * @param genome the genome
+   * @param name the name
+   * @return the region or null if the name is unknown.
+   */
+  public GenomicRegion find(Genome genome, String name) {
+    GeneIndex index = getReadyIndex(genome);
+
+    GenomicRegion ret = index != null ? index.find(name) : null;
+
+    if (ret != null) {
+      return ret;
+    }
+
+    String key = genome.getAssembly() + ":" + name.toUpperCase();
+
+    if (mMissing.contains(key)) {
+      return null;
+    }
+
+    ret = lookup(genome, name);
+
+    if (ret != null) {
+      if (index != null) {
+        index.add(name, ret);
+      }
+    } else {
+      mMissing.add(key);
+    }
+
+    return ret;
+  }
+
+  /**
+   * Look up a name in the first gene database of a genome.
+   *
+   * @param genome the genome
+   * @param name the name
+   * @return the genomic region
+   */
+  private static GenomicRegion lookup(Genome genome, String name) {
+    Iterator<Genome> dbs = GenesService.getInstance()
+        .getGeneDbs(genome.getAssembly()).iterator();
+
+    if (!dbs.hasNext()) {
+      return null;
+    }
+
+    // Pick the first (essentially at random).
+    Genome g = dbs.next();
+
+    try {
+      return GenesService.getInstance().getGenes(g)
+          .getElement(g, name, GenomicType.TRANSCRIPT);
+    } catch (IOException e) {
+      LOG.warn("Could not look up {}: {}", name, e.getMessage());
+    }
+
+    return null;
+  }
+
+  /**
+   * Resolve a list of names. The returned map is in the order of the names
+   * and contains null for any that could not be found. This waits for the
+   * index so should not be called on the event thread.
+   *
+   * @param genome the genome
+   * @param names the names
+   * @return the map
+   */
+  public Map<String, GenomicRegion> resolve(Genome genome,
+      List<String> names) {
+    Map<String, GenomicRegion> ret = new LinkedHashMap<String, GenomicRegion>();
+
+    getIndex(genome);
+
+    for (String name : names) {
+      if (!ret.containsKey(name)) {
+        ret.put(name, find(genome, name));
+      }
+    }
+
+    return ret;
+  }
+
+  /**
+   * Returns up to max gene names beginning with a prefix. This never waits,
+   * so is safe to call on the event thread; if the index is still being
+   * built the list is empty.
+   *
+   * @param genome the genome
+   * @param prefix the prefix
+   * @param max the max
+   * @return the list
+   */
+  public List<String> complete(Genome genome, String prefix, int max) {
+    GeneIndex index = getReadyIndex(genome);
+
+    if (index == null) {
+      return Collections.emptyList();
+    }
+
+    return index.complete(prefix, max);
+  }
+}
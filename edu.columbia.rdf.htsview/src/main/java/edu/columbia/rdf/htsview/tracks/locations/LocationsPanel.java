@@ -18,29 +18,30 @@ package edu.columbia.rdf.htsview.tracks.locations;
 import java.awt.event.ActionEvent;
 import java.awt.event.InputEvent;
 import java.awt.event.KeyEvent;
-import java.io.IOException;
+import java.awt.event.KeyListener;
 import java.nio.file.Path;
 import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map.Entry;
 import java.util.Set;
 
 import javax.swing.AbstractAction;
 import javax.swing.Box;
 import javax.swing.KeyStroke;
+import javax.swing.SwingWorker;
 
 import org.jebtk.bioinformatics.genomic.Chromosome;
 import org.jebtk.bioinformatics.genomic.ChromosomeService;
-import org.jebtk.bioinformatics.genomic.GenesService;
 import org.jebtk.bioinformatics.genomic.Genome;
 import org.jebtk.bioinformatics.genomic.GenomicRegion;
 import org.jebtk.bioinformatics.genomic.GenomicRegionModel;
-import org.jebtk.bioinformatics.genomic.GenomicType;
 import org.jebtk.bioinformatics.ui.GenomeModel;
 import org.jebtk.core.collections.CollectionUtils;
 import org.jebtk.core.event.ChangeEvent;
 import org.jebtk.core.event.ChangeListener;
+import org.jebtk.core.settings.SettingsService;
 import org.jebtk.core.text.TextUtils;
 import org.jebtk.math.external.microsoft.Excel;
 import org.jebtk.math.ui.external.microsoft.ExcelDialog;
@@ -60,7 +61,16 @@ import org.jebtk.modern.panel.HBox;
 import org.jebtk.modern.ribbon.RibbonButton;
 import org.jebtk.modern.scrollpane.ModernScrollPane;
 import org.jebtk.modern.scrollpane.ScrollBarPolicy;
+import org.jebtk.modern.text.ModernClipboardTextField;
+import org.jebtk.modern.text.ModernTextBorderPanel;
+import org.jebtk.modern.text.ModernTextField;
 import org.jebtk.modern.window.ModernRibbonWindow;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import edu.columbia.rdf.htsview.tracks.scan.ScanHit;
+import edu.columbia.rdf.htsview.tracks.scan.ScanListener;
+import edu.columbia.rdf.htsview.tracks.scan.ThresholdScan;
 
 /**
  * The Class LocationsPanel.
@@ -71,6 +81,13 @@ public class LocationsPanel extends ModernComponent
   /** The Constant serialVersionUID. */
   private static final long serialVersionUID = 1L;
 
+  /** The Constant LOG. */
+  private static final Logger LOG = LoggerFactory
+      .getLogger(LocationsPanel.class);
+
+  /** The Constant MAX_MISSING. */
+  private static final int MAX_MISSING = 10;
+
   /** The m location list. */
   private LocationList mLocationList = new LocationList();
 
@@ -85,6 +102,9 @@ public class LocationsPanel extends ModernComponent
   private ModernButton mDeleteButton = new RibbonButton(
       AssetService.getInstance().loadIcon("trash_bw", 16));
 
+  /** The m search field. */
+  private ModernTextField mSearchField = new ModernClipboardTextField();
+
   /** The m model. */
   private GenomicRegionModel mModel;
 
@@ -97,6 +117,20 @@ public class LocationsPanel extends ModernComponent
   /** The m used. */
   private Set<String> mUsed = new HashSet<String>();
 
+  /** The m prefetcher. */
+  private LocationsPrefetcher mPrefetcher = null;
+
+  /** The running threshold scan. */
+  private ScanTask mScanTask = null;
+
+  /** The number of following locations to prefetch. */
+  private int mPrefetchAhead = SettingsService.getInstance()
+      .getInt("htsview.prefetch.ahead");
+
+  /** The number of preceding locations to prefetch. */
+  private int mPrefetchBehind = SettingsService.getInstance()
+      .getInt("htsview.prefetch.behind");
+
   /**
    * The Class DeleteEvents.
    */
@@ -154,6 +188,280 @@ public class LocationsPanel extends ModernComponent
 
   }
 
+  /**
+   * Completes gene names as they are typed and adds the location on enter.
+   */
+  private class SearchEvents implements KeyListener {
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.awt.event.KeyListener#keyPressed(java.awt.event.KeyEvent)
+     */
+    @Override
+    public void keyPressed(KeyEvent e) {
+      if (e.getKeyCode() == KeyEvent.VK_ENTER) {
+        String text = mSearchField.getText().trim();
+
+        if (text.length() > 0) {
+          loadLocations(new String[] { text });
+
+          mSearchField.setText(TextUtils.EMPTY_STRING);
+        }
+      }
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.awt.event.KeyListener#keyReleased(java.awt.event.KeyEvent)
+     */
+    @Override
+    public void keyReleased(KeyEvent e) {
+      // Only complete after printable keys so that deleting the suggestion
+      // does not immediately bring it back
+      if (e.getKeyChar() == KeyEvent.CHAR_UNDEFINED
+          || Character.isISOControl(e.getKeyChar())) {
+        return;
+      }
+
+      String prefix = mSearchField.getText()
+          .substring(0, mSearchField.getCaretPosition());
+
+      if (prefix.length() < 2 || prefix.startsWith("chr")) {
+        return;
+      }
+
+      List<String> names = GeneIndexService.getInstance()
+          .complete(mGenomeModel.get(), prefix, 1);
+
+      if (names.isEmpty() || names.get(0).length() <= prefix.length()) {
+        return;
+      }
+
+      // Keep what the user typed and select the completed part so that
+      // typing on replaces it
+      mSearchField.setText(prefix + names.get(0).substring(prefix.length()));
+      mSearchField.select(prefix.length(), names.get(0).length());
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.awt.event.KeyListener#keyTyped(java.awt.event.KeyEvent)
+     */
+    @Override
+    public void keyTyped(KeyEvent e) {
+      // Do nothing
+    }
+  }
+
+  /**
+   * Resolves gene names in the background before adding locations to the
+   * list so that stepping through the list does not wait on gene lookups.
+   */
+  private class ResolveTask extends SwingWorker<List<String>, Void> {
+
+    /** The m entries. */
+    private final String[] mEntries;
+
+    /** The m genome. */
+    private final Genome mGenome;
+
+    /** The m missing. */
+    private final List<String> mMissing = new ArrayList<String>();
+
+    /**
+     * Instantiates a new resolve task.
+     *
+     * @param entries the entries
+     */
+    public ResolveTask(String[] entries) {
+      mEntries = entries;
+      mGenome = mGenomeModel.get();
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see javax.swing.SwingWorker#doInBackground()
+     */
+    @Override
+    protected List<String> doInBackground() throws Exception {
+      long start = System.currentTimeMillis();
+
+      List<String> ret = new ArrayList<String>(mEntries.length);
+      List<String> genes = new ArrayList<String>(mEntries.length);
+
+      for (String entry : mEntries) {
+        String text = entry.trim();
+
+        if (TextUtils.isNullOrEmpty(text)) {
+          continue;
+        }
+
+        if (!text.startsWith("chr")) {
+          genes.add(text);
+        }
+      }
+
+      Set<String> missing = new HashSet<String>();
+
+      for (Entry<String, GenomicRegion> e : GeneIndexService.getInstance()
+          .resolve(mGenome, genes).entrySet()) {
+        if (e.getValue() == null) {
+          missing.add(e.getKey());
+          mMissing.add(e.getKey());
+        }
+      }
+
+      for (String entry : mEntries) {
+        String text = entry.trim();
+
+        if (!TextUtils.isNullOrEmpty(text) && !missing.contains(text)) {
+          ret.add(text);
+        }
+      }
+
+      LOG.info("Resolved {} locations ({} genes, {} not found) in {} ms.",
+          mEntries.length,
+          genes.size(),
+          mMissing.size(),
+          System.currentTimeMillis() - start);
+
+      return ret;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see javax.swing.SwingWorker#done()
+     */
+    @Override
+    protected void done() {
+      try {
+        for (String location : get()) {
+          addValue(location);
+        }
+      } catch (Exception e) {
+        e.printStackTrace();
+      }
+
+      if (mMissing.size() > 0) {
+        StringBuilder buffer = new StringBuilder();
+
+        for (int i = 0; i < Math.min(MAX_MISSING, mMissing.size()); ++i) {
+          if (i > 0) {
+            buffer.append(", ");
+          }
+
+          buffer.append(mMissing.get(i));
+        }
+
+        if (mMissing.size() > MAX_MISSING) {
+          buffer.append("...");
+        }
+
+        ModernMessageDialog.createWarningDialog(mParent,
+            mMissing.size() + " locations could not be found: "
+                + buffer.toString());
+      }
+    }
+  }
+
+  /**
+   * Runs a threshold scan in the background, adding each hit to the list as
+   * soon as it is found.
+   */
+  private class ScanTask extends SwingWorker<Integer, String>
+      implements ScanListener {
+
+    /** The m scan. */
+    private final ThresholdScan mScan;
+
+    /**
+     * Instantiates a new scan task.
+     *
+     * @param scan the scan
+     */
+    public ScanTask(ThresholdScan scan) {
+      mScan = scan;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see javax.swing.SwingWorker#doInBackground()
+     */
+    @Override
+    protected Integer doInBackground() throws Exception {
+      return mScan.run(this);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see edu.columbia.rdf.htsview.tracks.scan.ScanListener#hit(edu.columbia.
+     * rdf.htsview.tracks.scan.ScanHit)
+     */
+    @Override
+    public void hit(ScanHit hit) {
+      publish(hit.getRegion().getLocation());
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see edu.columbia.rdf.htsview.tracks.scan.ScanListener#progress(int,
+     * int)
+     */
+    @Override
+    public void progress(int done, int total) {
+      if (total > 0) {
+        setProgress(Math.min(100, done * 100 / total));
+      }
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see javax.swing.SwingWorker#process(java.util.List)
+     */
+    @Override
+    protected void process(List<String> locations) {
+      for (String location : locations) {
+        addValue(location);
+      }
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see javax.swing.SwingWorker#done()
+     */
+    @Override
+    protected void done() {
+      if (isCancelled()) {
+        return;
+      }
+
+      try {
+        get();
+      } catch (Exception e) {
+        LOG.warn("Threshold scan failed: {}", e.getMessage());
+      }
+    }
+
+    /**
+     * Cancel the scan.
+     */
+    public void cancelScan() {
+      mScan.cancel();
+
+      cancel(false);
+    }
+  }
+
   /**
    * The Class SelectionEvents.
    */
@@ -167,6 +475,8 @@ public class LocationsPanel extends ModernComponent
       if (region != null) {
         mModel.set(region);
       }
+
+      prefetch();
     }
 
     @Override
@@ -196,6 +506,10 @@ public class LocationsPanel extends ModernComponent
 
     mLocationList.addSelectionListener(new SelectionEvents());
 
+    // Build the gene index now so it is ready by the time the user types.
+    // Other genomes are indexed the first time a name is completed.
+    GeneIndexService.getInstance().load(mGenomeModel.get());
+
     // mModel.addChangeListener(new GenomicEvents());
 
     getInputMap(WHEN_ANCESTOR_OF_FOCUSED_COMPONENT).put(
@@ -224,6 +538,9 @@ public class LocationsPanel extends ModernComponent
     box.add(createHGap());
     mDeleteButton.setToolTip("Delete", "Delete selected locations.");
     box.add(mDeleteButton);
+    box.add(createHGap());
+    mSearchField.setToolTipText("Type a gene, transcript or location.");
+    box.add(new ModernTextBorderPanel(mSearchField, 150));
     box.setBorder(BOTTOM_BORDER);
 
     setHeader(box);
@@ -265,6 +582,8 @@ public class LocationsPanel extends ModernComponent
 
     mOpenButton.addClickListener(this);
     mDeleteButton.addClickListener(this);
+
+    mSearchField.addKeyListener(new SearchEvents());
   }
 
   /*
@@ -288,6 +607,100 @@ public class LocationsPanel extends ModernComponent
     }
   }
 
+  /**
+   * Sets the prefetcher used to warm the caches of the locations around the
+   * selected one.
+   *
+   * @param prefetcher the prefetcher, or null to disable prefetching.
+   */
+  public void setPrefetcher(LocationsPrefetcher prefetcher) {
+    mPrefetcher = prefetcher;
+  }
+
+  /**
+   * Scan for regions exceeding a threshold and add them to the list as they
+   * are found. Any scan already running is cancelled.
+   *
+   * @param scan the scan
+   * @return the task running the scan, whose progress property can drive a
+   *         progress bar.
+   */
+  public SwingWorker<Integer, String> scan(ThresholdScan scan) {
+    cancelScan();
+
+    mScanTask = new ScanTask(scan);
+    mScanTask.execute();
+
+    return mScanTask;
+  }
+
+  /**
+   * Cancel the running threshold scan, if any. Hits already found stay in
+   * the list.
+   */
+  public void cancelScan() {
+    if (mScanTask != null) {
+      mScanTask.cancelScan();
+      mScanTask = null;
+    }
+  }
+
+  /**
+   * Prefetch the locations around the selected one, nearest first and
+   * favouring the direction the user is most likely to move in.
+   */
+  private void prefetch() {
+    if (mPrefetcher == null) {
+      return;
+    }
+
+    int selected = -1;
+
+    for (int i : mLocationList.getSelectionModel()) {
+      selected = i;
+      break;
+    }
+
+    if (selected == -1) {
+      return;
+    }
+
+    Genome genome = mGenomeModel.get();
+
+    List<GenomicRegion> regions = new ArrayList<GenomicRegion>();
+
+    int n = Math.max(mPrefetchAhead, mPrefetchBehind);
+
+    for (int i = 1; i <= n; ++i) {
+      if (i <= mPrefetchAhead && selected + i < mListModel.getItemCount()) {
+        addRegion(genome, mListModel.getValueAt(selected + i), regions);
+      }
+
+      if (i <= mPrefetchBehind && selected - i >= 0) {
+        addRegion(genome, mListModel.getValueAt(selected - i), regions);
+      }
+    }
+
+    mPrefetcher.prefetch(genome, regions);
+  }
+
+  /**
+   * Parse a location and add it to a list if valid.
+   *
+   * @param genome the genome
+   * @param location the location
+   * @param regions the regions
+   */
+  private void addRegion(Genome genome,
+      String location,
+      List<GenomicRegion> regions) {
+    GenomicRegion region = parse(genome, location);
+
+    if (region != null) {
+      regions.add(region);
+    }
+  }
+
   /**
    * Refresh.
    */
@@ -310,19 +723,8 @@ public class LocationsPanel extends ModernComponent
     // }
     // }
 
-    addValues(entries); // ArrayUtils.toString(ArrayUtils.sort(mLocationsModel)));
-  }
-
-  /**
-   * Adds the values.
-   *
-   * @param locations the locations
-   */
-  private void addValues(String[] locations) {
-    for (String l : locations) {
-      addValue(l);
-    }
-
+    // Gene names are resolved off the event thread first
+    new ResolveTask(entries).execute();
   }
 
   /**
@@ -379,7 +781,7 @@ public class LocationsPanel extends ModernComponent
     for (Path file : files) {
       String[] lines = Excel.getTextFromFile(file, true);
 
-      addValues(lines);
+      loadLocations(lines);
 
       // for (String location : lines) {
       // GenomicRegion region = GenomicRegion.parse(location);
@@ -395,6 +797,29 @@ public class LocationsPanel extends ModernComponent
     // mListModel.addValues(ArrayUtils.toString(ArrayUtils.sort(mLocationsModel)));
   }
 
+  /**
+   * Returns the regions of all the locations in the list, in list order.
+   * Locations that cannot be parsed are skipped.
+   *
+   * @return the regions
+   */
+  public List<GenomicRegion> getRegions() {
+    Genome genome = mGenomeModel.get();
+
+    List<GenomicRegion> ret = new ArrayList<GenomicRegion>(
+        mListModel.getItemCount());
+
+    for (int i = 0; i < mListModel.getItemCount(); ++i) {
+      GenomicRegion region = parse(genome, mListModel.getValueAt(i));
+
+      if (region != null) {
+        ret.add(region);
+      }
+    }
+
+    return ret;
+  }
+
   /**
    * Parses the.
    *
@@ -434,18 +859,7 @@ public class LocationsPanel extends ModernComponent
 
     } else {
       // assume its a gene
-
-      Iterable<Genome> dbs = GenesService.getInstance()
-          .getGeneDbs(genome.getAssembly());
-
-      // Pick the first (essentially at random).
-      Genome g = dbs.iterator().next();
-
-      try {
-        region = GenesService.getInstance().getGenes(g).getElement(g, text, GenomicType.TRANSCRIPT);
-      } catch (IOException e) {
-        e.printStackTrace();
-      }
+      region = GeneIndexService.getInstance().find(genome, text);
     }
 
     return region;
@@ -0,0 +1,159 @@
+/**
+ * Copyright 2016 Antony Holmes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.columbia.rdf.htsview.tracks.locations;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.jebtk.bioinformatics.genomic.Genome;
+import org.jebtk.bioinformatics.genomic.GenomicRegion;
+import org.jebtk.core.settings.SettingsService;
+import org.jebtk.core.tree.TreeNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import edu.columbia.rdf.htsview.tracks.Track;
+import edu.columbia.rdf.htsview.tracks.TrackTree;
+import edu.columbia.rdf.htsview.tracks.sample.SampleAssemblies;
+import edu.columbia.rdf.htsview.tracks.sample.SamplePlotTrack;
+
+/**
+ * Warms the data caches of the sample tracks for the loci around the
+ * current selection in a locations list. Fetches run on a small pool of
+ * daemon threads. Each new selection cancels the fetches queued for the
+ * previous one, and loci nearest the selection are fetched first.
+ * Assemblies are not thread safe, so tracks read around their tiled
+ * assemblies and the prefetch caches serialize each read on the underlying
+ * assembly through {@link SampleAssemblies}, which the view's tiled
+ * assemblies also use.
+ *
+ * @author Antony Holmes
+ */
+public class LocationsPrefetcher {
+
+  /** The Constant LOG. */
+  private static final Logger LOG = LoggerFactory
+      .getLogger(LocationsPrefetcher.class);
+
+  /** The m tracks. */
+  private final TrackTree mTracks;
+
+  /** The m executor. */
+  private final ExecutorService mExecutor;
+
+  /** The m futures of the current selection. */
+  private final List<Future<?>> mFutures = new ArrayList<Future<?>>();
+
+  /** The m generation. */
+  private volatile int mGeneration = 0;
+
+  /**
+   * Instantiates a new locations prefetcher.
+   *
+   * @param tracks the tracks
+   */
+  public LocationsPrefetcher(TrackTree tracks) {
+    this(tracks,
+        SettingsService.getInstance().getInt("htsview.prefetch.threads"));
+  }
+
+  /**
+   * Instantiates a new locations prefetcher.
+   *
+   * @param tracks the tracks
+   * @param threads the threads
+   */
+  public LocationsPrefetcher(TrackTree tracks, int threads) {
+    mTracks = tracks;
+
+    mExecutor = Executors.newFixedThreadPool(Math.max(1, threads),
+        new ThreadFactory() {
+          @Override
+          public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "htsview-prefetch");
+
+            // Never keep the application alive
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+
+            return thread;
+          }
+        });
+  }
+
+  /**
+   * Prefetch a list of regions, replacing any prefetch still queued. The
+   * regions should be in order of priority.
+   *
+   * @param genome the genome
+   * @param regions the regions
+   */
+  public synchronized void prefetch(final Genome genome,
+      List<GenomicRegion> regions) {
+    final int generation = ++mGeneration;
+
+    for (Future<?> future : mFutures) {
+      future.cancel(false);
+    }
+
+    mFutures.clear();
+
+    List<SamplePlotTrack> tracks = new ArrayList<SamplePlotTrack>();
+
+    for (TreeNode<Track> node : mTracks) {
+      if (node.getValue() instanceof SamplePlotTrack) {
+        tracks.add((SamplePlotTrack) node.getValue());
+      }
+    }
+
+    for (final GenomicRegion region : regions) {
+      for (final SamplePlotTrack track : tracks) {
+        mFutures.add(mExecutor.submit(new Runnable() {
+          @Override
+          public void run() {
+            // The user has moved on
+            if (generation != mGeneration) {
+              return;
+            }
+
+            try {
+              track.prefetch(genome, region);
+            } catch (IOException e) {
+              LOG.warn("Could not prefetch {} for {}: {}",
+                  region,
+                  track.getName(),
+                  e.getMessage());
+            }
+          }
+        }));
+      }
+    }
+  }
+
+  /**
+   * Stop prefetching and release the threads.
+   */
+  public synchronized void shutdown() {
+    ++mGeneration;
+
+    mExecutor.shutdownNow();
+  }
+}
@@ -0,0 +1,196 @@
+/**
+ * Copyright 2016 Antony Holmes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.columbia.rdf.htsview.tracks.locations;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Case insensitive prefix trie of names for autocompletion. Children are
+ * kept in sorted arrays rather than maps so that a trie of every gene
+ * symbol and transcript id of a genome stays small.
+ *
+ * @author Antony Holmes
+ */
+public class PrefixTrie {
+
+  /**
+   * A node of the trie.
+   */
+  private static class Node {
+
+    /** The m keys. */
+    private char[] mKeys = new char[0];
+
+    /** The m children. */
+    private Node[] mChildren = new Node[0];
+
+    /** The name ending at this node, in its original case. */
+    private String mWord;
+
+    /**
+     * Gets the child for a character.
+     *
+     * @param c the c
+     * @return the node or null.
+     */
+    public Node get(char c) {
+      int i = Arrays.binarySearch(mKeys, c);
+
+      return i >= 0 ? mChildren[i] : null;
+    }
+
+    /**
+     * Gets or creates the child for a character.
+     *
+     * @param c the c
+     * @return the node
+     */
+    public Node add(char c) {
+      int i = Arrays.binarySearch(mKeys, c);
+
+      if (i >= 0) {
+        return mChildren[i];
+      }
+
+      i = -i - 1;
+
+      char[] keys = new char[mKeys.length + 1];
+      Node[] children = new Node[mChildren.length + 1];
+
+      System.arraycopy(mKeys, 0, keys, 0, i);
+      System.arraycopy(mKeys, i, keys, i + 1, mKeys.length - i);
+      System.arraycopy(mChildren, 0, children, 0, i);
+      System.arraycopy(mChildren, i, children, i + 1, mChildren.length - i);
+
+      Node ret = new Node();
+
+      keys[i] = c;
+      children[i] = ret;
+
+      mKeys = keys;
+      mChildren = children;
+
+      return ret;
+    }
+  }
+
+  /** The m root. */
+  private final Node mRoot = new Node();
+
+  /** The m size. */
+  private int mSize = 0;
+
+  /**
+   * Add a name to the trie.
+   *
+   * @param name the name
+   */
+  public void add(String name) {
+    Node node = mRoot;
+
+    for (int i = 0; i < name.length(); ++i) {
+      node = node.add(Character.toUpperCase(name.charAt(i)));
+    }
+
+    if (node.mWord == null) {
+      ++mSize;
+    }
+
+    node.mWord = name;
+  }
+
+  /**
+   * Returns true if the trie contains a name, ignoring case.
+   *
+   * @param name the name
+   * @return true, if successful
+   */
+  public boolean contains(String name) {
+    Node node = find(name);
+
+    return node != null && node.mWord != null;
+  }
+
+  /**
+   * Returns up to max names beginning with a prefix, ignoring case. Shorter
+   * names are returned before longer ones so that an exact match comes
+   * first, and names of the same length are in alphabetical order.
+   *
+   * @param prefix the prefix
+   * @param max the max
+   * @return the list
+   */
+  public List<String> complete(String prefix, int max) {
+    List<String> ret = new ArrayList<String>();
+
+    Node node = find(prefix);
+
+    if (node == null || max < 1) {
+      return ret;
+    }
+
+    // Breadth first so that results are ordered by length
+    List<Node> level = new ArrayList<Node>();
+    level.add(node);
+
+    while (!level.isEmpty()) {
+      List<Node> next = new ArrayList<Node>();
+
+      for (Node n : level) {
+        if (n.mWord != null) {
+          ret.add(n.mWord);
+
+          if (ret.size() == max) {
+            return ret;
+          }
+        }
+
+        next.addAll(Arrays.asList(n.mChildren));
+      }
+
+      level = next;
+    }
+
+    return ret;
+  }
+
+  /**
+   * Find the node of a prefix.
+   *
+   * @param prefix the prefix
+   * @return the node or null if no name has the prefix.
+   */
+  private Node find(String prefix) {
+    Node node = mRoot;
+
+    for (int i = 0; i < prefix.length() && node != null; ++i) {
+      node = node.get(Character.toUpperCase(prefix.charAt(i)));
+    }
+
+    return node;
+  }
+
+  /**
+   * Returns the number of names in the trie.
+   *
+   * @return the int
+   */
+  public int size() {
+    return mSize;
+  }
+}
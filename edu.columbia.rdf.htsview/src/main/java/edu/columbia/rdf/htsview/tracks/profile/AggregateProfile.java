@@ -0,0 +1,431 @@
+/**
+ * Copyright 2016 Antony Holmes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.columbia.rdf.htsview.tracks.profile;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.jebtk.bioinformatics.genomic.ChromosomeService;
+import org.jebtk.bioinformatics.genomic.Genome;
+import org.jebtk.bioinformatics.genomic.GenomicRegion;
+import org.jebtk.core.settings.SettingsService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import edu.columbia.rdf.edb.Sample;
+import edu.columbia.rdf.htsview.cache.SharedCache;
+import edu.columbia.rdf.htsview.tracks.SampleAssembly;
+import edu.columbia.rdf.htsview.tracks.sample.SampleAssemblies;
+import edu.columbia.rdf.htsview.tracks.sample.SamplePlotTrack;
+
+/**
+ * Builds the mean signal profile and a per region heatmap of a set of samples
+ * around a list of loci, for example ±5 kb around TSSs or peak summits.
+ * Regions are sorted by location and fetched in parallel batches. Only a
+ * fixed number of batches are in flight at any one time and each batch is
+ * folded into the result as soon as it completes, so raw counts never
+ * accumulate in memory. Tiled assemblies are bypassed and each assembly is
+ * read by one thread at a time through {@link SampleAssemblies}.
+ *
+ * @author Antony Holmes
+ */
+public class AggregateProfile {
+
+  /** The Constant LOG. */
+  private static final Logger LOG = LoggerFactory
+      .getLogger(AggregateProfile.class);
+
+  /** The m genome. */
+  private final Genome mGenome;
+
+  /** The m samples. */
+  private final List<Sample> mSamples = new ArrayList<Sample>();
+
+  /** The m assemblies. */
+  private final List<SampleAssembly> mAssemblies = new ArrayList<SampleAssembly>();
+
+  /** The m flank. */
+  private int mFlank = 5000;
+
+  /** The m window. */
+  private int mWindow = 100;
+
+  /** The m normalize. */
+  private boolean mNormalize = true;
+
+  /** The m threads. */
+  private int mThreads = SettingsService.getInstance()
+      .getInt("htsview.profile.threads");
+
+  /** The m batch size. */
+  private int mBatchSize = SettingsService.getInstance()
+      .getInt("htsview.profile.batch-size");
+
+  /** The m cancelled. */
+  private volatile boolean mCancelled = false;
+
+  /**
+   * Instantiates a new aggregate profile.
+   *
+   * @param genome the genome
+   */
+  public AggregateProfile(Genome genome) {
+    mGenome = genome;
+  }
+
+  /**
+   * Add a sample to the profile.
+   *
+   * @param sample the sample
+   * @param assembly the assembly
+   * @return the aggregate profile
+   */
+  public AggregateProfile addSample(Sample sample, SampleAssembly assembly) {
+    mSamples.add(sample);
+    mAssemblies.add(SampleAssemblies.getSource(assembly));
+
+    return this;
+  }
+
+  /**
+   * Add the sample of a track to the profile.
+   *
+   * @param track the track
+   * @return the aggregate profile
+   */
+  public AggregateProfile addTrack(SamplePlotTrack track) {
+    return addSample(track.getSample(), track.getAssembly());
+  }
+
+  /**
+   * Sets the distance either side of each region center to profile.
+   *
+   * @param flank the flank
+   * @return the aggregate profile
+   */
+  public AggregateProfile setFlank(int flank) {
+    mFlank = Math.max(1, flank);
+
+    return this;
+  }
+
+  /**
+   * Sets the bin size.
+   *
+   * @param window the window
+   * @return the aggregate profile
+   */
+  public AggregateProfile setWindow(int window) {
+    mWindow = Math.max(1, window);
+
+    return this;
+  }
+
+  /**
+   * Sets whether counts should be normalized to reads per million.
+   *
+   * @param normalize the normalize
+   * @return the aggregate profile
+   */
+  public AggregateProfile setNormalize(boolean normalize) {
+    mNormalize = normalize;
+
+    return this;
+  }
+
+  /**
+   * Sets the number of threads.
+   *
+   * @param threads the threads
+   * @return the aggregate profile
+   */
+  public AggregateProfile setThreads(int threads) {
+    mThreads = threads;
+
+    return this;
+  }
+
+  /**
+   * Stop the profile. Batches already in flight are abandoned and the result
+   * contains the regions processed so far.
+   */
+  public void cancel() {
+    mCancelled = true;
+  }
+
+  /**
+   * Checks if is cancelled.
+   *
+   * @return true, if is cancelled
+   */
+  public boolean isCancelled() {
+    return mCancelled;
+  }
+
+  /**
+   * Build the profile.
+   *
+   * @param regions the regions
+   * @param listener the listener, may be null.
+   * @return the profile result
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public ProfileResult run(List<ProfileRegion> regions,
+      ProfileListener listener) throws IOException {
+    List<String> names = new ArrayList<String>(mSamples.size());
+
+    for (Sample sample : mSamples) {
+      names.add(sample.getName());
+    }
+
+    ProfileResult result = new ProfileResult(names, regions.size(), mFlank,
+        mWindow);
+
+    double[] scaleFactors = getScaleFactors();
+
+    // Sort by location so that consecutive fetches are close together
+    List<ProfileRegion> sorted = new ArrayList<ProfileRegion>(regions);
+    Collections.sort(sorted, ProfileRegion.LOCATION_COMPARATOR);
+
+    int threads = Math.max(1, mThreads);
+    int batchSize = Math.max(1, mBatchSize);
+
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+    // Bounds the number of batches held in memory
+    Deque<Future<Batch>> futures = new ArrayDeque<Future<Batch>>();
+
+    long start = System.currentTimeMillis();
+
+    int done = 0;
+
+    try {
+      for (int i = 0; i < sorted.size() && !mCancelled; i += batchSize) {
+        final List<ProfileRegion> batch = sorted.subList(i,
+            Math.min(sorted.size(), i + batchSize));
+
+        futures.add(executor.submit(new BatchTask(batch, scaleFactors)));
+
+        if (futures.size() >= threads * 2) {
+          done += merge(futures.poll(), result);
+
+          if (listener != null) {
+            listener.progress(done, regions.size());
+          }
+        }
+      }
+
+      while (!futures.isEmpty() && !mCancelled) {
+        done += merge(futures.poll(), result);
+
+        if (listener != null) {
+          listener.progress(done, regions.size());
+        }
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    LOG.info("Profiled {} of {} regions in {} samples in {} ms.",
+        done,
+        regions.size(),
+        mSamples.size(),
+        System.currentTimeMillis() - start);
+
+    return result;
+  }
+
+  /**
+   * Wait for a batch and fold it into the result.
+   *
+   * @param future the future
+   * @param result the result
+   * @return the number of regions in the batch.
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private static int merge(Future<Batch> future, ProfileResult result)
+      throws IOException {
+    Batch batch = SharedCache.getResult(future);
+
+    // Batches abandoned by a cancel are not added
+    if (batch == null) {
+      return 0;
+    }
+
+    for (int s = 0; s < batch.mRows.length; ++s) {
+      for (int r = 0; r < batch.mRegions.size(); ++r) {
+        result.add(s, batch.mRegions.get(r).getIndex(), batch.mRows[s][r]);
+      }
+    }
+
+    result.addRegions(batch.mRegions.size());
+
+    return batch.mRegions.size();
+  }
+
+  /**
+   * Gets the per million scale factor of each sample.
+   *
+   * @return the scale factors
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private double[] getScaleFactors() throws IOException {
+    double[] ret = new double[mSamples.size()];
+
+    for (int s = 0; s < ret.length; ++s) {
+      int mappedReads = mNormalize
+          ? SampleAssemblies.getMappedReads(mAssemblies.get(s),
+              mSamples.get(s),
+              mGenome,
+              mWindow)
+          : -1;
+
+      ret[s] = mappedReads > 0 ? 1000000.0 / mappedReads : 1;
+    }
+
+    return ret;
+  }
+
+  /**
+   * Fetch the binned counts of a sample around a region.
+   *
+   * @param sample the sample index
+   * @param region the region
+   * @param scaleFactor the scale factor
+   * @return the row
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private float[] getRow(int sample, ProfileRegion region, double scaleFactor)
+      throws IOException {
+    int bins = ProfileResult.getBins(mFlank, mWindow);
+
+    float[] ret = new float[bins];
+
+    // Align the profile to the bin grid so bins map directly onto counts
+    int s = SampleAssembly.getBin(region.getCenter() - mFlank, mWindow)
+        * mWindow + 1;
+    int e = s + bins * mWindow - 1;
+
+    int size = ChromosomeService.getInstance().size(mGenome,
+        region.getRegion().getChr());
+
+    int fs = Math.max(1, s);
+    int fe = size > 0 ? Math.min(size, e) : e;
+
+    if (fe < fs) {
+      return ret;
+    }
+
+    int[] counts = SampleAssemblies.getCounts(mAssemblies.get(sample),
+        mSamples.get(sample),
+        mGenome,
+        new GenomicRegion(region.getRegion().getChr(), fs, fe),
+        mWindow);
+
+    // Bins before the start of the chromosome stay zero
+    int offset = (fs - s) / mWindow;
+
+    int n = Math.min(counts.length, bins - offset);
+
+    for (int i = 0; i < n; ++i) {
+      int bin = offset + i;
+
+      if (region.isReverse()) {
+        bin = bins - 1 - bin;
+      }
+
+      ret[bin] = (float) (counts[i] * scaleFactor);
+    }
+
+    return ret;
+  }
+
+  /**
+   * The rows of a batch of regions.
+   */
+  private static class Batch {
+
+    /** The m regions. */
+    private final List<ProfileRegion> mRegions;
+
+    /** Rows per sample then region. */
+    private final float[][][] mRows;
+
+    /**
+     * Instantiates a new batch.
+     *
+     * @param regions the regions
+     * @param samples the samples
+     */
+    public Batch(List<ProfileRegion> regions, int samples) {
+      mRegions = regions;
+      mRows = new float[samples][regions.size()][];
+    }
+  }
+
+  /**
+   * Fetches the rows of a batch of regions for all samples.
+   */
+  private class BatchTask implements Callable<Batch> {
+
+    /** The m regions. */
+    private final List<ProfileRegion> mRegions;
+
+    /** The m scale factors. */
+    private final double[] mScaleFactors;
+
+    /**
+     * Instantiates a new batch task.
+     *
+     * @param regions the regions
+     * @param scaleFactors the scale factors
+     */
+    public BatchTask(List<ProfileRegion> regions, double[] scaleFactors) {
+      mRegions = regions;
+      mScaleFactors = scaleFactors;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see java.util.concurrent.Callable#call()
+     */
+    @Override
+    public Batch call() throws Exception {
+      Batch batch = new Batch(mRegions, mSamples.size());
+
+      for (int s = 0; s < mSamples.size(); ++s) {
+        for (int r = 0; r < mRegions.size(); ++r) {
+          if (mCancelled) {
+            return null;
+          }
+
+          batch.mRows[s][r] = getRow(s, mRegions.get(r), mScaleFactors[s]);
+        }
+      }
+
+      return batch;
+    }
+  }
+}
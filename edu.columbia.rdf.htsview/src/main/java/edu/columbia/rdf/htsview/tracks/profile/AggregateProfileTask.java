@@ -0,0 +1,82 @@
+/**
+ * Copyright 2016 Antony Holmes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.columbia.rdf.htsview.tracks.profile;
+
+import java.util.List;
+
+import javax.swing.SwingWorker;
+
+/**
+ * Runs an aggregate profile off the event thread. Progress is reported as a
+ * percentage through the standard {@code progress} property so it can drive a
+ * progress bar, and cancelling the task stops the profile.
+ *
+ * @author Antony Holmes
+ */
+public class AggregateProfileTask extends SwingWorker<ProfileResult, Void>
+    implements ProfileListener {
+
+  /** The m profile. */
+  private final AggregateProfile mProfile;
+
+  /** The m regions. */
+  private final List<ProfileRegion> mRegions;
+
+  /**
+   * Instantiates a new aggregate profile task.
+   *
+   * @param profile the profile
+   * @param regions the regions
+   */
+  public AggregateProfileTask(AggregateProfile profile,
+      List<ProfileRegion> regions) {
+    mProfile = profile;
+    mRegions = regions;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see javax.swing.SwingWorker#doInBackground()
+   */
+  @Override
+  protected ProfileResult doInBackground() throws Exception {
+    return mProfile.run(mRegions, this);
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see
+   * edu.columbia.rdf.htsview.tracks.profile.ProfileListener#progress(int,
+   * int)
+   */
+  @Override
+  public void progress(int done, int total) {
+    if (total > 0) {
+      setProgress(Math.min(100, done * 100 / total));
+    }
+  }
+
+  /**
+   * Cancel the profile.
+   */
+  public void cancelProfile() {
+    mProfile.cancel();
+
+    cancel(false);
+  }
+}
@@ -0,0 +1,529 @@
+/**
+ * Copyright 2016 Antony Holmes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.columbia.rdf.htsview.tracks.profile;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.jebtk.bioinformatics.genomic.Genome;
+import org.jebtk.bioinformatics.genomic.GenomicRegion;
+import org.jebtk.core.io.FileUtils;
+import org.jebtk.core.io.PathUtils;
+import org.jebtk.core.settings.SettingsService;
+import org.jebtk.core.tree.TreeNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import edu.columbia.rdf.edb.Sample;
+import edu.columbia.rdf.htsview.cache.SharedCache;
+import edu.columbia.rdf.htsview.tracks.SampleAssembly;
+import edu.columbia.rdf.htsview.tracks.Track;
+import edu.columbia.rdf.htsview.tracks.sample.SampleAssemblies;
+import edu.columbia.rdf.htsview.tracks.sample.SamplePlotTrack;
+
+/**
+ * Exports a regions × samples matrix of read counts. Each read is counted
+ * once, in the region containing its start, so the matrix holds the whole
+ * read counts that differential analysis expects rather than the overlap
+ * counts used to draw tracks. Samples must therefore have read support.
+ * Regions are sorted by location and split into batches that never span a
+ * chromosome. Batches run in parallel and each row is written as soon as its
+ * batch completes, so only a few batches are ever held in memory regardless
+ * of the size of the matrix. Tiled assemblies are bypassed and each assembly
+ * is read by one thread at a time through {@link SampleAssemblies}.
+ *
+ * Files ending in {@code .bin} are written as a little endian binary matrix:
+ * the magic number, the number of rows and columns, then for each row its
+ * index in the original region list followed by one int per sample. Any
+ * other extension is written as tab delimited text.
+ *
+ * @author Antony Holmes
+ */
+public class CountMatrixExport {
+
+  /** The Constant LOG. */
+  private static final Logger LOG = LoggerFactory
+      .getLogger(CountMatrixExport.class);
+
+  /** Identifies binary count matrix files. */
+  public static final int MAGIC = 0x434D5449;
+
+  /** The extension of binary matrix files. */
+  public static final String BINARY_EXT = "bin";
+
+  /** The m genome. */
+  private final Genome mGenome;
+
+  /** The m samples. */
+  private final List<Sample> mSamples = new ArrayList<Sample>();
+
+  /** The m assemblies. */
+  private final List<SampleAssembly> mAssemblies = new ArrayList<SampleAssembly>();
+
+  /** The m threads. */
+  private int mThreads = SettingsService.getInstance()
+      .getInt("htsview.count-matrix.threads");
+
+  /** The m batch size. */
+  private int mBatchSize = SettingsService.getInstance()
+      .getInt("htsview.count-matrix.batch-size");
+
+  /** The m cancelled. */
+  private volatile boolean mCancelled = false;
+
+  /**
+   * Instantiates a new count matrix export.
+   *
+   * @param genome the genome
+   */
+  public CountMatrixExport(Genome genome) {
+    mGenome = genome;
+  }
+
+  /**
+   * Add a sample as a column of the matrix.
+   *
+   * @param sample the sample
+   * @param assembly the assembly
+   * @return the count matrix export
+   */
+  public CountMatrixExport addSample(Sample sample, SampleAssembly assembly) {
+    mSamples.add(sample);
+    mAssemblies.add(SampleAssemblies.getSource(assembly));
+
+    return this;
+  }
+
+  /**
+   * Add every sample track in a track tree as a column of the matrix, in
+   * tree order.
+   *
+   * @param root the root
+   * @return the count matrix export
+   */
+  public CountMatrixExport addTracks(TreeNode<Track> root) {
+    for (TreeNode<Track> node : root) {
+      if (node.getValue() instanceof SamplePlotTrack) {
+        SamplePlotTrack track = (SamplePlotTrack) node.getValue();
+
+        addSample(track.getSample(), track.getAssembly());
+      }
+
+      addTracks(node);
+    }
+
+    return this;
+  }
+
+  /**
+   * Sets the threads.
+   *
+   * @param threads the threads
+   * @return the count matrix export
+   */
+  public CountMatrixExport setThreads(int threads) {
+    mThreads = threads;
+
+    return this;
+  }
+
+  /**
+   * Stop the export. Rows already written are kept.
+   */
+  public void cancel() {
+    mCancelled = true;
+  }
+
+  /**
+   * Write the matrix.
+   *
+   * @param regions the regions
+   * @param file the file
+   * @param listener the listener, may be null.
+   * @return the number of rows written.
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public int export(List<ProfileRegion> regions,
+      Path file,
+      ProfileListener listener) throws IOException {
+    for (int s = 0; s < mSamples.size(); ++s) {
+      if (!mAssemblies.get(s).hasReadSupport(mSamples.get(s))) {
+        throw new IOException(mSamples.get(s).getName()
+            + " does not have individual reads so cannot be counted.");
+      }
+    }
+
+    List<ProfileRegion> sorted = new ArrayList<ProfileRegion>(regions);
+    Collections.sort(sorted, ProfileRegion.LOCATION_COMPARATOR);
+
+    int threads = Math.max(1, mThreads);
+
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+    Deque<Future<int[][]>> futures = new ArrayDeque<Future<int[][]>>();
+    Deque<List<ProfileRegion>> batches = new ArrayDeque<List<ProfileRegion>>();
+
+    MatrixWriter writer = BINARY_EXT.equals(PathUtils.getFileExt(file))
+        ? new BinaryMatrixWriter(file) : new TextMatrixWriter(file);
+
+    long start = System.currentTimeMillis();
+
+    int done = 0;
+
+    try {
+      writer.writeHeader(mSamples, regions.size());
+
+      for (List<ProfileRegion> batch : createBatches(sorted)) {
+        if (mCancelled) {
+          break;
+        }
+
+        batches.add(batch);
+        futures.add(executor.submit(new BatchTask(batch)));
+
+        // Write completed batches in order while keeping the pool busy
+        if (futures.size() >= threads * 2) {
+          done += write(futures.poll(), batches.poll(), writer);
+
+          if (listener != null) {
+            listener.progress(done, regions.size());
+          }
+        }
+      }
+
+      while (!futures.isEmpty() && !mCancelled) {
+        done += write(futures.poll(), batches.poll(), writer);
+
+        if (listener != null) {
+          listener.progress(done, regions.size());
+        }
+      }
+    } finally {
+      executor.shutdownNow();
+
+      writer.close(done);
+    }
+
+    LOG.info("Wrote {} x {} count matrix to {} in {} ms.",
+        done,
+        mSamples.size(),
+        file,
+        System.currentTimeMillis() - start);
+
+    return done;
+  }
+
+  /**
+   * Split sorted regions into batches that do not span chromosomes.
+   *
+   * @param sorted the sorted regions
+   * @return the batches
+   */
+  private List<List<ProfileRegion>> createBatches(List<ProfileRegion> sorted) {
+    List<List<ProfileRegion>> ret = new ArrayList<List<ProfileRegion>>();
+
+    int batchSize = Math.max(1, mBatchSize);
+
+    int s = 0;
+
+    for (int i = 1; i <= sorted.size(); ++i) {
+      if (i == sorted.size() || i - s == batchSize
+          || !sorted.get(i).getRegion().getChr()
+              .equals(sorted.get(s).getRegion().getChr())) {
+        ret.add(sorted.subList(s, i));
+
+        s = i;
+      }
+    }
+
+    return ret;
+  }
+
+  /**
+   * Wait for a batch and write its rows.
+   *
+   * @param future the future
+   * @param batch the batch
+   * @param writer the writer
+   * @return the number of rows written.
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private static int write(Future<int[][]> future,
+      List<ProfileRegion> batch,
+      MatrixWriter writer) throws IOException {
+    int[][] rows = SharedCache.getResult(future);
+
+    if (rows == null) {
+      return 0;
+    }
+
+    for (int r = 0; r < rows.length; ++r) {
+      writer.writeRow(batch.get(r), rows[r]);
+    }
+
+    return rows.length;
+  }
+
+  /**
+   * Returns the number of reads starting in a region.
+   *
+   * @param starts the read starts. Reads starting outside the region, which
+   *          some assemblies include, are not counted.
+   * @param region the region
+   * @return the count
+   */
+  public static int count(int[] starts, GenomicRegion region) {
+    int ret = 0;
+
+    for (int start : starts) {
+      if (start >= region.getStart() && start <= region.getEnd()) {
+        ++ret;
+      }
+    }
+
+    return ret;
+  }
+
+  /**
+   * Computes the rows of a batch of regions on the same chromosome.
+   */
+  private class BatchTask implements Callable<int[][]> {
+
+    /** The m regions. */
+    private final List<ProfileRegion> mRegions;
+
+    /**
+     * Instantiates a new batch task.
+     *
+     * @param regions the regions
+     */
+    public BatchTask(List<ProfileRegion> regions) {
+      mRegions = regions;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see java.util.concurrent.Callable#call()
+     */
+    @Override
+    public int[][] call() throws Exception {
+      int[][] rows = new int[mRegions.size()][mSamples.size()];
+
+      for (int s = 0; s < mSamples.size(); ++s) {
+        Sample sample = mSamples.get(s);
+        SampleAssembly assembly = mAssemblies.get(s);
+
+        for (int r = 0; r < mRegions.size(); ++r) {
+          if (mCancelled) {
+            return null;
+          }
+
+          GenomicRegion region = mRegions.get(r).getRegion();
+
+          int[] starts = SampleAssemblies
+              .getStarts(assembly, sample, mGenome, region, 1);
+
+          rows[r][s] = count(starts, region);
+        }
+      }
+
+      return rows;
+    }
+  }
+
+  /**
+   * Writes rows of the matrix.
+   */
+  private interface MatrixWriter {
+
+    /**
+     * Write header.
+     *
+     * @param samples the samples
+     * @param rows the maximum number of rows
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public void writeHeader(List<Sample> samples, int rows)
+        throws IOException;
+
+    /**
+     * Write row.
+     *
+     * @param region the region
+     * @param values the values
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public void writeRow(ProfileRegion region, int[] values)
+        throws IOException;
+
+    /**
+     * Close the file.
+     *
+     * @param rows the number of rows written.
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public void close(int rows) throws IOException;
+  }
+
+  /**
+   * Writes the matrix as tab delimited text.
+   */
+  private static class TextMatrixWriter implements MatrixWriter {
+
+    /** The m writer. */
+    private final BufferedWriter mWriter;
+
+    /** The m line. */
+    private final StringBuilder mLine = new StringBuilder();
+
+    /**
+     * Instantiates a new text matrix writer.
+     *
+     * @param file the file
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public TextMatrixWriter(Path file) throws IOException {
+      mWriter = FileUtils.newBufferedWriter(file);
+    }
+
+    @Override
+    public void writeHeader(List<Sample> samples, int rows)
+        throws IOException {
+      mWriter.write("Location");
+
+      for (Sample sample : samples) {
+        mWriter.write("\t" + sample.getName());
+      }
+
+      mWriter.newLine();
+    }
+
+    @Override
+    public void writeRow(ProfileRegion region, int[] values)
+        throws IOException {
+      mLine.setLength(0);
+
+      mLine.append(region.getRegion().getLocation());
+
+      for (int v : values) {
+        mLine.append('\t').append(v);
+      }
+
+      mWriter.write(mLine.toString());
+      mWriter.newLine();
+    }
+
+    @Override
+    public void close(int rows) throws IOException {
+      mWriter.close();
+    }
+  }
+
+  /**
+   * Writes the matrix as little endian binary.
+   */
+  private static class BinaryMatrixWriter implements MatrixWriter {
+
+    /** The m channel. */
+    private final FileChannel mChannel;
+
+    /** The m buffer. */
+    private final ByteBuffer mBuffer = ByteBuffer.allocateDirect(65536)
+        .order(ByteOrder.LITTLE_ENDIAN);
+
+    /**
+     * Instantiates a new binary matrix writer.
+     *
+     * @param file the file
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public BinaryMatrixWriter(Path file) throws IOException {
+      mChannel = FileChannel.open(file,
+          StandardOpenOption.CREATE,
+          StandardOpenOption.WRITE,
+          StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    @Override
+    public void writeHeader(List<Sample> samples, int rows)
+        throws IOException {
+      // The row count is filled in on close
+      mBuffer.putInt(MAGIC);
+      mBuffer.putInt(0);
+      mBuffer.putInt(samples.size());
+    }
+
+    @Override
+    public void writeRow(ProfileRegion region, int[] values)
+        throws IOException {
+      if (mBuffer.remaining() < 4 + values.length * 4) {
+        flush();
+      }
+
+      mBuffer.putInt(region.getIndex());
+
+      for (int v : values) {
+        mBuffer.putInt(v);
+      }
+    }
+
+    /**
+     * Flush.
+     *
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    private void flush() throws IOException {
+      mBuffer.flip();
+
+      while (mBuffer.hasRemaining()) {
+        mChannel.write(mBuffer);
+      }
+
+      mBuffer.clear();
+    }
+
+    @Override
+    public void close(int rows) throws IOException {
+      try {
+        flush();
+
+        ByteBuffer count = ByteBuffer.allocate(4)
+            .order(ByteOrder.LITTLE_ENDIAN);
+        count.putInt(rows);
+        count.flip();
+
+        mChannel.write(count, 4);
+      } finally {
+        mChannel.close();
+      }
+    }
+  }
+}
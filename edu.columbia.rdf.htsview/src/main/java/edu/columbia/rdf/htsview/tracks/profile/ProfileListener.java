@@ -0,0 +1,32 @@
+/**
+ * Copyright 2016 Antony Holmes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.columbia.rdf.htsview.tracks.profile;
+
+/**
+ * Receives progress updates from an aggregate profile.
+ *
+ * @author Antony Holmes
+ */
+public interface ProfileListener {
+
+  /**
+   * Called each time a batch of regions has been added to the profile.
+   *
+   * @param done the number of regions processed so far.
+   * @param total the total number of regions.
+   */
+  public void progress(int done, int total);
+}
@@ -0,0 +1,180 @@
+/**
+ * Copyright 2016 Antony Holmes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.columbia.rdf.htsview.tracks.profile;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import org.jebtk.bioinformatics.genomic.Chromosome;
+import org.jebtk.bioinformatics.genomic.ChromosomeService;
+import org.jebtk.bioinformatics.genomic.Genome;
+import org.jebtk.bioinformatics.genomic.GenomicRegion;
+import org.jebtk.core.io.FileUtils;
+import org.jebtk.core.text.TextUtils;
+
+/**
+ * A locus to profile. The profile is centered on the middle of the region,
+ * or on its start if the region is a single point such as a TSS. Profiles of
+ * regions on the reverse strand are flipped so that all rows read 5' to 3'.
+ *
+ * @author Antony Holmes
+ */
+public class ProfileRegion {
+
+  /** Sorts regions by chromosome then position for locality of access. */
+  public static final Comparator<ProfileRegion> LOCATION_COMPARATOR = new Comparator<ProfileRegion>() {
+    @Override
+    public int compare(ProfileRegion r1, ProfileRegion r2) {
+      int c = r1.mRegion.getChr().toString()
+          .compareTo(r2.mRegion.getChr().toString());
+
+      if (c != 0) {
+        return c;
+      }
+
+      return Integer.compare(r1.getCenter(), r2.getCenter());
+    }
+  };
+
+  /** The m index. */
+  private final int mIndex;
+
+  /** The m region. */
+  private final GenomicRegion mRegion;
+
+  /** The m reverse. */
+  private final boolean mReverse;
+
+  /**
+   * Instantiates a new profile region.
+   *
+   * @param index the index of the region in the original list, which is
+   *          also its row in the heatmap.
+   * @param region the region
+   * @param reverse true if the region is on the reverse strand.
+   */
+  public ProfileRegion(int index, GenomicRegion region, boolean reverse) {
+    mIndex = index;
+    mRegion = region;
+    mReverse = reverse;
+  }
+
+  /**
+   * Gets the index.
+   *
+   * @return the index
+   */
+  public int getIndex() {
+    return mIndex;
+  }
+
+  /**
+   * Gets the region.
+   *
+   * @return the region
+   */
+  public GenomicRegion getRegion() {
+    return mRegion;
+  }
+
+  /**
+   * Checks if is reverse.
+   *
+   * @return true, if is reverse
+   */
+  public boolean isReverse() {
+    return mReverse;
+  }
+
+  /**
+   * Gets the center.
+   *
+   * @return the center
+   */
+  public int getCenter() {
+    return (mRegion.getStart() + mRegion.getEnd()) / 2;
+  }
+
+  /**
+   * Create profile regions from a list of genomic regions. All regions are
+   * assumed to be on the forward strand.
+   *
+   * @param regions the regions
+   * @return the list
+   */
+  public static List<ProfileRegion> create(List<GenomicRegion> regions) {
+    List<ProfileRegion> ret = new ArrayList<ProfileRegion>(regions.size());
+
+    for (GenomicRegion region : regions) {
+      ret.add(new ProfileRegion(ret.size(), region, false));
+    }
+
+    return ret;
+  }
+
+  /**
+   * Parse regions from a BED file. The strand is read from the sixth column
+   * if present. Header, track and comment lines are skipped.
+   *
+   * @param genome the genome
+   * @param file the file
+   * @return the list
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public static List<ProfileRegion> parseBed(Genome genome, Path file)
+      throws IOException {
+    List<ProfileRegion> ret = new ArrayList<ProfileRegion>();
+
+    BufferedReader reader = FileUtils.newBufferedReader(file);
+
+    String line;
+
+    try {
+      while ((line = reader.readLine()) != null) {
+        if (TextUtils.isNullOrEmpty(line) || line.startsWith("#")
+            || line.startsWith("track") || line.startsWith("browser")) {
+          continue;
+        }
+
+        List<String> tokens = TextUtils.tabSplit(line);
+
+        if (tokens.size() < 3) {
+          continue;
+        }
+
+        Chromosome chr = ChromosomeService.getInstance().chr(genome,
+            tokens.get(0));
+
+        // BED is zero based, half open
+        int start = Integer.parseInt(tokens.get(1)) + 1;
+        int end = Integer.parseInt(tokens.get(2));
+
+        boolean reverse = tokens.size() > 5 && tokens.get(5).equals("-");
+
+        ret.add(new ProfileRegion(ret.size(),
+            new GenomicRegion(chr, start, Math.max(start, end)), reverse));
+      }
+    } finally {
+      reader.close();
+    }
+
+    return ret;
+  }
+}
@@ -0,0 +1,256 @@
+/**
+ * Copyright 2016 Antony Holmes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.columbia.rdf.htsview.tracks.profile;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.jebtk.core.io.FileUtils;
+
+/**
+ * The running mean profile and per region heatmap of one or more samples.
+ * Heatmap rows are stored as floats in the original order of the regions.
+ *
+ * @author Antony Holmes
+ */
+public class ProfileResult {
+
+  /** The m names. */
+  private final List<String> mNames;
+
+  /** The m flank. */
+  private final int mFlank;
+
+  /** The m window. */
+  private final int mWindow;
+
+  /** The m bins. */
+  private final int mBins;
+
+  /** Sum of each bin across regions, per sample. */
+  private final double[][] mSums;
+
+  /** Heatmap rows, per sample then region. */
+  private final float[][][] mHeatmap;
+
+  /** The number of regions added so far. */
+  private int mN = 0;
+
+  /**
+   * Instantiates a new profile result.
+   *
+   * @param names the sample names
+   * @param regions the number of regions
+   * @param flank the flank
+   * @param window the window
+   */
+  public ProfileResult(List<String> names, int regions, int flank,
+      int window) {
+    mNames = names;
+    mFlank = flank;
+    mWindow = window;
+    mBins = getBins(flank, window);
+
+    mSums = new double[names.size()][mBins];
+    mHeatmap = new float[names.size()][regions][];
+  }
+
+  /**
+   * Add a row to the profile.
+   *
+   * @param sample the sample index
+   * @param region the region index
+   * @param row the row
+   */
+  void add(int sample, int region, float[] row) {
+    double[] sums = mSums[sample];
+
+    for (int i = 0; i < mBins; ++i) {
+      sums[i] += row[i];
+    }
+
+    mHeatmap[sample][region] = row;
+  }
+
+  /**
+   * Increment the number of regions in the profile.
+   *
+   * @param n the n
+   */
+  void addRegions(int n) {
+    mN += n;
+  }
+
+  /**
+   * Gets the number of regions added to the profile.
+   *
+   * @return the regions
+   */
+  public int getRegions() {
+    return mN;
+  }
+
+  /**
+   * Gets the bins.
+   *
+   * @return the bins
+   */
+  public int getBins() {
+    return mBins;
+  }
+
+  /**
+   * Gets the names.
+   *
+   * @return the names
+   */
+  public List<String> getNames() {
+    return mNames;
+  }
+
+  /**
+   * Returns the mean profile of a sample.
+   *
+   * @param sample the sample index
+   * @return the mean
+   */
+  public double[] getMean(int sample) {
+    double[] ret = new double[mBins];
+
+    if (mN == 0) {
+      return ret;
+    }
+
+    for (int i = 0; i < mBins; ++i) {
+      ret[i] = mSums[sample][i] / mN;
+    }
+
+    return ret;
+  }
+
+  /**
+   * Returns a heatmap row. Rows of regions that were not processed, for
+   * example because the profile was cancelled, are null.
+   *
+   * @param sample the sample index
+   * @param region the region index
+   * @return the row
+   */
+  public float[] getRow(int sample, int region) {
+    return mHeatmap[sample][region];
+  }
+
+  /**
+   * Returns the offset of a bin from the center of the regions.
+   *
+   * @param bin the bin
+   * @return the offset
+   */
+  public int getOffset(int bin) {
+    return -mFlank + bin * mWindow;
+  }
+
+  /**
+   * Write the mean profiles as a table with one column per sample.
+   *
+   * @param file the file
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public void writeMean(Path file) throws IOException {
+    BufferedWriter writer = FileUtils.newBufferedWriter(file);
+
+    try {
+      writer.write("Offset");
+
+      for (String name : mNames) {
+        writer.write("\t" + name);
+      }
+
+      writer.newLine();
+
+      double[][] means = new double[mNames.size()][];
+
+      for (int s = 0; s < means.length; ++s) {
+        means[s] = getMean(s);
+      }
+
+      for (int i = 0; i < mBins; ++i) {
+        writer.write(Integer.toString(getOffset(i)));
+
+        for (int s = 0; s < means.length; ++s) {
+          writer.write("\t" + means[s][i]);
+        }
+
+        writer.newLine();
+      }
+    } finally {
+      writer.close();
+    }
+  }
+
+  /**
+   * Write the heatmap of a sample as a table with one row per region and one
+   * column per bin.
+   *
+   * @param sample the sample index
+   * @param file the file
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public void writeHeatmap(int sample, Path file) throws IOException {
+    BufferedWriter writer = FileUtils.newBufferedWriter(file);
+
+    try {
+      writer.write("Region");
+
+      for (int i = 0; i < mBins; ++i) {
+        writer.write("\t" + getOffset(i));
+      }
+
+      writer.newLine();
+
+      float[][] rows = mHeatmap[sample];
+
+      for (int r = 0; r < rows.length; ++r) {
+        if (rows[r] == null) {
+          continue;
+        }
+
+        writer.write(Integer.toString(r));
+
+        for (float v : rows[r]) {
+          writer.write("\t" + v);
+        }
+
+        writer.newLine();
+      }
+    } finally {
+      writer.close();
+    }
+  }
+
+  /**
+   * Returns the number of bins in a profile.
+   *
+   * @param flank the flank
+   * @param window the window
+   * @return the bins
+   */
+  public static int getBins(int flank, int window) {
+    return Math.max(1, 2 * flank / window);
+  }
+}
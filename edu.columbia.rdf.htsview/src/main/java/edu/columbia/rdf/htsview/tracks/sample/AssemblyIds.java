@@ -0,0 +1,65 @@
+/**
+ * Copyright 2016 Antony Holmes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.columbia.rdf.htsview.tracks.sample;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import edu.columbia.rdf.htsview.tracks.SampleAssembly;
+
+/**
+ * Gives each assembly an id that no other assembly will ever share, for use
+ * in cache keys. Identity hash codes are not unique, so two assemblies
+ * serving the same sample could otherwise be given each other's data. The
+ * assemblies are held weakly so that registering one does not keep it
+ * alive, and ids are never reused so entries cached for an assembly that
+ * has been collected can never be returned for a new one.
+ *
+ * @author Antony Holmes
+ */
+final class AssemblyIds {
+
+  /** The ids keyed by assembly. */
+  private static final Map<SampleAssembly, Integer> IDS = new WeakHashMap<SampleAssembly, Integer>();
+
+  /** The m next id. */
+  private static int mNextId = 1;
+
+  /**
+   * Instantiates a new assembly ids.
+   */
+  private AssemblyIds() {
+    // Do nothing
+  }
+
+  /**
+   * Returns the id of an assembly, assigning one the first time it is seen.
+   *
+   * @param assembly the assembly
+   * @return the id
+   */
+  public static synchronized int getId(SampleAssembly assembly) {
+    Integer id = IDS.get(assembly);
+
+    if (id == null) {
+      id = mNextId++;
+
+      IDS.put(assembly, id);
+    }
+
+    return id;
+  }
+}
@@ -0,0 +1,252 @@
+/**
+ * Copyright 2016 Antony Holmes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.columbia.rdf.htsview.tracks.sample;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+
+import org.jebtk.bioinformatics.genomic.Genome;
+import org.jebtk.bioinformatics.genomic.GenomicRegion;
+import org.jebtk.bioinformatics.genomic.Strand;
+import org.jebtk.core.settings.SettingsService;
+
+import edu.columbia.rdf.edb.Sample;
+import edu.columbia.rdf.htsview.cache.SharedCache;
+import edu.columbia.rdf.htsview.memory.MemoryGovernor;
+import edu.columbia.rdf.htsview.tracks.SampleAssembly;
+
+/**
+ * Builds fragment extended coverage from the read starts of a sample and
+ * caches it per sample, fragment length, region and window. Each read is
+ * extended in the direction of its strand to the fragment length and added
+ * to a per strand difference array over the bins, so coverage is built in a
+ * single pass over the reads plus a single pass over the bins. Both strands
+ * are kept so that switching strand or any other display option is served
+ * from the cache without fetching the reads again. Arrays returned by the
+ * cache are shared and must not be modified.
+ *
+ * @author Antony Holmes
+ */
+public class CoverageCache {
+
+  /**
+   * The Class CoverageCacheLoader.
+   */
+  private static class CoverageCacheLoader {
+
+    /** The Constant INSTANCE. */
+    private static final CoverageCache INSTANCE = new CoverageCache();
+  }
+
+  /**
+   * Gets the single instance of CoverageCache.
+   *
+   * @return single instance of CoverageCache
+   */
+  public static CoverageCache getInstance() {
+    return CoverageCacheLoader.INSTANCE;
+  }
+
+  /** Index of the + strand coverage. */
+  public static final int SENSE = 0;
+
+  /** Index of the - strand coverage. */
+  public static final int ANTISENSE = 1;
+
+  /** Coverage keyed by sample, fragment length, region and window. */
+  private final SharedCache<int[][]> mCache;
+
+  /**
+   * Instantiates a new coverage cache.
+   */
+  private CoverageCache() {
+    this(SettingsService.getInstance()
+        .getInt("htsview.coverage.max-entries"));
+  }
+
+  /**
+   * Instantiates a new coverage cache.
+   *
+   * @param maxEntries the max entries
+   */
+  public CoverageCache(int maxEntries) {
+    mCache = new SharedCache<int[][]>("Coverage", maxEntries,
+        new SharedCache.Weigher<int[][]>() {
+          @Override
+          public long getBytes(int[][] coverage) {
+            return (coverage[SENSE].length + coverage[ANTISENSE].length)
+                * 4L;
+          }
+        });
+
+    MemoryGovernor.getInstance().register(mCache,
+        MemoryGovernor.PRIORITY_CACHE);
+  }
+
+  /**
+   * Returns the extended coverage of a sample on each strand, building it
+   * from the read starts only if it is not already cached. Concurrent
+   * requests for the same coverage wait for a single build.
+   *
+   * @param assembly the assembly
+   * @param sample the sample
+   * @param genome the genome
+   * @param region the region
+   * @param window the window
+   * @param fragmentLength the fragment length
+   * @return the coverage of the + and - strands indexed by {@link #SENSE}
+   *         and {@link #ANTISENSE}. The arrays must not be modified.
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public int[][] getCoverage(final SampleAssembly assembly,
+      final Sample sample,
+      final Genome genome,
+      final GenomicRegion region,
+      final int window,
+      final int fragmentLength) throws IOException {
+    String key = AssemblyIds.getId(assembly) + ":" + sample.getId() + ":"
+        + genome.getAssembly() + ":" + region.getChr() + ":"
+        + region.getStart() + ":" + region.getEnd() + ":" + window + ":"
+        + fragmentLength;
+
+    return mCache.get(key, new Callable<int[][]>() {
+      @Override
+      public int[][] call() throws Exception {
+        return build(assembly, sample, genome, region, window, fragmentLength);
+      }
+    });
+  }
+
+  /**
+   * Fetch the reads overlapping a region and build their extended coverage.
+   *
+   * @param assembly the assembly
+   * @param sample the sample
+   * @param genome the genome
+   * @param region the region
+   * @param window the window
+   * @param fragmentLength the fragment length
+   * @return the coverage of the + and - strands.
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private static int[][] build(SampleAssembly assembly,
+      Sample sample,
+      Genome genome,
+      GenomicRegion region,
+      int window,
+      int fragmentLength) throws IOException {
+    int readLength = Math.max(1, assembly.getReadLength(sample));
+
+    int length = Math.max(fragmentLength, readLength);
+
+    // Reads starting up to a fragment either side of the region can be
+    // extended into it
+    GenomicRegion fetch = new GenomicRegion(region.getChr(),
+        Math.max(1, region.getStart() - length),
+        region.getEnd() + length);
+
+    int[] starts = assembly.getStarts(sample, genome, fetch, 1);
+    Strand[] strands = assembly.getStrands(sample, genome, fetch, 1);
+
+    return coverage(starts,
+        strands,
+        readLength,
+        length,
+        region.getStart(),
+        region.getEnd(),
+        window);
+  }
+
+  /**
+   * Build the binned coverage of reads extended to a fragment length. Reads
+   * on the + strand are extended to the right of their start and reads on
+   * the - strand to the left of their end. Each bin counts the fragments
+   * that overlap it, which matches the binned counts of a sample.
+   *
+   * @param starts the one based leftmost position of each read.
+   * @param strands the strand of each read. Reads without a strand are
+   *          treated as being on the + strand.
+   * @param readLength the read length
+   * @param fragmentLength the fragment length
+   * @param start the one based start of the region.
+   * @param end the one based end of the region.
+   * @param window the window
+   * @return the coverage of the + and - strands.
+   */
+  public static int[][] coverage(int[] starts,
+      Strand[] strands,
+      int readLength,
+      int fragmentLength,
+      int start,
+      int end,
+      int window) {
+    int base = SampleAssembly.getBin(start, window);
+    int bins = SampleAssembly.getBin(end, window) - base + 1;
+
+    // One extra element so the end of a fragment in the last bin has
+    // somewhere to go
+    int[] sense = new int[bins + 1];
+    int[] antisense = new int[bins + 1];
+
+    for (int i = 0; i < starts.length; ++i) {
+      int fs;
+      int fe;
+      int[] diff;
+
+      if (i < strands.length && strands[i] == Strand.ANTISENSE) {
+        fe = starts[i] + readLength - 1;
+        fs = fe - fragmentLength + 1;
+        diff = antisense;
+      } else {
+        fs = starts[i];
+        fe = fs + fragmentLength - 1;
+        diff = sense;
+      }
+
+      if (fe < start || fs > end) {
+        continue;
+      }
+
+      fs = Math.max(start, fs);
+      fe = Math.min(end, fe);
+
+      ++diff[SampleAssembly.getBin(fs, window) - base];
+      --diff[SampleAssembly.getBin(fe, window) - base + 1];
+    }
+
+    int[][] ret = { new int[bins], new int[bins] };
+
+    int s = 0;
+    int a = 0;
+
+    for (int i = 0; i < bins; ++i) {
+      s += sense[i];
+      a += antisense[i];
+
+      ret[SENSE][i] = s;
+      ret[ANTISENSE][i] = a;
+    }
+
+    return ret;
+  }
+
+  /**
+   * Clear the cache.
+   */
+  public void clear() {
+    mCache.clear();
+  }
+}
@@ -0,0 +1,273 @@
+/**
+ * Copyright 2016 Antony Holmes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.columbia.rdf.htsview.tracks.sample;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.jebtk.bioinformatics.genomic.Genome;
+import org.jebtk.bioinformatics.genomic.GenomicRegion;
+import org.jebtk.core.io.PathUtils;
+import org.jebtk.core.json.JsonBuilder;
+import org.jebtk.core.settings.SettingsService;
+
+import edu.columbia.rdf.edb.Sample;
+import edu.columbia.rdf.htsview.tracks.SampleAssembly;
+
+/**
+ * Displays the coverage of a sample with each read extended to the fragment
+ * length, optionally restricted to one strand. Coverage is built from the
+ * read starts by the {@link CoverageCache} so changing the strand or any other
+ * display option does not fetch the reads again. An input is extended to the
+ * same fragment length so that it is subtracted from, or compared with, the
+ * signal in the same units. Views too long to fetch individual reads fall
+ * back to the precomputed counts of the sample and input.
+ *
+ * @author Antony Holmes
+ */
+public class CoveragePlotTrack extends SamplePlotTrack {
+
+  /**
+   * 
+   */
+  private static final long serialVersionUID = 1L;
+
+  /** The Constant DEFAULT_FRAGMENT_LENGTH. */
+  public static final int DEFAULT_FRAGMENT_LENGTH = SettingsService
+      .getInstance().getInt("htsview.coverage.fragment-length");
+
+  /** The Constant MAX_LENGTH. */
+  private static final int MAX_LENGTH = SettingsService.getInstance()
+      .getInt("htsview.coverage.max-length");
+
+  /** The m fragment length. */
+  private int mFragmentLength = DEFAULT_FRAGMENT_LENGTH;
+
+  /** The m strand. */
+  private CoverageStrand mStrand = CoverageStrand.BOTH;
+
+  /** The m meta file. */
+  private final Path mMetaFile;
+
+  /**
+   * Instantiates a new coverage plot track.
+   *
+   * @param sample the sample
+   * @param assembly the assembly
+   */
+  public CoveragePlotTrack(Sample sample, SampleAssembly assembly) {
+    this(sample, assembly, null);
+  }
+
+  /**
+   * Instantiates a new coverage plot track of a sample stored on disk.
+   *
+   * @param sample the sample
+   * @param assembly the assembly
+   * @param metaFile the meta file the assembly was opened from so that the
+   *          track can be reopened from a saved view.
+   */
+  public CoveragePlotTrack(Sample sample, SampleAssembly assembly,
+      Path metaFile) {
+    super(sample, assembly);
+
+    mMetaFile = metaFile;
+  }
+
+  /**
+   * Sets the length reads are extended to.
+   *
+   * @param length the new fragment length
+   */
+  public void setFragmentLength(int length) {
+    mFragmentLength = Math.max(1, length);
+  }
+
+  /**
+   * Gets the fragment length.
+   *
+   * @return the fragment length
+   */
+  public int getFragmentLength() {
+    return mFragmentLength;
+  }
+
+  /**
+   * Sets the strand to display.
+   *
+   * @param strand the new strand
+   */
+  public void setStrand(CoverageStrand strand) {
+    mStrand = strand;
+  }
+
+  /**
+   * Gets the strand.
+   *
+   * @return the strand
+   */
+  public CoverageStrand getStrand() {
+    return mStrand;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see edu.columbia.rdf.htsview.tracks.sample.SamplePlotTrack#getType()
+   */
+  @Override
+  public String getType() {
+    return "Coverage";
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see
+   * edu.columbia.rdf.htsview.tracks.sample.SamplePlotTrack#getCounts(org.jebtk.
+   * bioinformatics.genomic.Genome,
+   * org.jebtk.bioinformatics.genomic.GenomicRegion, int)
+   */
+  @Override
+  protected int[] getCounts(Genome genome, GenomicRegion region, int window)
+      throws IOException {
+    if (region.getLength() > MAX_LENGTH) {
+      return super.getCounts(genome, region, window);
+    }
+
+    return getCoverage(mAssembly, mSample, genome, region, window);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see
+   * edu.columbia.rdf.htsview.tracks.sample.SamplePlotTrack#getInputCounts(org.
+   * jebtk.bioinformatics.genomic.Genome,
+   * org.jebtk.bioinformatics.genomic.GenomicRegion, int)
+   */
+  @Override
+  protected int[] getInputCounts(Genome genome,
+      GenomicRegion region,
+      int window) throws IOException {
+    if (region.getLength() > MAX_LENGTH) {
+      return super.getInputCounts(genome, region, window);
+    }
+
+    return getCoverage(mInputAssembly, mInputSample, genome, region, window);
+  }
+
+  /**
+   * Returns the extended coverage of a sample on the displayed strand.
+   *
+   * @param assembly the assembly
+   * @param sample the sample
+   * @param genome the genome
+   * @param region the region
+   * @param window the window
+   * @return the coverage. The array must not be modified.
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private int[] getCoverage(SampleAssembly assembly,
+      Sample sample,
+      Genome genome,
+      GenomicRegion region,
+      int window) throws IOException {
+    int[][] coverage = CoverageCache.getInstance().getCoverage(assembly,
+        sample,
+        genome,
+        region,
+        window,
+        mFragmentLength);
+
+    switch (mStrand) {
+    case SENSE:
+      return coverage[CoverageCache.SENSE];
+    case ANTISENSE:
+      return coverage[CoverageCache.ANTISENSE];
+    default:
+      int[] sense = coverage[CoverageCache.SENSE];
+      int[] antisense = coverage[CoverageCache.ANTISENSE];
+
+      int[] ret = new int[sense.length];
+
+      for (int i = 0; i < ret.length; ++i) {
+        ret[i] = sense[i] + antisense[i];
+      }
+
+      return ret;
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see
+   * edu.columbia.rdf.htsview.tracks.sample.SamplePlotTrack#prefetch(org.jebtk.
+   * bioinformatics.genomic.Genome,
+   * org.jebtk.bioinformatics.genomic.GenomicRegion)
+   */
+  @Override
+  public void prefetch(Genome genome, GenomicRegion region)
+      throws IOException {
+    int window = getResolution();
+
+    if (window < 1 || region.getLength() > MAX_LENGTH) {
+      super.prefetch(genome, region);
+
+      return;
+    }
+
+    // Prefetching runs in the background so build the coverage directly
+    CoverageCache.getInstance().getCoverage(mAssembly,
+        mSample,
+        genome,
+        region,
+        window,
+        mFragmentLength);
+
+    if (getSubtractInput() && mInputSample != null) {
+      CoverageCache.getInstance().getCoverage(mInputAssembly,
+          mInputSample,
+          genome,
+          region,
+          window,
+          mFragmentLength);
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see edu.columbia.rdf.htsview.tracks.sample.SamplePlotTrack#toJson(org.
+   * jebtk.core.json.JsonBuilder)
+   */
+  @Override
+  public void toJson(JsonBuilder json) {
+    commonJson(json);
+
+    json.add("type", "coverage");
+
+    if (mMetaFile != null) {
+      json.add("meta-file", PathUtils.toString(mMetaFile));
+    }
+
+    json.add("fragment-length", mFragmentLength);
+    json.add("strand", mStrand.name().toLowerCase());
+
+    json.endObject();
+  }
+}
@@ -0,0 +1,200 @@
+/**
+ * Copyright 2016 Antony Holmes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.columbia.rdf.htsview.tracks.sample;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import org.jebtk.bioinformatics.genomic.Genome;
+import org.jebtk.bioinformatics.genomic.GenomicRegion;
+import org.jebtk.core.settings.SettingsService;
+
+import edu.columbia.rdf.edb.Sample;
+import edu.columbia.rdf.htsview.cache.SharedCache;
+import edu.columbia.rdf.htsview.memory.MemoryGovernor;
+import edu.columbia.rdf.htsview.tracks.SampleAssembly;
+
+/**
+ * Input (control) samples are usually shared by many ChIP tracks. This cache
+ * holds the counts of each input sample for a region and window so that the
+ * input is fetched once per refresh rather than once per track. Concurrent
+ * requests for the same counts wait for a single fetch. Arrays returned by
+ * the cache are shared and must not be modified.
+ *
+ * @author Antony Holmes
+ */
+public class InputCountsCache {
+
+  /**
+   * The Class InputCountsCacheLoader.
+   */
+  private static class InputCountsCacheLoader {
+
+    /** The Constant INSTANCE. */
+    private static final InputCountsCache INSTANCE = new InputCountsCache();
+  }
+
+  /**
+   * Gets the single instance of InputCountsCache.
+   *
+   * @return single instance of InputCountsCache
+   */
+  public static InputCountsCache getInstance() {
+    return InputCountsCacheLoader.INSTANCE;
+  }
+
+  /** Counts keyed by assembly, sample, region and window. */
+  private final SharedCache<int[]> mCache;
+
+  /** The m mapped map. */
+  private final Map<String, Integer> mMappedMap = new HashMap<String, Integer>();
+
+  /**
+   * Instantiates a new input counts cache.
+   */
+  private InputCountsCache() {
+    this(SettingsService.getInstance()
+        .getInt("htsview.input-cache.max-entries"));
+  }
+
+  /**
+   * Instantiates a new input counts cache.
+   *
+   * @param maxEntries the max entries
+   */
+  public InputCountsCache(int maxEntries) {
+    mCache = new SharedCache<int[]>("Input counts", maxEntries,
+        SharedCache.INT_ARRAY_WEIGHER);
+
+    MemoryGovernor.getInstance().register(mCache,
+        MemoryGovernor.PRIORITY_CACHE);
+  }
+
+  /**
+   * Returns the counts of an input sample, fetching them from the assembly
+   * only if no other track has already done so.
+   *
+   * @param assembly the assembly
+   * @param sample the sample
+   * @param genome the genome
+   * @param region the region
+   * @param window the window
+   * @return the counts. The array must not be modified.
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public int[] getCounts(SampleAssembly assembly,
+      Sample sample,
+      Genome genome,
+      GenomicRegion region,
+      int window) throws IOException {
+    return getCounts(assembly, assembly, sample, genome, region, window);
+  }
+
+  /**
+   * Returns the counts of an input sample, fetching them from a source
+   * assembly only if no other track has already done so.
+   *
+   * @param assembly the assembly the counts are cached under.
+   * @param source the assembly to fetch the counts from. This may differ
+   *          from the assembly, for example to bypass a tiled assembly whose
+   *          tiles are tracking the current view.
+   * @param sample the sample
+   * @param genome the genome
+   * @param region the region
+   * @param window the window
+   * @return the counts. The array must not be modified.
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public int[] getCounts(SampleAssembly assembly,
+      final SampleAssembly source,
+      final Sample sample,
+      final Genome genome,
+      final GenomicRegion region,
+      final int window) throws IOException {
+    String key = getKey(assembly, sample, genome) + ":" + region.getChr() + ":"
+        + region.getStart() + ":" + region.getEnd() + ":" + window;
+
+    return mCache.get(key, new Callable<int[]>() {
+      @Override
+      public int[] call() throws Exception {
+        return SampleAssemblies
+            .getCounts(source, sample, genome, region, window);
+      }
+    });
+  }
+
+  /**
+   * Returns the mapped reads of a sample. Sample tracks use this too so
+   * that the assembly is only asked once.
+   *
+   * @param assembly the assembly
+   * @param sample the sample
+   * @param genome the genome
+   * @param window the window
+   * @return the mapped reads or -1 if unknown.
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public int getMappedReads(SampleAssembly assembly,
+      Sample sample,
+      Genome genome,
+      int window) throws IOException {
+    String key = getKey(assembly, sample, genome) + ":" + window;
+
+    synchronized (mMappedMap) {
+      if (mMappedMap.containsKey(key)) {
+        return mMappedMap.get(key);
+      }
+    }
+
+    int ret = assembly.getMappedReads(sample, genome, window);
+
+    synchronized (mMappedMap) {
+      mMappedMap.put(key, ret);
+    }
+
+    return ret;
+  }
+
+  /**
+   * Clear the cache.
+   */
+  public void clear() {
+    mCache.clear();
+
+    synchronized (mMappedMap) {
+      mMappedMap.clear();
+    }
+  }
+
+  /**
+   * Gets the key.
+   *
+   * @param assembly the assembly
+   * @param sample the sample
+   * @param genome the genome
+   * @return the key
+   */
+  private static String getKey(SampleAssembly assembly,
+      Sample sample,
+      Genome genome) {
+    // The same sample may be served by different assemblies (e.g. a local
+    // file and the web) so the assembly is part of the key
+    return AssemblyIds.getId(assembly) + ":" + sample.getId() + ":"
+        + genome.getAssembly();
+  }
+}
@@ -0,0 +1,366 @@
+/**
+ * Copyright 2016 Antony Holmes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.columbia.rdf.htsview.tracks.sample;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.Callable;
+
+import org.jebtk.bioinformatics.genomic.Chromosome;
+import org.jebtk.bioinformatics.genomic.ChromosomeService;
+import org.jebtk.bioinformatics.genomic.Genome;
+import org.jebtk.bioinformatics.genomic.GenomicRegion;
+import org.jebtk.core.settings.SettingsService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import edu.columbia.rdf.edb.Sample;
+import edu.columbia.rdf.htsview.cache.CacheDirs;
+import edu.columbia.rdf.htsview.cache.SharedCache;
+import edu.columbia.rdf.htsview.memory.MemoryGovernor;
+import edu.columbia.rdf.htsview.metrics.Metrics;
+import edu.columbia.rdf.htsview.tracks.SampleAssembly;
+
+/**
+ * Serves chromosome scale views from per sample summaries rather than raw
+ * counts. The summary of a sample and chromosome is built once from counts
+ * at 1 kb, kept in memory and, for database samples, written to the user's
+ * cache directory so later sessions do not rebuild it. Overview values are
+ * counts per bin, like those of a normal view, so a track keeps its scale
+ * when a view crosses {@code htsview.overview.min-length}: either the sum
+ * of the 1 kb counts in each bin or, if {@code htsview.overview.mode} is
+ * {@code max}, the largest 1 kb count in the bin scaled up to the bin
+ * width so that narrow peaks remain visible.
+ *
+ * @author Antony Holmes
+ */
+public class OverviewService {
+
+  /** The Constant LOG. */
+  private static final Logger LOG = LoggerFactory
+      .getLogger(OverviewService.class);
+
+  /**
+   * The Class OverviewServiceLoader.
+   */
+  private static class OverviewServiceLoader {
+
+    /** The Constant INSTANCE. */
+    private static final OverviewService INSTANCE = new OverviewService();
+  }
+
+  /**
+   * Gets the single instance of OverviewService.
+   *
+   * @return single instance of OverviewService
+   */
+  public static OverviewService getInstance() {
+    return OverviewServiceLoader.INSTANCE;
+  }
+
+  /** The Constant WINDOW of the summary bins. */
+  public static final int WINDOW = 100000;
+
+  /** The Constant FINE_WINDOW the summaries are built from. */
+  public static final int FINE_WINDOW = 1000;
+
+  /** The Constant CHUNK of a chromosome fetched at once when building. */
+  private static final int CHUNK = 10000000;
+
+  /** The Constant EXT. */
+  private static final String EXT = ".ovr";
+
+  /** The m min length. */
+  private final int mMinLength = SettingsService.getInstance()
+      .getInt("htsview.overview.min-length");
+
+  /** The m max bins. */
+  private final int mMaxBins = Math.max(1,
+      SettingsService.getInstance().getInt("htsview.overview.max-bins"));
+
+  /** The m show max. */
+  private final boolean mShowMax = "max".equals(
+      SettingsService.getInstance().getString("htsview.overview.mode"));
+
+  /** The m dir. */
+  private final Path mDir = CacheDirs.get("overview");
+
+  /** How long summaries of a sample without a version are kept, in ms. */
+  private final long mUnversionedTtl = SettingsService.getInstance()
+      .getInt("htsview.overview.unversioned-ttl-hours") * 3600000L;
+
+  /** Summaries keyed by sample and chromosome. */
+  private final SharedCache<OverviewSummary> mCache = new SharedCache<OverviewSummary>(
+      "Overview summaries",
+      SettingsService.getInstance().getInt("htsview.overview.max-entries"),
+      new SharedCache.Weigher<OverviewSummary>() {
+        @Override
+        public long getBytes(OverviewSummary summary) {
+          return summary.getBytes();
+        }
+      });
+
+  /**
+   * Instantiates a new overview service.
+   */
+  private OverviewService() {
+    // Summaries of database samples are on disk so are cheap to reload
+    MemoryGovernor.getInstance().register(mCache,
+        MemoryGovernor.PRIORITY_CACHE);
+  }
+
+  /**
+   * Returns true if a region is large enough to be drawn from summaries.
+   *
+   * @param region the region
+   * @return true, if is overview
+   */
+  public boolean isOverview(GenomicRegion region) {
+    return mMinLength > 0 && region.getLength() >= mMinLength;
+  }
+
+  /**
+   * Returns the window an overview of a region should be drawn at. This is
+   * at least the requested window, coarse enough that the region has no
+   * more than {@code htsview.overview.max-bins} bins, and a multiple of the
+   * summary window.
+   *
+   * @param region the region
+   * @param window the requested window
+   * @return the window
+   */
+  public int getWindow(GenomicRegion region, int window) {
+    int w = Math.max(window, (region.getLength() + mMaxBins - 1) / mMaxBins);
+
+    return (w + WINDOW - 1) / WINDOW * WINDOW;
+  }
+
+  /**
+   * Returns the overview values of a region.
+   *
+   * @param assembly the assembly
+   * @param sample the sample
+   * @param genome the genome
+   * @param region the region
+   * @param window the window, which must come from
+   *          {@link #getWindow(GenomicRegion, int)}.
+   * @return the values per bin.
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public int[] getCounts(SampleAssembly assembly,
+      Sample sample,
+      Genome genome,
+      GenomicRegion region,
+      int window) throws IOException {
+    OverviewSummary summary = getSummary(assembly,
+        sample,
+        genome,
+        region.getChr());
+
+    int s = SampleAssembly.getBin(region.getStart(), window);
+    int e = SampleAssembly.getBin(region.getEnd(), window);
+
+    int[] ret = new int[e - s + 1];
+
+    // Summary bins per bin
+    int f = window / WINDOW;
+
+    // Fine bins per bin
+    int n = window / FINE_WINDOW;
+
+    for (int i = 0; i < ret.length; ++i) {
+      int first = (s + i) * f;
+
+      if (mShowMax) {
+        int max = 0;
+
+        for (int j = 0; j < f; ++j) {
+          max = Math.max(max, summary.getMax(first + j));
+        }
+
+        ret[i] = (int) Math.min(Integer.MAX_VALUE, (long) max * n);
+      } else {
+        // Reads crossing a 1 kb boundary are counted in both fine bins so
+        // the sum overstates the count by about the read length over 1 kb
+        long sum = 0;
+
+        for (int j = 0; j < f; ++j) {
+          sum += summary.getSum(first + j);
+        }
+
+        ret[i] = (int) Math.min(Integer.MAX_VALUE, sum);
+      }
+    }
+
+    return ret;
+  }
+
+  /**
+   * Gets the summary of a sample and chromosome, building it if necessary.
+   * Concurrent requests for the same summary wait for a single build.
+   *
+   * @param assembly the assembly
+   * @param sample the sample
+   * @param genome the genome
+   * @param chr the chr
+   * @return the summary
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private OverviewSummary getSummary(SampleAssembly assembly,
+      final Sample sample,
+      final Genome genome,
+      final Chromosome chr) throws IOException {
+    // Tiled assemblies track the current view so build around them
+    final SampleAssembly source = assembly instanceof SampleAssemblyTiled
+        ? ((SampleAssemblyTiled) assembly).getAssembly()
+        : assembly;
+
+    String key = AssemblyIds.getId(source) + ":" + sample.getId() + ":"
+        + genome.getAssembly() + ":" + chr;
+
+    OverviewSummary summary = mCache.getIfPresent(key);
+
+    if (summary != null) {
+      Metrics.getInstance().counter("OverviewService.hits").inc();
+
+      return summary;
+    }
+
+    return mCache.get(key, new Callable<OverviewSummary>() {
+      @Override
+      public OverviewSummary call() throws Exception {
+        return load(source, sample, genome, chr);
+      }
+    });
+  }
+
+  /**
+   * Read a summary from the cache directory, or build and store it if it is
+   * missing, was built from an older version of the sample or, for a sample
+   * without a version, has expired.
+   *
+   * @param assembly the assembly
+   * @param sample the sample
+   * @param genome the genome
+   * @param chr the chr
+   * @return the overview summary
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private OverviewSummary load(SampleAssembly assembly,
+      Sample sample,
+      Genome genome,
+      Chromosome chr) throws IOException {
+    String version = assembly.getVersion(sample);
+
+    // Only database samples have ids that are stable between sessions
+    Path file = null;
+
+    if (sample.getId() > 0) {
+      file = mDir.resolve(Integer.toString(sample.getId()))
+          .resolve(genome.getAssembly()).resolve(chr + EXT);
+    }
+
+    if (file != null && Files.exists(file)) {
+      try {
+        OverviewSummary summary = OverviewSummary.read(file);
+
+        if (summary != null && summary.getWindow() == WINDOW
+            && summary.getFineWindow() == FINE_WINDOW
+            && isCurrent(file, summary, version)) {
+          return summary;
+        }
+      } catch (IOException e) {
+        LOG.warn("Could not read overview {}: {}", file, e.getMessage());
+      }
+    }
+
+    OverviewSummary summary = build(assembly, sample, genome, chr, version);
+
+    if (file != null) {
+      try {
+        summary.write(file);
+      } catch (IOException e) {
+        LOG.warn("Could not write overview {}: {}", file, e.getMessage());
+      }
+    }
+
+    return summary;
+  }
+
+  /**
+   * Returns true if a stored summary matches the version of a sample. A
+   * sample without a version cannot be checked, so its summary is only
+   * trusted until it is older than the unversioned time to live.
+   *
+   * @param file the file
+   * @param summary the summary
+   * @param version the version or null.
+   * @return true, if is current
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private boolean isCurrent(Path file, OverviewSummary summary, String version)
+      throws IOException {
+    if (version != null) {
+      return version.equals(summary.getVersion());
+    }
+
+    return System.currentTimeMillis()
+        - Files.getLastModifiedTime(file).toMillis() < mUnversionedTtl;
+  }
+
+  /**
+   * Build the summary of a chromosome from its 1 kb counts, fetched a chunk
+   * at a time to bound memory.
+   *
+   * @param assembly the assembly
+   * @param sample the sample
+   * @param genome the genome
+   * @param chr the chr
+   * @param version the version
+   * @return the overview summary
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private static OverviewSummary build(SampleAssembly assembly,
+      Sample sample,
+      Genome genome,
+      Chromosome chr,
+      String version) throws IOException {
+    long start = System.currentTimeMillis();
+
+    int size = ChromosomeService.getInstance().size(genome, chr);
+
+    OverviewSummary ret = new OverviewSummary(version, WINDOW, FINE_WINDOW,
+        Math.max(1, (size - 1) / WINDOW + 1));
+
+    for (int s = 1; s <= size; s += CHUNK) {
+      int e = Math.min(size, s + CHUNK - 1);
+
+      ret.add((s - 1) / FINE_WINDOW,
+          assembly.getCounts(sample,
+              genome,
+              new GenomicRegion(chr, s, e),
+              FINE_WINDOW));
+    }
+
+    LOG.info("Built overview of {} {} in {} ms.",
+        sample.getName(),
+        chr,
+        System.currentTimeMillis() - start);
+
+    return ret;
+  }
+}
@@ -0,0 +1,260 @@
+/**
+ * Copyright 2016 Antony Holmes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.columbia.rdf.htsview.tracks.sample;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Summary of the counts of one sample across one chromosome at a coarse
+ * resolution. Each summary bin holds the total count and the largest count
+ * of any fine bin within it, so that overviews can show either the mean
+ * signal or the peaks.
+ *
+ * @author Antony Holmes
+ */
+public class OverviewSummary {
+
+  /** The Constant MAGIC. */
+  private static final int MAGIC = 0x4F565256;
+
+  /** The m version of the sample the summary was built from. */
+  private final String mVersion;
+
+  /** The m window of the summary bins. */
+  private final int mWindow;
+
+  /** The m window of the fine bins. */
+  private final int mFineWindow;
+
+  /** The m sums. */
+  private final long[] mSums;
+
+  /** The m max fine bin counts. */
+  private final int[] mMax;
+
+  /**
+   * Instantiates a new overview summary.
+   *
+   * @param version the version, may be null.
+   * @param window the window
+   * @param fineWindow the fine window
+   * @param bins the bins
+   */
+  public OverviewSummary(String version, int window, int fineWindow,
+      int bins) {
+    this(version, window, fineWindow, new long[bins], new int[bins]);
+  }
+
+  /**
+   * Instantiates a new overview summary.
+   *
+   * @param version the version
+   * @param window the window
+   * @param fineWindow the fine window
+   * @param sums the sums
+   * @param max the max
+   */
+  private OverviewSummary(String version, int window, int fineWindow,
+      long[] sums, int[] max) {
+    mVersion = version;
+    mWindow = window;
+    mFineWindow = fineWindow;
+    mSums = sums;
+    mMax = max;
+  }
+
+  /**
+   * Add the counts of consecutive fine bins.
+   *
+   * @param fineBin the index of the first fine bin.
+   * @param counts the counts
+   */
+  void add(int fineBin, int[] counts) {
+    int f = mWindow / mFineWindow;
+
+    for (int i = 0; i < counts.length; ++i) {
+      int bin = (fineBin + i) / f;
+
+      if (bin >= mSums.length) {
+        break;
+      }
+
+      mSums[bin] += counts[i];
+      mMax[bin] = Math.max(mMax[bin], counts[i]);
+    }
+  }
+
+  /**
+   * Gets the version.
+   *
+   * @return the version
+   */
+  public String getVersion() {
+    return mVersion;
+  }
+
+  /**
+   * Gets the window.
+   *
+   * @return the window
+   */
+  public int getWindow() {
+    return mWindow;
+  }
+
+  /**
+   * Gets the fine window.
+   *
+   * @return the fine window
+   */
+  public int getFineWindow() {
+    return mFineWindow;
+  }
+
+  /**
+   * Returns the approximate memory held by the summary.
+   *
+   * @return the bytes
+   */
+  public long getBytes() {
+    return mSums.length * 12L;
+  }
+
+  /**
+   * Gets the number of summary bins.
+   *
+   * @return the bins
+   */
+  public int getBins() {
+    return mSums.length;
+  }
+
+  /**
+   * Gets the total count of a summary bin.
+   *
+   * @param bin the bin
+   * @return the sum
+   */
+  public long getSum(int bin) {
+    return bin >= 0 && bin < mSums.length ? mSums[bin] : 0;
+  }
+
+  /**
+   * Gets the largest fine bin count within a summary bin.
+   *
+   * @param bin the bin
+   * @return the max
+   */
+  public int getMax(int bin) {
+    return bin >= 0 && bin < mMax.length ? mMax[bin] : 0;
+  }
+
+  /**
+   * Write the summary to a file. The summary is written to a temporary file
+   * that is then moved into place so that another session never reads a
+   * partially written summary.
+   *
+   * @param file the file
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public void write(Path file) throws IOException {
+    Files.createDirectories(file.getParent());
+
+    Path tmp = Files.createTempFile(file.getParent(), "overview", ".tmp");
+
+    try {
+      write(tmp, this);
+
+      Files.move(tmp,
+          file,
+          StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(tmp);
+    }
+  }
+
+  /**
+   * Write a summary to a file in place.
+   *
+   * @param file the file
+   * @param summary the summary
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private static void write(Path file, OverviewSummary summary)
+      throws IOException {
+    DataOutputStream out = new DataOutputStream(
+        new BufferedOutputStream(Files.newOutputStream(file)));
+
+    try {
+      out.writeInt(MAGIC);
+      out.writeUTF(summary.mVersion != null ? summary.mVersion : "");
+      out.writeInt(summary.mWindow);
+      out.writeInt(summary.mFineWindow);
+      out.writeInt(summary.mSums.length);
+
+      for (int i = 0; i < summary.mSums.length; ++i) {
+        out.writeLong(summary.mSums[i]);
+        out.writeInt(summary.mMax[i]);
+      }
+    } finally {
+      out.close();
+    }
+  }
+
+  /**
+   * Read a summary from a file.
+   *
+   * @param file the file
+   * @return the summary or null if the file is not a summary.
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public static OverviewSummary read(Path file) throws IOException {
+    DataInputStream in = new DataInputStream(
+        new BufferedInputStream(Files.newInputStream(file)));
+
+    try {
+      if (in.readInt() != MAGIC) {
+        return null;
+      }
+
+      String version = in.readUTF();
+      int window = in.readInt();
+      int fineWindow = in.readInt();
+      int n = in.readInt();
+
+      long[] sums = new long[n];
+      int[] max = new int[n];
+
+      for (int i = 0; i < n; ++i) {
+        sums[i] = in.readLong();
+        max[i] = in.readInt();
+      }
+
+      return new OverviewSummary(version.length() > 0 ? version : null,
+          window, fineWindow, sums, max);
+    } finally {
+      in.close();
+    }
+  }
+}
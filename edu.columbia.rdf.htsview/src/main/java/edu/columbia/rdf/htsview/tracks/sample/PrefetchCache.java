@@ -0,0 +1,197 @@
+/**
+ * Copyright 2016 Antony Holmes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.columbia.rdf.htsview.tracks.sample;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+
+import org.jebtk.bioinformatics.genomic.Genome;
+import org.jebtk.bioinformatics.genomic.GenomicRegion;
+import org.jebtk.core.settings.SettingsService;
+
+import edu.columbia.rdf.edb.Sample;
+import edu.columbia.rdf.htsview.cache.SharedCache;
+import edu.columbia.rdf.htsview.memory.MemoryGovernor;
+import edu.columbia.rdf.htsview.metrics.Metrics;
+import edu.columbia.rdf.htsview.tracks.SampleAssembly;
+
+/**
+ * Holds counts fetched ahead of time for loci the user is likely to view
+ * next. Only prefetched counts are stored; a normal fetch reads from the
+ * cache if the counts are present, waits if they are being prefetched and
+ * otherwise goes straight to the assembly. The cache is bounded by the total
+ * number of bins it holds. Arrays returned by the cache are shared and must
+ * not be modified.
+ *
+ * @author Antony Holmes
+ */
+public class PrefetchCache {
+
+  /**
+   * The Class PrefetchCacheLoader.
+   */
+  private static class PrefetchCacheLoader {
+
+    /** The Constant INSTANCE. */
+    private static final PrefetchCache INSTANCE = new PrefetchCache();
+  }
+
+  /**
+   * Gets the single instance of PrefetchCache.
+   *
+   * @return single instance of PrefetchCache
+   */
+  public static PrefetchCache getInstance() {
+    return PrefetchCacheLoader.INSTANCE;
+  }
+
+  /** The m max bins. */
+  private final long mMaxBins;
+
+  /** Counts keyed by assembly, sample, region and window. */
+  private final SharedCache<int[]> mCache;
+
+  /**
+   * Instantiates a new prefetch cache.
+   */
+  private PrefetchCache() {
+    this(SettingsService.getInstance().getInt("htsview.prefetch.max-bins"));
+  }
+
+  /**
+   * Instantiates a new prefetch cache.
+   *
+   * @param maxBins the max bins
+   */
+  public PrefetchCache(long maxBins) {
+    mMaxBins = Math.max(1, maxBins);
+
+    mCache = new SharedCache<int[]>("Prefetched counts", Integer.MAX_VALUE,
+        mMaxBins * 4, SharedCache.INT_ARRAY_WEIGHER);
+
+    MemoryGovernor.getInstance().register(mCache,
+        MemoryGovernor.PRIORITY_PREFETCH);
+  }
+
+  /**
+   * Returns the counts of a sample, using prefetched counts if available.
+   *
+   * @param assembly the assembly
+   * @param sample the sample
+   * @param genome the genome
+   * @param region the region
+   * @param window the window
+   * @return the counts. The array must not be modified.
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public int[] getCounts(SampleAssembly assembly,
+      Sample sample,
+      Genome genome,
+      GenomicRegion region,
+      int window) throws IOException {
+    String key = getKey(assembly, sample, genome, region, window);
+
+    int[] counts = mCache.getIfPresent(key);
+
+    if (counts != null) {
+      Metrics.getInstance().counter("PrefetchCache.hits").inc();
+
+      return counts;
+    }
+
+    // Already on its way, so wait rather than fetch twice
+    counts = mCache.await(key);
+
+    if (counts != null) {
+      Metrics.getInstance().counter("PrefetchCache.waits").inc();
+
+      return counts;
+    }
+
+    Metrics.getInstance().counter("PrefetchCache.misses").inc();
+
+    return assembly.getCounts(sample, genome, region, window);
+  }
+
+  /**
+   * Fetch counts ahead of time and store them in the cache.
+   *
+   * @param assembly the assembly the counts will later be requested from.
+   * @param source the assembly to fetch the counts from. This may differ
+   *          from the assembly, for example to bypass a tiled assembly whose
+   *          tiles are tracking the current view.
+   * @param sample the sample
+   * @param genome the genome
+   * @param region the region
+   * @param window the window
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public void prefetch(SampleAssembly assembly,
+      final SampleAssembly source,
+      final Sample sample,
+      final Genome genome,
+      final GenomicRegion region,
+      final int window) throws IOException {
+    // Do not let a single huge view flush everything else
+    long bins = (long) region.getLength() / window + 1;
+
+    if (bins > mMaxBins / 4) {
+      return;
+    }
+
+    String key = getKey(assembly, sample, genome, region, window);
+
+    // Touches the entry so it stays in the cache
+    if (mCache.contains(key)) {
+      return;
+    }
+
+    mCache.get(key, new Callable<int[]>() {
+      @Override
+      public int[] call() throws Exception {
+        return SampleAssemblies
+            .getCounts(source, sample, genome, region, window);
+      }
+    });
+  }
+
+  /**
+   * Clear the cache.
+   */
+  public void clear() {
+    mCache.clear();
+  }
+
+  /**
+   * Gets the key.
+   *
+   * @param assembly the assembly
+   * @param sample the sample
+   * @param genome the genome
+   * @param region the region
+   * @param window the window
+   * @return the key
+   */
+  private static String getKey(SampleAssembly assembly,
+      Sample sample,
+      Genome genome,
+      GenomicRegion region,
+      int window) {
+    return AssemblyIds.getId(assembly) + ":" + sample.getId() + ":"
+        + genome.getAssembly() + ":" + region.getChr() + ":"
+        + region.getStart() + ":" + region.getEnd() + ":" + window;
+  }
+}
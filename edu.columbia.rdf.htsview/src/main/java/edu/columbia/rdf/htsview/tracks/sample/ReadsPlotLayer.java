@@ -30,6 +30,8 @@ import org.jebtk.graphplot.figure.Figure;
 import org.jebtk.graphplot.figure.SubFigure;
 import org.jebtk.modern.graphics.DrawingContext;
 
+import edu.columbia.rdf.htsview.metrics.Metrics;
+
 /**
  * Draw peaks.
  *
@@ -186,6 +188,27 @@ public class ReadsPlotLayer extends AxesClippedLayer {
       Figure figure,
       SubFigure subFigure,
       Axes axes) {
+    long start = System.nanoTime();
+
+    drawLayer(g2, context, figure, subFigure, axes);
+
+    Metrics.getInstance().timer("paint.ReadsPlotLayer").stop(start);
+  }
+
+  /**
+   * Draw the layer.
+   *
+   * @param g2 the g 2
+   * @param context the context
+   * @param figure the figure
+   * @param subFigure the sub figure
+   * @param axes the axes
+   */
+  private void drawLayer(Graphics2D g2,
+      DrawingContext context,
+      Figure figure,
+      SubFigure subFigure,
+      Axes axes) {
 
     if (CollectionUtils.isNullOrEmpty(mStarts)) {
       return;
@@ -32,6 +32,7 @@ import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 
 import edu.columbia.rdf.edb.Sample;
+import edu.columbia.rdf.htsview.metrics.Metrics;
 import edu.columbia.rdf.htsview.tracks.SampleAssembly;
 import edu.columbia.rdf.htsview.tracks.TitleProperties;
 import edu.columbia.rdf.htsview.tracks.TrackSubFigure;
@@ -381,9 +382,16 @@ public class ReadsPlotTrack extends SamplePlotTrack {
       int height,
       int margin) throws IOException {
 
-    int[] starts = mAssembly.getStarts(mSample, genome, displayRegion, resolution);
+    long start = System.nanoTime();
 
-    Strand[] strands = mAssembly.getStrands(mSample, genome, displayRegion, resolution);
+    // Shared with any other track of the sample in this refresh
+    SampleFetchCoordinator.Reads reads = SampleFetchCoordinator.getInstance()
+        .getReads(mAssembly, mSample, genome, displayRegion, resolution);
+
+    int[] starts = reads.getStarts();
+    Strand[] strands = reads.getStrands();
+
+    Metrics.getInstance().fetch(getName(), System.nanoTime() - start);
 
     if (starts.length > MAX_READS_DISPLAY) {
       starts = Arrays.copyOf(starts, MAX_READS_DISPLAY); // CollectionUtils.subSample(starts,
@@ -0,0 +1,144 @@
+/**
+ * Copyright 2016 Antony Holmes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.columbia.rdf.htsview.tracks.sample;
+
+import java.io.IOException;
+
+import org.jebtk.bioinformatics.genomic.Genome;
+import org.jebtk.bioinformatics.genomic.GenomicRegion;
+import org.jebtk.bioinformatics.genomic.Strand;
+
+import edu.columbia.rdf.edb.Sample;
+import edu.columbia.rdf.htsview.tracks.SampleAssembly;
+
+/**
+ * Access to sample assemblies from background threads. Assemblies are not
+ * thread safe: tiled assemblies keep per view state and the web and file
+ * readers share connections and file handles. Calls made through this class
+ * are serialized on the underlying assembly, which the tiled assembly of a
+ * track wraps, so work running on a pool of threads cannot corrupt an
+ * assembly that the view is using at the same time.
+ *
+ * @author Antony Holmes
+ */
+public final class SampleAssemblies {
+
+  /**
+   * Instantiates a new sample assemblies.
+   */
+  private SampleAssemblies() {
+    // Do nothing
+  }
+
+  /**
+   * Returns the assembly a tiled assembly wraps, or the assembly itself.
+   * Background work should read from the source so that it does not move
+   * the tiles that are tracking the current view.
+   *
+   * @param assembly the assembly
+   * @return the source assembly
+   */
+  public static SampleAssembly getSource(SampleAssembly assembly) {
+    return assembly instanceof SampleAssemblyTiled
+        ? ((SampleAssemblyTiled) assembly).getAssembly()
+        : assembly;
+  }
+
+  /**
+   * Gets the counts of a sample, holding the lock of the source assembly.
+   *
+   * @param assembly the assembly
+   * @param sample the sample
+   * @param genome the genome
+   * @param region the region
+   * @param window the window
+   * @return the counts
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public static int[] getCounts(SampleAssembly assembly,
+      Sample sample,
+      Genome genome,
+      GenomicRegion region,
+      int window) throws IOException {
+    synchronized (getSource(assembly)) {
+      return assembly.getCounts(sample, genome, region, window);
+    }
+  }
+
+  /**
+   * Gets the read starts of a sample, holding the lock of the source
+   * assembly.
+   *
+   * @param assembly the assembly
+   * @param sample the sample
+   * @param genome the genome
+   * @param region the region
+   * @param window the window
+   * @return the starts
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public static int[] getStarts(SampleAssembly assembly,
+      Sample sample,
+      Genome genome,
+      GenomicRegion region,
+      int window) throws IOException {
+    synchronized (getSource(assembly)) {
+      return assembly.getStarts(sample, genome, region, window);
+    }
+  }
+
+  /**
+   * Gets the read strands of a sample, holding the lock of the source
+   * assembly.
+   *
+   * @param assembly the assembly
+   * @param sample the sample
+   * @param genome the genome
+   * @param region the region
+   * @param window the window
+   * @return the strands
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public static Strand[] getStrands(SampleAssembly assembly,
+      Sample sample,
+      Genome genome,
+      GenomicRegion region,
+      int window) throws IOException {
+    synchronized (getSource(assembly)) {
+      return assembly.getStrands(sample, genome, region, window);
+    }
+  }
+
+  /**
+   * Gets the mapped reads of a sample, holding the lock of the source
+   * assembly.
+   *
+   * @param assembly the assembly
+   * @param sample the sample
+   * @param genome the genome
+   * @param window the window
+   * @return the mapped reads
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public static int getMappedReads(SampleAssembly assembly,
+      Sample sample,
+      Genome genome,
+      int window) throws IOException {
+    synchronized (getSource(assembly)) {
+      return assembly.getMappedReads(sample, genome, window);
+    }
+  }
+}
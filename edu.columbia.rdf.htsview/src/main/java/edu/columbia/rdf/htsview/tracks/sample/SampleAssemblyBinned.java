@@ -0,0 +1,40 @@
+/**
+ * Copyright 2016 Antony Holmes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.columbia.rdf.htsview.tracks.sample;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import edu.columbia.rdf.htsview.ngs.ReadCountsFileBinned;
+import edu.columbia.rdf.htsview.tracks.SampleAssemblyFile;
+
+/**
+ * Stream a track from counts precomputed by {@code CountsPrecompute}.
+ *
+ * @author Antony Holmes
+ */
+public class SampleAssemblyBinned extends SampleAssemblyFile {
+
+  /**
+   * Instantiates a new sample assembly binned.
+   *
+   * @param metaFile the meta file
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public SampleAssemblyBinned(Path metaFile) throws IOException {
+    super(new ReadCountsFileBinned(metaFile));
+  }
+}
@@ -0,0 +1,327 @@
+/**
+ * Copyright 2016 Antony Holmes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.columbia.rdf.htsview.tracks.sample;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.jebtk.bioinformatics.genomic.Genome;
+import org.jebtk.bioinformatics.genomic.GenomicRegion;
+import org.jebtk.bioinformatics.genomic.Strand;
+
+import edu.columbia.rdf.edb.Sample;
+import edu.columbia.rdf.htsview.tracks.SampleAssembly;
+
+/**
+ * Serves counts from the local {@code TileStore}, only asking the wrapped
+ * assembly (typically a {@code SampleAssemblyWeb}) for tiles that are not
+ * already on disk. Runs of consecutive missing tiles are fetched with a
+ * single request. Starts and strands are passed straight through.
+ *
+ * This module does not create web assemblies, so nothing here wraps them
+ * in a disk cache. Whatever creates a {@code SampleAssemblyWeb} should wrap
+ * it, outermost first, as
+ * {@code new SampleAssemblyTiled(new SampleAssemblyDiskCache(web))} so that
+ * the in memory tiles are served first and the disk only on a miss.
+ *
+ * @author Antony Holmes
+ */
+public class SampleAssemblyDiskCache extends SampleAssembly {
+
+  /** The m assembly. */
+  private SampleAssembly mAssembly;
+
+  /** The m store. */
+  private TileStore mStore;
+
+  /** Samples whose version has been checked this session. */
+  private Set<Integer> mValidated = new HashSet<Integer>();
+
+  /** The m mapped map. */
+  private Map<String, Integer> mMappedMap = new HashMap<String, Integer>();
+
+  /**
+   * Instantiates a new sample assembly disk cache.
+   *
+   * @param assembly the assembly
+   */
+  public SampleAssemblyDiskCache(SampleAssembly assembly) {
+    this(assembly, TileStore.getInstance());
+  }
+
+  /**
+   * Instantiates a new sample assembly disk cache.
+   *
+   * @param assembly the assembly
+   * @param store the store
+   */
+  public SampleAssemblyDiskCache(SampleAssembly assembly, TileStore store) {
+    mAssembly = assembly;
+    mStore = store;
+  }
+
+  /**
+   * Check the version of a sample once per session, discarding its stored
+   * tiles if the sample has changed on the server.
+   *
+   * @param sample the sample
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private void validate(Sample sample) throws IOException {
+    synchronized (mValidated) {
+      if (mValidated.contains(sample.getId())) {
+        return;
+      }
+    }
+
+    mStore.validate(sample.getId(), mAssembly.getVersion(sample));
+
+    synchronized (mValidated) {
+      mValidated.add(sample.getId());
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see
+   * edu.columbia.rdf.htsview.tracks.SampleAssembly#getCounts(edu.columbia.rdf.
+   * edb .Sample, org.jebtk.bioinformatics.genome.GenomicRegion, int)
+   */
+  @Override
+  public int[] getCounts(Sample sample,
+      Genome genome,
+      GenomicRegion region,
+      int window) throws IOException {
+    if (!mStore.isEnabled()) {
+      return mAssembly.getCounts(sample, genome, region, window);
+    }
+
+    validate(sample);
+
+    int id = sample.getId();
+    String chr = region.mChr.toString();
+
+    int s = getBin(region.getStart(), window);
+    int e = getBin(region.getEnd(), window);
+
+    int[] ret = new int[e - s + 1];
+
+    int startTile = TileStore.getTile(s);
+    int endTile = TileStore.getTile(e);
+
+    int tile = startTile;
+
+    while (tile <= endTile) {
+      int[] counts = mStore.get(id, genome, chr, window, tile);
+
+      if (counts != null) {
+        copy(counts, tile, s, ret);
+
+        ++tile;
+
+        continue;
+      }
+
+      // Find the run of missing tiles so they can be fetched together
+      int runEnd = tile;
+
+      while (runEnd < endTile
+          && !mStore.contains(id, genome, chr, window, runEnd + 1)) {
+        ++runEnd;
+      }
+
+      int runStartBin = tile * TileStore.TILE_BINS;
+      int runEndBin = (runEnd + 1) * TileStore.TILE_BINS - 1;
+
+      GenomicRegion fetch = new GenomicRegion(region.mChr,
+          runStartBin * window + 1, (runEndBin + 1) * window);
+
+      int[] fetched = mAssembly.getCounts(sample, genome, fetch, window);
+
+      for (int t = tile; t <= runEnd; ++t) {
+        int offset = (t - tile) * TileStore.TILE_BINS;
+
+        // Tiles past the end of the chromosome will be short
+        int n = Math.max(0,
+            Math.min(TileStore.TILE_BINS, fetched.length - offset));
+
+        int[] counts2 = new int[n];
+
+        System.arraycopy(fetched, Math.min(offset, fetched.length), counts2, 0,
+            n);
+
+        mStore.put(id, genome, chr, window, t, counts2);
+
+        copy(counts2, t, s, ret);
+      }
+
+      tile = runEnd + 1;
+    }
+
+    return ret;
+  }
+
+  /**
+   * Copy the overlapping part of a tile into a result array whose first
+   * element corresponds to bin s.
+   *
+   * @param counts the tile counts
+   * @param tile the tile index
+   * @param s the first bin of the result
+   * @param ret the result
+   */
+  private static void copy(int[] counts, int tile, int s, int[] ret) {
+    int tileStartBin = tile * TileStore.TILE_BINS;
+
+    int from = Math.max(s, tileStartBin);
+    int to = Math.min(s + ret.length, tileStartBin + counts.length);
+
+    if (to > from) {
+      System.arraycopy(counts, from - tileStartBin, ret, from - s, to - from);
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see
+   * edu.columbia.rdf.htsview.tracks.SampleAssembly#getMappedReads(edu.columbia.
+   * rdf.edb.Sample)
+   */
+  @Override
+  public int getMappedReads(Sample sample, Genome genome, int window)
+      throws IOException {
+    String key = sample.getId() + ":" + genome.getAssembly() + ":" + window;
+
+    synchronized (mMappedMap) {
+      if (mMappedMap.containsKey(key)) {
+        return mMappedMap.get(key);
+      }
+    }
+
+    validate(sample);
+
+    int ret = mStore.getMappedReads(sample.getId(), genome, window);
+
+    if (ret == -1) {
+      ret = mAssembly.getMappedReads(sample, genome, window);
+
+      if (ret != -1) {
+        mStore.putMappedReads(sample.getId(), genome, window, ret);
+      }
+    }
+
+    synchronized (mMappedMap) {
+      mMappedMap.put(key, ret);
+    }
+
+    return ret;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see
+   * edu.columbia.rdf.htsview.tracks.SampleAssembly#getStarts(edu.columbia.rdf.
+   * edb .Sample, org.jebtk.bioinformatics.genome.GenomicRegion, int)
+   */
+  @Override
+  public int[] getStarts(Sample sample,
+      Genome genome,
+      GenomicRegion region,
+      int window) throws IOException {
+    return mAssembly.getStarts(sample, genome, region, window);
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see
+   * edu.columbia.rdf.htsview.tracks.SampleAssembly#getStrands(edu.columbia.rdf.
+   * edb.Sample, org.jebtk.bioinformatics.genome.GenomicRegion, int)
+   */
+  @Override
+  public Strand[] getStrands(Sample sample,
+      Genome genome,
+      GenomicRegion region,
+      int window) throws IOException {
+    return mAssembly.getStrands(sample, genome, region, window);
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see
+   * edu.columbia.rdf.htsview.tracks.SampleAssembly#hasReadSupport(edu.columbia.
+   * rdf.edb.Sample)
+   */
+  @Override
+  public boolean hasReadSupport(Sample sample) throws IOException {
+    return mAssembly.hasReadSupport(sample);
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see
+   * edu.columbia.rdf.htsview.tracks.SampleAssembly#isBVT(edu.columbia.rdf.edb.
+   * Sample)
+   */
+  @Override
+  public boolean isBVT(Sample sample) throws IOException {
+    return mAssembly.isBVT(sample);
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see
+   * edu.columbia.rdf.htsview.tracks.SampleAssembly#getReadLength(edu.columbia.
+   * rdf .edb.Sample)
+   */
+  @Override
+  public int getReadLength(Sample sample) throws IOException {
+    return mAssembly.getReadLength(sample);
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see
+   * edu.columbia.rdf.htsview.tracks.SampleAssembly#getGenome(edu.columbia.rdf.
+   * edb .Sample)
+   */
+  @Override
+  public Genome getGenome(Sample sample) throws IOException {
+    return mAssembly.getGenome(sample);
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see
+   * edu.columbia.rdf.htsview.tracks.SampleAssembly#getVersion(edu.columbia.rdf.
+   * edb.Sample)
+   */
+  @Override
+  public String getVersion(Sample sample) throws IOException {
+    return mAssembly.getVersion(sample);
+  }
+}
@@ -27,6 +27,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import edu.columbia.rdf.edb.Sample;
+import edu.columbia.rdf.htsview.metrics.Metrics;
 import edu.columbia.rdf.htsview.tracks.SampleAssembly;
 
 /**
@@ -96,17 +97,23 @@ public class SampleAssemblyTiled extends SampleAssembly {
 
       // Update the cache if we get a cache miss
       if (mCounts == null || !GenomicRegion.within(region, mRegion)) {
+        Metrics.getInstance().counter("SampleAssemblyTiled.misses").inc();
+
         int w = region.getLength() * mCenterTile;
 
         mRegion = new GenomicRegion(region.mChr,
             Math.max(1, region.mStart - w),
             Math.min(ChromosomeService.getInstance().size(genome, region.mChr), region.mEnd + w));
 
-        mCounts = mAssembly.getCounts(mSample, genome, mRegion, mWindow);
+        // Prefetch threads may be reading the wrapped assembly directly
+        mCounts = SampleAssemblies
+            .getCounts(mAssembly, mSample, genome, mRegion, mWindow);
 
         // LOG.info("Cache miss in sample {} at {} window {}",
         // mSample.getName(),
         // mRegion, mWindow);
+      } else {
+        Metrics.getInstance().counter("SampleAssemblyTiled.hits").inc();
       }
 
       int start = region.getStart();
@@ -153,6 +160,15 @@ public class SampleAssemblyTiled extends SampleAssembly {
     mNumTiles = numTiles;
   }
 
+  /**
+   * Gets the underlying assembly.
+   *
+   * @return the assembly
+   */
+  public SampleAssembly getAssembly() {
+    return mAssembly;
+  }
+
   /*
    * (non-Javadoc)
    * 
@@ -184,6 +200,6 @@ public class SampleAssemblyTiled extends SampleAssembly {
   @Override
   public int getMappedReads(Sample sample, Genome genome, int window)
       throws IOException {
-    return mAssembly.getMappedReads(sample, genome, window);
+    return SampleAssemblies.getMappedReads(mAssembly, sample, genome, window);
   }
 }
@@ -17,6 +17,8 @@ package edu.columbia.rdf.htsview.tracks.sample;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -35,6 +37,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import edu.columbia.rdf.edb.Sample;
+import edu.columbia.rdf.htsview.metrics.Metrics;
 import edu.columbia.rdf.htsview.tracks.SampleAssembly;
 
 /**
@@ -49,11 +52,21 @@ public class SampleAssemblyWeb extends SampleAssembly {
   /** The m auth V 1. */
   private URLPath mAuthV1;
 
+  // The lookups below are cached per sample and are reached from the
+  // refresh, prefetch and tile store threads, so the maps are synchronized.
+  // The version map must also hold null for servers without versioning.
+
   /** The m BRT map. */
-  private Map<Sample, Boolean> mBRTMap = new HashMap<Sample, Boolean>();
+  private final Map<Sample, Boolean> mBRTMap = Collections
+      .synchronizedMap(new HashMap<Sample, Boolean>());
 
   /** The m BVT map. */
-  private Map<Sample, Boolean> mBVTMap = new HashMap<Sample, Boolean>();
+  private final Map<Sample, Boolean> mBVTMap = Collections
+      .synchronizedMap(new HashMap<Sample, Boolean>());
+
+  /** The m version map. */
+  private final Map<Sample, String> mVersionMap = Collections
+      .synchronizedMap(new HashMap<Sample, String>());
 
   private String mMode = "count";
 
@@ -141,7 +154,7 @@ public class SampleAssemblyWeb extends SampleAssembly {
 
     LOG.info("starts url: {}", url);
 
-    Json json = new JsonParser().parse(url.toURL());
+    Json json = parse(url);
 
     Json startsJson = json.get(0).get("s");
 
@@ -172,7 +185,7 @@ public class SampleAssemblyWeb extends SampleAssembly {
         .join(genome).join(region.getChr()).join(region.getStart())
         .join(region.getEnd()).join("b");
 
-    return BufferUtils.byteBuffer().wrap(URLUtils.read(url).bytes()).getInts();
+    return BufferUtils.byteBuffer().wrap(read(url)).getInts();
   }
 
   /*
@@ -209,7 +222,7 @@ public class SampleAssemblyWeb extends SampleAssembly {
 
     // LOG.info("starts url: {}", startsUrl);
 
-    Json json = new JsonParser().parse(startsUrl.toURL());
+    Json json = parse(startsUrl);
 
     Json strandsJson = json.get(0).get("s");
 
@@ -250,7 +263,7 @@ public class SampleAssemblyWeb extends SampleAssembly {
      */
 
     return Strand.parse(
-        BufferUtils.byteBuffer().wrap(URLUtils.read(url).bytes()).byteChars());
+        BufferUtils.byteBuffer().wrap(read(url)).byteChars());
   }
 
   /*
@@ -301,7 +314,7 @@ public class SampleAssemblyWeb extends SampleAssembly {
 
     LOG.info("Count url: {}", url);
 
-    Json json = new JsonParser().parse(url);
+    Json json = parse(url);
 
     Json countsJson = json.get(0).get("c");
 
@@ -330,7 +343,7 @@ public class SampleAssemblyWeb extends SampleAssembly {
         .param("e", region.mEnd).param("bw", window).param("m", mMode)
         .param("format", "binary");
 
-    return BufferUtils.byteBuffer().wrap(URLUtils.read(url).bytes()).getInts();
+    return BufferUtils.byteBuffer().wrap(read(url)).getInts();
   }
 
   public int[] getTextCounts(Sample sample, Genome genome,
@@ -352,7 +365,12 @@ public class SampleAssemblyWeb extends SampleAssembly {
     List<String> tokens;
 
     try {
-      tokens = TextUtils.commaSplit(reader.readLine());
+      String line = reader.readLine();
+
+      Metrics.getInstance().counter("SampleAssemblyWeb.bytes")
+          .add(line.length());
+
+      tokens = TextUtils.commaSplit(line);
     } finally {
       reader.close();
     }
@@ -383,7 +401,7 @@ public class SampleAssemblyWeb extends SampleAssembly {
 
     LOG.info("Mapped url: {}", mappedUrl);
 
-    Json json = new JsonParser().parse(mappedUrl);
+    Json json = parse(mappedUrl);
 
     ret = json.getInt(0);
 
@@ -401,12 +419,47 @@ public class SampleAssemblyWeb extends SampleAssembly {
   public Genome getGenome(Sample sample) throws IOException {
     URLPath url = mAuthV1.join("genome").join(sample.getId());
 
-    Json json = new JsonParser().parse(url);
+    Json json = parse(url);
 
     return GenomeService.getInstance()
         .guessGenome(json.get(0).getString("genome"));
   }
 
+  /**
+   * Ask the server for the version (etag) of a sample's data. Servers that
+   * do not support versioning cause null to be returned.
+   *
+   * @param sample the sample
+   * @return the version
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  @Override
+  public String getVersion(Sample sample) throws IOException {
+    if (mVersionMap.containsKey(sample)) {
+      return mVersionMap.get(sample);
+    }
+
+    URLPath url = mAuthV1.join("version").param("id", sample.getId());
+
+    LOG.info("Version url: {}", url);
+
+    String version;
+
+    try {
+      Json json = parse(url);
+
+      version = json.get(0).getString("version");
+    } catch (IOException e) {
+      LOG.warn("Sample {} has no version: {}", sample.getId(), e.getMessage());
+
+      version = null;
+    }
+
+    mVersionMap.put(sample, version);
+
+    return version;
+  }
+
   /**
    * See if we can use the brt version of the files.
    *
@@ -424,7 +477,7 @@ public class SampleAssemblyWeb extends SampleAssembly {
 
     LOG.info("BRT url: {}", url);
 
-    Json json = new JsonParser().parse(url);
+    Json json = parse(url);
 
     System.err.println("track web " + json + " " + json.getString(0));
 
@@ -454,7 +507,7 @@ public class SampleAssemblyWeb extends SampleAssembly {
 
     // LOG.info("BRT url: {}", url);
 
-    Json json = new JsonParser().parse(url.toURL());
+    Json json = parse(url);
 
     boolean isBVT = json.get(0).getString("type").equals("bvt");
 
@@ -478,8 +531,38 @@ public class SampleAssemblyWeb extends SampleAssembly {
 
     // LOG.info("Read length url: {}", url);
 
-    Json json = new JsonParser().parse(url.toURL());
+    Json json = parse(url);
 
     return json.get(0).getInt("length");
   }
+
+  /**
+   * Read a url, recording the number of bytes fetched.
+   *
+   * @param url the url
+   * @return the bytes
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private static byte[] read(URLPath url) throws IOException {
+    long start = System.nanoTime();
+
+    byte[] ret = URLUtils.read(url).bytes();
+
+    Metrics.getInstance().timer("SampleAssemblyWeb.fetch").stop(start);
+    Metrics.getInstance().counter("SampleAssemblyWeb.bytes").add(ret.length);
+
+    return ret;
+  }
+
+  /**
+   * Fetch and parse a json response, recording the number of bytes fetched.
+   *
+   * @param url the url
+   * @return the json
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private static Json parse(URLPath url) throws IOException {
+    return new JsonParser()
+        .parse(new String(read(url), StandardCharsets.UTF_8));
+  }
 }
@@ -0,0 +1,429 @@
+/**
+ * Copyright 2016 Antony Holmes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.columbia.rdf.htsview.tracks.sample;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+import org.jebtk.bioinformatics.genomic.Genome;
+import org.jebtk.bioinformatics.genomic.GenomicRegion;
+import org.jebtk.bioinformatics.genomic.Strand;
+import org.jebtk.core.settings.SettingsService;
+import org.jebtk.core.tree.TreeNode;
+
+import edu.columbia.rdf.edb.Sample;
+import edu.columbia.rdf.edb.ngs.CountAssembly;
+import edu.columbia.rdf.htsview.cache.SharedCache;
+import edu.columbia.rdf.htsview.metrics.Metrics;
+import edu.columbia.rdf.htsview.tracks.SampleAssembly;
+import edu.columbia.rdf.htsview.tracks.Track;
+import edu.columbia.rdf.htsview.tracks.TrackTree;
+
+/**
+ * Coordinates the data fetched for each sample during a refresh. A reads
+ * track and a signal track of the same sample are often shown together and
+ * would otherwise each go to the assembly for the same region. Identical
+ * requests made during a refresh share a single fetch, and when the reads of
+ * a sample are being shown anyway, the counts of signal tracks at small
+ * windows are derived from the read starts rather than read a second time.
+ * Reads are fetched at the resolution of the view for display. Only when a
+ * signal track of the same sample will derive its counts from them are they
+ * fetched at a window of 1, as the {@link CoverageCache} does, so that every
+ * read is present and the derived counts match the counts of the assembly.
+ * Everything is dropped at the start of the next refresh. Arrays returned by
+ * the coordinator are shared and must not be modified.
+ *
+ * @author Antony Holmes
+ */
+public class SampleFetchCoordinator {
+
+  /**
+   * The Class SampleFetchCoordinatorLoader.
+   */
+  private static class SampleFetchCoordinatorLoader {
+
+    /** The Constant INSTANCE. */
+    private static final SampleFetchCoordinator INSTANCE = new SampleFetchCoordinator();
+  }
+
+  /**
+   * Gets the single instance of SampleFetchCoordinator.
+   *
+   * @return single instance of SampleFetchCoordinator
+   */
+  public static SampleFetchCoordinator getInstance() {
+    return SampleFetchCoordinatorLoader.INSTANCE;
+  }
+
+  /**
+   * The read starts and strands of a sample in a region.
+   */
+  public static class Reads {
+
+    /** The m starts. */
+    private final int[] mStarts;
+
+    /** The m strands. */
+    private final Strand[] mStrands;
+
+    /** The m read length. */
+    private final int mReadLength;
+
+    /**
+     * Instantiates a new reads.
+     *
+     * @param starts the starts
+     * @param strands the strands
+     * @param readLength the read length
+     */
+    public Reads(int[] starts, Strand[] strands, int readLength) {
+      mStarts = starts;
+      mStrands = strands;
+      mReadLength = readLength;
+    }
+
+    /**
+     * Gets the starts.
+     *
+     * @return the starts
+     */
+    public int[] getStarts() {
+      return mStarts;
+    }
+
+    /**
+     * Gets the strands.
+     *
+     * @return the strands
+     */
+    public Strand[] getStrands() {
+      return mStrands;
+    }
+
+    /**
+     * Gets the read length.
+     *
+     * @return the read length
+     */
+    public int getReadLength() {
+      return mReadLength;
+    }
+  }
+
+  /** Counts are only derived from reads at or below this window. */
+  private final int mMaxDeriveWindow = SettingsService.getInstance()
+      .getInt("htsview.fetch.derive-max-window");
+
+  /** Reads of the current refresh keyed by sample, region and window. */
+  private final SharedCache<Reads> mReadsCache = new SharedCache<Reads>(
+      "Reads", Integer.MAX_VALUE, null);
+
+  /**
+   * Reads of the current refresh fetched at a window of 1 so that counts can
+   * be derived from them, keyed by sample and region.
+   */
+  private final SharedCache<Reads> mDeriveCache = new SharedCache<Reads>(
+      "Derive reads", Integer.MAX_VALUE, null);
+
+  /** Counts derived from reads in the current refresh. */
+  private final SharedCache<int[]> mCountsCache = new SharedCache<int[]>(
+      "Derived counts", Integer.MAX_VALUE, null);
+
+  /**
+   * Instantiates a new sample fetch coordinator.
+   */
+  private SampleFetchCoordinator() {
+    // Do nothing
+  }
+
+  /**
+   * Start a new refresh. Data from the previous refresh is dropped and the
+   * reads of every reads track in the tree are registered so that signal
+   * tracks of the same samples can be derived from them whichever track is
+   * drawn first. Reads are only registered at a window of 1 when a signal
+   * track of the sample is shown at a window small enough to derive its
+   * counts. Nothing is fetched until a track asks for it.
+   *
+   * @param tree the tree
+   * @param genome the genome
+   * @param region the region
+   * @param resolution the resolution
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public void startRefresh(TrackTree tree,
+      Genome genome,
+      GenomicRegion region,
+      int resolution) throws IOException {
+    mReadsCache.clear();
+    mDeriveCache.clear();
+    mCountsCache.clear();
+
+    if (resolution > mMaxDeriveWindow) {
+      return;
+    }
+
+    Set<String> signalSamples = new HashSet<String>();
+
+    for (TreeNode<Track> node : tree.getRoot()) {
+      findSignalSamples(node, signalSamples);
+    }
+
+    for (TreeNode<Track> node : tree.getRoot()) {
+      register(node, genome, region, signalSamples);
+    }
+  }
+
+  /**
+   * Recursively find the samples shown by signal tracks.
+   *
+   * @param node the node
+   * @param samples the samples
+   */
+  private static void findSignalSamples(TreeNode<Track> node,
+      Set<String> samples) {
+    if (node.getValue() instanceof SamplePlotTrack
+        && !(node.getValue() instanceof ReadsPlotTrack)) {
+      SamplePlotTrack track = (SamplePlotTrack) node.getValue();
+
+      samples.add(getSampleKey(track.getAssembly(), track.getSample()));
+    }
+
+    for (TreeNode<Track> child : node) {
+      findSignalSamples(child, samples);
+    }
+  }
+
+  /**
+   * Recursively register the reads tracks of a tree whose counts will be
+   * derived by a signal track.
+   *
+   * @param node the node
+   * @param genome the genome
+   * @param region the region
+   * @param signalSamples the samples shown by signal tracks
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private void register(TreeNode<Track> node,
+      Genome genome,
+      GenomicRegion region,
+      Set<String> signalSamples) throws IOException {
+    if (node.getValue() instanceof ReadsPlotTrack) {
+      ReadsPlotTrack track = (ReadsPlotTrack) node.getValue();
+
+      if (signalSamples.contains(
+          getSampleKey(track.getAssembly(), track.getSample()))
+          && track.getAssembly().hasReadSupport(track.getSample())) {
+        registerDerive(track.getAssembly(),
+            track.getSample(),
+            genome,
+            region);
+      }
+    }
+
+    for (TreeNode<Track> child : node) {
+      register(child, genome, region, signalSamples);
+    }
+  }
+
+  /**
+   * Returns the reads of a sample in a region. The reads of a sample are
+   * fetched once per refresh however many tracks ask for them. If a signal
+   * track derives its counts from the reads, they are the reads fetched at
+   * a window of 1, which include reads that start before the region but
+   * overlap it. Otherwise they are fetched at the window.
+   *
+   * @param assembly the assembly
+   * @param sample the sample
+   * @param genome the genome
+   * @param region the region
+   * @param window the window
+   * @return the reads
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public Reads getReads(SampleAssembly assembly,
+      Sample sample,
+      Genome genome,
+      GenomicRegion region,
+      int window) throws IOException {
+    Reads reads = mDeriveCache.await(getKey(assembly, sample, genome, region));
+
+    if (reads != null) {
+      return reads;
+    }
+
+    return fetchReads(assembly, sample, genome, region, window);
+  }
+
+  /**
+   * Returns the counts of a sample derived from its reads if the reads of
+   * the sample in the region are part of this refresh, otherwise returns
+   * null and the counts should be read from the assembly as usual.
+   *
+   * @param assembly the assembly
+   * @param sample the sample
+   * @param genome the genome
+   * @param region the region
+   * @param window the window
+   * @return the counts or null if they cannot be derived cheaply.
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public int[] getCounts(SampleAssembly assembly,
+      final Sample sample,
+      final Genome genome,
+      final GenomicRegion region,
+      final int window) throws IOException {
+    if (window > mMaxDeriveWindow || !assembly.hasReadSupport(sample)) {
+      return null;
+    }
+
+    String key = getKey(assembly, sample, genome, region);
+
+    final Reads reads = mDeriveCache.await(key);
+
+    if (reads == null) {
+      return null;
+    }
+
+    return mCountsCache.get(key + ":" + window, new Callable<int[]>() {
+      @Override
+      public int[] call() throws Exception {
+        long start = System.nanoTime();
+
+        int[] ret = CoverageCache.coverage(reads.getStarts(),
+            CountAssembly.EMPTY_STRAND_ARRAY,
+            reads.getReadLength(),
+            reads.getReadLength(),
+            region.getStart(),
+            region.getEnd(),
+            window)[CoverageCache.SENSE];
+
+        Metrics.getInstance().timer("SampleFetchCoordinator.derive")
+            .stop(start);
+
+        return ret;
+      }
+    });
+  }
+
+  /**
+   * Returns the reads of a sample fetched at a window for display. They are
+   * only fetched once per refresh.
+   *
+   * @param assembly the assembly
+   * @param sample the sample
+   * @param genome the genome
+   * @param region the region
+   * @param window the window
+   * @return the reads
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private Reads fetchReads(final SampleAssembly assembly,
+      final Sample sample,
+      final Genome genome,
+      final GenomicRegion region,
+      final int window) throws IOException {
+    String key = getKey(assembly, sample, genome, region) + ":" + window;
+
+    return mReadsCache.get(key, new Callable<Reads>() {
+      @Override
+      public Reads call() throws Exception {
+        long start = System.nanoTime();
+
+        int readLength = Math.max(1, assembly.getReadLength(sample));
+
+        int[] starts = assembly.getStarts(sample, genome, region, window);
+
+        Strand[] strands = assembly.getStrands(sample, genome, region, window);
+
+        Metrics.getInstance()
+            .timer("getStarts." + assembly.getClass().getSimpleName())
+            .stop(start);
+
+        return new Reads(starts, strands, readLength);
+      }
+    });
+  }
+
+  /**
+   * Register the fetch of every read of a sample at a window of 1 so that
+   * counts can be derived from them. Nothing is fetched until the reads or
+   * the counts are asked for.
+   *
+   * @param assembly the assembly
+   * @param sample the sample
+   * @param genome the genome
+   * @param region the region
+   */
+  private void registerDerive(final SampleAssembly assembly,
+      final Sample sample,
+      final Genome genome,
+      final GenomicRegion region) {
+    mDeriveCache.register(getKey(assembly, sample, genome, region),
+        new Callable<Reads>() {
+          @Override
+          public Reads call() throws Exception {
+            long start = System.nanoTime();
+
+            int readLength = Math.max(1, assembly.getReadLength(sample));
+
+            // Include reads that start before the region and run into it
+            GenomicRegion fetch = new GenomicRegion(region.getChr(),
+                Math.max(1, region.getStart() - readLength + 1),
+                region.getEnd());
+
+            int[] starts = assembly.getStarts(sample, genome, fetch, 1);
+
+            Strand[] strands = assembly.getStrands(sample, genome, fetch, 1);
+
+            Metrics.getInstance()
+                .timer("getStarts." + assembly.getClass().getSimpleName())
+                .stop(start);
+
+            return new Reads(starts, strands, readLength);
+          }
+        });
+  }
+
+  /**
+   * Gets the key of a sample of an assembly.
+   *
+   * @param assembly the assembly
+   * @param sample the sample
+   * @return the key
+   */
+  private static String getSampleKey(SampleAssembly assembly, Sample sample) {
+    return AssemblyIds.getId(assembly) + ":" + sample.getId();
+  }
+
+  /**
+   * Gets the key.
+   *
+   * @param assembly the assembly
+   * @param sample the sample
+   * @param genome the genome
+   * @param region the region
+   * @return the key
+   */
+  private static String getKey(SampleAssembly assembly,
+      Sample sample,
+      Genome genome,
+      GenomicRegion region) {
+    return getSampleKey(assembly, sample) + ":" + genome.getAssembly() + ":"
+        + region.getChr() + ":" + region.getStart() + ":" + region.getEnd();
+  }
+}
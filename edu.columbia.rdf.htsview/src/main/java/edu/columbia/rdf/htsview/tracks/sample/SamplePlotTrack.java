@@ -37,6 +37,7 @@ import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 
 import edu.columbia.rdf.edb.Sample;
+import edu.columbia.rdf.htsview.metrics.Metrics;
 import edu.columbia.rdf.htsview.tracks.GraphPlotTrack;
 import edu.columbia.rdf.htsview.tracks.SampleAssembly;
 import edu.columbia.rdf.htsview.tracks.TitleProperties;
@@ -44,6 +45,9 @@ import edu.columbia.rdf.htsview.tracks.TrackSubFigure;
 import edu.columbia.rdf.htsview.tracks.TracksFigure;
 import edu.columbia.rdf.htsview.tracks.ext.ucsc.BedGraphPlot;
 import edu.columbia.rdf.htsview.tracks.ext.ucsc.BedGraphSubFigure;
+import edu.columbia.rdf.htsview.tracks.transform.TransformContext;
+import edu.columbia.rdf.htsview.tracks.transform.TransformPipeline;
+import edu.columbia.rdf.htsview.tracks.view.SessionSnapshotService;
 
 /**
  * The Class SamplePlotTrack.
@@ -115,6 +119,15 @@ public class SamplePlotTrack extends GraphPlotTrack {
 
   private Genome mGenome;
 
+  /** The counts of the region last drawn from counts, or null. */
+  private volatile DrawnCounts mDrawnCounts = null;
+
+  /** The transforms applied to the normalized signal. */
+  private TransformPipeline mTransforms = TransformPipeline.EMPTY;
+
+  /** The signal of the current region, reused between refreshes. */
+  private transient double[] mSignal;
+
   /** The Constant DEFAULT_COLOR. */
   private static final Color DEFAULT_COLOR = SettingsService.getInstance()
       .getColor("edb.reads.tracks.sample-plot.default-color");
@@ -420,6 +433,25 @@ public class SamplePlotTrack extends GraphPlotTrack {
     return "Sample";
   }
 
+  /**
+   * Sets the transforms applied to the signal after normalization and input
+   * subtraction.
+   *
+   * @param transforms the new transforms
+   */
+  public void setTransforms(TransformPipeline transforms) {
+    mTransforms = transforms != null ? transforms : TransformPipeline.EMPTY;
+  }
+
+  /**
+   * Gets the transforms.
+   *
+   * @return the transforms
+   */
+  public TransformPipeline getTransforms() {
+    return mTransforms;
+  }
+
   /**
    * Gets the sample.
    *
@@ -598,20 +630,27 @@ public class SamplePlotTrack extends GraphPlotTrack {
       GenomicRegion region,
       int window,
       boolean normalize) throws IOException {
-    int[] counts = mAssembly.getCounts(mSample, genome, region, window);
+    long start = System.nanoTime();
 
-    // Subtract the input if desired
-    if (mSubtract && mInputSample != null) {
-      int[] mInputCounts = mInputAssembly
-          .getCounts(mInputSample, genome, region, window);
+    // Chromosome scale views are drawn from precomputed summaries
+    boolean overview = OverviewService.getInstance().isOverview(region);
 
-      for (int i = 0; i < counts.length; ++i) {
-        counts[i] = Math.max(0, counts[i] - mInputCounts[i]);
-      }
+    int[] counts;
+
+    if (overview) {
+      window = OverviewService.getInstance().getWindow(region, window);
+
+      counts = OverviewService.getInstance()
+          .getCounts(mAssembly, mSample, genome, region, window);
+    } else {
+      counts = getCounts(genome, region, window);
     }
 
-    int mappedReads = mAssembly
-        .getMappedReads(mSample, genome, window);
+    Metrics.getInstance()
+        .timer("getCounts." + mAssembly.getClass().getSimpleName())
+        .stop(start);
+
+    int mappedReads = getMappedReads(mAssembly, mSample, genome, window);
 
     // per million
     double scaleFactor;
@@ -622,32 +661,288 @@ public class SamplePlotTrack extends GraphPlotTrack {
       scaleFactor = 1;
     }
 
-    String id = mSample.getName() + " " + region.toString();
+    double[] signal = getSignal(counts.length);
 
-    BedGraph bedGraph = new BedGraph(id, id, mFillColor);
+    boolean control = mInputSample != null
+        && (mSubtract || mTransforms.needsControl());
+
+    int[] inputCounts = null;
+
+    // Scale the input to the depth of the sample before using it
+    double inputScaleFactor = 1;
+
+    if (control) {
+      // Input counts are shared by all tracks using the same input
+      inputCounts = overview
+          ? OverviewService.getInstance()
+              .getCounts(mInputAssembly, mInputSample, genome, region, window)
+          : getInputCounts(genome, region, window);
+
+      int inputMappedReads = getMappedReads(mInputAssembly,
+          mInputSample,
+          genome,
+          window);
+
+      if (mappedReads > 0 && inputMappedReads > 0) {
+        inputScaleFactor = (double) mappedReads / (double) inputMappedReads;
+      }
+    }
+
+    // Subtract the input if desired
+    if (mSubtract && inputCounts != null) {
+      int n = Math.min(counts.length, inputCounts.length);
+
+      for (int i = 0; i < n; ++i) {
+        signal[i] = Math.max(0, counts[i] - inputCounts[i] * inputScaleFactor)
+            * scaleFactor;
+      }
+
+      for (int i = n; i < counts.length; ++i) {
+        signal[i] = counts[i] * scaleFactor;
+      }
+    } else {
+      for (int i = 0; i < counts.length; ++i) {
+        signal[i] = counts[i] * scaleFactor;
+      }
+    }
+
+    if (!mTransforms.isEmpty()) {
+      TransformContext context = TransformContext.EMPTY;
+
+      if (inputCounts != null && mTransforms.needsControl()) {
+        // The control in the same units as the signal
+        double[] controlSignal = new double[inputCounts.length];
+
+        for (int i = 0; i < controlSignal.length; ++i) {
+          controlSignal[i] = inputCounts[i] * inputScaleFactor * scaleFactor;
+        }
+
+        context = new TransformContext(controlSignal);
+      }
+
+      mTransforms.apply(signal, counts.length, context);
+    }
 
-    int start = region.getStart() / window * window;
+    Metrics.getInstance().fetch(getName(), System.nanoTime() - start);
+
+    if (!overview) {
+      // Record what was drawn so that a session snapshot can store it
+      DrawnCounts input = inputCounts != null
+          ? new DrawnCounts(mInputSample,
+              getVersion(mInputAssembly, mInputSample), genome, region,
+              window, inputCounts, getMappedReads(mInputAssembly,
+                  mInputSample,
+                  genome,
+                  window),
+              null)
+          : null;
+
+      mDrawnCounts = new DrawnCounts(mSample,
+          getVersion(mAssembly, mSample), genome, region, window, counts,
+          mappedReads, input);
+    }
 
-    double normalizedCount;
+    String id = mSample.getName() + " " + region.toString();
+
+    BedGraph bedGraph = new BedGraph(id, id, mFillColor);
 
-    for (int count : counts) {
-      normalizedCount = count * scaleFactor;
+    int binStart = region.getStart() / window * window;
 
+    for (int i = 0; i < counts.length; ++i) {
       BedGraphElement br = new BedGraphElement(GenomicType.REGION,
-          new GenomicRegion(region.mChr, start,
-              start + window - 1),
-          normalizedCount);
+          new GenomicRegion(region.mChr, binStart, binStart + window - 1),
+          signal[i]);
 
       bedGraph.add(br);
 
-      start += window;
+      binStart += window;
     }
 
-    System.err.println("bed " + mappedReads);
-
     return bedGraph;
   }
 
+  /**
+   * Returns the counts of the sample in a region that is not drawn from the
+   * chromosome summaries. Subclasses can override this to derive the signal
+   * differently.
+   *
+   * @param genome the genome
+   * @param region the region
+   * @param window the window
+   * @return the counts. The array must not be modified.
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  protected int[] getCounts(Genome genome, GenomicRegion region, int window)
+      throws IOException {
+    // A restored session draws its last view from the snapshot
+    int[] counts = SessionSnapshotService.getInstance()
+        .getCounts(mAssembly, mSample, genome, region, window);
+
+    if (counts == null) {
+      // Derived from reads already fetched for a reads track of the sample
+      counts = SampleFetchCoordinator.getInstance()
+          .getCounts(mAssembly, mSample, genome, region, window);
+    }
+
+    if (counts == null) {
+      // Served from the prefetch cache when the locus was fetched ahead
+      counts = PrefetchCache.getInstance()
+          .getCounts(mAssembly, mSample, genome, region, window);
+    }
+
+    return counts;
+  }
+
+  /**
+   * Returns the counts of the input in a region that is not drawn from the
+   * chromosome summaries. Subclasses that derive the signal differently
+   * should derive the input the same way so that the two can be compared.
+   *
+   * @param genome the genome
+   * @param region the region
+   * @param window the window
+   * @return the counts. The array must not be modified.
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  protected int[] getInputCounts(Genome genome,
+      GenomicRegion region,
+      int window) throws IOException {
+    // A restored session draws its last view from the snapshot
+    int[] counts = SessionSnapshotService.getInstance()
+        .getCounts(mInputAssembly, mInputSample, genome, region, window);
+
+    if (counts == null) {
+      counts = InputCountsCache.getInstance()
+          .getCounts(mInputAssembly, mInputSample, genome, region, window);
+    }
+
+    return counts;
+  }
+
+  /**
+   * Returns the mapped reads of a sample, from the session snapshot if the
+   * view was restored from one, otherwise from the cache shared with the
+   * inputs so that the assembly is only asked once.
+   *
+   * @param assembly the assembly
+   * @param sample the sample
+   * @param genome the genome
+   * @param window the window
+   * @return the mapped reads or -1 if unknown.
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private static int getMappedReads(SampleAssembly assembly,
+      Sample sample,
+      Genome genome,
+      int window) throws IOException {
+    Integer stored = SessionSnapshotService.getInstance()
+        .getMappedReads(assembly, sample, genome, window);
+
+    if (stored != null) {
+      return stored;
+    }
+
+    return InputCountsCache.getInstance()
+        .getMappedReads(assembly, sample, genome, window);
+  }
+
+  /**
+   * Returns the version of a sample as far as its assembly knows it, so that
+   * a snapshot can record it without asking the assembly when it is saved.
+   *
+   * @param assembly the assembly
+   * @param sample the sample
+   * @return the version or null if unknown.
+   */
+  private static String getVersion(SampleAssembly assembly, Sample sample) {
+    try {
+      return SampleAssemblies.getSource(assembly).getVersion(sample);
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Returns the counts the track last drew, so that they can be saved
+   * without fetching them again. Views drawn from the chromosome summaries
+   * are not recorded.
+   *
+   * @return the drawn counts or null if the track has not been drawn from
+   *         counts.
+   */
+  public DrawnCounts getDrawnCounts() {
+    return mDrawnCounts;
+  }
+
+  /**
+   * Gets the region the track was last drawn at.
+   *
+   * @return the region or null if the track has not been drawn.
+   */
+  public GenomicRegion getRegion() {
+    return mRegion;
+  }
+
+  /**
+   * Gets the resolution the track was last drawn at.
+   *
+   * @return the resolution
+   */
+  public int getResolution() {
+    return mResolution;
+  }
+
+  /**
+   * Fetch the counts of a region ahead of time at the resolution the track
+   * was last drawn at, so that moving to the region can be drawn from cache.
+   * Does nothing if the track has not been drawn yet.
+   *
+   * @param genome the genome
+   * @param region the region
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public void prefetch(Genome genome, GenomicRegion region)
+      throws IOException {
+    int window = mResolution;
+
+    if (window < 1) {
+      return;
+    }
+
+    // Tiled assemblies track the current view so fetch around them
+    PrefetchCache.getInstance().prefetch(mAssembly,
+        SampleAssemblies.getSource(mAssembly),
+        mSample,
+        genome,
+        region,
+        window);
+
+    // The input is needed whenever it is subtracted or a transform uses it
+    if (mInputSample != null && (mSubtract || mTransforms.needsControl())) {
+      InputCountsCache.getInstance().getCounts(mInputAssembly,
+          SampleAssemblies.getSource(mInputAssembly),
+          mInputSample,
+          genome,
+          region,
+          window);
+    }
+  }
+
+  /**
+   * Returns the track's signal buffer, growing it if it is too small for the
+   * requested number of bins. The buffer is reused between refreshes.
+   *
+   * @param n the number of bins
+   * @return the signal buffer
+   */
+  private double[] getSignal(int n) {
+    if (mSignal == null || mSignal.length < n) {
+      mSignal = new double[n];
+    }
+
+    return mSignal;
+  }
+
   /*
    * (non-Javadoc)
    * 
@@ -683,6 +978,8 @@ public class SamplePlotTrack extends GraphPlotTrack {
 
     setInput(dialog.getInputSample(), dialog.getInputAssembly());
     setSubtractInput(dialog.getSubtractInput());
+
+    setTransforms(dialog.getTransforms());
   }
 
   /*
@@ -737,6 +1034,10 @@ public class SamplePlotTrack extends GraphPlotTrack {
     json.add("common-y", getCommonY());
     json.add("normalize-y", getNormalizeY());
     json.add("y-max", getYMax(getNormalizeY()));
+
+    if (!mTransforms.isEmpty()) {
+      json.add("transforms", mTransforms.toString());
+    }
   }
 
   /**
@@ -765,4 +1066,131 @@ public class SamplePlotTrack extends GraphPlotTrack {
   public SampleAssembly getInputAssembly() {
     return mInputAssembly;
   }
+
+  /**
+   * The counts of a sample in a region at the window they were drawn at.
+   */
+  public static class DrawnCounts {
+
+    /** The m sample. */
+    private final Sample mSample;
+
+    /** The m version. */
+    private final String mVersion;
+
+    /** The m genome. */
+    private final Genome mGenome;
+
+    /** The m region. */
+    private final GenomicRegion mRegion;
+
+    /** The m window. */
+    private final int mWindow;
+
+    /** The m counts. */
+    private final int[] mCounts;
+
+    /** The m mapped reads. */
+    private final int mMappedReads;
+
+    /** The m input. */
+    private final DrawnCounts mInput;
+
+    /**
+     * Instantiates a new drawn counts.
+     *
+     * @param sample the sample
+     * @param version the version of the sample when it was drawn
+     * @param genome the genome
+     * @param region the region
+     * @param window the window
+     * @param counts the counts
+     * @param mappedReads the mapped reads
+     * @param input the counts of the input drawn with the sample, or null.
+     */
+    private DrawnCounts(Sample sample, String version, Genome genome,
+        GenomicRegion region, int window, int[] counts, int mappedReads,
+        DrawnCounts input) {
+      mSample = sample;
+      mVersion = version;
+      mGenome = genome;
+      mRegion = region;
+      mWindow = window;
+      mCounts = counts;
+      mMappedReads = mappedReads;
+      mInput = input;
+    }
+
+    /**
+     * Gets the sample.
+     *
+     * @return the sample
+     */
+    public Sample getSample() {
+      return mSample;
+    }
+
+    /**
+     * Gets the version of the sample when it was drawn.
+     *
+     * @return the version or null if unknown.
+     */
+    public String getVersion() {
+      return mVersion;
+    }
+
+    /**
+     * Gets the genome.
+     *
+     * @return the genome
+     */
+    public Genome getGenome() {
+      return mGenome;
+    }
+
+    /**
+     * Gets the region.
+     *
+     * @return the region
+     */
+    public GenomicRegion getRegion() {
+      return mRegion;
+    }
+
+    /**
+     * Gets the window.
+     *
+     * @return the window
+     */
+    public int getWindow() {
+      return mWindow;
+    }
+
+    /**
+     * Gets the counts. The array is shared so must not be modified.
+     *
+     * @return the counts
+     */
+    public int[] getCounts() {
+      return mCounts;
+    }
+
+    /**
+     * Gets the mapped reads.
+     *
+     * @return the mapped reads or -1 if unknown.
+     */
+    public int getMappedReads() {
+      return mMappedReads;
+    }
+
+    /**
+     * Gets the counts of the input drawn with the sample.
+     *
+     * @return the input or null if no input was used.
+     */
+    public DrawnCounts getInput() {
+      return mInput;
+    }
+  }
 }
@@ -58,6 +58,7 @@ import edu.columbia.rdf.htsview.chipseq.ChipSeqSamplesDialog;
 import edu.columbia.rdf.htsview.ngs.Brt2GuiFileFilter;
 import edu.columbia.rdf.htsview.ngs.BvtGuiFileFilter;
 import edu.columbia.rdf.htsview.tracks.SampleAssembly;
+import edu.columbia.rdf.htsview.tracks.transform.TransformPipeline;
 import edu.columbia.rdf.matcalc.figure.graph2d.Graph2dStyleButton;
 
 /**
@@ -83,6 +84,9 @@ public class SamplePlotTrackEditDialog extends ModernDialogHelpWindow {
   /** The m subtract field. */
   private ModernTextField mSubtractField = new ModernClipboardTextField();
 
+  /** The m transforms field. */
+  private ModernTextField mTransformsField = new ModernClipboardTextField();
+
   /** The m height field. */
   private ModernCompactSpinner mHeightField = new ModernCompactSpinner(1, 1000,
       FIELD_WIDTH);
@@ -199,6 +203,8 @@ public class SamplePlotTrackEditDialog extends ModernDialogHelpWindow {
       mSubtractField.setText(mInputSample.getName());
     }
 
+    mTransformsField.setText(track.getTransforms().toString());
+
     createUi();
 
     setup();
@@ -243,7 +249,7 @@ public class SamplePlotTrackEditDialog extends ModernDialogHelpWindow {
     mCheckLineColor.setSelected(mTrack.getLineColor() != null);
     mCheckFillColor.setSelected(mTrack.getFillColor() != null);
 
-    setSize(720, 720);
+    setSize(720, 800);
 
     UI.centerWindowToScreen(this);
   }
@@ -333,6 +339,18 @@ public class SamplePlotTrackEditDialog extends ModernDialogHelpWindow {
 
     box.add(box2);
 
+    midSectionHeader("Transforms", box);
+
+    box2 = HBox.create();
+    box2.add(new ModernAutoSizeLabel("Transforms", FIELD_WIDTH));
+    box2.add(new ModernTextBorderPanel(mTransformsField, 300));
+    box.add(box2);
+
+    box.add(UI.createVGap(5));
+
+    box.add(new ModernAutoSizeLabel("Applied in order, e.g. ratio(1), log2(1), "
+        + "smooth(5), zscore. Ratio uses the input sample."));
+
     setCard(box);
   }
 
@@ -404,80 +422,11 @@ public class SamplePlotTrackEditDialog extends ModernDialogHelpWindow {
    * @throws IOException Signals that an I/O exception has occurred.
    */
   private void openTrack(Path file) throws IOException {
-    if (SampleTracks.isBRT2Track(file)) {
-      openBRT2Track(file);
-    } else if (SampleTracks.isBRTTrack(file)) {
-      openBRTTrack(file);
-    } else if (SampleTracks.isBVTTrack(file)) {
-      openBVTTrack(file);
-    } else {
-      open16bitTrack(file);
-    }
-
-    // Track track = SampleLoaderService.getInstance().openFile(mParent, file,
-    // null);
-
-    // openTrack(sample, new SampleAssembly16bit(metaFile));
-  }
-
-  /**
-   * Open16bit track.
-   *
-   * @param metaFile the meta file
-   * @throws ParseException the parse exception
-   * @throws IOException Signals that an I/O exception has occurred.
-   */
-  private void open16bitTrack(Path metaFile) throws IOException {
-    Json json = JsonParser.json(metaFile);
+    Json json = JsonParser.json(file);
 
     Sample sample = SampleTracks.getSampleFromTrack(json);
 
-    openTrack(sample, new SampleAssembly16bit(metaFile));
-  }
-
-  /**
-   * Open brt track.
-   *
-   * @param metaFile the meta file
-   * @throws ParseException the parse exception
-   * @throws IOException Signals that an I/O exception has occurred.
-   */
-  private void openBRTTrack(Path metaFile) throws IOException {
-    Json json = JsonParser.json(metaFile);
-
-    Sample sample = SampleTracks.getSampleFromTrack(json);
-
-    openTrack(sample, new SampleAssemblyBRT(metaFile));
-  }
-
-  /**
-   * Open BRT 2 track.
-   *
-   * @param metaFile the meta file
-   * @throws ParseException the parse exception
-   * @throws IOException Signals that an I/O exception has occurred.
-   */
-  private void openBRT2Track(Path metaFile) throws IOException {
-    Json json = JsonParser.json(metaFile);
-
-    Sample sample = SampleTracks.getSampleFromTrack(json);
-
-    openTrack(sample, new SampleAssemblyBRT2(metaFile));
-  }
-
-  /**
-   * Open BVT track.
-   *
-   * @param metaFile the meta file
-   * @throws ParseException the parse exception
-   * @throws IOException Signals that an I/O exception has occurred.
-   */
-  private void openBVTTrack(Path metaFile) throws IOException {
-    Json json = JsonParser.json(metaFile);
-
-    Sample sample = SampleTracks.getSampleFromTrack(json);
-
-    openTrack(sample, new SampleAssemblyBVT(metaFile));
+    openTrack(sample, SampleTracks.openAssembly(file));
   }
 
   /**
@@ -534,6 +483,15 @@ public class SamplePlotTrackEditDialog extends ModernDialogHelpWindow {
     return mCheckSubtractInput.isSelected();
   }
 
+  /**
+   * Gets the transforms.
+   *
+   * @return the transforms
+   */
+  public TransformPipeline getTransforms() {
+    return TransformPipeline.parse(mTransformsField.getText());
+  }
+
   /**
    * Gets the input sample.
    *
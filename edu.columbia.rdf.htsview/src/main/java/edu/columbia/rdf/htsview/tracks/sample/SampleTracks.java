@@ -24,6 +24,8 @@ import org.jebtk.core.json.JsonParser;
 
 import edu.columbia.rdf.edb.Sample;
 import edu.columbia.rdf.edb.Species;
+import edu.columbia.rdf.htsview.ngs.CountsPrecompute;
+import edu.columbia.rdf.htsview.tracks.SampleAssembly;
 
 /**
  * The Class SampleTracks.
@@ -108,4 +110,39 @@ public class SampleTracks {
   public static boolean isBVTTrack(Path dir) throws IOException {
     return FileUtils.find(dir, "bvt.json") != null;
   }
+
+  /**
+   * Checks if the directory contains counts precomputed by
+   * {@code CountsPrecompute}.
+   *
+   * @param dir the dir
+   * @return true, if is binned track
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public static boolean isBinnedTrack(Path dir) throws IOException {
+    return FileUtils.find(dir, CountsPrecompute.META_FILE) != null;
+  }
+
+  /**
+   * Open the assembly of a track stored on disk, choosing the format from
+   * the files present.
+   *
+   * @param metaFile the meta file
+   * @return the sample assembly
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public static SampleAssembly openAssembly(Path metaFile)
+      throws IOException {
+    if (isBRT2Track(metaFile)) {
+      return new SampleAssemblyBRT2(metaFile);
+    } else if (isBRTTrack(metaFile)) {
+      return new SampleAssemblyBRT(metaFile);
+    } else if (isBVTTrack(metaFile)) {
+      return new SampleAssemblyBVT(metaFile);
+    } else if (isBinnedTrack(metaFile)) {
+      return new SampleAssemblyBinned(metaFile);
+    } else {
+      return new SampleAssembly16bit(metaFile);
+    }
+  }
 }
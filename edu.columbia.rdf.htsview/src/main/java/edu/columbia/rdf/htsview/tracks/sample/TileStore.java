@@ -0,0 +1,719 @@
+/**
+ * Copyright 2016 Antony Holmes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.columbia.rdf.htsview.tracks.sample;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.jebtk.bioinformatics.genomic.Genome;
+import org.jebtk.core.settings.SettingsService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import edu.columbia.rdf.htsview.cache.CacheDirs;
+import edu.columbia.rdf.htsview.metrics.Metrics;
+
+/**
+ * Persistent store of count tiles on the local disk so that remote samples
+ * do not have to be refetched from the server each session. Each tile is
+ * stored in its own file keyed by sample id, genome, chromosome, window and
+ * tile index. Counts are variable length encoded since most bins contain
+ * small values. The total size of the store is capped and the least recently
+ * used tiles are removed first.
+ *
+ * Each sample directory also records a version string. If a sample's version
+ * changes, all of its tiles are discarded. Samples whose server does not
+ * report a version have their tiles discarded once they are older than
+ * {@code htsview.tile-store.unversioned-ttl-hours}.
+ *
+ * @author Antony Holmes
+ */
+public class TileStore {
+
+  /** The Constant LOG. */
+  private static final Logger LOG = LoggerFactory.getLogger(TileStore.class);
+
+  /**
+   * The Class TileStoreLoader.
+   */
+  private static class TileStoreLoader {
+
+    /** The Constant INSTANCE. */
+    private static final TileStore INSTANCE = new TileStore();
+  }
+
+  /**
+   * Gets the single instance of TileStore.
+   *
+   * @return single instance of TileStore
+   */
+  public static TileStore getInstance() {
+    return TileStoreLoader.INSTANCE;
+  }
+
+  /** Identifies tile files so corrupt or foreign files are ignored. */
+  private static final int MAGIC = 0x54494C45;
+
+  /** The tile file extension. */
+  private static final String EXT = ".tile";
+
+  /** The name of the file holding a sample's version. */
+  private static final String VERSION_FILE = "version";
+
+  /**
+   * The name of the file marking when the tiles of a sample without a
+   * version were started.
+   */
+  private static final String UNVERSIONED_FILE = "unversioned";
+
+  /** The name of the file holding a sample's mapped reads. */
+  private static final String MAPPED_FILE = "mapped";
+
+  /** The number of bins in each tile. */
+  public static final int TILE_BINS = 1024;
+
+  /** The m dir. */
+  private Path mDir;
+
+  /** The m max size. */
+  private long mMaxSize;
+
+  /** The m size. */
+  private long mSize = 0;
+
+  /** Tile files and their sizes, in least recently used order. */
+  private Map<Path, Long> mLRU = new LinkedHashMap<Path, Long>(16, 0.75f,
+      true);
+
+  /** How long tiles of a sample without a version are kept, in ms. */
+  private long mUnversionedTtl = SettingsService.getInstance()
+      .getInt("htsview.tile-store.unversioned-ttl-hours") * 3600000L;
+
+  /** The m enabled. */
+  private boolean mEnabled;
+
+  /**
+   * Instantiates a new tile store.
+   */
+  private TileStore() {
+    this(CacheDirs.get("tiles"),
+        SettingsService.getInstance().getInt("htsview.tile-store.max-size-mb")
+            * 1024L * 1024L);
+  }
+
+  /**
+   * Instantiates a new tile store.
+   *
+   * @param dir the dir
+   * @param maxSize the max size in bytes.
+   */
+  public TileStore(Path dir, long maxSize) {
+    mDir = dir;
+    mMaxSize = maxSize;
+
+    try {
+      Files.createDirectories(mDir);
+
+      index();
+
+      mEnabled = true;
+    } catch (IOException e) {
+      LOG.warn("Tile store {} is unavailable: {}", mDir, e.getMessage());
+
+      mEnabled = false;
+    }
+  }
+
+  /**
+   * Scan the store, ordering existing tiles by their last access time so the
+   * LRU order survives between sessions.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private void index() throws IOException {
+    final Map<Path, FileTime> times = new LinkedHashMap<Path, FileTime>();
+
+    List<Path> files = new ArrayList<Path>();
+
+    find(mDir, files);
+
+    for (Path file : files) {
+      times.put(file, Files.getLastModifiedTime(file));
+    }
+
+    Collections.sort(files, new Comparator<Path>() {
+      @Override
+      public int compare(Path p1, Path p2) {
+        return times.get(p1).compareTo(times.get(p2));
+      }
+    });
+
+    for (Path file : files) {
+      long size = Files.size(file);
+
+      mLRU.put(file, size);
+      mSize += size;
+    }
+
+    LOG.info("Tile store {} contains {} tiles ({} bytes).",
+        mDir,
+        mLRU.size(),
+        mSize);
+
+    evict();
+  }
+
+  /**
+   * Recursively find the tile files in a directory.
+   *
+   * @param dir the dir
+   * @param files the files
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private static void find(Path dir, List<Path> files) throws IOException {
+    DirectoryStream<Path> stream = Files.newDirectoryStream(dir);
+
+    try {
+      for (Path file : stream) {
+        if (Files.isDirectory(file)) {
+          find(file, files);
+        } else if (file.getFileName().toString().endsWith(EXT)) {
+          files.add(file);
+        }
+      }
+    } finally {
+      stream.close();
+    }
+  }
+
+  /**
+   * Returns true if the store could be created.
+   *
+   * @return true, if is enabled
+   */
+  public boolean isEnabled() {
+    return mEnabled;
+  }
+
+  /**
+   * Gets the tile index a bin falls in.
+   *
+   * @param bin the bin
+   * @return the tile
+   */
+  public static int getTile(int bin) {
+    return bin / TILE_BINS;
+  }
+
+  /**
+   * Returns true if a tile is in the store.
+   *
+   * @param id the sample id
+   * @param genome the genome
+   * @param chr the chr
+   * @param window the window
+   * @param tile the tile
+   * @return true, if successful
+   */
+  public synchronized boolean contains(int id,
+      Genome genome,
+      String chr,
+      int window,
+      int tile) {
+    return mEnabled
+        && mLRU.containsKey(getFile(id, genome, chr, window, tile));
+  }
+
+  /**
+   * Load a tile from the store.
+   *
+   * @param id the sample id
+   * @param genome the genome
+   * @param chr the chr
+   * @param window the window
+   * @param tile the tile
+   * @return the counts in the tile or null if the tile is not in the store.
+   */
+  public int[] get(int id, Genome genome, String chr, int window, int tile) {
+    if (!mEnabled) {
+      return null;
+    }
+
+    Path file = getFile(id, genome, chr, window, tile);
+
+    synchronized (this) {
+      if (mLRU.get(file) == null) {
+        Metrics.getInstance().counter("TileStore.misses").inc();
+
+        return null;
+      }
+    }
+
+    try {
+      int[] ret = decode(Files.readAllBytes(file));
+
+      if (ret != null) {
+        Metrics.getInstance().counter("TileStore.hits").inc();
+
+        // Record the access so the LRU order persists between sessions
+        Files.setLastModifiedTime(file,
+            FileTime.fromMillis(System.currentTimeMillis()));
+      } else {
+        Metrics.getInstance().counter("TileStore.misses").inc();
+      }
+
+      return ret;
+    } catch (IOException e) {
+      Metrics.getInstance().counter("TileStore.misses").inc();
+
+      // The tile was probably evicted by another thread
+      remove(file);
+
+      return null;
+    }
+  }
+
+  /**
+   * Write a tile to the store.
+   *
+   * @param id the sample id
+   * @param genome the genome
+   * @param chr the chr
+   * @param window the window
+   * @param tile the tile
+   * @param counts the counts
+   */
+  public void put(int id,
+      Genome genome,
+      String chr,
+      int window,
+      int tile,
+      int[] counts) {
+    if (!mEnabled) {
+      return;
+    }
+
+    Path file = getFile(id, genome, chr, window, tile);
+
+    try {
+      long size = write(file, encode(counts));
+
+      synchronized (this) {
+        Long old = mLRU.put(file, size);
+
+        if (old != null) {
+          mSize -= old;
+        }
+
+        mSize += size;
+      }
+
+      evict();
+    } catch (IOException e) {
+      LOG.warn("Could not write tile {}: {}", file, e.getMessage());
+    }
+  }
+
+  /**
+   * Ensure the cached tiles of a sample match its current version. If the
+   * version differs from the stored one, the sample's tiles are removed. A
+   * null version means the version is unknown, in which case the tiles are
+   * removed once they are older than the unversioned time to live.
+   *
+   * @param id the sample id
+   * @param version the version
+   */
+  public void validate(int id, String version) {
+    if (!mEnabled) {
+      return;
+    }
+
+    if (version == null) {
+      validateAge(id);
+
+      return;
+    }
+
+    Path dir = getDir(id);
+    Path file = dir.resolve(VERSION_FILE);
+
+    try {
+      if (Files.exists(file)) {
+        String stored = new String(Files.readAllBytes(file),
+            StandardCharsets.UTF_8);
+
+        if (stored.equals(version)) {
+          return;
+        }
+      }
+
+      LOG.info("Sample {} changed to version {}, clearing tiles.",
+          id,
+          version);
+
+      clear(id);
+
+      write(file, version.getBytes(StandardCharsets.UTF_8));
+    } catch (IOException e) {
+      LOG.warn("Could not validate sample {}: {}", id, e.getMessage());
+    }
+  }
+
+  /**
+   * Remove the tiles of a sample without a version if they were started
+   * longer ago than the unversioned time to live. Tiles of unknown age, for
+   * example from a store written before the sample lost its version, are
+   * removed too.
+   *
+   * @param id the sample id
+   */
+  private void validateAge(int id) {
+    Path file = getDir(id).resolve(UNVERSIONED_FILE);
+
+    try {
+      if (Files.exists(file) && System.currentTimeMillis()
+          - Files.getLastModifiedTime(file).toMillis() < mUnversionedTtl) {
+        return;
+      }
+
+      LOG.info("Sample {} has no version and its tiles expired, clearing.",
+          id);
+
+      clear(id);
+
+      Files.deleteIfExists(getDir(id).resolve(VERSION_FILE));
+
+      write(file, new byte[0]);
+    } catch (IOException e) {
+      LOG.warn("Could not validate sample {}: {}", id, e.getMessage());
+    }
+  }
+
+  /**
+   * Gets the mapped reads of a sample stored alongside its tiles.
+   *
+   * @param id the id
+   * @param genome the genome
+   * @param window the window
+   * @return the mapped reads or -1 if they are not stored.
+   */
+  public int getMappedReads(int id, Genome genome, int window) {
+    if (!mEnabled) {
+      return -1;
+    }
+
+    Path file = getDir(id).resolve(genome.getAssembly())
+        .resolve(MAPPED_FILE + "_" + window);
+
+    if (!Files.exists(file)) {
+      return -1;
+    }
+
+    try {
+      int[] values = decode(Files.readAllBytes(file));
+
+      return values != null && values.length == 1 ? values[0] : -1;
+    } catch (IOException e) {
+      return -1;
+    }
+  }
+
+  /**
+   * Store the mapped reads of a sample.
+   *
+   * @param id the id
+   * @param genome the genome
+   * @param window the window
+   * @param mappedReads the mapped reads
+   */
+  public void putMappedReads(int id,
+      Genome genome,
+      int window,
+      int mappedReads) {
+    if (!mEnabled) {
+      return;
+    }
+
+    Path file = getDir(id).resolve(genome.getAssembly())
+        .resolve(MAPPED_FILE + "_" + window);
+
+    try {
+      write(file, encode(new int[] { mappedReads }));
+    } catch (IOException e) {
+      LOG.warn("Could not write {}: {}", file, e.getMessage());
+    }
+  }
+
+  /**
+   * Remove all tiles belonging to a sample.
+   *
+   * @param id the id
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public void clear(int id) throws IOException {
+    Path dir = getDir(id);
+
+    if (!Files.exists(dir)) {
+      return;
+    }
+
+    List<Path> files = new ArrayList<Path>();
+
+    find(dir, files);
+
+    for (Path file : files) {
+      remove(file);
+    }
+
+    // Mapped reads are tied to the version too
+    DirectoryStream<Path> stream = Files.newDirectoryStream(dir);
+
+    try {
+      for (Path genomeDir : stream) {
+        if (Files.isDirectory(genomeDir)) {
+          DirectoryStream<Path> mapped = Files.newDirectoryStream(genomeDir,
+              MAPPED_FILE + "_*");
+
+          try {
+            for (Path file : mapped) {
+              Files.deleteIfExists(file);
+            }
+          } finally {
+            mapped.close();
+          }
+        }
+      }
+    } finally {
+      stream.close();
+    }
+  }
+
+  /**
+   * Remove least recently used tiles until the store is within its size cap.
+   */
+  private void evict() {
+    List<Path> remove = new ArrayList<Path>();
+
+    synchronized (this) {
+      Iterator<Entry<Path, Long>> iter = mLRU.entrySet().iterator();
+
+      while (mSize > mMaxSize && iter.hasNext()) {
+        Entry<Path, Long> e = iter.next();
+
+        mSize -= e.getValue();
+
+        remove.add(e.getKey());
+
+        iter.remove();
+      }
+    }
+
+    for (Path file : remove) {
+      try {
+        Files.deleteIfExists(file);
+      } catch (IOException e) {
+        LOG.warn("Could not evict tile {}: {}", file, e.getMessage());
+      }
+    }
+  }
+
+  /**
+   * Remove a single tile.
+   *
+   * @param file the file
+   */
+  private void remove(Path file) {
+    synchronized (this) {
+      Long size = mLRU.remove(file);
+
+      if (size != null) {
+        mSize -= size;
+      }
+    }
+
+    try {
+      Files.deleteIfExists(file);
+    } catch (IOException e) {
+      LOG.warn("Could not remove tile {}: {}", file, e.getMessage());
+    }
+  }
+
+  /**
+   * Gets the dir.
+   *
+   * @param id the id
+   * @return the dir
+   */
+  private Path getDir(int id) {
+    return mDir.resolve(Integer.toString(id));
+  }
+
+  /**
+   * Gets the file.
+   *
+   * @param id the id
+   * @param genome the genome
+   * @param chr the chr
+   * @param window the window
+   * @param tile the tile
+   * @return the file
+   */
+  private Path getFile(int id,
+      Genome genome,
+      String chr,
+      int window,
+      int tile) {
+    return getDir(id).resolve(genome.getAssembly()).resolve(chr)
+        .resolve(Integer.toString(window)).resolve(tile + EXT);
+  }
+
+  /**
+   * Atomically write bytes to a file so that readers never see a partially
+   * written tile.
+   *
+   * @param file the file
+   * @param bytes the bytes
+   * @return the number of bytes written
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private static long write(Path file, byte[] bytes) throws IOException {
+    Files.createDirectories(file.getParent());
+
+    Path tmp = Files.createTempFile(file.getParent(), "tile", ".tmp");
+
+    try {
+      Files.write(tmp, bytes);
+
+      Files.move(tmp,
+          file,
+          StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(tmp);
+    }
+
+    return bytes.length;
+  }
+
+  /**
+   * Encode counts as a header followed by zig-zag variable length ints.
+   *
+   * @param counts the counts
+   * @return the byte[]
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public static byte[] encode(int[] counts) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(
+        8 + counts.length);
+
+    DataOutputStream out = new DataOutputStream(
+        new BufferedOutputStream(bytes));
+
+    try {
+      out.writeInt(MAGIC);
+      out.writeInt(counts.length);
+
+      for (int c : counts) {
+        writeVarInt(out, (c << 1) ^ (c >> 31));
+      }
+    } finally {
+      out.close();
+    }
+
+    return bytes.toByteArray();
+  }
+
+  /**
+   * Decode an encoded tile.
+   *
+   * @param bytes the bytes
+   * @return the counts or null if the bytes are not a valid tile.
+   */
+  public static int[] decode(byte[] bytes) {
+    ByteBuffer buffer = ByteBuffer.wrap(bytes);
+
+    if (buffer.remaining() < 8 || buffer.getInt() != MAGIC) {
+      return null;
+    }
+
+    int n = buffer.getInt();
+
+    // Every count takes at least one byte, so a larger n is corrupt and
+    // must not be allowed to allocate
+    if (n < 0 || n > buffer.remaining()) {
+      return null;
+    }
+
+    int[] ret = new int[n];
+
+    for (int i = 0; i < n; ++i) {
+      int v = 0;
+      int shift = 0;
+      int b;
+
+      do {
+        if (!buffer.hasRemaining()) {
+          return null;
+        }
+
+        b = buffer.get();
+
+        v |= (b & 0x7F) << shift;
+
+        shift += 7;
+      } while ((b & 0x80) != 0);
+
+      ret[i] = (v >>> 1) ^ -(v & 1);
+    }
+
+    return ret;
+  }
+
+  /**
+   * Write an unsigned variable length int, 7 bits at a time.
+   *
+   * @param out the out
+   * @param v the v
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private static void writeVarInt(OutputStream out, int v)
+      throws IOException {
+    while ((v & ~0x7F) != 0) {
+      out.write((v & 0x7F) | 0x80);
+      v >>>= 7;
+    }
+
+    out.write(v);
+  }
+}
@@ -0,0 +1,71 @@
+/**
+ * Copyright 2016 Antony Holmes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.columbia.rdf.htsview.tracks.scan;
+
+import org.jebtk.bioinformatics.genomic.GenomicRegion;
+
+/**
+ * A region where a sample exceeds the threshold of a scan.
+ *
+ * @author Antony Holmes
+ */
+public class ScanHit {
+
+  /** The m region. */
+  private final GenomicRegion mRegion;
+
+  /** The m max. */
+  private final double mMax;
+
+  /**
+   * Instantiates a new scan hit.
+   *
+   * @param region the region
+   * @param max the maximum signal in the region.
+   */
+  public ScanHit(GenomicRegion region, double max) {
+    mRegion = region;
+    mMax = max;
+  }
+
+  /**
+   * Gets the region.
+   *
+   * @return the region
+   */
+  public GenomicRegion getRegion() {
+    return mRegion;
+  }
+
+  /**
+   * Gets the maximum signal in the region, in the units of the threshold.
+   *
+   * @return the max
+   */
+  public double getMax() {
+    return mMax;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see java.lang.Object#toString()
+   */
+  @Override
+  public String toString() {
+    return mRegion.getLocation() + " " + mMax;
+  }
+}
@@ -0,0 +1,41 @@
+/**
+ * Copyright 2016 Antony Holmes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.columbia.rdf.htsview.tracks.scan;
+
+/**
+ * Receives the hits of a threshold scan as they are found. Hits are reported
+ * from the scan threads, in order within each chromosome.
+ *
+ * @author Antony Holmes
+ */
+public interface ScanListener {
+
+  /**
+   * Called each time a chromosome has been scanned.
+   *
+   * @param done the number of chromosomes scanned
+   * @param total the number of chromosomes to scan
+   */
+  public void progress(int done, int total);
+
+
+  /**
+   * Called for each region that exceeds the threshold.
+   *
+   * @param hit the hit
+   */
+  public void hit(ScanHit hit);
+}
@@ -0,0 +1,530 @@
+/**
+ * Copyright 2016 Antony Holmes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.columbia.rdf.htsview.tracks.scan;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jebtk.bioinformatics.genomic.Chromosome;
+import org.jebtk.bioinformatics.genomic.ChromosomeService;
+import org.jebtk.bioinformatics.genomic.Genome;
+import org.jebtk.bioinformatics.genomic.GenomicRegion;
+import org.jebtk.core.settings.SettingsService;
+import org.jebtk.core.text.TextUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import edu.columbia.rdf.edb.Sample;
+import edu.columbia.rdf.htsview.cache.SharedCache;
+import edu.columbia.rdf.htsview.tracks.SampleAssembly;
+import edu.columbia.rdf.htsview.tracks.genomic.Chromosomes;
+import edu.columbia.rdf.htsview.tracks.sample.SampleAssemblies;
+
+/**
+ * Finds every region where a sample exceeds a signal threshold, for example
+ * candidate super-enhancers, without reading the genome at full resolution.
+ * Each chromosome is first read at the coarsest window. A bin counts the
+ * reads overlapping it, so no finer bin inside it can have a higher count
+ * and bins below the threshold are discarded. Only runs of bins that pass
+ * are read at the next finer window, down to the finest window where
+ * passing bins become hits. Chromosomes are scanned in parallel and hits are
+ * reported as soon as they are found. Reads of the same assembly are
+ * serialized since assemblies are not thread safe.
+ *
+ * @author Antony Holmes
+ */
+public class ThresholdScan {
+
+  /** The Constant LOG. */
+  private static final Logger LOG = LoggerFactory
+      .getLogger(ThresholdScan.class);
+
+  /** The m genome. */
+  private final Genome mGenome;
+
+  /** The m sample. */
+  private final Sample mSample;
+
+  /** The m assembly. */
+  private final SampleAssembly mAssembly;
+
+  /** The m threshold. */
+  private final double mThreshold;
+
+  /** The m chromosomes. */
+  private final List<Chromosome> mChromosomes = new ArrayList<Chromosome>();
+
+  /** Windows from coarsest to finest. */
+  private List<Integer> mWindows = parseWindows(
+      SettingsService.getInstance().getString("htsview.scan.windows"));
+
+  /** Hits closer than this are merged. */
+  private int mMergeGap = SettingsService.getInstance()
+      .getInt("htsview.scan.merge-gap");
+
+  /** The m chunk bins. */
+  private int mChunkBins = SettingsService.getInstance()
+      .getInt("htsview.scan.chunk-bins");
+
+  /** The m threads. */
+  private int mThreads = SettingsService.getInstance()
+      .getInt("htsview.scan.threads");
+
+  /** The m normalize. */
+  private boolean mNormalize = true;
+
+  /** The m cancelled. */
+  private volatile boolean mCancelled = false;
+
+  /** The number of bins read, for reporting how much was pruned. */
+  private final AtomicInteger mBinsRead = new AtomicInteger();
+
+  /**
+   * Instantiates a new threshold scan.
+   *
+   * @param genome the genome
+   * @param sample the sample
+   * @param assembly the assembly
+   * @param threshold the threshold in reads per million, or in reads if
+   *          normalization is turned off.
+   */
+  private ThresholdScan(Genome genome, Sample sample, SampleAssembly assembly,
+      double threshold) {
+    mGenome = genome;
+    mSample = sample;
+    mAssembly = SampleAssemblies.getSource(assembly);
+    mThreshold = threshold;
+  }
+
+  /**
+   * Creates a scan for the regions where a sample exceeds a threshold,
+   * descending from coarse to fine windows so that most of the genome is
+   * only read at the coarsest window.
+   *
+   * @param sample the sample
+   * @param genome the genome
+   * @param assembly the assembly
+   * @param threshold the threshold in reads per million.
+   * @return the threshold scan
+   */
+  public static ThresholdScan create(Sample sample, Genome genome,
+      SampleAssembly assembly, double threshold) {
+    return new ThresholdScan(genome, sample, assembly, threshold);
+  }
+
+  /**
+   * Restrict the scan to a chromosome. If no chromosomes are added the
+   * numbered chromosomes plus X and Y of the genome are scanned.
+   *
+   * @param chr the chr
+   * @return the threshold scan
+   */
+  public ThresholdScan addChromosome(Chromosome chr) {
+    mChromosomes.add(chr);
+
+    return this;
+  }
+
+  /**
+   * Sets the windows to descend through. Windows are sorted from coarsest to
+   * finest and a window is dropped if it does not divide the coarser window
+   * before it, since its bins would not nest inside the coarser bins.
+   *
+   * @param windows the windows
+   * @return the threshold scan
+   */
+  public ThresholdScan setWindows(List<Integer> windows) {
+    mWindows = nest(windows);
+
+    return this;
+  }
+
+  /**
+   * Sets whether the threshold is in reads per million.
+   *
+   * @param normalize the normalize
+   * @return the threshold scan
+   */
+  public ThresholdScan setNormalize(boolean normalize) {
+    mNormalize = normalize;
+
+    return this;
+  }
+
+  /**
+   * Sets the distance below which neighbouring hits are merged.
+   *
+   * @param gap the gap
+   * @return the threshold scan
+   */
+  public ThresholdScan setMergeGap(int gap) {
+    mMergeGap = Math.max(0, gap);
+
+    return this;
+  }
+
+  /**
+   * Sets the number of threads.
+   *
+   * @param threads the threads
+   * @return the threshold scan
+   */
+  public ThresholdScan setThreads(int threads) {
+    mThreads = threads;
+
+    return this;
+  }
+
+  /**
+   * Stop the scan. Hits already reported are kept.
+   */
+  public void cancel() {
+    mCancelled = true;
+  }
+
+  /**
+   * Checks if is cancelled.
+   *
+   * @return true, if is cancelled
+   */
+  public boolean isCancelled() {
+    return mCancelled;
+  }
+
+  /**
+   * Run the scan.
+   *
+   * @param listener the listener
+   * @return the number of hits.
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public int run(final ScanListener listener) throws IOException {
+    if (mWindows.isEmpty()) {
+      return 0;
+    }
+
+    final List<Chromosome> chromosomes = mChromosomes.isEmpty()
+        ? Chromosomes.getChromosomes(mGenome)
+        : mChromosomes;
+
+    final double scale = getScaleFactor();
+
+    long start = System.currentTimeMillis();
+
+    ExecutorService executor = Executors
+        .newFixedThreadPool(Math.max(1, mThreads));
+
+    List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+
+    final AtomicInteger done = new AtomicInteger();
+
+    mBinsRead.set(0);
+
+    for (final Chromosome chr : chromosomes) {
+      futures.add(executor.submit(new Callable<Integer>() {
+        @Override
+        public Integer call() throws Exception {
+          int hits = new ChrScan(chr, scale, listener).scan();
+
+          listener.progress(done.incrementAndGet(), chromosomes.size());
+
+          return hits;
+        }
+      }));
+    }
+
+    int hits = 0;
+
+    try {
+      for (Future<Integer> future : futures) {
+        hits += SharedCache.getResult(future);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    LOG.info("Found {} regions above {} in {} chromosomes of {} from {} bins "
+        + "in {} ms.",
+        hits,
+        mThreshold,
+        chromosomes.size(),
+        mSample.getName(),
+        mBinsRead.get(),
+        System.currentTimeMillis() - start);
+
+    return hits;
+  }
+
+  /**
+   * Returns the factor converting counts into the units of the threshold.
+   *
+   * @return the scale factor
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private double getScaleFactor() throws IOException {
+    if (!mNormalize) {
+      return 1;
+    }
+
+    int mappedReads = SampleAssemblies.getMappedReads(mAssembly,
+        mSample,
+        mGenome,
+        mWindows.get(mWindows.size() - 1));
+
+    return mappedReads > 0 ? 1000000.0 / mappedReads : 1;
+  }
+
+  /**
+   * Scans one chromosome depth first so that hits are reported in order as
+   * soon as the finest window confirms them.
+   */
+  private class ChrScan {
+
+    /** The m chr. */
+    private final Chromosome mChr;
+
+    /** The m size. */
+    private final int mSize;
+
+    /** The m scale. */
+    private final double mScale;
+
+    /** The m listener. */
+    private final ScanListener mListener;
+
+    /** The hit being extended, or -1 if there is none. */
+    private int mHitStart = -1;
+
+    /** The m hit end. */
+    private int mHitEnd;
+
+    /** The m hit max. */
+    private int mHitMax;
+
+    /** The m hits. */
+    private int mHits = 0;
+
+    /**
+     * Instantiates a new chr scan.
+     *
+     * @param chr the chr
+     * @param scale the scale
+     * @param listener the listener
+     */
+    public ChrScan(Chromosome chr, double scale, ScanListener listener) {
+      mChr = chr;
+      mSize = ChromosomeService.getInstance().size(mGenome, chr);
+      mScale = scale;
+      mListener = listener;
+    }
+
+    /**
+     * Scan the chromosome.
+     *
+     * @return the number of hits.
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public int scan() throws IOException {
+      scan(1, mSize, 0);
+
+      flush();
+
+      return mHits;
+    }
+
+    /**
+     * Scan a region at a level and descend into the runs of bins that pass.
+     *
+     * @param start the start
+     * @param end the end
+     * @param level the level
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    private void scan(int start, int end, int level) throws IOException {
+      int window = mWindows.get(level);
+
+      boolean last = level == mWindows.size() - 1;
+
+      // Read long regions in chunks so memory stays bounded
+      long chunk = (long) Math.max(1, mChunkBins) * window;
+
+      for (long cs = start; cs <= end && !mCancelled; cs += chunk) {
+        int ce = (int) Math.min(end, cs + chunk - 1);
+
+        int[] counts = SampleAssemblies.getCounts(mAssembly,
+            mSample,
+            mGenome,
+            new GenomicRegion(mChr, (int) cs, ce),
+            window);
+
+        mBinsRead.addAndGet(counts.length);
+
+        int base = SampleAssembly.getBin((int) cs, window);
+
+        int runStart = -1;
+        int runEnd = -1;
+        int runMax = 0;
+
+        for (int i = 0; i < counts.length && !mCancelled; ++i) {
+          int bs = (base + i) * window + 1;
+
+          if (counts[i] * mScale >= mThreshold) {
+            if (runStart == -1) {
+              runStart = bs;
+              runMax = 0;
+            }
+
+            runEnd = Math.min(mSize, bs + window - 1);
+            runMax = Math.max(runMax, counts[i]);
+          } else if (runStart != -1) {
+            run(runStart, runEnd, runMax, level, last);
+
+            runStart = -1;
+          }
+        }
+
+        if (runStart != -1) {
+          run(runStart, runEnd, runMax, level, last);
+        }
+      }
+    }
+
+    /**
+     * Handle a run of bins that pass the threshold.
+     *
+     * @param start the start
+     * @param end the end
+     * @param max the max
+     * @param level the level
+     * @param last the last
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    private void run(int start, int end, int max, int level, boolean last)
+        throws IOException {
+      if (last) {
+        add(start, end, max);
+      } else {
+        scan(start, end, level + 1);
+      }
+    }
+
+    /**
+     * Add a region at the finest window, merging it with the previous one
+     * if they are close enough.
+     *
+     * @param start the start
+     * @param end the end
+     * @param max the max
+     */
+    private void add(int start, int end, int max) {
+      if (mHitStart != -1 && start - mHitEnd - 1 <= mMergeGap) {
+        mHitEnd = end;
+        mHitMax = Math.max(mHitMax, max);
+        return;
+      }
+
+      flush();
+
+      mHitStart = start;
+      mHitEnd = end;
+      mHitMax = max;
+    }
+
+    /**
+     * Report the pending hit.
+     */
+    private void flush() {
+      if (mHitStart == -1) {
+        return;
+      }
+
+      mListener.hit(new ScanHit(new GenomicRegion(mChr, mHitStart, mHitEnd),
+          mHitMax * mScale));
+
+      ++mHits;
+
+      mHitStart = -1;
+    }
+  }
+
+  /**
+   * Parse a comma separated list of windows.
+   *
+   * @param text the text
+   * @return the windows from coarsest to finest.
+   */
+  public static List<Integer> parseWindows(String text) {
+    List<Integer> windows = new ArrayList<Integer>();
+
+    if (text != null) {
+      for (String token : TextUtils.commaSplit(text)) {
+        try {
+          windows.add(Integer.parseInt(token.trim()));
+        } catch (NumberFormatException e) {
+          LOG.warn("Invalid scan window {}", token);
+        }
+      }
+    }
+
+    return nest(windows);
+  }
+
+  /**
+   * Sort windows from coarsest to finest, keeping only windows that divide
+   * the coarser window before them.
+   *
+   * @param windows the windows
+   * @return the list
+   */
+  private static List<Integer> nest(List<Integer> windows) {
+    List<Integer> sorted = new ArrayList<Integer>(windows);
+
+    Collections.sort(sorted);
+
+    List<Integer> ret = new ArrayList<Integer>();
+
+    for (int i = sorted.size() - 1; i >= 0; --i) {
+      int w = sorted.get(i);
+
+      if (w < 1) {
+        continue;
+      }
+
+      if (ret.isEmpty()) {
+        ret.add(w);
+      } else {
+        int previous = ret.get(ret.size() - 1);
+
+        if (w < previous && previous % w == 0) {
+          ret.add(w);
+        } else if (w != previous) {
+          LOG.warn("Scan window {} does not divide {} and is ignored.",
+              w,
+              previous);
+        }
+      }
+    }
+
+    return ret;
+  }
+}
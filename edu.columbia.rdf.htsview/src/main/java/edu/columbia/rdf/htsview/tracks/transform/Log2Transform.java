@@ -0,0 +1,60 @@
+/**
+ * Copyright 2016 Antony Holmes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.columbia.rdf.htsview.tracks.transform;
+
+/**
+ * Log2 of each bin plus a pseudo count so that empty bins stay finite.
+ *
+ * @author Antony Holmes
+ */
+public class Log2Transform extends SignalTransform {
+
+  /** The Constant LN2. */
+  private static final double LN2 = Math.log(2);
+
+  /** The m pseudo count. */
+  private final double mPseudoCount;
+
+  /**
+   * Instantiates a new log2 transform.
+   *
+   * @param pseudoCount the pseudo count
+   */
+  public Log2Transform(double pseudoCount) {
+    mPseudoCount = Math.max(0, pseudoCount);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see edu.columbia.rdf.htsview.tracks.transform.SignalTransform#getName()
+   */
+  @Override
+  public String getName() {
+    return "log2(" + TransformPipeline.format(mPseudoCount) + ")";
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see edu.columbia.rdf.htsview.tracks.transform.SignalTransform#apply(
+   * double, int, edu.columbia.rdf.htsview.tracks.transform.TransformContext)
+   */
+  @Override
+  public double apply(double v, int i, TransformContext context) {
+    return Math.log(Math.max(0, v) + mPseudoCount) / LN2;
+  }
+}
@@ -0,0 +1,76 @@
+/**
+ * Copyright 2016 Antony Holmes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.columbia.rdf.htsview.tracks.transform;
+
+/**
+ * Ratio of each bin against the same bin of the control sample, with a
+ * pseudo count added to both. The signal is left unchanged if the track has
+ * no control.
+ *
+ * @author Antony Holmes
+ */
+public class RatioTransform extends SignalTransform {
+
+  /** The m pseudo count. */
+  private final double mPseudoCount;
+
+  /**
+   * Instantiates a new ratio transform.
+   *
+   * @param pseudoCount the pseudo count
+   */
+  public RatioTransform(double pseudoCount) {
+    mPseudoCount = Math.max(0, pseudoCount);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see edu.columbia.rdf.htsview.tracks.transform.SignalTransform#getName()
+   */
+  @Override
+  public String getName() {
+    return "ratio(" + TransformPipeline.format(mPseudoCount) + ")";
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see
+   * edu.columbia.rdf.htsview.tracks.transform.SignalTransform#needsControl()
+   */
+  @Override
+  public boolean needsControl() {
+    return true;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see edu.columbia.rdf.htsview.tracks.transform.SignalTransform#apply(
+   * double, int, edu.columbia.rdf.htsview.tracks.transform.TransformContext)
+   */
+  @Override
+  public double apply(double v, int i, TransformContext context) {
+    if (!context.hasControl()) {
+      return v;
+    }
+
+    double d = context.getControl(i) + mPseudoCount;
+
+    return d > 0 ? (v + mPseudoCount) / d : 0;
+  }
+}
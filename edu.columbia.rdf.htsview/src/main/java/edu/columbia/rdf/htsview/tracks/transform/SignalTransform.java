@@ -0,0 +1,90 @@
+/**
+ * Copyright 2016 Antony Holmes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.columbia.rdf.htsview.tracks.transform;
+
+/**
+ * An operator in a signal transform pipeline. Transforms work in place on a
+ * dense buffer of per bin values. Pointwise transforms only look at one bin
+ * at a time so consecutive pointwise transforms can be applied together in a
+ * single pass over the buffer. Transforms that need neighbouring bins or the
+ * whole signal override {@link #apply(double[], int, TransformContext)} and
+ * return false from {@link #isPointwise()}.
+ *
+ * @author Antony Holmes
+ */
+public abstract class SignalTransform {
+
+  /**
+   * Gets the name used to describe the transform, for example
+   * {@code smooth(5)}.
+   *
+   * @return the name
+   */
+  public abstract String getName();
+
+  /**
+   * Returns true if the transform only depends on the value of each bin.
+   *
+   * @return true, if is pointwise
+   */
+  public boolean isPointwise() {
+    return true;
+  }
+
+  /**
+   * Returns true if the transform needs the signal of the control sample.
+   *
+   * @return true, if successful
+   */
+  public boolean needsControl() {
+    return false;
+  }
+
+  /**
+   * Transform the value of a bin.
+   *
+   * @param v the value
+   * @param i the bin
+   * @param context the context
+   * @return the transformed value
+   */
+  public double apply(double v, int i, TransformContext context) {
+    return v;
+  }
+
+  /**
+   * Transform the first n values of a signal in place.
+   *
+   * @param signal the signal
+   * @param n the number of bins
+   * @param context the context
+   */
+  public void apply(double[] signal, int n, TransformContext context) {
+    for (int i = 0; i < n; ++i) {
+      signal[i] = apply(signal[i], i, context);
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see java.lang.Object#toString()
+   */
+  @Override
+  public String toString() {
+    return getName();
+  }
+}
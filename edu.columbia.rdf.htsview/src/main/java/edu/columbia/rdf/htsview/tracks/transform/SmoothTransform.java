@@ -0,0 +1,107 @@
+/**
+ * Copyright 2016 Antony Holmes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.columbia.rdf.htsview.tracks.transform;
+
+/**
+ * Centered rolling mean over a number of bins. Bins near the edges are
+ * averaged over the part of the window that falls inside the signal. The
+ * mean is computed in place with a running sum, keeping only the original
+ * values still inside the window, so the cost is linear in the number of
+ * bins whatever the window size.
+ *
+ * @author Antony Holmes
+ */
+public class SmoothTransform extends SignalTransform {
+
+  /** The m bins. */
+  private final int mBins;
+
+  /**
+   * Instantiates a new smooth transform.
+   *
+   * @param bins the window size in bins. Even sizes are rounded up so the
+   *          window is centered.
+   */
+  public SmoothTransform(int bins) {
+    mBins = Math.max(1, bins) | 1;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see edu.columbia.rdf.htsview.tracks.transform.SignalTransform#getName()
+   */
+  @Override
+  public String getName() {
+    return "smooth(" + mBins + ")";
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see
+   * edu.columbia.rdf.htsview.tracks.transform.SignalTransform#isPointwise()
+   */
+  @Override
+  public boolean isPointwise() {
+    return false;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see edu.columbia.rdf.htsview.tracks.transform.SignalTransform#apply(
+   * double[], int, edu.columbia.rdf.htsview.tracks.transform.TransformContext)
+   */
+  @Override
+  public void apply(double[] signal, int n, TransformContext context) {
+    if (mBins == 1 || n == 0) {
+      return;
+    }
+
+    int half = mBins / 2;
+
+    // Original values of the bins that have already been overwritten but
+    // are still inside the window
+    double[] ring = new double[mBins];
+
+    double sum = 0;
+
+    for (int i = 0; i < Math.min(n, half); ++i) {
+      sum += signal[i];
+    }
+
+    for (int i = 0; i < n; ++i) {
+      int add = i + half;
+
+      if (add < n) {
+        sum += signal[add];
+      }
+
+      int remove = i - half - 1;
+
+      if (remove >= 0) {
+        sum -= ring[remove % mBins];
+      }
+
+      ring[i % mBins] = signal[i];
+
+      int count = Math.min(n - 1, add) - Math.max(0, i - half) + 1;
+
+      signal[i] = sum / count;
+    }
+  }
+}
@@ -0,0 +1,60 @@
+/**
+ * Copyright 2016 Antony Holmes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.columbia.rdf.htsview.tracks.transform;
+
+/**
+ * Data a transform may need besides the signal it is transforming, currently
+ * the signal of the control sample scaled to the same depth and units as the
+ * sample.
+ *
+ * @author Antony Holmes
+ */
+public class TransformContext {
+
+  /** The Constant EMPTY. */
+  public static final TransformContext EMPTY = new TransformContext(null);
+
+  /** The m control. */
+  private final double[] mControl;
+
+  /**
+   * Instantiates a new transform context.
+   *
+   * @param control the control signal, may be null.
+   */
+  public TransformContext(double[] control) {
+    mControl = control;
+  }
+
+  /**
+   * Returns true if a control signal is available.
+   *
+   * @return true, if successful
+   */
+  public boolean hasControl() {
+    return mControl != null;
+  }
+
+  /**
+   * Gets the control signal of a bin.
+   *
+   * @param i the bin
+   * @return the control or zero if there is no control for the bin.
+   */
+  public double getControl(int i) {
+    return mControl != null && i < mControl.length ? mControl[i] : 0;
+  }
+}
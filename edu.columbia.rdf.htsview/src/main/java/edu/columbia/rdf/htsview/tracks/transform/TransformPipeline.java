@@ -0,0 +1,237 @@
+/**
+ * Copyright 2016 Antony Holmes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.columbia.rdf.htsview.tracks.transform;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An ordered list of signal transforms applied in place to the signal of a
+ * track after it has been normalized. Runs of consecutive pointwise
+ * transforms are fused so that each run costs a single pass over the signal.
+ * A pipeline is described by a comma separated list of transforms such as
+ * {@code ratio(1), log2(1), smooth(5), zscore}, which is how it is entered
+ * by the user and saved in views.
+ *
+ * @author Antony Holmes
+ */
+public class TransformPipeline {
+
+  /** The Constant LOG. */
+  private static final Logger LOG = LoggerFactory
+      .getLogger(TransformPipeline.class);
+
+  /** The Constant EMPTY. */
+  public static final TransformPipeline EMPTY = new TransformPipeline(
+      Collections.<SignalTransform> emptyList());
+
+  /** The m transforms. */
+  private final List<SignalTransform> mTransforms;
+
+  /** The transforms grouped into runs that are applied together. */
+  private final List<SignalTransform[]> mStages = new ArrayList<SignalTransform[]>();
+
+  /**
+   * Instantiates a new transform pipeline.
+   *
+   * @param transforms the transforms
+   */
+  public TransformPipeline(List<SignalTransform> transforms) {
+    mTransforms = Collections
+        .unmodifiableList(new ArrayList<SignalTransform>(transforms));
+
+    List<SignalTransform> run = new ArrayList<SignalTransform>();
+
+    for (SignalTransform transform : mTransforms) {
+      if (transform.isPointwise()) {
+        run.add(transform);
+      } else {
+        if (run.size() > 0) {
+          mStages.add(run.toArray(new SignalTransform[run.size()]));
+          run.clear();
+        }
+
+        mStages.add(new SignalTransform[] { transform });
+      }
+    }
+
+    if (run.size() > 0) {
+      mStages.add(run.toArray(new SignalTransform[run.size()]));
+    }
+  }
+
+  /**
+   * Gets the transforms.
+   *
+   * @return the transforms
+   */
+  public List<SignalTransform> getTransforms() {
+    return mTransforms;
+  }
+
+  /**
+   * Checks if the pipeline has no transforms.
+   *
+   * @return true, if is empty
+   */
+  public boolean isEmpty() {
+    return mTransforms.isEmpty();
+  }
+
+  /**
+   * Returns true if any transform needs the signal of the control sample.
+   *
+   * @return true, if successful
+   */
+  public boolean needsControl() {
+    for (SignalTransform transform : mTransforms) {
+      if (transform.needsControl()) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  /**
+   * Apply the pipeline in place to the first n values of a signal.
+   *
+   * @param signal the signal
+   * @param n the number of bins
+   * @param context the context
+   */
+  public void apply(double[] signal, int n, TransformContext context) {
+    for (SignalTransform[] stage : mStages) {
+      if (stage.length == 1) {
+        stage[0].apply(signal, n, context);
+      } else {
+        // Fused pointwise transforms
+        for (int i = 0; i < n; ++i) {
+          double v = signal[i];
+
+          for (SignalTransform transform : stage) {
+            v = transform.apply(v, i, context);
+          }
+
+          signal[i] = v;
+        }
+      }
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see java.lang.Object#toString()
+   */
+  @Override
+  public String toString() {
+    StringBuilder buffer = new StringBuilder();
+
+    for (SignalTransform transform : mTransforms) {
+      if (buffer.length() > 0) {
+        buffer.append(", ");
+      }
+
+      buffer.append(transform.getName());
+    }
+
+    return buffer.toString();
+  }
+
+  /**
+   * Parse a comma separated list of transforms. Transforms that are not
+   * recognized are logged and skipped.
+   *
+   * @param text the text
+   * @return the transform pipeline
+   */
+  public static TransformPipeline parse(String text) {
+    if (text == null) {
+      return EMPTY;
+    }
+
+    List<SignalTransform> transforms = new ArrayList<SignalTransform>();
+
+    for (String token : text.split(",")) {
+      token = token.trim().toLowerCase();
+
+      if (token.length() == 0) {
+        continue;
+      }
+
+      String name = token;
+      String arg = null;
+
+      int i = token.indexOf('(');
+
+      if (i != -1 && token.endsWith(")")) {
+        name = token.substring(0, i).trim();
+        arg = token.substring(i + 1, token.length() - 1).trim();
+      }
+
+      SignalTransform transform = create(name, arg);
+
+      if (transform != null) {
+        transforms.add(transform);
+      } else {
+        LOG.warn("Unknown signal transform {}", token);
+      }
+    }
+
+    return transforms.isEmpty() ? EMPTY : new TransformPipeline(transforms);
+  }
+
+  /**
+   * Create a transform from its name and optional argument.
+   *
+   * @param name the name
+   * @param arg the arg, may be null.
+   * @return the signal transform or null if the name is not recognized.
+   */
+  private static SignalTransform create(String name, String arg) {
+    try {
+      switch (name) {
+      case "log2":
+        return new Log2Transform(arg != null ? Double.parseDouble(arg) : 1);
+      case "ratio":
+        return new RatioTransform(arg != null ? Double.parseDouble(arg) : 1);
+      case "smooth":
+        return new SmoothTransform(arg != null ? Integer.parseInt(arg) : 5);
+      case "zscore":
+        return new ZScoreTransform();
+      default:
+        return null;
+      }
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Format a transform parameter without a trailing .0 for whole numbers.
+   *
+   * @param v the v
+   * @return the string
+   */
+  static String format(double v) {
+    return v == Math.rint(v) ? Long.toString((long) v) : Double.toString(v);
+  }
+}
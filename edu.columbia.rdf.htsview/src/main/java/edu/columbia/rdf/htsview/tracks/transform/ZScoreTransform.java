@@ -0,0 +1,77 @@
+/**
+ * Copyright 2016 Antony Holmes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.columbia.rdf.htsview.tracks.transform;
+
+/**
+ * Scales the signal to zero mean and unit standard deviation across the
+ * bins of the view. A flat signal becomes all zeros.
+ *
+ * @author Antony Holmes
+ */
+public class ZScoreTransform extends SignalTransform {
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see edu.columbia.rdf.htsview.tracks.transform.SignalTransform#getName()
+   */
+  @Override
+  public String getName() {
+    return "zscore";
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see
+   * edu.columbia.rdf.htsview.tracks.transform.SignalTransform#isPointwise()
+   */
+  @Override
+  public boolean isPointwise() {
+    return false;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see edu.columbia.rdf.htsview.tracks.transform.SignalTransform#apply(
+   * double[], int, edu.columbia.rdf.htsview.tracks.transform.TransformContext)
+   */
+  @Override
+  public void apply(double[] signal, int n, TransformContext context) {
+    if (n == 0) {
+      return;
+    }
+
+    double sum = 0;
+    double sumSq = 0;
+
+    for (int i = 0; i < n; ++i) {
+      sum += signal[i];
+      sumSq += signal[i] * signal[i];
+    }
+
+    double mean = sum / n;
+    double var = Math.max(0, sumSq / n - mean * mean);
+    double sd = Math.sqrt(var);
+
+    double scale = sd > 0 ? 1 / sd : 0;
+
+    for (int i = 0; i < n; ++i) {
+      signal[i] = (signal[i] - mean) * scale;
+    }
+  }
+}
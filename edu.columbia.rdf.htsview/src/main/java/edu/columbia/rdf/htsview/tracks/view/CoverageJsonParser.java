@@ -0,0 +1,187 @@
+/**
+ * Copyright 2017 Antony Holmes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.columbia.rdf.htsview.tracks.view;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.jebtk.bioinformatics.genomic.Genome;
+import org.jebtk.core.io.FileUtils;
+import org.jebtk.core.json.Json;
+import org.jebtk.core.json.JsonParser;
+import org.jebtk.core.tree.TreeNode;
+import org.jebtk.modern.tree.ModernTree;
+import org.jebtk.modern.window.ModernWindow;
+
+import edu.columbia.rdf.edb.Sample;
+import edu.columbia.rdf.htsview.tracks.SampleAssembly;
+import edu.columbia.rdf.htsview.tracks.Track;
+import edu.columbia.rdf.htsview.tracks.loaders.SampleLoader;
+import edu.columbia.rdf.htsview.tracks.sample.CoveragePlotTrack;
+import edu.columbia.rdf.htsview.tracks.sample.CoverageStrand;
+import edu.columbia.rdf.htsview.tracks.sample.SampleTracks;
+
+/**
+ * Reopens the coverage tracks of samples stored on disk from the meta file
+ * written by {@link CoveragePlotTrack}. Coverage tracks of samples without a
+ * meta file are skipped.
+ */
+public class CoverageJsonParser extends TrackJsonParser {
+
+  /**
+   * The sample and assembly read from a meta file.
+   */
+  private static class CoverageData {
+
+    /** The m sample. */
+    private final Sample mSample;
+
+    /** The m assembly. */
+    private final SampleAssembly mAssembly;
+
+    /** The m meta file. */
+    private final Path mMetaFile;
+
+    /**
+     * Instantiates a new coverage data.
+     *
+     * @param sample the sample
+     * @param assembly the assembly
+     * @param metaFile the meta file
+     */
+    public CoverageData(Sample sample, SampleAssembly assembly,
+        Path metaFile) {
+      mSample = sample;
+      mAssembly = assembly;
+      mMetaFile = metaFile;
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see edu.columbia.rdf.htsview.tracks.view.TrackJsonParser#load(java.lang.
+   * String, int, org.jebtk.bioinformatics.genomic.Genome,
+   * org.jebtk.core.json.Json)
+   */
+  @Override
+  public Object load(String name, int id, Genome genome, Json trackJson)
+      throws IOException {
+    Path metaFile = getFile(trackJson);
+
+    if (metaFile == null || !FileUtils.exists(metaFile)) {
+      return null;
+    }
+
+    Sample sample = SampleTracks.getSampleFromTrack(JsonParser.json(metaFile));
+
+    return new CoverageData(sample, SampleTracks.openAssembly(metaFile),
+        metaFile);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see
+   * edu.columbia.rdf.htsview.tracks.view.TrackJsonParser#parse(org.jebtk.
+   * modern.window.ModernWindow, java.lang.String, int,
+   * org.jebtk.bioinformatics.genomic.Genome,
+   * org.jebtk.modern.tree.ModernTree, org.jebtk.core.json.Json,
+   * java.lang.Object, org.jebtk.core.tree.TreeNode)
+   */
+  @Override
+  public boolean parse(ModernWindow window,
+      String name,
+      int id,
+      Genome genome,
+      ModernTree<Track> annotationTree,
+      Json trackJson,
+      Object data,
+      TreeNode<Track> rootNode) throws IOException {
+    if (data == null) {
+      return false;
+    }
+
+    CoverageData coverage = (CoverageData) data;
+
+    CoveragePlotTrack track = new CoveragePlotTrack(coverage.mSample,
+        coverage.mAssembly, coverage.mMetaFile);
+
+    if (trackJson.containsKey("fragment-length")) {
+      track.setFragmentLength(trackJson.getInt("fragment-length"));
+    }
+
+    if (trackJson.containsKey("strand")) {
+      track.setStrand(CoverageStrand
+          .valueOf(trackJson.getString("strand").toUpperCase()));
+    }
+
+    if (trackJson.containsKey("height")) {
+      track.setHeight(trackJson.getInt("height"));
+    }
+
+    SampleLoader.load(name, track, rootNode);
+
+    return true;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see
+   * edu.columbia.rdf.htsview.tracks.view.TrackJsonParser#parse(org.abh.common.
+   * ui. window.ModernWindow, java.lang.String, int,
+   * org.abh.common.ui.tree.ModernTree, org.abh.common.json.Json,
+   * org.abh.common.tree.TreeNode)
+   */
+  @Override
+  public boolean parse(ModernWindow window,
+      String name,
+      int id,
+      Genome genome,
+      ModernTree<Track> annotationTree,
+      Json trackJson,
+      TreeNode<Track> rootNode) throws IOException {
+    return parse(window,
+        name,
+        id,
+        genome,
+        annotationTree,
+        trackJson,
+        load(name, id, genome, trackJson),
+        rootNode);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see org.abh.common.NameProperty#getName()
+   */
+  @Override
+  public String getName() {
+    return "Coverage";
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see edu.columbia.rdf.htsview.tracks.view.TrackJsonParser#getType()
+   */
+  @Override
+  public String getType() {
+    return "coverage";
+  }
+}
@@ -0,0 +1,147 @@
+/**
+ * Copyright 2017 Antony Holmes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.columbia.rdf.htsview.tracks.view;
+
+import java.io.IOException;
+
+import org.jebtk.bioinformatics.genomic.Genome;
+import org.jebtk.bioinformatics.genomic.GenomicRegion;
+import org.jebtk.core.json.Json;
+import org.jebtk.core.json.JsonBuilder;
+
+import edu.columbia.rdf.htsview.tracks.AnnotationPlotTrack;
+import edu.columbia.rdf.htsview.tracks.TitleProperties;
+import edu.columbia.rdf.htsview.tracks.TrackSubFigure;
+
+/**
+ * Placeholder shown in place of a track from a saved view until the real
+ * track has been built. If the track cannot be built, the placeholder remains
+ * and shows the error. The placeholder keeps the saved json of its track so
+ * that saving the view before the track is built, or after it failed, writes
+ * the track back unchanged.
+ */
+public class LoadingPlotTrack extends AnnotationPlotTrack {
+
+  /** The Constant serialVersionUID. */
+  private static final long serialVersionUID = 1L;
+
+  /** The m status. */
+  private String mStatus = "loading...";
+
+  /** The saved json of the track. */
+  private final Json mJson;
+
+  /**
+   * Instantiates a new loading plot track.
+   *
+   * @param name the name
+   * @param json the saved json of the track.
+   */
+  public LoadingPlotTrack(String name, Json json) {
+    super(name);
+
+    mJson = json;
+  }
+
+  /**
+   * Sets the status shown next to the track name.
+   *
+   * @param status the new status
+   */
+  public void setStatus(String status) {
+    mStatus = status;
+
+    if (mSubFigure != null) {
+      ((LoadingSubFigure) mSubFigure).setTitle(getTitle());
+    }
+
+    fireChanged();
+  }
+
+  /**
+   * Gets the title.
+   *
+   * @return the title
+   */
+  private String getTitle() {
+    return getName() + " (" + mStatus + ")";
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see edu.columbia.rdf.htsview.tracks.AnnotationPlotTrack#getType()
+   */
+  @Override
+  public String getType() {
+    return "Loading";
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see edu.columbia.rdf.htsview.tracks.Track#createGraph(java.lang.String,
+   * edu.columbia.rdf.htsview.tracks.TitleProperties)
+   */
+  @Override
+  public TrackSubFigure createGraph(Genome genome,
+      TitleProperties titlePosition) throws IOException {
+    mSubFigure = new LoadingSubFigure(getTitle(), titlePosition);
+
+    setMargins(getName(), titlePosition, mSubFigure);
+
+    return mSubFigure;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see
+   * edu.columbia.rdf.htsview.tracks.Track#updateGraph(org.jebtk.bioinformatics.
+   * genome.GenomicRegion, int, int, int, int)
+   */
+  @Override
+  public TrackSubFigure updateGraph(Genome genome,
+      GenomicRegion displayRegion,
+      int resolution,
+      int width,
+      int height,
+      int margin) throws IOException {
+    mSubFigure.update(genome, displayRegion, resolution, width, height, margin);
+
+    return mSubFigure;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see edu.columbia.rdf.htsview.tracks.AnnotationPlotTrack#toJson(org.jebtk.
+   * core.json.JsonBuilder)
+   */
+  @Override
+  public void toJson(JsonBuilder json) {
+    json.startObject();
+
+    // Sub tracks are written from the track tree
+    for (String key : mJson.getKeys()) {
+      if (!key.equals("tracks")) {
+        json.add(key, mJson.get(key));
+      }
+    }
+
+    json.endObject();
+  }
+}
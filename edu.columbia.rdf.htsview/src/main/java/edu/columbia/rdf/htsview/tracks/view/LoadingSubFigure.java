@@ -0,0 +1,88 @@
+/**
+ * Copyright 2017 Antony Holmes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.columbia.rdf.htsview.tracks.view;
+
+import java.awt.Color;
+import java.io.IOException;
+
+import org.jebtk.bioinformatics.genomic.Genome;
+import org.jebtk.bioinformatics.genomic.GenomicRegion;
+import org.jebtk.graphplot.figure.PlotStyle;
+
+import edu.columbia.rdf.htsview.tracks.FixedYSubFigure;
+import edu.columbia.rdf.htsview.tracks.TitleProperties;
+import edu.columbia.rdf.htsview.tracks.Track;
+
+/**
+ * Empty figure showing only a title, used while a track is loading.
+ */
+public class LoadingSubFigure extends FixedYSubFigure {
+
+  /** The Constant serialVersionUID. */
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * Instantiates a new loading sub figure.
+   *
+   * @param title the title
+   * @param titlePosition the title position
+   */
+  public LoadingSubFigure(String title, TitleProperties titlePosition) {
+    currentAxes().getX1Axis().getTitle().setText(null);
+    currentAxes().getY1Axis().setLimits(0, 1);
+
+    Track.setTitle(title, titlePosition, currentAxes());
+  }
+
+  /**
+   * Sets the title.
+   *
+   * @param title the new title
+   */
+  public void setTitle(String title) {
+    currentAxes().getTitle().setText(title);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see edu.columbia.rdf.htsview.tracks.FixedSubFigure#update(org.jebtk.
+   * bioinformatics.genome.GenomicRegion, int, double, int, int, int,
+   * java.awt.Color, java.awt.Color, org.graphplot.figure.PlotStyle)
+   */
+  @Override
+  public void update(Genome genome,
+      GenomicRegion displayRegion,
+      int resolution,
+      double yMax,
+      int width,
+      int height,
+      int margin,
+      Color lineColor,
+      Color fillColor,
+      PlotStyle style) throws IOException {
+    super.update(genome,
+        displayRegion,
+        resolution,
+        yMax,
+        width,
+        Track.SMALL_TRACK_SIZE.height,
+        margin,
+        lineColor,
+        fillColor,
+        style);
+  }
+}
@@ -0,0 +1,506 @@
+/**
+ * Copyright 2016 Antony Holmes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.columbia.rdf.htsview.tracks.view;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.jebtk.bioinformatics.genomic.Genome;
+import org.jebtk.bioinformatics.genomic.GenomicRegion;
+import org.jebtk.core.tree.TreeNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import edu.columbia.rdf.edb.Sample;
+import edu.columbia.rdf.htsview.chipseq.SampleCodec;
+import edu.columbia.rdf.htsview.tracks.Track;
+import edu.columbia.rdf.htsview.tracks.TrackTree;
+import edu.columbia.rdf.htsview.tracks.sample.CoveragePlotTrack;
+import edu.columbia.rdf.htsview.tracks.sample.SamplePlotTrack;
+import edu.columbia.rdf.htsview.tracks.sample.SamplePlotTrack.DrawnCounts;
+
+/**
+ * A binary snapshot of a session. Alongside the json view it stores the
+ * metadata of each database sample in the view, the version of the sample
+ * when it was last drawn, and the counts and mapped reads each sample track
+ * and its input last drew, so that a restored session can show its last
+ * view without contacting the server. The file is memory mapped when read
+ * and counts are only decoded when they are requested.
+ *
+ * Layout (big endian): magic, format version, view json, then the sample,
+ * counts and mapped reads sections, each a count followed by its entries.
+ * Strings are written as a length followed by UTF-8 bytes.
+ *
+ * @author Antony Holmes
+ */
+public class SessionSnapshot {
+
+  /** The Constant LOG. */
+  private static final Logger LOG = LoggerFactory
+      .getLogger(SessionSnapshot.class);
+
+  /** The Constant MAGIC. */
+  private static final int MAGIC = 0x48534E50;
+
+  /** The Constant VERSION of the file format. */
+  private static final int VERSION = 3;
+
+  /** The m view json. */
+  private final String mViewJson;
+
+  /** Sample versions at the time of the snapshot keyed by sample id. */
+  private final Map<Integer, String> mVersions = new HashMap<Integer, String>();
+
+  /** Serialized samples keyed by sample id. */
+  private final Map<Integer, ByteBuffer> mSamples = new HashMap<Integer, ByteBuffer>();
+
+  /** Counts keyed by sample, genome, region and window. */
+  private final Map<String, IntBuffer> mCounts = new HashMap<String, IntBuffer>();
+
+  /** Mapped reads keyed by sample, genome and window. */
+  private final Map<String, Integer> mMappedReads = new HashMap<String, Integer>();
+
+  /**
+   * Instantiates a new session snapshot.
+   *
+   * @param viewJson the view json
+   */
+  private SessionSnapshot(String viewJson) {
+    mViewJson = viewJson;
+  }
+
+  /**
+   * Gets the json describing the view.
+   *
+   * @return the view json
+   */
+  public String getViewJson() {
+    return mViewJson;
+  }
+
+  /**
+   * Gets the version a sample had when the snapshot was taken.
+   *
+   * @param id the sample id
+   * @return the version or null if unknown.
+   */
+  public String getVersion(int id) {
+    return mVersions.get(id);
+  }
+
+  /**
+   * Returns the metadata of a sample as it was when the snapshot was taken.
+   *
+   * @param id the sample id
+   * @return the sample or null if it is not in the snapshot.
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public Sample getSample(int id) throws IOException {
+    ByteBuffer buffer = mSamples.get(id);
+
+    if (buffer == null) {
+      return null;
+    }
+
+    byte[] bytes = new byte[buffer.remaining()];
+
+    buffer.duplicate().get(bytes);
+
+    DataInputStream in = new DataInputStream(
+        new ByteArrayInputStream(bytes));
+
+    try {
+      return SampleCodec.read(in);
+    } finally {
+      in.close();
+    }
+  }
+
+  /**
+   * Returns the counts stored for a sample.
+   *
+   * @param id the sample id
+   * @param genome the genome
+   * @param region the region
+   * @param window the window
+   * @return the counts or null if they are not in the snapshot.
+   */
+  public int[] getCounts(int id,
+      Genome genome,
+      GenomicRegion region,
+      int window) {
+    IntBuffer buffer = mCounts.get(getKey(id, genome, region, window));
+
+    if (buffer == null) {
+      return null;
+    }
+
+    int[] ret = new int[buffer.remaining()];
+
+    buffer.duplicate().get(ret);
+
+    return ret;
+  }
+
+  /**
+   * Returns the mapped reads stored for a sample.
+   *
+   * @param id the sample id
+   * @param genome the genome
+   * @param window the window
+   * @return the mapped reads or null if they are not in the snapshot.
+   */
+  public Integer getMappedReads(int id, Genome genome, int window) {
+    return mMappedReads.get(getKey(id, genome, window));
+  }
+
+  /**
+   * Read a snapshot by memory mapping the file.
+   *
+   * @param file the file
+   * @return the session snapshot
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public static SessionSnapshot read(Path file) throws IOException {
+    long start = System.currentTimeMillis();
+
+    FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+
+    ByteBuffer buffer;
+
+    try {
+      // The mapping remains valid once the channel is closed
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    } finally {
+      channel.close();
+    }
+
+    if (buffer.getInt() != MAGIC) {
+      throw new IOException(file + " is not a session snapshot.");
+    }
+
+    int version = buffer.getInt();
+
+    if (version != VERSION) {
+      throw new IOException(
+          file + " is a version " + version + " session snapshot.");
+    }
+
+    SessionSnapshot ret = new SessionSnapshot(readString(buffer));
+
+    int n = buffer.getInt();
+
+    for (int i = 0; i < n; ++i) {
+      int id = buffer.getInt();
+
+      ret.mVersions.put(id, readString(buffer));
+      ret.mSamples.put(id, slice(buffer, buffer.getInt()));
+    }
+
+    n = buffer.getInt();
+
+    for (int i = 0; i < n; ++i) {
+      String key = readString(buffer);
+
+      int bins = buffer.getInt();
+
+      ret.mCounts.put(key, slice(buffer, bins * 4).asIntBuffer());
+    }
+
+    n = buffer.getInt();
+
+    for (int i = 0; i < n; ++i) {
+      String key = readString(buffer);
+
+      ret.mMappedReads.put(key, buffer.getInt());
+    }
+
+    LOG.info("Mapped session snapshot {} with {} samples in {} ms.",
+        file,
+        ret.mSamples.size(),
+        System.currentTimeMillis() - start);
+
+    return ret;
+  }
+
+  /**
+   * Write a snapshot of the tracks in a view.
+   *
+   * @param file the file
+   * @param viewJson the json describing the view
+   * @param tree the track tree
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public static void write(Path file, String viewJson, TrackTree tree)
+      throws IOException {
+    List<SamplePlotTrack> tracks = new ArrayList<SamplePlotTrack>();
+
+    for (TreeNode<Track> node : tree.getRoot()) {
+      addTracks(node, tracks);
+    }
+
+    Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+
+    DataOutputStream out = new DataOutputStream(
+        new BufferedOutputStream(Files.newOutputStream(tmp)));
+
+    try {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+
+      writeString(out, viewJson);
+
+      // Only the counts already drawn are stored so saving never fetches,
+      // and the versions are the ones known when the counts were drawn so
+      // saving never asks the server either. Chromosome scale views are
+      // served from stored summaries and are not recorded. Coverage tracks
+      // are derived from reads and are not the sample's counts so are left
+      // out.
+      Map<Integer, Sample> samples = new HashMap<Integer, Sample>();
+      Map<Integer, String> versions = new HashMap<Integer, String>();
+      Map<String, int[]> counts = new LinkedHashMap<String, int[]>();
+      Map<String, Integer> mappedReads = new LinkedHashMap<String, Integer>();
+
+      for (SamplePlotTrack track : tracks) {
+        // Only database samples have ids that are stable between sessions
+        if (track.getSample().getId() > 0) {
+          samples.put(track.getSample().getId(), track.getSample());
+        }
+
+        DrawnCounts drawn = track.getDrawnCounts();
+
+        if (drawn == null || track instanceof CoveragePlotTrack) {
+          continue;
+        }
+
+        addDrawn(drawn, samples, versions, counts, mappedReads);
+
+        if (drawn.getInput() != null) {
+          addDrawn(drawn.getInput(), samples, versions, counts, mappedReads);
+        }
+      }
+
+      out.writeInt(samples.size());
+
+      for (Sample sample : samples.values()) {
+        String version = versions.get(sample.getId());
+
+        out.writeInt(sample.getId());
+        writeString(out, version != null ? version : "");
+
+        byte[] bytes = serialize(sample);
+
+        out.writeInt(bytes.length);
+        out.write(bytes);
+      }
+
+      out.writeInt(counts.size());
+
+      for (Entry<String, int[]> e : counts.entrySet()) {
+        writeString(out, e.getKey());
+
+        out.writeInt(e.getValue().length);
+
+        for (int c : e.getValue()) {
+          out.writeInt(c);
+        }
+      }
+
+      out.writeInt(mappedReads.size());
+
+      for (Entry<String, Integer> e : mappedReads.entrySet()) {
+        writeString(out, e.getKey());
+
+        out.writeInt(e.getValue());
+      }
+    } finally {
+      out.close();
+    }
+
+    Files.move(tmp,
+        file,
+        StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * Add the counts a sample was drawn with to the sections of a snapshot.
+   *
+   * @param drawn the drawn counts
+   * @param samples the samples
+   * @param versions the versions
+   * @param counts the counts
+   * @param mappedReads the mapped reads
+   */
+  private static void addDrawn(DrawnCounts drawn,
+      Map<Integer, Sample> samples,
+      Map<Integer, String> versions,
+      Map<String, int[]> counts,
+      Map<String, Integer> mappedReads) {
+    int id = drawn.getSample().getId();
+
+    if (id < 1) {
+      return;
+    }
+
+    samples.put(id, drawn.getSample());
+
+    if (drawn.getVersion() != null) {
+      versions.put(id, drawn.getVersion());
+    }
+
+    counts.put(getKey(id,
+        drawn.getGenome(),
+        drawn.getRegion(),
+        drawn.getWindow()), drawn.getCounts());
+
+    if (drawn.getMappedReads() > 0) {
+      mappedReads.put(getKey(id, drawn.getGenome(), drawn.getWindow()),
+          drawn.getMappedReads());
+    }
+  }
+
+  /**
+   * Recursively collect the sample tracks of a tree.
+   *
+   * @param node the node
+   * @param tracks the tracks
+   */
+  private static void addTracks(TreeNode<Track> node,
+      List<SamplePlotTrack> tracks) {
+    if (node.getValue() instanceof SamplePlotTrack) {
+      tracks.add((SamplePlotTrack) node.getValue());
+    }
+
+    for (TreeNode<Track> child : node) {
+      addTracks(child, tracks);
+    }
+  }
+
+  /**
+   * Serialize a sample with {@link SampleCodec}.
+   *
+   * @param sample the sample
+   * @return the bytes
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private static byte[] serialize(Sample sample) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+    DataOutputStream out = new DataOutputStream(bytes);
+
+    try {
+      SampleCodec.write(sample, out);
+    } finally {
+      out.close();
+    }
+
+    return bytes.toByteArray();
+  }
+
+  /**
+   * Returns a view of the next bytes of a buffer and moves past them.
+   *
+   * @param buffer the buffer
+   * @param length the length
+   * @return the byte buffer
+   */
+  private static ByteBuffer slice(ByteBuffer buffer, int length) {
+    ByteBuffer ret = buffer.slice();
+
+    ret.limit(length);
+
+    buffer.position(buffer.position() + length);
+
+    return ret;
+  }
+
+  /**
+   * Write a string.
+   *
+   * @param out the out
+   * @param s the s
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private static void writeString(DataOutputStream out, String s)
+      throws IOException {
+    byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  /**
+   * Read a string.
+   *
+   * @param buffer the buffer
+   * @return the string
+   */
+  private static String readString(ByteBuffer buffer) {
+    byte[] bytes = new byte[buffer.getInt()];
+
+    buffer.get(bytes);
+
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Gets the key.
+   *
+   * @param id the id
+   * @param genome the genome
+   * @param region the region
+   * @param window the window
+   * @return the key
+   */
+  private static String getKey(int id,
+      Genome genome,
+      GenomicRegion region,
+      int window) {
+    return id + ":" + genome.getAssembly() + ":" + region.getChr() + ":"
+        + region.getStart() + ":" + region.getEnd() + ":" + window;
+  }
+
+  /**
+   * Gets the key of the mapped reads of a sample.
+   *
+   * @param id the id
+   * @param genome the genome
+   * @param window the window
+   * @return the key
+   */
+  private static String getKey(int id, Genome genome, int window) {
+    return id + ":" + genome.getAssembly() + ":" + window;
+  }
+}
@@ -0,0 +1,271 @@
+/**
+ * Copyright 2016 Antony Holmes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.columbia.rdf.htsview.tracks.view;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import javax.swing.SwingUtilities;
+
+import org.jebtk.bioinformatics.genomic.Genome;
+import org.jebtk.bioinformatics.genomic.GenomicRegion;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import edu.columbia.rdf.edb.Sample;
+import edu.columbia.rdf.htsview.metrics.Metrics;
+import edu.columbia.rdf.htsview.tracks.SampleAssembly;
+import edu.columbia.rdf.htsview.tracks.sample.SampleAssemblies;
+
+/**
+ * Serves counts and mapped reads from the session snapshot that was last
+ * restored. They are returned immediately so the restored view can be drawn
+ * at once, while the version of each sample is checked in the background.
+ * If a sample has changed since the snapshot was taken, its stored counts
+ * are discarded and the view is refreshed so that only the stale tracks are
+ * fetched again.
+ *
+ * @author Antony Holmes
+ */
+public class SessionSnapshotService {
+
+  /** The Constant LOG. */
+  private static final Logger LOG = LoggerFactory
+      .getLogger(SessionSnapshotService.class);
+
+  /**
+   * The Class SessionSnapshotServiceLoader.
+   */
+  private static class SessionSnapshotServiceLoader {
+
+    /** The Constant INSTANCE. */
+    private static final SessionSnapshotService INSTANCE = new SessionSnapshotService();
+  }
+
+  /**
+   * Gets the single instance of SessionSnapshotService.
+   *
+   * @return single instance of SessionSnapshotService
+   */
+  public static SessionSnapshotService getInstance() {
+    return SessionSnapshotServiceLoader.INSTANCE;
+  }
+
+  /** Checks sample versions off the event thread. */
+  private final ExecutorService mExecutor = Executors
+      .newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+          Thread thread = new Thread(r, "htsview-snapshot-validate");
+
+          thread.setDaemon(true);
+
+          return thread;
+        }
+      });
+
+  /** The m snapshot. */
+  private SessionSnapshot mSnapshot = null;
+
+  /** Called on the event thread when stale counts have been discarded. */
+  private Runnable mRefresh = null;
+
+  /** Samples whose version has been or is being checked. */
+  private final Set<Integer> mChecked = new HashSet<Integer>();
+
+  /** Samples that changed since the snapshot was taken. */
+  private final Set<Integer> mStale = new HashSet<Integer>();
+
+  /**
+   * Instantiates a new session snapshot service.
+   */
+  private SessionSnapshotService() {
+    // Do nothing
+  }
+
+  /**
+   * Sets the snapshot to serve counts from.
+   *
+   * @param snapshot the snapshot, or null to stop using a snapshot.
+   * @param refresh redraws the view, run on the event thread when samples
+   *          are found to be stale.
+   */
+  public synchronized void setSnapshot(SessionSnapshot snapshot,
+      Runnable refresh) {
+    mSnapshot = snapshot;
+    mRefresh = refresh;
+
+    mChecked.clear();
+    mStale.clear();
+  }
+
+  /**
+   * Gets the current snapshot.
+   *
+   * @return the snapshot or null.
+   */
+  public synchronized SessionSnapshot getSnapshot() {
+    return mSnapshot;
+  }
+
+  /**
+   * Returns the counts of a sample stored in the snapshot.
+   *
+   * @param assembly the assembly
+   * @param sample the sample
+   * @param genome the genome
+   * @param region the region
+   * @param window the window
+   * @return the counts or null if the snapshot does not contain them or the
+   *         sample has changed.
+   */
+  public int[] getCounts(SampleAssembly assembly,
+      Sample sample,
+      Genome genome,
+      GenomicRegion region,
+      int window) {
+    SessionSnapshot snapshot = getSnapshot(sample);
+
+    if (snapshot == null) {
+      return null;
+    }
+
+    int[] counts = snapshot.getCounts(sample.getId(), genome, region, window);
+
+    if (counts == null) {
+      return null;
+    }
+
+    Metrics.getInstance().counter("SessionSnapshot.hits").inc();
+
+    validate(snapshot, assembly, sample);
+
+    return counts;
+  }
+
+  /**
+   * Returns the mapped reads of a sample stored in the snapshot.
+   *
+   * @param assembly the assembly
+   * @param sample the sample
+   * @param genome the genome
+   * @param window the window
+   * @return the mapped reads or null if the snapshot does not contain them
+   *         or the sample has changed.
+   */
+  public Integer getMappedReads(SampleAssembly assembly,
+      Sample sample,
+      Genome genome,
+      int window) {
+    SessionSnapshot snapshot = getSnapshot(sample);
+
+    if (snapshot == null) {
+      return null;
+    }
+
+    Integer mappedReads = snapshot.getMappedReads(sample.getId(),
+        genome,
+        window);
+
+    if (mappedReads == null) {
+      return null;
+    }
+
+    validate(snapshot, assembly, sample);
+
+    return mappedReads;
+  }
+
+  /**
+   * Returns the snapshot to serve a sample from.
+   *
+   * @param sample the sample
+   * @return the snapshot or null if there is no snapshot or the sample has
+   *         changed since it was taken.
+   */
+  private synchronized SessionSnapshot getSnapshot(Sample sample) {
+    if (mSnapshot == null || mStale.contains(sample.getId())) {
+      return null;
+    }
+
+    return mSnapshot;
+  }
+
+  /**
+   * Check in the background, once per sample, whether a sample has changed
+   * since the snapshot was taken.
+   *
+   * @param snapshot the snapshot
+   * @param assembly the assembly
+   * @param sample the sample
+   */
+  private void validate(final SessionSnapshot snapshot,
+      final SampleAssembly assembly,
+      final Sample sample) {
+    synchronized (this) {
+      if (!mChecked.add(sample.getId())) {
+        return;
+      }
+    }
+
+    mExecutor.submit(new Runnable() {
+      @Override
+      public void run() {
+        String stored = snapshot.getVersion(sample.getId());
+
+        String version;
+
+        try {
+          version = SampleAssemblies.getSource(assembly).getVersion(sample);
+        } catch (IOException e) {
+          LOG.warn("Could not check the version of {}: {}",
+              sample.getName(),
+              e.getMessage());
+
+          return;
+        }
+
+        // An unknown version cannot be shown to be stale
+        if (version == null || version.equals(stored)) {
+          return;
+        }
+
+        final Runnable refresh;
+
+        synchronized (SessionSnapshotService.this) {
+          if (snapshot != mSnapshot) {
+            return;
+          }
+
+          mStale.add(sample.getId());
+
+          refresh = mRefresh;
+        }
+
+        LOG.info("{} changed since the snapshot, refreshing.",
+            sample.getName());
+
+        if (refresh != null) {
+          SwingUtilities.invokeLater(refresh);
+        }
+      }
+    });
+  }
+}
@@ -53,6 +53,59 @@ public abstract class TrackJsonParser implements NameGetter {
       Json trackJson,
       TreeNode<Track> rootNode) throws IOException;
 
+  /**
+   * Reads anything a track needs from disk or the network before the track
+   * is created. The tracks of a view are loaded in parallel so this is
+   * called on a background thread and must not create Swing components or
+   * touch the annotation tree. The result is passed to
+   * {@link #parse(ModernWindow, String, int, Genome, ModernTree, Json, Object, TreeNode)}
+   * on the event dispatch thread. The default reads nothing.
+   *
+   * @param name the name
+   * @param id the id
+   * @param genome the genome
+   * @param trackJson the track json
+   * @return the data or null.
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public Object load(String name, int id, Genome genome, Json trackJson)
+      throws IOException {
+    return null;
+  }
+
+  /**
+   * Creates a new track from the json and the data read by
+   * {@link #load(String, int, Genome, Json)}. This is called on the event
+   * dispatch thread. The default ignores the data.
+   *
+   * @param window the window
+   * @param name the name
+   * @param id the id
+   * @param genome the genome
+   * @param annotationTree the annotation tree
+   * @param trackJson the track json
+   * @param data the data
+   * @param rootNode the root node
+   * @return true, if successful
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public boolean parse(ModernWindow window,
+      String name,
+      int id,
+      Genome genome,
+      ModernTree<Track> annotationTree,
+      Json trackJson,
+      Object data,
+      TreeNode<Track> rootNode) throws IOException {
+    return parse(window,
+        name,
+        id,
+        genome,
+        annotationTree,
+        trackJson,
+        rootNode);
+  }
+
   /**
    * Returns the type this parser is designed to deal with.
    *
@@ -15,11 +15,14 @@
  */
 package edu.columbia.rdf.htsview.tracks.view;
 
-import java.util.HashMap;
-import java.util.Map;
+import edu.columbia.rdf.htsview.tracks.loaders.LazyRegistry;
 
 /**
  * The Class TrackParserService.
+ * 
+ * Parsers are listed by track type in {@code META-INF/htsview/parsers}
+ * index resources and are only created when a view containing their type
+ * is loaded.
  */
 public class TrackParserService {
 
@@ -41,8 +44,9 @@ public class TrackParserService {
     return TrackServiceLoader.INSTANCE;
   }
 
-  /** The m parser map. */
-  private Map<String, TrackJsonParser> mParserMap = new HashMap<String, TrackJsonParser>();
+  /** The m parsers. */
+  private final LazyRegistry<TrackJsonParser> mParsers = new LazyRegistry<TrackJsonParser>(
+      TrackJsonParser.class, "parsers");
 
   /**
    * Instantiates a new track parser service.
@@ -67,7 +71,17 @@ public class TrackParserService {
    * @param parser the parser
    */
   private void register(String type, TrackJsonParser parser) {
-    mParserMap.put(type, parser);
+    mParsers.register(type, parser);
+  }
+
+  /**
+   * Register the class of a parser without creating it.
+   *
+   * @param type the type
+   * @param className the class name
+   */
+  public void register(String type, String className) {
+    mParsers.register(type, className);
   }
 
   /**
@@ -77,6 +91,6 @@ public class TrackParserService {
    * @return the track json parser
    */
   public TrackJsonParser get(String type) {
-    return mParserMap.get(type);
+    return mParsers.get(type);
   }
 }
@@ -16,10 +16,19 @@
 package edu.columbia.rdf.htsview.tracks.view;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.text.ParseException;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.swing.SwingUtilities;
 
 import org.jebtk.bioinformatics.genomic.Genome;
 import org.jebtk.bioinformatics.genomic.GenomeService;
@@ -31,10 +40,13 @@ import org.jebtk.core.io.PathUtils;
 import org.jebtk.core.json.Json;
 import org.jebtk.core.json.JsonBuilder;
 import org.jebtk.core.json.JsonParser;
+import org.jebtk.core.settings.SettingsService;
 import org.jebtk.core.tree.TreeNode;
 import org.jebtk.core.tree.TreeRootNode;
 import org.jebtk.modern.tree.ModernTree;
 import org.jebtk.modern.window.ModernWindow;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import edu.columbia.rdf.htsview.tracks.MarginModel;
 import edu.columbia.rdf.htsview.tracks.TitlePosition;
@@ -50,6 +62,9 @@ import edu.columbia.rdf.htsview.tracks.WidthModel;
  */
 public class TrackView {
 
+  /** The Constant LOG. */
+  private static final Logger LOG = LoggerFactory.getLogger(TrackView.class);
+
   /**
    * Instantiates a new track view.
    */
@@ -80,14 +95,44 @@ public class TrackView {
       GenomeModel mGenomeModel,
       GenomicRegionModel mGenomicModel,
       TitlePositionModel titleModel) throws IOException {
-    TreeRootNode<Track> root = new TreeRootNode<Track>();
-    Deque<TreeNode<Track>> queue = new ArrayDeque<TreeNode<Track>>();
-
-    Deque<Json> tracksQueue = new ArrayDeque<Json>();
-
-    queue.push(root);
+    // Counts of a previously restored session must not leak into this view
+    SessionSnapshotService.getInstance().setSnapshot(null, null);
+
+    loadJsonView(window,
+        new String(Files.readAllBytes(jsonFile), StandardCharsets.UTF_8),
+        tracksPanel,
+        mAnnotationTree,
+        mWidthModel,
+        mMarginModel,
+        mGenomeModel,
+        mGenomicModel,
+        titleModel);
+  }
 
-    Json viewJson = new JsonParser().parse(jsonFile);
+  /**
+   * Load a view from json text.
+   *
+   * @param window the window
+   * @param viewText the view json
+   * @param tracksPanel the tracks panel
+   * @param mAnnotationTree the m annotation tree
+   * @param mWidthModel the m width model
+   * @param mMarginModel the m margin model
+   * @param mGenomeModel the m genome model
+   * @param mGenomicModel the m genomic model
+   * @param titleModel the title model
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public static void loadJsonView(ModernWindow window,
+      String viewText,
+      TracksPanel tracksPanel,
+      final ModernTree<Track> mAnnotationTree,
+      WidthModel mWidthModel,
+      MarginModel mMarginModel,
+      GenomeModel mGenomeModel,
+      GenomicRegionModel mGenomicModel,
+      TitlePositionModel titleModel) throws IOException {
+    Json viewJson = new JsonParser().parse(viewText);
 
     Genome genome;
 
@@ -140,53 +185,461 @@ public class TrackView {
       titleModel.set(titleProperties);
     }
 
-    tracksQueue.push(viewJson.get("tracks"));
+    // Create a placeholder for every track so the tree order is known
+    // before any track is built
+    List<TrackLoader> loaders = new ArrayList<TrackLoader>();
+
+    createLoaders(viewJson.get("tracks"), loaders);
+
+    final ViewLoader viewLoader = new ViewLoader(window, genome,
+        mAnnotationTree, tracksPanel, loaders);
+
+    tracksPanel.setTracks(viewLoader.createTree());
+
+    mGenomicModel.set(region);
+
+    viewLoader.start();
+  }
+
+  /**
+   * Recursively create a loader for each track in a json track list.
+   *
+   * @param tracksJson the tracks json
+   * @param loaders the loaders
+   */
+  private static void createLoaders(Json tracksJson,
+      List<TrackLoader> loaders) {
+    for (Json trackJson : tracksJson) {
+      TrackLoader loader = new TrackLoader(trackJson);
+
+      loaders.add(loader);
+
+      Json subTracksJson = trackJson.get("tracks");
+
+      if (subTracksJson != null) {
+        createLoaders(subTracksJson, loader.mChildren);
+      }
+    }
+  }
+
+  /**
+   * Builds the tracks described by a single json track entry. The data of
+   * the track is read on a background thread and the track itself is then
+   * created on the event dispatch thread.
+   */
+  private static class TrackLoader {
+
+    /** The m json. */
+    private final Json mJson;
+
+    /** The m name. */
+    private final String mName;
+
+    /** The m type. */
+    private final String mType;
+
+    /** The m placeholder. */
+    private final LoadingPlotTrack mPlaceholder;
+
+    /** The m children. */
+    private final List<TrackLoader> mChildren = new ArrayList<TrackLoader>();
+
+    /** The m parser. */
+    private TrackJsonParser mParser;
+
+    /** The data read by the parser. */
+    private Object mData;
+
+    /** The built track nodes or null if the track is not yet built. */
+    private List<TreeNode<Track>> mNodes = null;
+
+    /**
+     * Instantiates a new track loader.
+     *
+     * @param json the json
+     */
+    public TrackLoader(Json json) {
+      mJson = json;
+      mName = json.getString("name");
+      mType = json.getString("type");
+      mPlaceholder = new LoadingPlotTrack(mName, json);
+    }
+
+    /**
+     * Read the data of the track. This is run on a background thread.
+     *
+     * @param genome the genome
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public void load(Genome genome) throws IOException {
+      mParser = TrackParserService.getInstance().get(mType);
+
+      if (mParser == null) {
+        throw new IOException("There is no parser for " + mType + ".");
+      }
+
+      mData = mParser.load(mName, mJson.getInt("id"), genome, mJson);
+    }
+
+    /**
+     * Create the track from the data read by {@link #load(Genome)}. This is
+     * run on the event dispatch thread.
+     *
+     * @param window the window
+     * @param genome the genome
+     * @param annotationTree the annotation tree
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public void build(ModernWindow window,
+        Genome genome,
+        ModernTree<Track> annotationTree) throws IOException {
+      // Parse into a private node so the view's tree only changes when the
+      // placeholder is replaced
+      TreeRootNode<Track> root = new TreeRootNode<Track>();
+
+      mParser.parse(window,
+          mName,
+          mJson.getInt("id"),
+          genome,
+          annotationTree,
+          mJson,
+          mData,
+          root);
+
+      mData = null;
+
+      List<TreeNode<Track>> nodes = new ArrayList<TreeNode<Track>>(
+          root.getChildCount());
+
+      for (TreeNode<Track> node : root) {
+        nodes.add(node);
+      }
+
+      mNodes = nodes;
+    }
+  }
+
+  /**
+   * Reads the data of the tracks of a view in parallel and swaps each track
+   * into the track tree, on the event dispatch thread, as it becomes ready.
+   */
+  private static class ViewLoader {
+
+    /** The m window. */
+    private final ModernWindow mWindow;
+
+    /** The m genome. */
+    private final Genome mGenome;
+
+    /** The m annotation tree. */
+    private final ModernTree<Track> mAnnotationTree;
+
+    /** The m tracks panel. */
+    private final TracksPanel mTracksPanel;
+
+    /** The m loaders. */
+    private final List<TrackLoader> mLoaders;
+
+    /** The number of tracks still loading. */
+    private final AtomicInteger mRemaining = new AtomicInteger();
+
+    /** The m errors. */
+    private final AtomicInteger mErrors = new AtomicInteger();
+
+    /** The m start. */
+    private long mStart;
+
+    /**
+     * Instantiates a new view loader.
+     *
+     * @param window the window
+     * @param genome the genome
+     * @param annotationTree the annotation tree
+     * @param tracksPanel the tracks panel
+     * @param loaders the loaders
+     */
+    public ViewLoader(ModernWindow window, Genome genome,
+        ModernTree<Track> annotationTree, TracksPanel tracksPanel,
+        List<TrackLoader> loaders) {
+      mWindow = window;
+      mGenome = genome;
+      mAnnotationTree = annotationTree;
+      mTracksPanel = tracksPanel;
+      mLoaders = loaders;
+    }
+
+    /**
+     * Start building the tracks in the background.
+     */
+    public void start() {
+      List<TrackLoader> loaders = new ArrayList<TrackLoader>();
+
+      flatten(mLoaders, loaders);
+
+      mRemaining.set(loaders.size());
+
+      mStart = System.currentTimeMillis();
+
+      ExecutorService executor = Executors.newFixedThreadPool(Math.max(1,
+          SettingsService.getInstance().getInt("htsview.view.load-threads")));
+
+      for (final TrackLoader loader : loaders) {
+        executor.submit(new Runnable() {
+          @Override
+          public void run() {
+            load(loader);
+          }
+        });
+      }
+
+      // Let the submitted tasks finish, then release the threads
+      executor.shutdown();
+    }
+
+    /**
+     * Read the data of a single track in the background, then create the
+     * track and put it in place of its placeholder on the event dispatch
+     * thread.
+     *
+     * @param loader the loader
+     */
+    private void load(final TrackLoader loader) {
+      final long start = System.currentTimeMillis();
+
+      try {
+        loader.load(mGenome);
+      } catch (Exception e) {
+        fail(loader, e);
+
+        return;
+      }
+
+      SwingUtilities.invokeLater(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            loader.build(mWindow, mGenome, mAnnotationTree);
+          } catch (Exception e) {
+            fail(loader, e);
+
+            return;
+          }
+
+          LOG.info("Loaded track {} ({}) in {} ms.",
+              loader.mName,
+              loader.mType,
+              System.currentTimeMillis() - start);
+
+          replace(loader);
+
+          finish();
+        }
+      });
+    }
+
+    /**
+     * Report that a track could not be loaded on its placeholder.
+     *
+     * @param loader the loader
+     * @param e the error
+     */
+    private void fail(TrackLoader loader, Exception e) {
+      mErrors.incrementAndGet();
 
-    while (!tracksQueue.isEmpty()) {
-      Json tracksJson = tracksQueue.pop();
+      LOG.warn("Could not load track {} ({}): {}",
+          loader.mName,
+          loader.mType,
+          e.getMessage());
 
-      TreeNode<Track> rootNode = queue.pop();
+      setStatus(loader.mPlaceholder, "failed: " + e.getMessage());
 
-      for (Json trackJson : tracksJson) {
-        String type = trackJson.getString("type");
-        String name = trackJson.getString("name");
+      finish();
+    }
 
-        System.err.println("Loading " + name + " " + type);
+    /**
+     * Log the load time once every track has been loaded or has failed.
+     */
+    private void finish() {
+      if (mRemaining.decrementAndGet() == 0) {
+        LOG.info("Loaded {} tracks in {} ms with {} errors.",
+            mLoaders.size(),
+            System.currentTimeMillis() - mStart,
+            mErrors.get());
+      }
+    }
 
-        int id = trackJson.getInt("id");
+    /**
+     * Set the status of a placeholder on the event dispatch thread.
+     *
+     * @param placeholder the placeholder
+     * @param status the status
+     */
+    private static void setStatus(final LoadingPlotTrack placeholder,
+        final String status) {
+      if (SwingUtilities.isEventDispatchThread()) {
+        placeholder.setStatus(status);
+      } else {
+        SwingUtilities.invokeLater(new Runnable() {
+          @Override
+          public void run() {
+            placeholder.setStatus(status);
+          }
+        });
+      }
+    }
 
-        // Determines if we can add child tracks to the current
-        // track
-        boolean allowChildren = false;
+    /**
+     * Put the tracks built by a loader in place of its placeholder. Only the
+     * placeholder's node changes so tracks the user has removed, moved or
+     * added in the meantime are left as they are. If the placeholder has
+     * been removed, the built tracks are discarded. If the parser created no
+     * tracks the placeholder stays, saying so, so that the entry is not
+     * lost from the view.
+     *
+     * @param loader the loader
+     */
+    private void replace(TrackLoader loader) {
+      List<TreeNode<Track>> nodes = loader.mNodes;
+
+      if (nodes == null || nodes.isEmpty()) {
+        LOG.warn("Track {} ({}) has nothing to show.",
+            loader.mName,
+            loader.mType);
+
+        loader.mPlaceholder.setStatus("nothing to show");
+
+        return;
+      }
 
-        TrackJsonParser parser = TrackParserService.getInstance().get(type);
+      if (!replace(mTracksPanel.getTree().getRoot(),
+          loader.mPlaceholder,
+          nodes)) {
+        LOG.info("Track {} was removed while it was loading.", loader.mName);
+      }
+    }
 
-        if (parser != null) {
-          allowChildren = parser.parse(window,
-              name,
-              id,
-              genome,
-              mAnnotationTree,
-              trackJson,
-              rootNode);
+    /**
+     * Search the children of a node for a placeholder and replace it.
+     *
+     * @param parent the parent
+     * @param placeholder the placeholder
+     * @param nodes the built nodes
+     * @return true, if the placeholder was found.
+     */
+    private static boolean replace(TreeNode<Track> parent,
+        LoadingPlotTrack placeholder,
+        List<TreeNode<Track>> nodes) {
+      for (TreeNode<Track> node : parent) {
+        if (node.getValue() != placeholder) {
+          if (replace(node, placeholder, nodes)) {
+            return true;
+          }
+
+          continue;
         }
 
-        Json subTracksJson = trackJson.get("tracks");
+        // The node keeps its place and the sub tracks of the view; it takes
+        // the track and any sub tracks the parser created
+        TreeNode<Track> first = nodes.get(0);
+
+        node.setName(first.getName());
+        node.setValue(first.getValue());
 
-        // Only process sub children if the current child is valid
-        // and it has children
-        if (subTracksJson != null) {
-          queue.push(rootNode.getChild(rootNode.getChildCount() - 1));
-          tracksQueue.push(subTracksJson);
+        for (TreeNode<Track> child : first) {
+          node.addChild(copy(child));
         }
+
+        // Parsers rarely create more than one track per entry. Nodes cannot
+        // be inserted mid list so any others go at the end of the parent.
+        for (int i = 1; i < nodes.size(); ++i) {
+          parent.addChild(copy(nodes.get(i)));
+        }
+
+        return true;
       }
+
+      return false;
     }
 
-    tracksPanel.setTracks(root);
+    /**
+     * Create a tree containing the tracks built so far, with placeholders for
+     * the rest. This is used once to show the view; after that tracks are
+     * swapped in as they are built.
+     *
+     * @return the tree root node
+     */
+    public TreeRootNode<Track> createTree() {
+      TreeRootNode<Track> root = new TreeRootNode<Track>();
 
-    System.err.println("Sdfsdf");
+      addNodes(mLoaders, root);
 
-    mGenomicModel.set(region);
+      return root;
+    }
+
+    /**
+     * Adds the nodes.
+     *
+     * @param loaders the loaders
+     * @param parent the parent
+     */
+    private static void addNodes(List<TrackLoader> loaders,
+        TreeNode<Track> parent) {
+      for (TrackLoader loader : loaders) {
+        List<TreeNode<Track>> nodes = loader.mNodes;
+
+        TreeNode<Track> node = null;
+
+        if (nodes != null) {
+          for (TreeNode<Track> n : nodes) {
+            node = copy(n);
+
+            parent.addChild(node);
+          }
+        } else {
+          node = new TreeNode<Track>(loader.mName, loader.mPlaceholder);
+
+          parent.addChild(node);
+        }
+
+        // Sub tracks belong to the last track the parser created
+        if (node != null) {
+          addNodes(loader.mChildren, node);
+        }
+      }
+    }
+
+    /**
+     * Copy a parsed node and its children so that each tree handed to the
+     * tracks panel is independent of the others.
+     *
+     * @param node the node
+     * @return the tree node
+     */
+    private static TreeNode<Track> copy(TreeNode<Track> node) {
+      TreeNode<Track> ret = new TreeNode<Track>(node.getName(),
+          node.getValue());
+
+      for (TreeNode<Track> child : node) {
+        ret.addChild(copy(child));
+      }
+
+      return ret;
+    }
+
+    /**
+     * Flatten.
+     *
+     * @param loaders the loaders
+     * @param ret the ret
+     */
+    private static void flatten(List<TrackLoader> loaders,
+        List<TrackLoader> ret) {
+      for (TrackLoader loader : loaders) {
+        ret.add(loader);
+
+        flatten(loader.mChildren, ret);
+      }
+    }
   }
 
   /**
@@ -233,6 +686,35 @@ public class TrackView {
       return;
     }
 
+    JsonBuilder root = createViewJson(trackList,
+        genome,
+        region,
+        titleProperties,
+        width,
+        margin);
+
+    // Json.prettyWrite(root, file);
+
+    JsonBuilder.write(root, file);
+  }
+
+  /**
+   * Describe a view as json.
+   *
+   * @param trackList the track list
+   * @param genome the genome
+   * @param region the region
+   * @param titleProperties the title properties
+   * @param width the width
+   * @param margin the margin
+   * @return the json builder
+   */
+  private static JsonBuilder createViewJson(TrackTree trackList,
+      Genome genome,
+      GenomicRegion region,
+      TitleProperties titleProperties,
+      int width,
+      int margin) {
     JsonBuilder root = JsonBuilder.create().startObject();
 
     root.add("genome", genome.getAssembly());
@@ -284,8 +766,88 @@ public class TrackView {
 
     root.endObject();
 
-    // Json.prettyWrite(root, file);
+    return root;
+  }
 
-    JsonBuilder.write(root, file);
+  /**
+   * Save a binary snapshot of the session containing the view, the
+   * metadata of its samples and the counts currently drawn, so that it can
+   * be restored without refetching.
+   *
+   * @param file the file
+   * @param trackList the track list
+   * @param genome the genome
+   * @param region the region
+   * @param titleProperties the title properties
+   * @param width the width
+   * @param margin the margin
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public static void saveSnapshot(Path file,
+      TrackTree trackList,
+      Genome genome,
+      GenomicRegion region,
+      TitleProperties titleProperties,
+      int width,
+      int margin) throws IOException {
+    if (file == null || region == null) {
+      return;
+    }
+
+    JsonBuilder root = createViewJson(trackList,
+        genome,
+        region,
+        titleProperties,
+        width,
+        margin);
+
+    SessionSnapshot.write(file, root.toString(), trackList);
+  }
+
+  /**
+   * Restore a session snapshot. The view is shown from the stored counts
+   * straight away while stale samples are detected and refreshed in the
+   * background.
+   *
+   * @param window the window
+   * @param file the file
+   * @param tracksPanel the tracks panel
+   * @param annotationTree the annotation tree
+   * @param widthModel the width model
+   * @param marginModel the margin model
+   * @param genomeModel the genome model
+   * @param genomicModel the genomic model
+   * @param titleModel the title model
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public static void loadSnapshot(ModernWindow window,
+      Path file,
+      TracksPanel tracksPanel,
+      ModernTree<Track> annotationTree,
+      WidthModel widthModel,
+      MarginModel marginModel,
+      GenomeModel genomeModel,
+      final GenomicRegionModel genomicModel,
+      TitlePositionModel titleModel) throws IOException {
+    SessionSnapshot snapshot = SessionSnapshot.read(file);
+
+    SessionSnapshotService.getInstance().setSnapshot(snapshot,
+        new Runnable() {
+          @Override
+          public void run() {
+            // Redraw the current location so stale tracks are refetched
+            genomicModel.set(genomicModel.get());
+          }
+        });
+
+    loadJsonView(window,
+        snapshot.getViewJson(),
+        tracksPanel,
+        annotationTree,
+        widthModel,
+        marginModel,
+        genomeModel,
+        genomicModel,
+        titleModel);
   }
 }
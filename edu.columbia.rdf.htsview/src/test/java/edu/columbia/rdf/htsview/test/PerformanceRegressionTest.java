@@ -0,0 +1,229 @@
+/**
+ * Copyright 2016 Antony Holmes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.columbia.rdf.htsview.test;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.jebtk.bioinformatics.genomic.GenomicRegion;
+import org.jebtk.bioinformatics.genomic.Strand;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import edu.columbia.rdf.edb.Sample;
+import edu.columbia.rdf.htsview.tracks.SampleAssembly;
+import edu.columbia.rdf.htsview.tracks.TitlePosition;
+import edu.columbia.rdf.htsview.tracks.TitleProperties;
+import edu.columbia.rdf.htsview.tracks.sample.ReadsPlotSubFigure;
+import edu.columbia.rdf.htsview.tracks.sample.SampleAssemblyBinned;
+import edu.columbia.rdf.htsview.tracks.sample.SampleAssemblyTiled;
+
+/**
+ * Time boxed checks of the region query and layout paths. Budgets are the
+ * median time in ms agreed for the reference machine and can be overridden
+ * with system properties, e.g. {@code -Dhtsview.perf.query-ms=5}. Since
+ * timings are meaningless on arbitrary hardware, the tests only run when
+ * {@code -Dhtsview.perf=true} is set.
+ *
+ * @author Antony Holmes
+ */
+public class PerformanceRegressionTest {
+
+  /** The Constant WARMUP. */
+  private static final int WARMUP = 20;
+
+  /** The Constant RUNS. */
+  private static final int RUNS = 50;
+
+  /** The m folder. */
+  @Rule
+  public TemporaryFolder mFolder = new TemporaryFolder();
+
+  /** The m fixtures. */
+  private final SyntheticFixtures mFixtures = new SyntheticFixtures(200000);
+
+  /** The m sample. */
+  private final Sample mSample = SyntheticFixtures.sample("synthetic");
+
+  /**
+   * Skip unless running on the reference machine.
+   */
+  @Before
+  public void setUp() {
+    assumeTrue(Boolean.getBoolean("htsview.perf"));
+  }
+
+  /**
+   * Gets a budget in ms.
+   *
+   * @param name the name
+   * @param def the default budget
+   * @return the budget
+   */
+  private static long budget(String name, long def) {
+    return Long.getLong("htsview.perf." + name + "-ms", def);
+  }
+
+  /**
+   * Returns the median run time of a task in ms after warming it up.
+   *
+   * @param task the task
+   * @return the median
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private static double median(Task task) throws IOException {
+    for (int i = 0; i < WARMUP; ++i) {
+      task.run(i);
+    }
+
+    long[] times = new long[RUNS];
+
+    for (int i = 0; i < RUNS; ++i) {
+      long start = System.nanoTime();
+
+      task.run(i);
+
+      times[i] = System.nanoTime() - start;
+    }
+
+    Arrays.sort(times);
+
+    return times[RUNS / 2] / 1000000.0;
+  }
+
+  /**
+   * Check a median time against its budget.
+   *
+   * @param name the name
+   * @param def the default budget
+   * @param task the task
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private static void check(String name, long def, Task task)
+      throws IOException {
+    double time = median(task);
+    long budget = budget(name, def);
+
+    assertTrue(name + " took " + time + " ms, budget is " + budget + " ms",
+        time <= budget);
+  }
+
+  /**
+   * A timed unit of work.
+   */
+  private interface Task {
+
+    /**
+     * Run.
+     *
+     * @param i the iteration
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public void run(int i) throws IOException;
+  }
+
+  /**
+   * A 100 kb view at 100 bp read from binned counts.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  @Test
+  public void binnedQueryTest() throws IOException {
+    Path meta = mFixtures.writeBinned(mFolder.newFolder("binned").toPath(),
+        Arrays.asList(10, 100));
+
+    final SampleAssembly assembly = new SampleAssemblyBinned(meta);
+
+    check("query", 5, new Task() {
+      @Override
+      public void run(int i) throws IOException {
+        // Step through the chromosome so reads are not trivially repeated
+        int start = 1 + (i * 7919 % 800) * 1000;
+
+        assembly.getCounts(mSample,
+            mFixtures.getGenome(),
+            mFixtures.region(start, start + 99999),
+            100);
+      }
+    });
+  }
+
+  /**
+   * Panning a 100 kb view in steps of 1 kb with the tile cache.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  @Test
+  public void tiledPanTest() throws IOException {
+    Path meta = mFixtures.writeBinned(mFolder.newFolder("tiled").toPath(),
+        Arrays.asList(10));
+
+    final SampleAssembly assembly = new SampleAssemblyTiled(
+        new SampleAssemblyBinned(meta));
+
+    check("pan", 2, new Task() {
+      @Override
+      public void run(int i) throws IOException {
+        int start = 100001 + (i % 100) * 1000;
+
+        assembly.getCounts(mSample,
+            mFixtures.getGenome(),
+            mFixtures.region(start, start + 99999),
+            10);
+      }
+    });
+  }
+
+  /**
+   * Stacking the reads of a 20 kb view into rows.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  @Test
+  public void readsLayoutTest() throws IOException {
+    GenomicRegion region = mFixtures.region(400001, 420000);
+
+    final int[] starts = mFixtures.starts(region);
+    final Strand[] strands = mFixtures.strands(region);
+
+    final ReadsPlotSubFigure figure = ReadsPlotSubFigure.create("reads",
+        SyntheticFixtures.READ_LENGTH,
+        new TitleProperties(TitlePosition.TOP));
+
+    check("layout", 20, new Task() {
+      @Override
+      public void run(int i) throws IOException {
+        figure.setStarts(starts,
+            strands,
+            true,
+            Color.BLACK,
+            Color.GRAY,
+            true,
+            Color.BLACK,
+            Color.GRAY,
+            5,
+            1);
+      }
+    });
+  }
+}
@@ -0,0 +1,288 @@
+/**
+ * Copyright 2016 Antony Holmes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.columbia.rdf.htsview.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import org.jebtk.bioinformatics.ext.ucsc.BedGraph;
+import org.jebtk.bioinformatics.ext.ucsc.BedGraphElement;
+import org.jebtk.bioinformatics.genomic.GenomicElement;
+import org.jebtk.bioinformatics.genomic.GenomicRegion;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import edu.columbia.rdf.edb.Sample;
+import edu.columbia.rdf.htsview.ext.abi.ABITrace;
+import edu.columbia.rdf.htsview.ext.abi.SampleAssemblyABI;
+import edu.columbia.rdf.htsview.tracks.SampleAssembly;
+import edu.columbia.rdf.htsview.tracks.SampleAssemblyFile;
+import edu.columbia.rdf.htsview.tracks.sample.SampleAssemblyBinned;
+import edu.columbia.rdf.htsview.tracks.sample.SampleAssemblyDiskCache;
+import edu.columbia.rdf.htsview.tracks.sample.SampleAssemblyTiled;
+import edu.columbia.rdf.htsview.tracks.sample.TileStore;
+
+/**
+ * Checks that each way of serving counts returns exactly the counts of the
+ * synthetic fixture.
+ *
+ * @author Antony Holmes
+ */
+public class SampleAssemblyTest {
+
+  /** The Constant WINDOWS. */
+  private static final int[] WINDOWS = { 1, 10, 100, 1000 };
+
+  /** The m folder. */
+  @Rule
+  public TemporaryFolder mFolder = new TemporaryFolder();
+
+  /** The m fixtures. */
+  private final SyntheticFixtures mFixtures = new SyntheticFixtures(20000);
+
+  /** The m sample. */
+  private final Sample mSample = SyntheticFixtures.sample("synthetic");
+
+  /**
+   * Regions covering the start of the chromosome, bins split by the region
+   * boundaries and a region past the last read.
+   *
+   * @return the list
+   */
+  private List<GenomicRegion> regions() {
+    return Arrays.asList(mFixtures.region(1, 5000),
+        mFixtures.region(12345, 67890),
+        mFixtures.region(500001, 500001),
+        mFixtures.region(SyntheticFixtures.SIZE - 999,
+            SyntheticFixtures.SIZE + 5000));
+  }
+
+  /**
+   * Check the counts of an assembly against the fixture.
+   *
+   * @param assembly the assembly
+   * @param windows the windows
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private void check(SampleAssembly assembly, int... windows)
+      throws IOException {
+    for (int window : windows) {
+      for (GenomicRegion region : regions()) {
+        assertArrayEquals(region + " at " + window,
+            mFixtures.counts(region, window),
+            assembly.getCounts(mSample,
+                mFixtures.getGenome(),
+                region,
+                window));
+      }
+    }
+  }
+
+  /**
+   * Test file.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  @Test
+  public void fileTest() throws IOException {
+    SampleAssembly assembly = new SampleAssemblyFile(
+        mFixtures.toReadCountsFile()) {
+    };
+
+    check(assembly, WINDOWS);
+
+    GenomicRegion region = mFixtures.region(200001, 210000);
+
+    int[] starts = assembly.getStarts(mSample,
+        mFixtures.getGenome(),
+        region,
+        1);
+
+    assertArrayEquals(mFixtures.starts(region), starts);
+    assertEquals(starts.length,
+        assembly.getStrands(mSample, mFixtures.getGenome(), region, 1).length);
+
+    assertEquals(mFixtures.getReads(),
+        assembly.getMappedReads(mSample, mFixtures.getGenome(), 100));
+    assertEquals(SyntheticFixtures.READ_LENGTH,
+        assembly.getReadLength(mSample));
+  }
+
+  /**
+   * Test binned.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  @Test
+  public void binnedTest() throws IOException {
+    Path meta = mFixtures.writeBinned(mFolder.newFolder("binned").toPath(),
+        Arrays.asList(10, 100));
+
+    SampleAssembly assembly = new SampleAssemblyBinned(meta);
+
+    // Stored windows
+    check(assembly, 10, 100);
+
+    // Overlap counts cannot be summed from finer windows and the fixture
+    // has no source BAM to fall back on, so other windows are an error
+    for (GenomicRegion region : regions()) {
+      try {
+        assembly.getCounts(mSample, mFixtures.getGenome(), region, 1000);
+
+        fail("Window 1000 was not precomputed.");
+      } catch (IOException e) {
+        // Expected
+      }
+    }
+
+    assertEquals(mFixtures.getReads(),
+        assembly.getMappedReads(mSample, mFixtures.getGenome(), 100));
+  }
+
+  /**
+   * Test ABI. Each position of the track is the value of the color channel
+   * of a base at the peak of the called base at that position.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  @Test
+  public void abiTest() throws IOException {
+    int bases = 800;
+
+    Path file = mFolder.newFile("synthetic.ab1").toPath();
+
+    SyntheticFixtures.writeAbi(file, bases);
+
+    for (char base : ABITrace.BASES) {
+      SampleAssembly assembly = new SampleAssemblyABI(file, base);
+
+      // Positions are indices into the called bases
+      GenomicRegion region = mFixtures.region(1, bases + 9);
+
+      int[] counts = assembly.getCounts(mSample,
+          mFixtures.getGenome(),
+          region,
+          1);
+
+      assertEquals(bases + 9, counts.length);
+
+      for (int i = 0; i < counts.length; ++i) {
+        int index = region.getStart() + i;
+
+        // Positions past the last base have no color
+        int expected = index < bases
+            ? SyntheticFixtures.abiColor(base, SyntheticFixtures.abiPeak(index))
+            : -1;
+
+        assertEquals(base + " at " + index, expected, counts[i]);
+      }
+    }
+  }
+
+  /**
+   * Test tiled.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  @Test
+  public void tiledTest() throws IOException {
+    SampleAssembly assembly = new SampleAssemblyTiled(
+        new SampleAssemblyFile(mFixtures.toReadCountsFile()) {
+        });
+
+    // Twice so the second pass is served from the tiles
+    check(assembly, WINDOWS);
+    check(assembly, WINDOWS);
+  }
+
+  /**
+   * Test disk cache.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  @Test
+  public void diskCacheTest() throws IOException {
+    TileStore store = new TileStore(mFolder.newFolder("tiles").toPath(),
+        64 * 1024 * 1024);
+
+    SampleAssembly assembly = new SampleAssemblyDiskCache(
+        new SampleAssemblyFile(mFixtures.toReadCountsFile()) {
+        }, store);
+
+    check(assembly, WINDOWS);
+
+    // A new instance sharing the store must read the same tiles back
+    check(new SampleAssemblyDiskCache(
+        new SampleAssemblyFile(mFixtures.toReadCountsFile()) {
+        }, store), WINDOWS);
+  }
+
+  /**
+   * A tile whose header claims more counts than it holds must be rejected
+   * rather than allocated.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  @Test
+  public void corruptTileTest() throws IOException {
+    byte[] tile = TileStore.encode(new int[] { 1, 2, 3 });
+
+    assertArrayEquals(new int[] { 1, 2, 3 }, TileStore.decode(tile));
+
+    ByteBuffer.wrap(tile).putInt(4, Integer.MAX_VALUE);
+
+    assertNull(TileStore.decode(tile));
+  }
+
+  /**
+   * Test bed graph.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  @Test
+  public void bedGraphTest() throws IOException {
+    GenomicRegion region = mFixtures.region(100001, 150000);
+
+    Path file = mFolder.newFile("synthetic.bedgraph").toPath();
+
+    mFixtures.writeBedGraph(file, region, 100);
+
+    List<BedGraph> bedGraphs = BedGraph.parse(file);
+
+    assertEquals(1, bedGraphs.size());
+
+    List<GenomicElement> elements = bedGraphs.get(0).find(region);
+
+    int[] counts = mFixtures.counts(region, 100);
+
+    assertEquals(counts.length, elements.size());
+
+    for (int i = 0; i < counts.length; ++i) {
+      assertEquals(counts[i],
+          ((BedGraphElement) elements.get(i)).getValue(),
+          0);
+    }
+  }
+}
@@ -0,0 +1,650 @@
+/**
+ * Copyright 2016 Antony Holmes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.columbia.rdf.htsview.test;
+
+import java.awt.Color;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.jebtk.bioinformatics.ext.ucsc.BedGraph;
+import org.jebtk.bioinformatics.ext.ucsc.BedGraphElement;
+import org.jebtk.bioinformatics.genomic.Chromosome;
+import org.jebtk.bioinformatics.genomic.ChromosomeService;
+import org.jebtk.bioinformatics.genomic.Genome;
+import org.jebtk.bioinformatics.genomic.GenomeService;
+import org.jebtk.bioinformatics.genomic.GenomicElement;
+import org.jebtk.bioinformatics.genomic.GenomicRegion;
+import org.jebtk.bioinformatics.genomic.GenomicType;
+import org.jebtk.bioinformatics.genomic.Strand;
+import org.jebtk.core.io.FileUtils;
+import org.jebtk.core.json.JsonBuilder;
+
+import edu.columbia.rdf.edb.Sample;
+import edu.columbia.rdf.edb.Species;
+import edu.columbia.rdf.edb.ngs.ReadCountsFile;
+import edu.columbia.rdf.htsview.ngs.CountsPrecompute;
+import edu.columbia.rdf.htsview.tracks.SampleAssembly;
+
+/**
+ * Writes small synthetic count files whose contents are known exactly so
+ * that tests do not depend on lab storage. All reads are placed on a single
+ * chromosome from a fixed seed. The fixtures are also published in the test
+ * jar so that the benchmarks measure the same data.
+ *
+ * @author Antony Holmes
+ */
+public class SyntheticFixtures {
+
+  /** The Constant SEED. */
+  public static final long SEED = 20180101L;
+
+  /** The Constant READ_LENGTH. */
+  public static final int READ_LENGTH = 50;
+
+  /** The Constant SIZE of the fixture chromosome used by default. */
+  public static final int SIZE = 1000000;
+
+  /** Color points per base in synthetic ab1 files. */
+  public static final int ABI_POINTS = 12;
+
+  /** The order of the color channels DATA 9 to 12 in ab1 files. */
+  private static final char[] ABI_CHANNELS = { 'G', 'A', 'T', 'C' };
+
+  /** The m starts. */
+  private final int[] mStarts;
+
+  /** The m strands. */
+  private final Strand[] mStrands;
+
+  /** The m genome. */
+  private final Genome mGenome;
+
+  /** The m chr. */
+  private final Chromosome mChr;
+
+  /** The m size. */
+  private final int mSize;
+
+  /**
+   * Create a fixture of n reads.
+   *
+   * @param n the n
+   */
+  public SyntheticFixtures(int n) {
+    this(n, SIZE);
+  }
+
+  /**
+   * Create a fixture of n reads placed in the first bases of the
+   * chromosome.
+   *
+   * @param n the n
+   * @param size the number of bases the reads are spread over.
+   */
+  public SyntheticFixtures(int n, int size) {
+    mSize = Math.max(READ_LENGTH + 1, size);
+    mGenome = GenomeService.getInstance().guessGenome("hg19");
+    mChr = ChromosomeService.getInstance().chr(mGenome, "chr1");
+
+    Random random = new Random(SEED);
+
+    mStarts = new int[n];
+    mStrands = new Strand[n];
+
+    for (int i = 0; i < n; ++i) {
+      mStarts[i] = 1 + random.nextInt(mSize - READ_LENGTH);
+    }
+
+    Arrays.sort(mStarts);
+
+    for (int i = 0; i < n; ++i) {
+      mStrands[i] = random.nextBoolean() ? Strand.SENSE : Strand.ANTISENSE;
+    }
+  }
+
+  /**
+   * Gets the genome.
+   *
+   * @return the genome
+   */
+  public Genome getGenome() {
+    return mGenome;
+  }
+
+  /**
+   * Gets the chr.
+   *
+   * @return the chr
+   */
+  public Chromosome getChr() {
+    return mChr;
+  }
+
+  /**
+   * Gets the number of bases the reads are spread over.
+   *
+   * @return the size
+   */
+  public int getSize() {
+    return mSize;
+  }
+
+  /**
+   * Gets the number of reads.
+   *
+   * @return the reads
+   */
+  public int getReads() {
+    return mStarts.length;
+  }
+
+  /**
+   * Returns a region on the fixture chromosome.
+   *
+   * @param start the start
+   * @param end the end
+   * @return the genomic region
+   */
+  public GenomicRegion region(int start, int end) {
+    return new GenomicRegion(mChr, start, end);
+  }
+
+  /**
+   * Returns the expected number of reads overlapping each bin of a region.
+   * This is the reference the assemblies are checked against.
+   *
+   * @param region the region
+   * @param window the window
+   * @return the counts
+   */
+  public int[] counts(GenomicRegion region, int window) {
+    int s = SampleAssembly.getBin(region.getStart(), window);
+    int e = SampleAssembly.getBin(region.getEnd(), window);
+
+    int[] ret = new int[e - s + 1];
+
+    // Only reads starting from a read length before the first bin to the
+    // end of the last bin overlap the bins
+    int first = first(Math.max(1, s * window - READ_LENGTH + 2));
+    long last = (e + 1L) * window;
+
+    for (int i = first; i < mStarts.length && mStarts[i] <= last; ++i) {
+      int rs = SampleAssembly.getBin(mStarts[i], window);
+      int re = SampleAssembly.getBin(mStarts[i] + READ_LENGTH - 1, window);
+
+      for (int b = Math.max(rs, s); b <= Math.min(re, e); ++b) {
+        ++ret[b - s];
+      }
+    }
+
+    return ret;
+  }
+
+  /**
+   * Returns the starts of the reads beginning in a region.
+   *
+   * @param region the region
+   * @return the starts
+   */
+  public int[] starts(GenomicRegion region) {
+    int s = first(region);
+    int e = last(region);
+
+    return Arrays.copyOfRange(mStarts, s, e);
+  }
+
+  /**
+   * Returns the strands of the reads beginning in a region.
+   *
+   * @param region the region
+   * @return the strands
+   */
+  public Strand[] strands(GenomicRegion region) {
+    return Arrays.copyOfRange(mStrands, first(region), last(region));
+  }
+
+  /**
+   * Index of the first read starting in a region.
+   *
+   * @param region the region
+   * @return the int
+   */
+  private int first(GenomicRegion region) {
+    return first(region.getStart());
+  }
+
+  /**
+   * Index of the first read starting at or after a position.
+   *
+   * @param start the start
+   * @return the int
+   */
+  private int first(int start) {
+    int i = Arrays.binarySearch(mStarts, start);
+
+    if (i < 0) {
+      return -i - 1;
+    }
+
+    // Step back over duplicate starts
+    while (i > 0 && mStarts[i - 1] == start) {
+      --i;
+    }
+
+    return i;
+  }
+
+  /**
+   * Index after the last read starting in a region.
+   *
+   * @param region the region
+   * @return the int
+   */
+  private int last(GenomicRegion region) {
+    int i = first(region);
+
+    while (i < mStarts.length && mStarts[i] <= region.getEnd()) {
+      ++i;
+    }
+
+    return i;
+  }
+
+  /**
+   * Create a sample.
+   *
+   * @param name the name
+   * @return the sample
+   */
+  public static Sample sample(String name) {
+    return new Sample(-1, null, null, name,
+        new Species(-1, "Human", "Human"), null);
+  }
+
+  /**
+   * Write the reads as a binned count directory in the format read by
+   * {@code ReadCountsFileBinned}.
+   *
+   * @param dir the dir
+   * @param windows the windows
+   * @return the meta file.
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public Path writeBinned(Path dir, List<Integer> windows) throws IOException {
+    Files.createDirectories(dir);
+
+    StringBuilder buffer = new StringBuilder();
+
+    for (int window : windows) {
+      if (buffer.length() > 0) {
+        buffer.append(",");
+      }
+
+      buffer.append(window);
+
+      int[] counts = counts(region(1, mSize), window);
+
+      ByteBuffer bytes = ByteBuffer.allocate(counts.length * 4);
+      bytes.asIntBuffer().put(counts);
+
+      FileChannel channel = FileChannel.open(
+          CountsPrecompute.getFile(dir, mChr, window),
+          StandardOpenOption.CREATE,
+          StandardOpenOption.WRITE,
+          StandardOpenOption.TRUNCATE_EXISTING);
+
+      try {
+        while (bytes.hasRemaining()) {
+          channel.write(bytes);
+        }
+      } finally {
+        channel.close();
+      }
+    }
+
+    JsonBuilder json = JsonBuilder.create().startObject();
+
+    json.add("Name", "synthetic");
+    json.add("genome", mGenome.getAssembly());
+    json.add("windows", buffer.toString());
+    json.add("read-length", READ_LENGTH);
+    json.add("mapped-reads", mStarts.length);
+    json.startObject("chromosomes");
+    json.add(mChr.toString(), mSize);
+    json.endObject();
+    json.endObject();
+
+    Path file = dir.resolve(CountsPrecompute.META_FILE);
+
+    JsonBuilder.write(json, file);
+
+    return file;
+  }
+
+  /**
+   * Write an ab1 file with the given number of bases and 12 color points per
+   * base, as produced by a 3730. The peak of base i sits at color point
+   * {@code i * 12 + 6} and the color values are given by
+   * {@link #abiColor(char, int)}.
+   *
+   * @param file the file
+   * @param bases the bases
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public static void writeAbi(Path file, int bases) throws IOException {
+    Files.write(file, abi(bases).array());
+  }
+
+  /**
+   * Returns the contents of the ab1 file written by
+   * {@link #writeAbi(Path, int)}.
+   *
+   * @param bases the bases
+   * @return the byte buffer
+   */
+  public static ByteBuffer abi(int bases) {
+    int points = bases * ABI_POINTS;
+
+    // Header, 5 directory entries, the peak positions and 4 channels
+    int dirOffset = 128;
+    int dataOffset = dirOffset + 5 * 28;
+
+    ByteBuffer buffer = ByteBuffer
+        .allocate(dataOffset + bases * 2 + 4 * points * 2);
+
+    buffer.putInt(0, 0x41424946);
+    buffer.putShort(4, (short) 101);
+    buffer.putInt(6, 0x74646972);
+    buffer.putInt(10, 1);
+    buffer.putShort(14, (short) 1023);
+    buffer.putShort(16, (short) 28);
+    buffer.putInt(18, 5);
+    buffer.putInt(22, 5 * 28);
+    buffer.putInt(26, dirOffset);
+
+    int p = dirOffset;
+    int offset = dataOffset;
+
+    // PLOC 2
+    putAbiDir(buffer, p, 0x504C4F43, 2, bases, offset);
+
+    for (int i = 0; i < bases; ++i) {
+      buffer.putShort(offset + i * 2, (short) abiPeak(i));
+    }
+
+    p += 28;
+    offset += bases * 2;
+
+    // DATA 9 to 12 hold G, A, T and C
+    for (int tag = 9; tag <= 12; ++tag) {
+      putAbiDir(buffer, p, 0x44415441, tag, points, offset);
+
+      char base = ABI_CHANNELS[tag - 9];
+
+      for (int i = 0; i < points; ++i) {
+        buffer.putShort(offset + i * 2, abiColor(base, i));
+      }
+
+      p += 28;
+      offset += points * 2;
+    }
+
+    return buffer;
+  }
+
+  /**
+   * Returns the color point at which a base peaks in a synthetic ab1 file.
+   *
+   * @param base the index of the base
+   * @return the color point
+   */
+  public static int abiPeak(int base) {
+    return base * ABI_POINTS + ABI_POINTS / 2;
+  }
+
+  /**
+   * Returns the value of a color channel at a point in a synthetic ab1 file.
+   * Each channel has distinct values so a channel read in the wrong order is
+   * detected.
+   *
+   * @param base the base of the channel
+   * @param point the point
+   * @return the value
+   */
+  public static short abiColor(char base, int point) {
+    return (short) ((point * 31 + base * 997) % 2000);
+  }
+
+  /**
+   * Write a directory entry describing an array of shorts.
+   *
+   * @param buffer the buffer
+   * @param p the p
+   * @param name the name
+   * @param tag the tag
+   * @param n the n
+   * @param offset the offset
+   */
+  private static void putAbiDir(ByteBuffer buffer,
+      int p,
+      int name,
+      int tag,
+      int n,
+      int offset) {
+    buffer.putInt(p, name);
+    buffer.putInt(p + 4, tag);
+    buffer.putShort(p + 8, (short) 4);
+    buffer.putShort(p + 10, (short) 2);
+    buffer.putInt(p + 12, n);
+    buffer.putInt(p + 16, n * 2);
+    buffer.putInt(p + 20, offset);
+  }
+
+  /**
+   * Write the counts of a region as a bedgraph with one line per bin.
+   *
+   * @param file the file
+   * @param region the region
+   * @param window the window
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public void writeBedGraph(Path file, GenomicRegion region, int window)
+      throws IOException {
+    int[] counts = counts(region, window);
+
+    int s = SampleAssembly.getBin(region.getStart(), window);
+
+    BufferedWriter writer = FileUtils.newBufferedWriter(file);
+
+    try {
+      writer.write("track type=bedGraph name=\"synthetic\"");
+      writer.newLine();
+
+      for (int i = 0; i < counts.length; ++i) {
+        int start = (s + i) * window;
+
+        writer.write(mChr + "\t" + start + "\t" + (start + window) + "\t"
+            + counts[i]);
+        writer.newLine();
+      }
+    } finally {
+      writer.close();
+    }
+  }
+
+  /**
+   * Returns n non overlapping elements tiling a region, similar to a peak
+   * or gene track.
+   *
+   * @param region the region
+   * @param n the n
+   * @return the elements
+   */
+  public static List<GenomicElement> elements(GenomicRegion region, int n) {
+    return new ArrayList<GenomicElement>(bedGraphElements(region, n));
+  }
+
+  /**
+   * Returns a bedgraph of n equal bins covering a region with values drawn
+   * from the fixture seed.
+   *
+   * @param region the region
+   * @param n the n
+   * @return the bed graph
+   */
+  public static BedGraph bedGraph(GenomicRegion region, int n) {
+    BedGraph ret = new BedGraph("synthetic", "synthetic", Color.BLACK);
+
+    for (BedGraphElement e : bedGraphElements(region, n)) {
+      ret.add(e);
+    }
+
+    return ret;
+  }
+
+  /**
+   * Bed graph elements.
+   *
+   * @param region the region
+   * @param n the n
+   * @return the list
+   */
+  private static List<BedGraphElement> bedGraphElements(GenomicRegion region,
+      int n) {
+    Random random = new Random(SEED);
+
+    List<BedGraphElement> ret = new ArrayList<BedGraphElement>(n);
+
+    int w = Math.max(1, region.getLength() / n);
+
+    int start = region.getStart();
+
+    for (int i = 0; i < n; ++i) {
+      ret.add(new BedGraphElement(GenomicType.REGION,
+          new GenomicRegion(region.getChr(), start, start + w - 1),
+          random.nextDouble() * 100));
+
+      start += w;
+    }
+
+    return ret;
+  }
+
+  /**
+   * Returns the reads as an in memory read counts file. This stands in for
+   * the 32 bit, BVT and BRT readers, which are all used through the same
+   * {@code ReadCountsFile} methods.
+   *
+   * @return the read counts file
+   */
+  public ReadCountsFile toReadCountsFile() {
+    return new MemoryReadCountsFile(this);
+  }
+
+  /**
+   * Serves the fixture reads through the read counts file interface.
+   */
+  private static class MemoryReadCountsFile extends ReadCountsFile {
+
+    /** The m fixtures. */
+    private final SyntheticFixtures mFixtures;
+
+    /**
+     * Instantiates a new memory read counts file.
+     *
+     * @param fixtures the fixtures
+     */
+    public MemoryReadCountsFile(SyntheticFixtures fixtures) {
+      mFixtures = fixtures;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see edu.columbia.rdf.edb.ngs.CountAssembly#getCounts(org.jebtk.
+     * bioinformatics.genomic.GenomicRegion, int)
+     */
+    @Override
+    public int[] getCounts(GenomicRegion region, int window)
+        throws IOException {
+      return mFixtures.counts(region, window);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see edu.columbia.rdf.edb.ngs.ReadCountsFile#getStarts(org.jebtk.
+     * bioinformatics.genomic.GenomicRegion, int)
+     */
+    @Override
+    public int[] getStarts(GenomicRegion region, int window)
+        throws IOException {
+      return mFixtures.starts(region);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see edu.columbia.rdf.edb.ngs.ReadCountsFile#getStrands(org.jebtk.
+     * bioinformatics.genomic.GenomicRegion, int)
+     */
+    @Override
+    public Strand[] getStrands(GenomicRegion region, int window)
+        throws IOException {
+      return mFixtures.strands(region);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see edu.columbia.rdf.edb.ngs.ReadCountsFile#getReadCount(org.jebtk.
+     * bioinformatics.genomic.Genome, int)
+     */
+    @Override
+    public int getReadCount(Genome genome, int window) {
+      return mFixtures.getReads();
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see edu.columbia.rdf.edb.ngs.ReadCountsFile#getGenome()
+     */
+    @Override
+    public Genome getGenome() {
+      return mFixtures.getGenome();
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see edu.columbia.rdf.edb.ngs.ReadCountsFile#getReadLength()
+     */
+    @Override
+    public int getReadLength() {
+      return READ_LENGTH;
+    }
+  }
+}